@@ -2,6 +2,7 @@ package co.edu.umanizales.iron_gym.controller; // Declara el paquete donde se en
 
 import co.edu.umanizales.iron_gym.model.Attendance; // Importa la clase Attendance del paquete model
 import co.edu.umanizales.iron_gym.service.AttendanceService; // Importa el servicio de asistencias
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Conflicto de versiones (If-Match)
 import org.springframework.beans.factory.annotation.Autowired; // Importa anotación para inyección de dependencias
 import org.springframework.http.HttpStatus; // Importa códigos de estado HTTP
 import org.springframework.http.ResponseEntity; // Importa clase para respuestas HTTP
@@ -10,6 +11,7 @@ import org.springframework.web.bind.annotation.*; // Importa anotaciones para co
 import java.util.List; // Importa la interfaz List para trabajar con colecciones
 import java.util.Map;
 import java.util.HashMap;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import co.edu.umanizales.iron_gym.model.Client;
@@ -27,14 +29,85 @@ public class AttendanceController { // Inicio de la clase AttendanceController -
         return ResponseEntity.ok(attendanceService.getAll()); // Retorna respuesta HTTP 200 con la lista de asistencias
     }
 
+    // Asistencias entre dos fechas (yyyy-MM-dd, inclusive); solo se recorren los meses del rango
+    @GetMapping("/by-date")
+    public ResponseEntity<?> getByDate(@RequestParam("start") String start, @RequestParam("end") String end) {
+        LocalDate startDate;
+        LocalDate endDate;
+        try {
+            startDate = LocalDate.parse(start.trim());
+            endDate = LocalDate.parse(end.trim());
+        } catch (Exception ex) {
+            Map<String, String> errors = new HashMap<>();
+            errors.put("error", "start y end deben estar en formato yyyy-MM-dd");
+            return ResponseEntity.badRequest().body(errors);
+        }
+        if (endDate.isBefore(startDate)) { // Corregir orden si viene invertido
+            LocalDate tmp = startDate; startDate = endDate; endDate = tmp;
+        }
+        return ResponseEntity.ok(attendanceService.getBetween(startDate, endDate));
+    }
+
+    // Asistencias de una clase: ?date=yyyy-MM-dd para un día (ej: quién asistió hoy), ?start y ?end para un rango; sin filtros, todas
+    @GetMapping("/by-class/{groupClassId}")
+    public ResponseEntity<?> getByGroupClass(@PathVariable String groupClassId,
+                                             @RequestParam(value = "date", required = false) String date,
+                                             @RequestParam(value = "start", required = false) String start,
+                                             @RequestParam(value = "end", required = false) String end) {
+        LocalDate[] range;
+        try {
+            range = parseRange(date, start, end);
+        } catch (Exception ex) {
+            Map<String, String> errors = new HashMap<>();
+            errors.put("error", "Fecha inválida, use el formato yyyy-MM-dd");
+            return ResponseEntity.badRequest().body(errors);
+        }
+        if (range == null) {
+            return ResponseEntity.ok(attendanceService.getByGroupClassId(groupClassId));
+        }
+        return ResponseEntity.ok(attendanceService.getByGroupClassBetween(groupClassId, range[0], range[1]));
+    }
+
+    // Asistencias de un cliente: ?date=yyyy-MM-dd para un día, ?start y ?end para un rango (ej: visitas del mes); sin filtros, todas
+    @GetMapping("/by-client/{clientId}")
+    public ResponseEntity<?> getByClient(@PathVariable String clientId,
+                                         @RequestParam(value = "date", required = false) String date,
+                                         @RequestParam(value = "start", required = false) String start,
+                                         @RequestParam(value = "end", required = false) String end) {
+        LocalDate[] range;
+        try {
+            range = parseRange(date, start, end);
+        } catch (Exception ex) {
+            Map<String, String> errors = new HashMap<>();
+            errors.put("error", "Fecha inválida, use el formato yyyy-MM-dd");
+            return ResponseEntity.badRequest().body(errors);
+        }
+        if (range == null) {
+            return ResponseEntity.ok(attendanceService.getByClientId(clientId));
+        }
+        return ResponseEntity.ok(attendanceService.getByClientBetween(clientId, range[0], range[1]));
+    }
+
+    // Rango de días pedido (inicio y fin, inclusive); null si no se envió ningún filtro. Un extremo vacío queda abierto
+    private LocalDate[] parseRange(String date, String start, String end) {
+        if (date != null && !date.isBlank()) {
+            LocalDate day = LocalDate.parse(date.trim());
+            return new LocalDate[]{day, day};
+        }
+        if ((start == null || start.isBlank()) && (end == null || end.isBlank())) {
+            return null;
+        }
+        LocalDate startDate = (start == null || start.isBlank()) ? LocalDate.MIN : LocalDate.parse(start.trim());
+        LocalDate endDate = (end == null || end.isBlank()) ? LocalDate.MAX.minusDays(1) : LocalDate.parse(end.trim());
+        if (endDate.isBefore(startDate)) { // Corregir orden si viene invertido
+            LocalDate tmp = startDate; startDate = endDate; endDate = tmp;
+        }
+        return new LocalDate[]{startDate, endDate};
+    }
+
     @GetMapping("/{id}") // Anotación que mapea peticiones HTTP GET con parámetro de ruta
     public ResponseEntity<Attendance> getById(@PathVariable String id) { // Método para obtener asistencia por ID
-        Attendance attendance = attendanceService.getById(id); // Busca asistencia por ID usando el servicio
-        if (attendance != null) { // Si se encontró la asistencia
-            return ResponseEntity.ok(attendance); // Retorna respuesta HTTP 200 con la asistencia encontrada
-        } else { // Si no se encontró la asistencia
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
-        }
+        return EntityTags.found(attendanceService.getVersioned(id)); // 200 con ETag (304 si no cambió) o 404
     }
 
     @PostMapping // Anotación que mapea peticiones HTTP POST a este método
@@ -91,19 +164,27 @@ public class AttendanceController { // Inicio de la clase AttendanceController -
         gc.setId(groupClassId);
         attendance.setGroupClass(gc);
 
-        Attendance created = attendanceService.create(attendance);
-        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        try {
+            Attendance created = attendanceService.create(attendance);
+            return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        } catch (IllegalArgumentException ex) {
+            errors.put("error", ex.getMessage() != null ? ex.getMessage() : "Solicitud inválida");
+            return ResponseEntity.badRequest().body(errors);
+        }
     }
 
     @PutMapping("/{id}") // Anotación que mapea peticiones HTTP PUT con parámetro de ruta
-    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Attendance attendance) { // Método para actualizar asistencia
+    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Attendance attendance,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) { // Método para actualizar asistencia
         try {
-            Attendance updated = attendanceService.update(id, attendance); // Actualiza la asistencia usando el servicio
+            Attendance updated = attendanceService.update(id, attendance, EntityTags.expectedVersion(ifMatch)); // Actualiza la asistencia usando el servicio
             if (updated != null) { // Si se actualizó correctamente
-                return ResponseEntity.ok(updated); // Retorna respuesta HTTP 200 con la asistencia actualizada
+                return EntityTags.updated(updated, attendanceService.getVersioned(id)); // Retorna respuesta HTTP 200 con la asistencia actualizada
             } else { // Si no se encontró la asistencia para actualizar
                 return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
             }
+        } catch (SnapshotMap.VersionMismatch ex) {
+            return EntityTags.preconditionFailed(ex); // Otro usuario lo modificó: 412 sin cambios
         } catch (IllegalArgumentException ex) {
             java.util.Map<String, String> errors = new java.util.HashMap<>();
             errors.put("error", ex.getMessage() != null ? ex.getMessage() : "Solicitud inválida");
@@ -112,12 +193,18 @@ public class AttendanceController { // Inicio de la clase AttendanceController -
     }
 
     @DeleteMapping("/{id}") // Anotación que mapea peticiones HTTP DELETE con parámetro de ruta
-    public ResponseEntity<Void> delete(@PathVariable String id) { // Método para eliminar asistencia por ID
-        boolean deleted = attendanceService.delete(id); // Elimina la asistencia usando el servicio
-        if (deleted) { // Si se eliminó correctamente
-            return ResponseEntity.noContent().build(); // Retorna respuesta HTTP 204 (sin contenido)
-        } else { // Si no se encontró la asistencia para eliminar
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+    public ResponseEntity<?> delete(@PathVariable String id) { // Método para eliminar asistencia por ID
+        try {
+            boolean deleted = attendanceService.delete(id); // Elimina la asistencia usando el servicio
+            if (deleted) { // Si se eliminó correctamente
+                return ResponseEntity.noContent().build(); // Retorna respuesta HTTP 204 (sin contenido)
+            } else { // Si no se encontró la asistencia para eliminar
+                return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+            }
+        } catch (IllegalArgumentException ex) { // La asistencia pertenece a un mes cerrado
+            Map<String, String> errors = new HashMap<>();
+            errors.put("error", ex.getMessage());
+            return ResponseEntity.badRequest().body(errors);
         }
     }
 } // Fin de la clase AttendanceController
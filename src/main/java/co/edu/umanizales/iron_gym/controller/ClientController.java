@@ -1,7 +1,11 @@
 package co.edu.umanizales.iron_gym.controller; // Declara el paquete donde se encuentran los controladores REST
 
 import co.edu.umanizales.iron_gym.model.Client; // Importa la clase Client del paquete model
+import co.edu.umanizales.iron_gym.persistence.UniqueIndex; // Error de valor repetido
 import co.edu.umanizales.iron_gym.service.ClientService; // Importa el servicio de clientes
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Conflicto de versiones (If-Match)
+import co.edu.umanizales.iron_gym.model.Membership;
+import co.edu.umanizales.iron_gym.service.MembershipService;
 import org.springframework.beans.factory.annotation.Autowired; // Importa anotación para inyección de dependencias
 import org.springframework.http.HttpStatus; // Importa códigos de estado HTTP
 import org.springframework.http.ResponseEntity; // Importa clase para respuestas HTTP
@@ -10,6 +14,7 @@ import jakarta.validation.Valid; // Para activar validaciones sobre el modelo Cl
 import org.springframework.validation.BindingResult; // Para capturar errores de validación
 import org.springframework.validation.FieldError; // Para detallar errores por campo
 
+import java.util.ArrayList;
 import java.util.List; // Importa la interfaz List para trabajar con colecciones
 import java.util.Map; // Para respuestas de error estructuradas
 import java.util.HashMap; // Implementación de Map
@@ -21,6 +26,9 @@ public class ClientController { // Inicio de la clase ClientController - maneja
     @Autowired // Anotación para inyección automática del servicio
     private ClientService clientService; // Servicio que contiene la lógica de negocio para clientes
 
+    @Autowired
+    private MembershipService membershipService; // Membresías activas de los clientes
+
     @GetMapping // Anotación que mapea peticiones HTTP GET a este método
     public ResponseEntity<List<Client>> getAll() { // Método para obtener todos los clientes
         return ResponseEntity.ok(clientService.getAll()); // Retorna respuesta HTTP 200 con la lista de clientes
@@ -28,17 +36,19 @@ public class ClientController { // Inicio de la clase ClientController - maneja
 
     @GetMapping("/{id}") // Anotación que mapea peticiones HTTP GET con parámetro de ruta
     public ResponseEntity<Client> getById(@PathVariable String id) { // Método para obtener cliente por ID
-        Client client = clientService.getById(id); // Busca cliente por ID usando el servicio
-        if (client != null) { // Si se encontró el cliente
-            return ResponseEntity.ok(client); // Retorna respuesta HTTP 200 con el cliente encontrado
-        } else { // Si no se encontró el cliente
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
-        }
+        return EntityTags.found(clientService.getVersioned(id)); // 200 con ETag (304 si no cambió) o 404
     }
 
     @GetMapping("/with-membership") // Anotación que mapea peticiones HTTP GET a /with-membership
-    public ResponseEntity<List<Client>> getClientsWithMembership() { // Método para obtener clientes con membresía
-        return ResponseEntity.ok(clientService.getClientsWithMembership()); // Retorna respuesta HTTP 200 con clientes con membresía
+    public ResponseEntity<List<Client>> getClientsWithMembership() { // Método para obtener clientes con membresía activa hoy
+        List<Client> result = new ArrayList<>();
+        for (Membership membership : membershipService.getActiveMemberships()) { // Índice de vigencia: solo las activas
+            Client client = clientService.getById(membership.getClientId());
+            if (client != null) {
+                result.add(client);
+            }
+        }
+        return ResponseEntity.ok(result); // Retorna respuesta HTTP 200 con clientes con membresía
     }
 
     @PostMapping // Anotación que mapea peticiones HTTP POST a este método
@@ -50,39 +60,23 @@ public class ClientController { // Inicio de la clase ClientController - maneja
             }
             return ResponseEntity.badRequest().body(errors);
         }
-        // Validaciones de duplicidad
-        if (clientService.isNameDuplicate(client.getName())) {
-            Map<String, String> error = new HashMap<>();
-            error.put("name", "Ya existe un cliente con este nombre");
-            return ResponseEntity.badRequest().body(error);
-        }
-        if (clientService.isEmailDuplicate(client.getEmail())) {
-            Map<String, String> error = new HashMap<>();
-            error.put("email", "Ya existe un cliente con este email");
-            return ResponseEntity.badRequest().body(error);
-        }
-        if (clientService.isIdentificationDuplicate(client.getIdentification())) {
-            Map<String, String> error = new HashMap<>();
-            error.put("identification", "Ya existe un cliente con esta identificación");
-            return ResponseEntity.badRequest().body(error);
-        }
-        if (clientService.isPhoneDuplicate(client.getPhone())) {
-            Map<String, String> error = new HashMap<>();
-            error.put("phone", "Ya existe un cliente con este teléfono");
-            return ResponseEntity.badRequest().body(error);
-        }
         // Validar que el teléfono no tenga todos los dígitos iguales
         if (isAllSameDigits(client.getPhone())) {
             Map<String, String> error = new HashMap<>();
             error.put("phone", "El teléfono no puede tener todos los dígitos iguales");
             return ResponseEntity.badRequest().body(error);
         }
-        Client created = clientService.create(client); // Crea el cliente usando el servicio
-        return ResponseEntity.status(HttpStatus.CREATED).body(created); // Retorna respuesta HTTP 201 con el cliente creado
+        try {
+            Client created = clientService.create(client); // Valida duplicados y crea el cliente en una sola operación
+            return ResponseEntity.status(HttpStatus.CREATED).body(created); // Retorna respuesta HTTP 201 con el cliente creado
+        } catch (UniqueIndex.Violation ex) { // Nombre, email, identificación o teléfono de otro cliente
+            return ResponseEntity.badRequest().body(duplicateError(ex.getField(), "Ya existe un cliente con "));
+        }
     }
 
     @PutMapping("/{id}") // Anotación que mapea peticiones HTTP PUT con parámetro de ruta
-    public ResponseEntity<?> update(@PathVariable String id, @Valid @RequestBody Client client, BindingResult result) { // Método para actualizar cliente con validaciones
+    public ResponseEntity<?> update(@PathVariable String id, @Valid @RequestBody Client client, BindingResult result,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) { // Método para actualizar cliente con validaciones
         if (result.hasErrors()) {
             Map<String, String> errors = new HashMap<>();
             for (FieldError error : result.getFieldErrors()) {
@@ -90,42 +84,23 @@ public class ClientController { // Inicio de la clase ClientController - maneja
             }
             return ResponseEntity.badRequest().body(errors);
         }
-        Client existing = clientService.getById(id);
-        if (existing == null) {
-            return ResponseEntity.notFound().build();
-        }
-        // Duplicados solo si el valor cambia
-        if (!existing.getName().equals(client.getName()) && clientService.isNameDuplicate(client.getName())) {
-            Map<String, String> error = new HashMap<>();
-            error.put("name", "Ya existe otro cliente con este nombre");
-            return ResponseEntity.badRequest().body(error);
-        }
-        if (!existing.getEmail().equals(client.getEmail()) && clientService.isEmailDuplicate(client.getEmail())) {
-            Map<String, String> error = new HashMap<>();
-            error.put("email", "Ya existe otro cliente con este email");
-            return ResponseEntity.badRequest().body(error);
-        }
-        if (!existing.getIdentification().equals(client.getIdentification()) && clientService.isIdentificationDuplicate(client.getIdentification())) {
-            Map<String, String> error = new HashMap<>();
-            error.put("identification", "Ya existe otro cliente con esta identificación");
-            return ResponseEntity.badRequest().body(error);
-        }
-        if (!existing.getPhone().equals(client.getPhone()) && clientService.isPhoneDuplicate(client.getPhone())) {
-            Map<String, String> error = new HashMap<>();
-            error.put("phone", "Ya existe otro cliente con este teléfono");
-            return ResponseEntity.badRequest().body(error);
-        }
         // Validar que el teléfono no tenga todos los dígitos iguales
         if (isAllSameDigits(client.getPhone())) {
             Map<String, String> error = new HashMap<>();
             error.put("phone", "El teléfono no puede tener todos los dígitos iguales");
             return ResponseEntity.badRequest().body(error);
         }
-        Client updated = clientService.update(id, client); // Actualiza el cliente usando el servicio
-        if (updated != null) { // Si se actualizó correctamente
-            return ResponseEntity.ok(updated); // Retorna respuesta HTTP 200 con el cliente actualizado
-        } else { // Si no se encontró el cliente para actualizar
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+        try {
+            Client updated = clientService.update(id, client, EntityTags.expectedVersion(ifMatch)); // Duplicados solo si el valor es de otro cliente
+            if (updated != null) { // Si se actualizó correctamente
+                return EntityTags.updated(updated, clientService.getVersioned(id)); // Retorna respuesta HTTP 200 con el cliente actualizado
+            } else { // Si no se encontró el cliente para actualizar
+                return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+            }
+        } catch (SnapshotMap.VersionMismatch ex) {
+            return EntityTags.preconditionFailed(ex); // Otro usuario lo modificó: 412 sin cambios
+        } catch (UniqueIndex.Violation ex) {
+            return ResponseEntity.badRequest().body(duplicateError(ex.getField(), "Ya existe otro cliente con "));
         }
     }
 
@@ -139,6 +114,21 @@ public class ClientController { // Inicio de la clase ClientController - maneja
         }
     }
 
+    // Error de duplicidad por campo (ej: {"email": "Ya existe un cliente con este email"})
+    private Map<String, String> duplicateError(String field, String prefix) {
+        Map<String, String> error = new HashMap<>();
+        if (field.equals("name")) {
+            error.put(field, prefix + "este nombre");
+        } else if (field.equals("email")) {
+            error.put(field, prefix + "este email");
+        } else if (field.equals("identification")) {
+            error.put(field, prefix + "esta identificación");
+        } else {
+            error.put(field, prefix + "este teléfono");
+        }
+        return error;
+    }
+
     // Método auxiliar para validar que no todos los dígitos sean iguales (mismo criterio que en PersonController)
     private boolean isAllSameDigits(String phone) {
         if (phone == null || phone.length() != 10) {
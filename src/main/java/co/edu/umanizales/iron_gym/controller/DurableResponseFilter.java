@@ -0,0 +1,60 @@
+package co.edu.umanizales.iron_gym.controller; // Declara el paquete donde se encuentran los controladores REST
+
+import co.edu.umanizales.iron_gym.persistence.PendingCommits; // Escrituras de la petición aún sin confirmar en disco
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Ninguna respuesta sale antes de que las escrituras de su petición estén en disco.
+ * La espera ocurre cuando la respuesta empieza a escribirse (o al final, si no tiene cuerpo):
+ * el controlador ya salió de los métodos synchronized de los servicios, así el fsync no bloquea
+ * a las demás peticiones, que se suman al mismo grupo de confirmación (GroupCommit).
+ */
+@Component
+public class DurableResponseFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(request, new DurableResponse(response));
+            PendingCommits.awaitAll(); // Respuestas sin cuerpo que aún no se enviaron (ej: 204)
+        } finally {
+            PendingCommits.clear(); // Si la petición falló, los turnos no pasan a la siguiente del mismo hilo
+        }
+    }
+
+    // Espera la confirmación antes de que se envíe el primer byte de la respuesta
+    private static class DurableResponse extends HttpServletResponseWrapper {
+        private DurableResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            PendingCommits.awaitAll();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            PendingCommits.awaitAll();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            PendingCommits.awaitAll();
+            super.flushBuffer();
+        }
+    }
+}
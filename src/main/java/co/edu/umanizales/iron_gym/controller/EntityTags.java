@@ -0,0 +1,81 @@
+package co.edu.umanizales.iron_gym.controller; // Declara el paquete donde se encuentran los controladores REST
+
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Registros con versión y conflicto de versiones
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ETag de los registros a partir de su versión en SnapshotMap, para GET y PUT por ID.
+ * GET responde con el ETag; si el cliente manda If-None-Match con ese mismo valor, Spring
+ * responde 304 sin cuerpo (no se serializa el registro). PUT acepta If-Match: el servicio compara
+ * la versión bajo su lock y, si otro usuario modificó el registro, responde 412 sin cambiarlo.
+ * Las versiones se reinician en cada arranque, por eso el ETag lleva el instante de arranque:
+ * un ETag de un arranque anterior nunca coincide (412 y el cliente vuelve a consultar).
+ */
+public final class EntityTags {
+    private static final String BOOT = Long.toString(System.currentTimeMillis(), 36) + "-"; // Prefijo de este arranque
+
+    private EntityTags() {
+    }
+
+    public static String of(long version) {
+        return "\"" + BOOT + version + "\"";
+    }
+
+    // 200 con el registro y su ETag, o 404 si no existe
+    public static <T> ResponseEntity<T> found(SnapshotMap.Versioned<T> found) {
+        if (found == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().eTag(of(found.getVersion())).body(found.getItem());
+    }
+
+    // 200 con el registro actualizado; el ETag solo si nadie lo volvió a modificar después de esta escritura
+    public static <T> ResponseEntity<T> updated(T updated, SnapshotMap.Versioned<T> current) {
+        if (current == null || current.getItem() != updated) {
+            return ResponseEntity.ok(updated);
+        }
+        return ResponseEntity.ok().eTag(of(current.getVersion())).body(updated);
+    }
+
+    // Versión esperada según If-Match: null sin encabezado o con *; -1 si ningún ETag es de este arranque
+    public static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return null;
+        }
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*")) {
+                return null; // Cualquier versión
+            }
+            if (tag.startsWith("W/")) {
+                continue; // If-Match usa comparación fuerte: un ETag débil nunca coincide
+            }
+            if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                tag = tag.substring(1, tag.length() - 1);
+            }
+            if (tag.startsWith(BOOT)) {
+                try {
+                    return Long.parseLong(tag.substring(BOOT.length()));
+                } catch (NumberFormatException e) {
+                    // No es un ETag emitido por esta aplicación
+                }
+            }
+        }
+        return -1L;
+    }
+
+    // 412 con el ETag vigente (si el registro sigue existiendo) para que el cliente lo vuelva a consultar
+    public static ResponseEntity<Map<String, String>> preconditionFailed(SnapshotMap.VersionMismatch ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.PRECONDITION_FAILED);
+        if (ex.getCurrentVersion() > 0) {
+            response.eTag(of(ex.getCurrentVersion()));
+        }
+        return response.body(error);
+    }
+}
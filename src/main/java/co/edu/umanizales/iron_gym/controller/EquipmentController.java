@@ -1,7 +1,9 @@
 package co.edu.umanizales.iron_gym.controller; // Declara el paquete donde se encuentran los controladores REST
 
 import co.edu.umanizales.iron_gym.model.Equipment; // Importa la clase Equipment del paquete model
+import co.edu.umanizales.iron_gym.model.EquipmentStatus; // Estados conocidos de los equipos
 import co.edu.umanizales.iron_gym.service.EquipmentService; // Importa el servicio de equipos
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Conflicto de versiones (If-Match)
 import org.springframework.beans.factory.annotation.Autowired; // Importa anotación para inyección de dependencias
 import org.springframework.http.HttpStatus; // Importa códigos de estado HTTP
 import org.springframework.http.ResponseEntity; // Importa clase para respuestas HTTP
@@ -10,6 +12,7 @@ import org.springframework.web.bind.annotation.*; // Importa anotaciones para co
 import java.util.List; // Importa la interfaz List para trabajar con colecciones
 import java.util.Map; // Importa Map para respuestas de error simples
 import java.util.HashMap; // Importa HashMap para construir el mapa de errores
+import java.util.LinkedHashMap;
 
 @RestController // Anotación que marca esta clase como un controlador REST
 @RequestMapping("/api/equipments") // Define la ruta base para todos los endpoints de este controlador
@@ -25,12 +28,7 @@ public class EquipmentController { // Inicio de la clase EquipmentController - m
 
     @GetMapping("/{id}") // Anotación que mapea peticiones HTTP GET con parámetro de ruta
     public ResponseEntity<Equipment> getById(@PathVariable String id) { // Método para obtener equipo por ID
-        Equipment equipment = equipmentService.getById(id);
-        if (equipment != null) {
-            return ResponseEntity.ok(equipment);
-        } else {
-            return ResponseEntity.notFound().build();
-        }
+        return EntityTags.found(equipmentService.getVersioned(id)); // 200 con ETag (304 si no cambió) o 404
     }
 
     @GetMapping("/available")
@@ -38,6 +36,28 @@ public class EquipmentController { // Inicio de la clase EquipmentController - m
         return ResponseEntity.ok(equipmentService.getAvailableEquipment());
     }
 
+    // Equipos en un estado (AVAILABLE, MAINTENANCE, OUT_OF_SERVICE), opcionalmente de un tipo
+    @GetMapping("/status/{status}")
+    public ResponseEntity<?> getByStatus(@PathVariable String status,
+                                         @RequestParam(value = "type", required = false) String type) {
+        EquipmentStatus equipmentStatus = EquipmentStatus.of(status.trim().toUpperCase());
+        if (equipmentStatus == null) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Estado inválido. Permitidos: AVAILABLE, MAINTENANCE, OUT_OF_SERVICE");
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+        return ResponseEntity.ok(equipmentService.getByStatus(equipmentStatus, type));
+    }
+
+    // Cantidad de equipos por estado y por tipo
+    @GetMapping("/counts")
+    public ResponseEntity<Map<String, Object>> getCounts() {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        counts.put("status", equipmentService.countByStatus());
+        counts.put("type", equipmentService.countByType());
+        return ResponseEntity.ok(counts);
+    }
+
     @PostMapping
     public ResponseEntity<?> create(@RequestBody Equipment equipment) {
         try {
@@ -57,12 +77,17 @@ public class EquipmentController { // Inicio de la clase EquipmentController - m
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Equipment> update(@PathVariable String id, @RequestBody Equipment equipment) {
-        Equipment updated = equipmentService.update(id, equipment);
-        if (updated != null) {
-            return ResponseEntity.ok(updated);
-        } else { // Si no se encontró el equipo para actualizar
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Equipment equipment,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        try {
+            Equipment updated = equipmentService.update(id, equipment, EntityTags.expectedVersion(ifMatch));
+            if (updated != null) {
+                return EntityTags.updated(updated, equipmentService.getVersioned(id));
+            } else { // Si no se encontró el equipo para actualizar
+                return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+            }
+        } catch (SnapshotMap.VersionMismatch ex) {
+            return EntityTags.preconditionFailed(ex); // Otro usuario lo modificó: 412 sin cambios
         }
     }
 
@@ -2,6 +2,7 @@ package co.edu.umanizales.iron_gym.controller; // Declara el paquete donde se en
 
 import co.edu.umanizales.iron_gym.model.Exercise; // Importa la clase Exercise del paquete model
 import co.edu.umanizales.iron_gym.service.ExerciseService; // Importa el servicio de ejercicios
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Conflicto de versiones (If-Match)
 import org.springframework.beans.factory.annotation.Autowired; // Importa anotación para inyección de dependencias
 import org.springframework.http.HttpStatus; // Importa códigos de estado HTTP
 import org.springframework.http.ResponseEntity; // Importa clase para respuestas HTTP
@@ -23,12 +24,7 @@ public class ExerciseController { // Inicio de la clase ExerciseController - man
 
     @GetMapping("/{name}") // Anotación que mapea peticiones HTTP GET con parámetro de ruta
     public ResponseEntity<Exercise> getByName(@PathVariable String name) { // Método para obtener ejercicio por nombre
-        Exercise exercise = exerciseService.getByName(name); // Busca ejercicio por nombre usando el servicio
-        if (exercise != null) { // Si se encontró el ejercicio
-            return ResponseEntity.ok(exercise); // Retorna respuesta HTTP 200 con el ejercicio encontrado
-        } else { // Si no se encontró el ejercicio
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
-        }
+        return EntityTags.found(exerciseService.getVersioned(name)); // 200 con ETag (304 si no cambió) o 404
     }
 
     @PostMapping // Anotación que mapea peticiones HTTP POST a este método
@@ -38,12 +34,17 @@ public class ExerciseController { // Inicio de la clase ExerciseController - man
     }
 
     @PutMapping("/{name}") // Anotación que mapea peticiones HTTP PUT con parámetro de ruta
-    public ResponseEntity<Exercise> update(@PathVariable String name, @RequestBody Exercise exercise) { // Método para actualizar ejercicio
-        Exercise updated = exerciseService.update(name, exercise); // Actualiza el ejercicio usando el servicio
-        if (updated != null) { // Si se actualizó correctamente
-            return ResponseEntity.ok(updated); // Retorna respuesta HTTP 200 con el ejercicio actualizado
-        } else { // Si no se encontró el ejercicio para actualizar
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+    public ResponseEntity<?> update(@PathVariable String name, @RequestBody Exercise exercise,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) { // Método para actualizar ejercicio
+        try {
+            Exercise updated = exerciseService.update(name, exercise, EntityTags.expectedVersion(ifMatch)); // Actualiza el ejercicio usando el servicio
+            if (updated != null) { // Si se actualizó correctamente
+                return EntityTags.updated(updated, exerciseService.getVersioned(name)); // Retorna respuesta HTTP 200 con el ejercicio actualizado
+            } else { // Si no se encontró el ejercicio para actualizar
+                return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+            }
+        } catch (SnapshotMap.VersionMismatch ex) {
+            return EntityTags.preconditionFailed(ex); // Otro usuario lo modificó: 412 sin cambios
         }
     }
 
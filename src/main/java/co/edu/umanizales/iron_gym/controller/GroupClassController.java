@@ -2,8 +2,11 @@ package co.edu.umanizales.iron_gym.controller; // Declara el paquete donde se en
 
 import co.edu.umanizales.iron_gym.model.GroupClass; // Importa la clase GroupClass del paquete model
 import co.edu.umanizales.iron_gym.service.GroupClassService; // Importa el servicio de clases grupales
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Conflicto de versiones (If-Match)
 import co.edu.umanizales.iron_gym.model.Trainer; // Importa la clase Trainer
 import co.edu.umanizales.iron_gym.service.TrainerService; // Importa el servicio de entrenadores
+import co.edu.umanizales.iron_gym.model.Client;
+import co.edu.umanizales.iron_gym.service.ClientService; // Para buscar el cliente a inscribir
 import org.springframework.beans.factory.annotation.Autowired; // Importa anotación para inyección de dependencias
 import org.springframework.http.HttpStatus; // Importa códigos de estado HTTP
 import org.springframework.http.ResponseEntity; // Importa clase para respuestas HTTP
@@ -21,6 +24,9 @@ public class GroupClassController { // Inicio de la clase GroupClassController -
     @Autowired // Servicio de entrenadores para buscar por ID
     private TrainerService trainerService;
 
+    @Autowired // Servicio de clientes para buscar por ID
+    private ClientService clientService;
+
     @GetMapping // Anotación que mapea peticiones HTTP GET a este método
     public ResponseEntity<List<GroupClass>> getAll() { // Método para obtener todas las clases grupales
         return ResponseEntity.ok(groupClassService.getAll()); // Retorna respuesta HTTP 200 con la lista de clases grupales
@@ -28,12 +34,7 @@ public class GroupClassController { // Inicio de la clase GroupClassController -
 
     @GetMapping("/{id}") // Anotación que mapea peticiones HTTP GET con parámetro de ruta
     public ResponseEntity<GroupClass> getById(@PathVariable String id) { // Método para obtener clase grupal por ID
-        GroupClass groupClass = groupClassService.getById(id); // Busca clase grupal por ID usando el servicio
-        if (groupClass != null) { // Si se encontró la clase grupal
-            return ResponseEntity.ok(groupClass); // Retorna respuesta HTTP 200 con la clase grupal encontrada
-        } else { // Si no se encontró la clase grupal
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
-        }
+        return EntityTags.found(groupClassService.getVersioned(id)); // 200 con ETag (304 si no cambió) o 404
     }
 
     @GetMapping("/available") // Anotación que mapea peticiones HTTP GET a /available
@@ -48,12 +49,17 @@ public class GroupClassController { // Inicio de la clase GroupClassController -
     }
 
     @PutMapping("/{id}") // Anotación que mapea peticiones HTTP PUT con parámetro de ruta
-    public ResponseEntity<GroupClass> update(@PathVariable String id, @RequestBody GroupClass groupClass) { // Método para actualizar clase grupal
-        GroupClass updated = groupClassService.update(id, groupClass); // Actualiza la clase grupal usando el servicio
-        if (updated != null) { // Si se actualizó correctamente
-            return ResponseEntity.ok(updated); // Retorna respuesta HTTP 200 con la clase actualizada
-        } else { // Si no se encontró la clase grupal para actualizar
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+    public ResponseEntity<?> update(@PathVariable String id, @RequestBody GroupClass groupClass,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) { // Método para actualizar clase grupal
+        try {
+            GroupClass updated = groupClassService.update(id, groupClass, EntityTags.expectedVersion(ifMatch)); // Actualiza la clase grupal usando el servicio
+            if (updated != null) { // Si se actualizó correctamente
+                return EntityTags.updated(updated, groupClassService.getVersioned(id)); // Retorna respuesta HTTP 200 con la clase actualizada
+            } else { // Si no se encontró la clase grupal para actualizar
+                return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+            }
+        } catch (SnapshotMap.VersionMismatch ex) {
+            return EntityTags.preconditionFailed(ex); // Otro usuario lo modificó: 412 sin cambios
         }
     }
 
@@ -84,5 +90,26 @@ public class GroupClassController { // Inicio de la clase GroupClassController -
         }
         return ResponseEntity.badRequest().body("No se pudo asignar el entrenador");
     }
+
+    // Endpoint sencillo para inscribir un cliente en una clase
+    @PostMapping("/{classId}/register-client/{clientId}")
+    public ResponseEntity<?> registerClientToClass(@PathVariable String classId, @PathVariable String clientId) {
+        GroupClass groupClass = groupClassService.getById(classId);
+        if (groupClass == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Clase no encontrada");
+        }
+        Client client = clientService.getById(clientId);
+        if (client == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Cliente no encontrado");
+        }
+        boolean ok = groupClassService.registerClientToClass(classId, client);
+        if (ok) {
+            return ResponseEntity.ok("Cliente inscrito exitosamente");
+        }
+        if (groupClass.isRegistered(clientId)) {
+            return ResponseEntity.badRequest().body("El cliente ya está inscrito en la clase");
+        }
+        return ResponseEntity.badRequest().body("No se pudo inscribir el cliente (clase llena)");
+    }
 }
  // Fin de la clase GroupClassController
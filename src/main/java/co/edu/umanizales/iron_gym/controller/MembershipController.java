@@ -2,11 +2,15 @@ package co.edu.umanizales.iron_gym.controller; // Declara el paquete donde se en
 
 import co.edu.umanizales.iron_gym.model.Membership; // Importa la clase Membership del paquete model
 import co.edu.umanizales.iron_gym.service.MembershipService; // Importa el servicio de membresías
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Conflicto de versiones (If-Match)
 import org.springframework.beans.factory.annotation.Autowired; // Importa anotación para inyección de dependencias
 import org.springframework.http.HttpStatus; // Importa códigos de estado HTTP
 import org.springframework.http.ResponseEntity; // Importa clase para respuestas HTTP
 import org.springframework.web.bind.annotation.*; // Importa anotaciones para controladores REST
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
 import java.util.List; // Importa la interfaz List para trabajar con colecciones
 import java.util.Map;
 import java.util.HashMap;
@@ -25,17 +29,55 @@ public class MembershipController { // Inicio de la clase MembershipController -
 
     @GetMapping("/{id}") // Anotación que mapea peticiones HTTP GET con parámetro de ruta
     public ResponseEntity<Membership> getById(@PathVariable String id) { // Método para obtener membresía por ID
-        Membership membership = membershipService.getById(id); // Busca membresía por ID usando el servicio
-        if (membership != null) { // Si se encontró la membresía
-            return ResponseEntity.ok(membership); // Retorna respuesta HTTP 200 con la membresía encontrada
-        } else { // Si no se encontró la membresía
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
-        }
+        return EntityTags.found(membershipService.getVersioned(id)); // 200 con ETag (304 si no cambió) o 404
     }
 
     @GetMapping("/active") // Anotación que mapea peticiones HTTP GET a /active
-    public ResponseEntity<List<Membership>> getActiveMemberships() { // Método para obtener membresías activas
-        return ResponseEntity.ok(membershipService.getActiveMemberships()); // Retorna respuesta HTTP 200 con membresías activas
+    public ResponseEntity<?> getActiveMemberships(@RequestParam(value = "date", required = false) String date) { // Membresías activas hoy o en la fecha (yyyy-MM-dd)
+        if (date == null || date.isBlank()) {
+            return ResponseEntity.ok(membershipService.getActiveMemberships()); // Retorna respuesta HTTP 200 con membresías activas
+        }
+        try {
+            return ResponseEntity.ok(membershipService.getActiveOn(LocalDate.parse(date.trim())));
+        } catch (DateTimeParseException ex) {
+            Map<String, String> errors = new HashMap<>();
+            errors.put("error", "date debe estar en formato yyyy-MM-dd");
+            return ResponseEntity.badRequest().body(errors);
+        }
+    }
+
+    // Membresías activas que vencen en los próximos N días (por defecto 7)
+    @GetMapping("/expiring")
+    public ResponseEntity<?> getExpiring(@RequestParam(value = "days", defaultValue = "7") int days) {
+        if (days < 0) {
+            Map<String, String> errors = new HashMap<>();
+            errors.put("error", "days no puede ser negativo");
+            return ResponseEntity.badRequest().body(errors);
+        }
+        return ResponseEntity.ok(membershipService.getExpiring(days));
+    }
+
+    // Cantidad de membresías activas en algún día entre start y end (yyyy-MM-dd, inclusive)
+    @GetMapping("/active/count")
+    public ResponseEntity<?> countActive(@RequestParam("start") String start, @RequestParam("end") String end) {
+        LocalDate startDate;
+        LocalDate endDate;
+        try {
+            startDate = LocalDate.parse(start.trim());
+            endDate = LocalDate.parse(end.trim());
+        } catch (DateTimeParseException ex) {
+            Map<String, String> errors = new HashMap<>();
+            errors.put("error", "start y end deben estar en formato yyyy-MM-dd");
+            return ResponseEntity.badRequest().body(errors);
+        }
+        if (endDate.isBefore(startDate)) { // Corregir orden si viene invertido
+            LocalDate tmp = startDate; startDate = endDate; endDate = tmp;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("fecha_inicial", startDate.toString());
+        result.put("fecha_final", endDate.toString());
+        result.put("activas", membershipService.countActiveBetween(startDate, endDate));
+        return ResponseEntity.ok(result);
     }
 
     @GetMapping("/types") // Endpoint para listar los nombres/tipos de membresía existentes
@@ -84,7 +126,8 @@ public class MembershipController { // Inicio de la clase MembershipController -
     }
 
     @PutMapping("/{id}") // Anotación que mapea peticiones HTTP PUT con parámetro de ruta
-    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Membership membership) { // Método para actualizar membresía
+    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Membership membership,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) { // Método para actualizar membresía
         Map<String, String> errors = new HashMap<>();
         if (membership == null) {
             errors.put("membership", "Payload de membresía es obligatorio");
@@ -113,12 +156,14 @@ public class MembershipController { // Inicio de la clase MembershipController -
             return ResponseEntity.badRequest().body(errors);
         }
         try {
-            Membership updated = membershipService.update(id, membership); // Actualiza la membresía usando el servicio
+            Membership updated = membershipService.update(id, membership, EntityTags.expectedVersion(ifMatch)); // Actualiza la membresía usando el servicio
             if (updated != null) { // Si se actualizó correctamente
-                return ResponseEntity.ok(updated); // Retorna respuesta HTTP 200 con la membresía actualizada
+                return EntityTags.updated(updated, membershipService.getVersioned(id)); // Retorna respuesta HTTP 200 con la membresía actualizada
             } else { // Si no se encontró la membresía para actualizar
                 return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
             }
+        } catch (SnapshotMap.VersionMismatch ex) {
+            return EntityTags.preconditionFailed(ex); // Otro usuario lo modificó: 412 sin cambios
         } catch (IllegalArgumentException ex) {
             Map<String, String> err = new HashMap<>();
             err.put("error", ex.getMessage() != null ? ex.getMessage() : "Solicitud inválida");
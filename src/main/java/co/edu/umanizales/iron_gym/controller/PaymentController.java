@@ -2,6 +2,8 @@ package co.edu.umanizales.iron_gym.controller; // Declara el paquete donde se en
 
 import co.edu.umanizales.iron_gym.model.Payment; // Importa la clase Payment del paquete model
 import co.edu.umanizales.iron_gym.service.PaymentService; // Importa el servicio de pagos
+import co.edu.umanizales.iron_gym.persistence.IdempotencyStore; // Respuestas guardadas por Idempotency-Key
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Conflicto de versiones (If-Match)
 import co.edu.umanizales.iron_gym.service.ClientService;
 import org.springframework.beans.factory.annotation.Autowired; // Importa anotación para inyección de dependencias
 import org.springframework.http.HttpStatus; // Importa códigos de estado HTTP
@@ -36,8 +38,34 @@ public class PaymentController { // Inicio de la clase PaymentController - manej
         return ResponseEntity.ok(paymentService.getAll()); // Retorna respuesta HTTP 200 con la lista de pagos
     }
 
+    // Pagos del cliente en orden de fecha; con limit retorna los últimos N (del más reciente al más antiguo)
+    // y con start/end (yyyy-MM-dd) solo los del rango
     @GetMapping("/by-client/{clientId}")
-    public ResponseEntity<List<Payment>> getByClient(@PathVariable String clientId) {
+    public ResponseEntity<?> getByClient(@PathVariable String clientId,
+                                         @RequestParam(value = "limit", required = false) Integer limit,
+                                         @RequestParam(value = "start", required = false) String start,
+                                         @RequestParam(value = "end", required = false) String end) {
+        if (limit != null) {
+            if (limit <= 0) {
+                Map<String, String> errors = new HashMap<>();
+                errors.put("error", "El límite debe ser positivo");
+                return ResponseEntity.badRequest().body(errors);
+            }
+            return ResponseEntity.ok(paymentService.getLatestByClientId(clientId, limit));
+        }
+        if ((start != null && !start.isBlank()) || (end != null && !end.isBlank())) {
+            LocalDate startDate;
+            LocalDate endDate;
+            try {
+                startDate = (start == null || start.isBlank()) ? LocalDate.MIN : LocalDate.parse(start.trim());
+                endDate = (end == null || end.isBlank()) ? LocalDate.MAX.minusDays(1) : LocalDate.parse(end.trim());
+            } catch (Exception ex) {
+                Map<String, String> errors = new HashMap<>();
+                errors.put("error", "Fecha inválida, use el formato yyyy-MM-dd");
+                return ResponseEntity.badRequest().body(errors);
+            }
+            return ResponseEntity.ok(paymentService.getByClientIdBetween(clientId, startDate, endDate));
+        }
         return ResponseEntity.ok(paymentService.getByClientId(clientId));
     }
 
@@ -48,16 +76,29 @@ public class PaymentController { // Inicio de la clase PaymentController - manej
 
     @GetMapping("/{id}") // Anotación que mapea peticiones HTTP GET con parámetro de ruta
     public ResponseEntity<Payment> getById(@PathVariable String id) { // Método para obtener pago por ID
-        Payment payment = paymentService.getById(id);
-        if (payment != null) {
-            return ResponseEntity.ok(payment);
-        } else {
-            return ResponseEntity.notFound().build();
-        }
+        return EntityTags.found(paymentService.getVersioned(id)); // 200 con ETag (304 si no cambió) o 404
     }
 
+    // Con Idempotency-Key, un reintento (ej: el datáfono reenvía tras un timeout) recibe el pago original
+    // con el encabezado Idempotent-Replayed, sin validarse ni escribirse de nuevo
     @PostMapping
-    public ResponseEntity<?> create(@Valid @RequestBody Payment payment, BindingResult result) {
+    public ResponseEntity<?> create(@Valid @RequestBody Payment payment, BindingResult result,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (idempotencyKey != null) {
+            if (!IdempotencyStore.isValidKey(idempotencyKey)) {
+                Map<String, String> errors = new HashMap<>();
+                errors.put("Idempotency-Key", "Debe tener de 1 a 64 caracteres: letras, números, '.', '_', ':' o '-'");
+                return ResponseEntity.badRequest().body(errors);
+            }
+            try {
+                Payment original = paymentService.findIdempotent(idempotencyKey, payment); // Sin bloqueo
+                if (original != null) {
+                    return replayed(original);
+                }
+            } catch (IdempotencyStore.KeyReused ex) {
+                return keyReused(ex);
+            }
+        }
         if (result.hasErrors()) {
             Map<String, String> errors = new HashMap<>();
             for (FieldError error : result.getFieldErrors()) {
@@ -65,12 +106,35 @@ public class PaymentController { // Inicio de la clase PaymentController - manej
             }
             return ResponseEntity.badRequest().body(errors);
         }
-        Payment created = paymentService.create(payment);
-        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        try {
+            Payment created = paymentService.create(payment, idempotencyKey);
+            if (created != payment) {
+                return replayed(created); // Un reintento simultáneo ya lo había creado
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        } catch (IdempotencyStore.KeyReused ex) {
+            return keyReused(ex);
+        } catch (IllegalArgumentException ex) { // Medio de pago inválido o mes cerrado
+            Map<String, String> errors = new HashMap<>();
+            errors.put("error", ex.getMessage());
+            return ResponseEntity.badRequest().body(errors);
+        }
+    }
+
+    private static ResponseEntity<Payment> replayed(Payment original) {
+        return ResponseEntity.status(HttpStatus.CREATED).header("Idempotent-Replayed", "true").body(original);
+    }
+
+    // 422: la clave ya identifica a otro pago, reintentar no sirve
+    private static ResponseEntity<Map<String, String>> keyReused(IdempotencyStore.KeyReused ex) {
+        Map<String, String> errors = new HashMap<>();
+        errors.put("error", ex.getMessage());
+        return ResponseEntity.unprocessableEntity().body(errors);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<?> update(@PathVariable String id, @Valid @RequestBody Payment payment, BindingResult result) {
+    public ResponseEntity<?> update(@PathVariable String id, @Valid @RequestBody Payment payment, BindingResult result,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         if (result.hasErrors()) {
             Map<String, String> errors = new HashMap<>();
             for (FieldError error : result.getFieldErrors()) {
@@ -78,21 +142,35 @@ public class PaymentController { // Inicio de la clase PaymentController - manej
             }
             return ResponseEntity.badRequest().body(errors);
         }
-        Payment updated = paymentService.update(id, payment);
-        if (updated != null) {
-            return ResponseEntity.ok(updated);
-        } else {
-            return ResponseEntity.notFound().build();
+        try {
+            Payment updated = paymentService.update(id, payment, EntityTags.expectedVersion(ifMatch));
+            if (updated != null) {
+                return EntityTags.updated(updated, paymentService.getVersioned(id));
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (SnapshotMap.VersionMismatch ex) {
+            return EntityTags.preconditionFailed(ex); // Otro usuario lo modificó: 412 sin cambios
+        } catch (IllegalArgumentException ex) { // Medio de pago inválido o mes cerrado
+            Map<String, String> errors = new HashMap<>();
+            errors.put("error", ex.getMessage());
+            return ResponseEntity.badRequest().body(errors);
         }
     }
 
     @DeleteMapping("/{id}") // Anotación que mapea peticiones HTTP DELETE con parámetro de ruta
-    public ResponseEntity<Void> delete(@PathVariable String id) { // Método para eliminar pago por ID
-        boolean deleted = paymentService.delete(id); // Elimina el pago usando el servicio
-        if (deleted) { // Si se eliminó correctamente
-            return ResponseEntity.noContent().build(); // Retorna respuesta HTTP 204 (sin contenido)
-        } else { // Si no se encontró el pago para eliminar
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+    public ResponseEntity<?> delete(@PathVariable String id) { // Método para eliminar pago por ID
+        try {
+            boolean deleted = paymentService.delete(id); // Elimina el pago usando el servicio
+            if (deleted) { // Si se eliminó correctamente
+                return ResponseEntity.noContent().build(); // Retorna respuesta HTTP 204 (sin contenido)
+            } else { // Si no se encontró el pago para eliminar
+                return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+            }
+        } catch (IllegalArgumentException ex) { // El pago pertenece a un mes cerrado
+            Map<String, String> errors = new HashMap<>();
+            errors.put("error", ex.getMessage());
+            return ResponseEntity.badRequest().body(errors);
         }
     }
     
@@ -112,15 +190,9 @@ public class PaymentController { // Inicio de la clase PaymentController - manej
             try { endDate = LocalDate.parse(end.trim()); } catch (Exception ignored) {}
         }
 
-        // Obtener rango mínimo y máximo de fechas desde los pagos existentes
-        LocalDate minDate = null;
-        LocalDate maxDate = null;
-        for (Payment p : paymentService.getAll()) {
-            if (p.getDateTime() == null) continue;
-            LocalDate d = p.getDateTime().toLocalDate();
-            if (minDate == null || d.isBefore(minDate)) minDate = d;
-            if (maxDate == null || d.isAfter(maxDate)) maxDate = d;
-        }
+        // Obtener rango mínimo y máximo de fechas desde los extremos del índice por fecha
+        LocalDate minDate = paymentService.getFirstDate();
+        LocalDate maxDate = paymentService.getLastDate();
 
         // Defaults: si no hay pagos, usar hoy para ambos extremos
         LocalDate today = LocalDate.now();
@@ -147,14 +219,12 @@ public class PaymentController { // Inicio de la clase PaymentController - manej
 
         Map<LocalDate, Map<String, List<Map<String, Object>>>> grouped = new LinkedHashMap<>();
 
-        for (Payment p : paymentService.getAll()) {
-            if (p.getDateTime() == null) continue;
+        // Solo los pagos del rango (y del medio de pago), ya en orden de fecha
+        List<Payment> inRange = methodFilter == null
+                ? paymentService.getBetween(startDate, endDate)
+                : paymentService.getBetween(startDate, endDate, methodFilter);
+        for (Payment p : inRange) {
             LocalDate d = p.getDateTime().toLocalDate();
-            if (d.isBefore(startDate) || d.isAfter(endDate)) continue;
-            if (methodFilter != null) {
-                String pm = p.getPaymentMethod() == null ? null : p.getPaymentMethod().toUpperCase();
-                if (pm == null || !pm.equals(methodFilter)) continue;
-            }
             grouped.computeIfAbsent(d, k -> new LinkedHashMap<>());
             String clientId = p.getClientId();
             grouped.get(d).computeIfAbsent(clientId == null ? "" : clientId, k -> new ArrayList<>());
@@ -167,7 +237,7 @@ public class PaymentController { // Inicio de la clase PaymentController - manej
         }
 
         List<Map<String, Object>> reporte = new ArrayList<>();
-        grouped.keySet().stream().sorted().forEach(date -> {
+        grouped.keySet().forEach(date -> { // Las fechas ya llegan en orden
             Map<String, List<Map<String, Object>>> clientsMap = grouped.get(date);
             List<Map<String, Object>> clientesArr = new ArrayList<>();
             double totalFecha = 0;
@@ -5,8 +5,10 @@ import co.edu.umanizales.iron_gym.model.Membership;
 import co.edu.umanizales.iron_gym.model.GroupClass;
 import co.edu.umanizales.iron_gym.model.Trainer;
 import co.edu.umanizales.iron_gym.service.PersonService; // Importa la clase PersonService del paquete service
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Conflicto de versiones (If-Match)
 import co.edu.umanizales.iron_gym.service.MembershipService;
 import co.edu.umanizales.iron_gym.service.GroupClassService;
+import co.edu.umanizales.iron_gym.service.IdentityIndex; // Identidad compartida entre personas, clientes y entrenadores
 import jakarta.validation.Valid; // Importa la anotación Valid para activar validaciones
 import org.springframework.beans.factory.annotation.Autowired; // Para inyectar dependencias automáticamente
 import org.springframework.http.HttpStatus; // Para usar códigos de estado HTTP
@@ -19,7 +21,7 @@ import java.util.HashMap; // Para crear mapas clave-valor para respuestas de err
 import java.util.List; // Para trabajar con listas de personas
 import java.util.Map; // Para manejar colecciones clave-valor genéricas
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.LinkedHashMap;
 
 @RestController // Anotación que indica que esta es una clase controladora REST
 @RequestMapping("/api/persons") // Define la URL base para todos los endpoints de este controlador
@@ -34,6 +36,9 @@ public class PersonController { // Inicio de la clase PersonController - maneja
     @Autowired
     private GroupClassService groupClassService;
 
+    @Autowired
+    private IdentityIndex identities;
+
     @GetMapping // Anotación que mapea peticiones HTTP GET a este método
     public ResponseEntity<List<Person>> getAll() { // Método para obtener todas las personas
         return ResponseEntity.ok(personService.getAll()); // Retorna respuesta HTTP 200 con la lista de todas las personas
@@ -41,12 +46,7 @@ public class PersonController { // Inicio de la clase PersonController - maneja
 
     @GetMapping("/{id}") // Anotación que mapea peticiones HTTP GET con parámetro de ruta
     public ResponseEntity<Person> getById(@PathVariable String id) { // Método para obtener persona por ID
-        Person person = personService.getById(id); // Busca la persona por ID usando el servicio
-        if (person != null) { // Si se encontró la persona
-            return ResponseEntity.ok(person); // Retorna respuesta HTTP 200 con la persona encontrada
-        } else { // Si no se encontró la persona
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (Not Found)
-        }
+        return EntityTags.found(personService.getVersioned(id)); // 200 con ETag (304 si no cambió) o 404
     }
 
     @PostMapping // Anotación que mapea peticiones HTTP POST a este método
@@ -85,7 +85,8 @@ public class PersonController { // Inicio de la clase PersonController - maneja
     }
 
     @PutMapping("/{id}") // Anotación que mapea peticiones HTTP PUT con parámetro de ruta
-    public ResponseEntity<?> update(@PathVariable String id, @Valid @RequestBody Person person, BindingResult result) { // Método para actualizar persona
+    public ResponseEntity<?> update(@PathVariable String id, @Valid @RequestBody Person person, BindingResult result,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) { // Método para actualizar persona
         if (result.hasErrors()) { // Si hay errores de validación en los campos
             Map<String, String> errors = new HashMap<>(); // Crea mapa para almacenar errores
             for (FieldError error : result.getFieldErrors()) { // Recorre todos los errores de campo
@@ -120,11 +121,15 @@ public class PersonController { // Inicio de la clase PersonController - maneja
             return ResponseEntity.badRequest().body(error);
         }
         
-        Person updated = personService.update(id, person);
-        if (updated != null) {
-            return ResponseEntity.ok(updated);
-        } else {
-            return ResponseEntity.notFound().build();
+        try {
+            Person updated = personService.update(id, person, EntityTags.expectedVersion(ifMatch));
+            if (updated != null) {
+                return EntityTags.updated(updated, personService.getVersioned(id));
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (SnapshotMap.VersionMismatch ex) {
+            return EntityTags.preconditionFailed(ex); // Otro usuario lo modificó: 412 sin cambios
         }
     }
 
@@ -152,6 +157,22 @@ public class PersonController { // Inicio de la clase PersonController - maneja
         return true; // Si todos los dígitos son iguales, retorna true
     }
 
+    // Endpoint: quién tiene una identificación o un teléfono en todos los roles (persona, cliente, entrenador)
+    // ej: /api/persons/identity?identification=1053868686 o /api/persons/identity?phone=3194149629
+    @GetMapping("/identity")
+    public ResponseEntity<?> getByIdentity(@RequestParam(value = "identification", required = false) String identification,
+                                           @RequestParam(value = "phone", required = false) String phone) {
+        if (identification != null && !identification.isBlank()) {
+            return ResponseEntity.ok(identities.findByIdentification(identification));
+        }
+        if (phone != null && !phone.isBlank()) {
+            return ResponseEntity.ok(identities.findByPhone(phone));
+        }
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "Debe indicar identification o phone");
+        return ResponseEntity.badRequest().body(error);
+    }
+
     // Endpoint: obtener la membresía asociada al ID de persona
     @GetMapping("/{id}/membership")
     public ResponseEntity<Membership> getMembershipByPerson(@PathVariable String id) {
@@ -173,16 +194,7 @@ public class PersonController { // Inicio de la clase PersonController - maneja
         if (person == null) {
             return ResponseEntity.notFound().build();
         }
-        List<GroupClass> classes = new ArrayList<>();
-        for (GroupClass gc : groupClassService.getAll()) {
-            if (gc.getRegisteredClients() != null) {
-                boolean enrolled = gc.getRegisteredClients().stream().anyMatch(c -> id.equals(c.getId()));
-                if (enrolled) {
-                    classes.add(gc);
-                }
-            }
-        }
-        return ResponseEntity.ok(classes);
+        return ResponseEntity.ok(groupClassService.getClassesByClientId(id)); // Índice inverso: solo sus clases
     }
 
     // Endpoint: obtener entrenadores de las clases donde está el ID de persona (sin duplicados)
@@ -192,22 +204,26 @@ public class PersonController { // Inicio de la clase PersonController - maneja
         if (person == null) {
             return ResponseEntity.notFound().build();
         }
-        List<GroupClass> classes = new ArrayList<>();
-        for (GroupClass gc : groupClassService.getAll()) {
-            if (gc.getRegisteredClients() != null) {
-                boolean enrolled = gc.getRegisteredClients().stream().anyMatch(c -> id.equals(c.getId()));
-                if (enrolled) {
-                    classes.add(gc);
-                }
-            }
+        return ResponseEntity.ok(groupClassService.getTrainersByClientId(id));
+    }
+
+    // Endpoint: horario de la persona, una entrada por clase con su horario y entrenador
+    @GetMapping("/{id}/schedule")
+    public ResponseEntity<List<Map<String, Object>>> getScheduleByPerson(@PathVariable String id) {
+        Person person = personService.getById(id);
+        if (person == null) {
+            return ResponseEntity.notFound().build();
+        }
+        List<Map<String, Object>> schedule = new ArrayList<>();
+        for (GroupClass gc : groupClassService.getClassesByClientId(id)) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("classId", gc.getId());
+            entry.put("name", gc.getName());
+            entry.put("schedule", gc.getSchedule());
+            entry.put("trainer", gc.getTrainer() != null ? gc.getTrainer().getName() : null);
+            schedule.add(entry);
         }
-        List<Trainer> trainers = classes.stream()
-                .map(GroupClass::getTrainer)
-                .filter(t -> t != null)
-                .collect(Collectors.collectingAndThen(
-                        Collectors.toMap(Trainer::getId, t -> t, (a, b) -> a),
-                        m -> new ArrayList<>(m.values())));
-        return ResponseEntity.ok(trainers);
+        return ResponseEntity.ok(schedule);
     }
 }
  // Fin de la clase PersonController
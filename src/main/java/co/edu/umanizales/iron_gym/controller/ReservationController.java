@@ -2,6 +2,7 @@ package co.edu.umanizales.iron_gym.controller; // Declara el paquete donde se en
 
 import co.edu.umanizales.iron_gym.model.Reservation; // Importa la clase Reservation del paquete model
 import co.edu.umanizales.iron_gym.service.ReservationService; // Importa el servicio de reservas
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Conflicto de versiones (If-Match)
 import org.springframework.beans.factory.annotation.Autowired; // Importa anotación para inyección de dependencias
 import org.springframework.http.HttpStatus; // Importa códigos de estado HTTP
 import org.springframework.http.ResponseEntity; // Importa clase para respuestas HTTP
@@ -23,12 +24,7 @@ public class ReservationController { // Inicio de la clase ReservationController
 
     @GetMapping("/{id}") // Anotación que mapea peticiones HTTP GET con parámetro de ruta
     public ResponseEntity<Reservation> getById(@PathVariable String id) { // Método para obtener reserva por ID
-        Reservation reservation = reservationService.getById(id); // Busca reserva por ID usando el servicio
-        if (reservation != null) { // Si se encontró la reserva
-            return ResponseEntity.ok(reservation); // Retorna respuesta HTTP 200 con la reserva encontrada
-        } else { // Si no se encontró la reserva
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
-        }
+        return EntityTags.found(reservationService.getVersioned(id)); // 200 con ETag (304 si no cambió) o 404
     }
 
     @PostMapping // Anotación que mapea peticiones HTTP POST a este método
@@ -38,12 +34,17 @@ public class ReservationController { // Inicio de la clase ReservationController
     }
 
     @PutMapping("/{id}") // Anotación que mapea peticiones HTTP PUT con parámetro de ruta
-    public ResponseEntity<Reservation> update(@PathVariable String id, @RequestBody Reservation reservation) { // Método para actualizar reserva
-        Reservation updated = reservationService.update(id, reservation); // Actualiza la reserva usando el servicio
-        if (updated != null) { // Si se actualizó correctamente
-            return ResponseEntity.ok(updated); // Retorna respuesta HTTP 200 con la reserva actualizada
-        } else { // Si no se encontró la reserva para actualizar
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Reservation reservation,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) { // Método para actualizar reserva
+        try {
+            Reservation updated = reservationService.update(id, reservation, EntityTags.expectedVersion(ifMatch)); // Actualiza la reserva usando el servicio
+            if (updated != null) { // Si se actualizó correctamente
+                return EntityTags.updated(updated, reservationService.getVersioned(id)); // Retorna respuesta HTTP 200 con la reserva actualizada
+            } else { // Si no se encontró la reserva para actualizar
+                return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+            }
+        } catch (SnapshotMap.VersionMismatch ex) {
+            return EntityTags.preconditionFailed(ex); // Otro usuario lo modificó: 412 sin cambios
         }
     }
 
@@ -2,6 +2,7 @@ package co.edu.umanizales.iron_gym.controller; // Declara el paquete donde se en
 
 import co.edu.umanizales.iron_gym.model.Routine; // Importa la clase Routine del paquete model
 import co.edu.umanizales.iron_gym.service.RoutineService; // Importa el servicio de rutinas
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Conflicto de versiones (If-Match)
 import org.springframework.beans.factory.annotation.Autowired; // Importa anotación para inyección de dependencias
 import org.springframework.http.HttpStatus; // Importa códigos de estado HTTP
 import org.springframework.http.ResponseEntity; // Importa clase para respuestas HTTP
@@ -23,12 +24,7 @@ public class RoutineController { // Inicio de la clase RoutineController - manej
 
     @GetMapping("/{id}") // Anotación que mapea peticiones HTTP GET con parámetro de ruta
     public ResponseEntity<Routine> getById(@PathVariable String id) { // Método para obtener rutina por ID
-        Routine routine = routineService.getById(id); // Busca rutina por ID usando el servicio
-        if (routine != null) { // Si se encontró la rutina
-            return ResponseEntity.ok(routine); // Retorna respuesta HTTP 200 con la rutina encontrada
-        } else { // Si no se encontró la rutina
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
-        }
+        return EntityTags.found(routineService.getVersioned(id)); // 200 con ETag (304 si no cambió) o 404
     }
 
     @PostMapping // Anotación que mapea peticiones HTTP POST a este método
@@ -38,12 +34,17 @@ public class RoutineController { // Inicio de la clase RoutineController - manej
     }
 
     @PutMapping("/{id}") // Anotación que mapea peticiones HTTP PUT con parámetro de ruta
-    public ResponseEntity<Routine> update(@PathVariable String id, @RequestBody Routine routine) { // Método para actualizar rutina
-        Routine updated = routineService.update(id, routine); // Actualiza la rutina usando el servicio
-        if (updated != null) { // Si se actualizó correctamente
-            return ResponseEntity.ok(updated); // Retorna respuesta HTTP 200 con la rutina actualizada
-        } else { // Si no se encontró la rutina para actualizar
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Routine routine,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) { // Método para actualizar rutina
+        try {
+            Routine updated = routineService.update(id, routine, EntityTags.expectedVersion(ifMatch)); // Actualiza la rutina usando el servicio
+            if (updated != null) { // Si se actualizó correctamente
+                return EntityTags.updated(updated, routineService.getVersioned(id)); // Retorna respuesta HTTP 200 con la rutina actualizada
+            } else { // Si no se encontró la rutina para actualizar
+                return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+            }
+        } catch (SnapshotMap.VersionMismatch ex) {
+            return EntityTags.preconditionFailed(ex); // Otro usuario lo modificó: 412 sin cambios
         }
     }
 
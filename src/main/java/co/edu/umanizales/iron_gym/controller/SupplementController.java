@@ -2,6 +2,7 @@ package co.edu.umanizales.iron_gym.controller; // Declara el paquete donde se en
 
 import co.edu.umanizales.iron_gym.model.Supplement; // Importa la clase Supplement del paquete model
 import co.edu.umanizales.iron_gym.service.SupplementService; // Importa el servicio de suplementos
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Conflicto de versiones (If-Match)
 import org.springframework.beans.factory.annotation.Autowired; // Importa anotación para inyección de dependencias
 import org.springframework.http.HttpStatus; // Importa códigos de estado HTTP
 import org.springframework.http.ResponseEntity; // Importa clase para respuestas HTTP
@@ -23,12 +24,7 @@ public class SupplementController { // Inicio de la clase SupplementController -
 
     @GetMapping("/{id}") // Anotación que mapea peticiones HTTP GET con parámetro de ruta
     public ResponseEntity<Supplement> getById(@PathVariable String id) { // Método para obtener suplemento por ID
-        Supplement supplement = supplementService.getById(id); // Busca suplemento por ID usando el servicio
-        if (supplement != null) { // Si se encontró el suplemento
-            return ResponseEntity.ok(supplement); // Retorna respuesta HTTP 200 con el suplemento encontrado
-        } else { // Si no se encontró el suplemento
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
-        }
+        return EntityTags.found(supplementService.getVersioned(id)); // 200 con ETag (304 si no cambió) o 404
     }
 
     @PostMapping // Anotación que mapea peticiones HTTP POST a este método
@@ -38,12 +34,17 @@ public class SupplementController { // Inicio de la clase SupplementController -
     }
 
     @PutMapping("/{id}") // Anotación que mapea peticiones HTTP PUT con parámetro de ruta
-    public ResponseEntity<Supplement> update(@PathVariable String id, @RequestBody Supplement supplement) { // Método para actualizar suplemento
-        Supplement updated = supplementService.update(id, supplement); // Actualiza el suplemento usando el servicio
-        if (updated != null) { // Si se actualizó correctamente
-            return ResponseEntity.ok(updated); // Retorna respuesta HTTP 200 con el suplemento actualizado
-        } else { // Si no se encontró el suplemento para actualizar
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Supplement supplement,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) { // Método para actualizar suplemento
+        try {
+            Supplement updated = supplementService.update(id, supplement, EntityTags.expectedVersion(ifMatch)); // Actualiza el suplemento usando el servicio
+            if (updated != null) { // Si se actualizó correctamente
+                return EntityTags.updated(updated, supplementService.getVersioned(id)); // Retorna respuesta HTTP 200 con el suplemento actualizado
+            } else { // Si no se encontró el suplemento para actualizar
+                return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+            }
+        } catch (SnapshotMap.VersionMismatch ex) {
+            return EntityTags.preconditionFailed(ex); // Otro usuario lo modificó: 412 sin cambios
         }
     }
 
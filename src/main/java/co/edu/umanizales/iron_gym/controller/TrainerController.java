@@ -2,6 +2,7 @@ package co.edu.umanizales.iron_gym.controller; // Declara el paquete donde se en
 
 import co.edu.umanizales.iron_gym.model.Trainer; // Importa la clase Trainer del paquete model
 import co.edu.umanizales.iron_gym.service.TrainerService; // Importa el servicio de entrenadores
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Conflicto de versiones (If-Match)
 import org.springframework.beans.factory.annotation.Autowired; // Importa anotación para inyección de dependencias
 import org.springframework.http.HttpStatus; // Importa códigos de estado HTTP
 import org.springframework.http.ResponseEntity; // Importa clase para respuestas HTTP
@@ -33,12 +34,7 @@ public class TrainerController { // Inicio de la clase TrainerController - manej
 
     @GetMapping("/{id}") // Anotación que mapea peticiones HTTP GET con parámetro de ruta
     public ResponseEntity<Trainer> getById(@PathVariable String id) { // Método para obtener entrenador por ID
-        Trainer trainer = trainerService.getById(id); // Busca entrenador por ID usando el servicio
-        if (trainer != null) { // Si se encontró el entrenador
-            return ResponseEntity.ok(trainer); // Retorna respuesta HTTP 200 con el entrenador encontrado
-        } else { // Si no se encontró el entrenador
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
-        }
+        return EntityTags.found(trainerService.getVersioned(id)); // 200 con ETag (304 si no cambió) o 404
     }
 
     @PostMapping // Anotación que mapea peticiones HTTP POST a este método
@@ -74,7 +70,8 @@ public class TrainerController { // Inicio de la clase TrainerController - manej
     }
 
     @PutMapping("/{id}") // Anotación que mapea peticiones HTTP PUT con parámetro de ruta
-    public ResponseEntity<?> update(@PathVariable String id, @Valid @RequestBody Trainer trainer, BindingResult result) { // Método para actualizar entrenador
+    public ResponseEntity<?> update(@PathVariable String id, @Valid @RequestBody Trainer trainer, BindingResult result,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) { // Método para actualizar entrenador
         if (result.hasErrors()) {
             Map<String, String> errors = new HashMap<>();
             for (FieldError error : result.getFieldErrors()) {
@@ -103,11 +100,15 @@ public class TrainerController { // Inicio de la clase TrainerController - manej
             return ResponseEntity.badRequest().body(error);
         }
         
-        Trainer updated = trainerService.update(id, trainer); // Actualiza el entrenador usando el servicio
-        if (updated != null) { // Si se actualizó correctamente
-            return ResponseEntity.ok(updated); // Retorna respuesta HTTP 200 con el entrenador actualizado
-        } else { // Si no se encontró el entrenador para actualizar
-            return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+        try {
+            Trainer updated = trainerService.update(id, trainer, EntityTags.expectedVersion(ifMatch)); // Actualiza el entrenador usando el servicio
+            if (updated != null) { // Si se actualizó correctamente
+                return EntityTags.updated(updated, trainerService.getVersioned(id)); // Retorna respuesta HTTP 200 con el entrenador actualizado
+            } else { // Si no se encontró el entrenador para actualizar
+                return ResponseEntity.notFound().build(); // Retorna respuesta HTTP 404 (no encontrado)
+            }
+        } catch (SnapshotMap.VersionMismatch ex) {
+            return EntityTags.preconditionFailed(ex); // Otro usuario lo modificó: 412 sin cambios
         }
     }
 
@@ -0,0 +1,23 @@
+package co.edu.umanizales.iron_gym.model; // Declara el paquete donde se encuentra esta clase
+
+/**
+ * Estados conocidos de un equipo del gimnasio (ver Equipment.status).
+ */
+public enum EquipmentStatus {
+    AVAILABLE, // Disponible para uso
+    MAINTENANCE, // En mantenimiento
+    OUT_OF_SERVICE; // Fuera de servicio
+
+    // Estado correspondiente al texto exacto guardado en el equipo; null si no es un estado conocido
+    public static EquipmentStatus of(String status) {
+        if (status == null) {
+            return null;
+        }
+        for (EquipmentStatus value : values()) {
+            if (value.name().equals(status)) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -2,10 +2,22 @@ package co.edu.umanizales.iron_gym.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Represents a group fitness class offered at the gym.
  * Classes have a schedule, capacity limit, and assigned trainer.
+ * Las inscripciones concurrentes no sobrepasan el cupo: cada una reclama un cupo con CAS sobre
+ * un contador atómico y los IDs inscritos están en un conjunto concurrente, así un duplicado se
+ * detecta en O(1) sin bloquear la clase.
+ * Reemplazar todos los inscritos (setRegisteredClients) toma el lock de escritura de la clase y cada
+ * inscripción o baja el de lectura: las inscripciones siguen corriendo en paralelo entre sí, pero
+ * ninguna se mezcla con un reemplazo, que perdería su cupo o lo contaría dos veces.
  */
 public class GroupClass {
     private String id;
@@ -13,10 +25,12 @@ public class GroupClass {
     private int maxCapacity;
     private String schedule;
     private Trainer trainer;
-    private List<Client> registeredClients;
+    private final ConcurrentLinkedQueue<Client> roster = new ConcurrentLinkedQueue<>(); // Inscritos, en orden de inscripción
+    private final Set<String> rosterIds = ConcurrentHashMap.newKeySet(); // IDs de los inscritos
+    private final AtomicInteger seatsTaken = new AtomicInteger(); // Cupos ocupados
+    private final ReadWriteLock rosterLock = new ReentrantReadWriteLock(); // Lectura: inscripciones y bajas; escritura: reemplazo
     
     public GroupClass() {
-        this.registeredClients = new ArrayList<>();
     }
     
     public GroupClass(String id, String name, int maxCapacity, String schedule) {
@@ -24,7 +38,6 @@ public class GroupClass {
         this.name = name;
         this.maxCapacity = maxCapacity;
         this.schedule = schedule;
-        this.registeredClients = new ArrayList<>();
     }
     
     public String getId() {
@@ -67,32 +80,86 @@ public class GroupClass {
         this.trainer = trainer;
     }
     
+    // Copia de los inscritos; no cambia si después se inscribe alguien más
     public List<Client> getRegisteredClients() {
-        return registeredClients;
+        return new ArrayList<>(roster);
     }
     
+    // Reemplaza los inscritos sin validar el cupo (JSON recibido, enlace al arrancar); espera a las inscripciones en curso
     public void setRegisteredClients(List<Client> registeredClients) {
-        this.registeredClients = registeredClients;
+        rosterLock.writeLock().lock();
+        try {
+            roster.clear();
+            rosterIds.clear();
+            if (registeredClients != null) {
+                for (Client client : registeredClients) {
+                    if (client.getId() == null || rosterIds.add(client.getId())) { // Un cliente repetido cuenta una vez
+                        roster.add(client);
+                    }
+                }
+            }
+            seatsTaken.set(roster.size());
+        } finally {
+            rosterLock.writeLock().unlock();
+        }
     }
     
+    // Inscribe al cliente si no estaba inscrito y queda cupo; seguro entre hilos, el cupo se reclama con CAS
     public boolean addClient(Client client) {
-        if (registeredClients == null) {
-            registeredClients = new ArrayList<>();
+        rosterLock.readLock().lock();
+        try {
+            String clientId = client.getId();
+            if (clientId != null && !rosterIds.add(clientId)) {
+                return false; // Ya inscrito
+            }
+            if (!claimSeat()) {
+                if (clientId != null) {
+                    rosterIds.remove(clientId);
+                }
+                return false; // Sin cupo
+            }
+            roster.add(client);
+            return true;
+        } finally {
+            rosterLock.readLock().unlock();
         }
-        
-        if (registeredClients.size() < maxCapacity) {
-            registeredClients.add(client);
+    }
+    
+    // Deshace la inscripción del cliente (la misma instancia que recibió addClient) y libera su cupo
+    public boolean removeClient(Client client) {
+        rosterLock.readLock().lock();
+        try {
+            if (!roster.remove(client)) {
+                return false;
+            }
+            if (client.getId() != null) {
+                rosterIds.remove(client.getId());
+            }
+            seatsTaken.decrementAndGet();
             return true;
-        } else {
-            return false;
+        } finally {
+            rosterLock.readLock().unlock();
         }
     }
     
+    public boolean isRegistered(String clientId) {
+        return clientId != null && rosterIds.contains(clientId);
+    }
+    
     public boolean isFull() {
-        if (registeredClients.size() >= maxCapacity) {
-            return true;
-        } else {
-            return false;
+        return seatsTaken.get() >= maxCapacity;
+    }
+    
+    // Reclama un cupo con CAS: si otro hilo tomó el último cupo entre la lectura y el cambio, se vuelve a leer
+    private boolean claimSeat() {
+        while (true) {
+            int taken = seatsTaken.get();
+            if (taken >= maxCapacity) {
+                return false;
+            }
+            if (seatsTaken.compareAndSet(taken, taken + 1)) {
+                return true;
+            }
         }
     }
 }
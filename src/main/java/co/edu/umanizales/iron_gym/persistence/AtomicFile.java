@@ -0,0 +1,51 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.io.*; // Importa las clases para manejo de archivos
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reemplazo atómico de un archivo: el contenido se escribe completo en "<archivo>.tmp",
+ * se fuerza a disco (fsync) y luego se renombra sobre el original, así un lector (o un
+ * corte a mitad de escritura) nunca ve un archivo a medias ni un archivo vacío.
+ */
+public final class AtomicFile {
+    private AtomicFile() {
+    }
+
+    // Escribe el contenido del archivo
+    public interface Content {
+        void writeTo(BufferedWriter writer) throws IOException;
+    }
+
+    public static void write(String path, Content content) throws IOException {
+        File file = new File(path);
+        file.getParentFile().mkdirs();
+        File tmp = new File(path + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            content.writeTo(writer);
+            writer.flush();
+            out.getFD().sync(); // El contenido queda en disco antes de renombrar
+        }
+        replace(tmp, file);
+    }
+
+    // Renombra el temporal sobre el archivo y fuerza la carpeta para que el renombre sobreviva a un corte
+    public static void replace(File tmp, File file) throws IOException {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    // Fuerza a disco las entradas de la carpeta (archivos creados o renombrados)
+    public static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Algunos sistemas (ej: Windows) no permiten abrir carpetas; el renombre ya es atómico
+        }
+    }
+}
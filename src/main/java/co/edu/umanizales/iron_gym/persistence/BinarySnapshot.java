@@ -0,0 +1,123 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*; // Importa las clases para manejo de archivos
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Snapshot binario versionado de un dataset, guardado junto a su CSV (ej: data/payments.bin).
+ * Usa textos con prefijo de longitud, fechas en minutos desde epoch y números de ancho fijo,
+ * así el arranque no tiene que interpretar texto. El CSV sigue siendo el formato de intercambio.
+ */
+public final class BinarySnapshot {
+    private static final Logger log = LoggerFactory.getLogger(BinarySnapshot.class);
+    private static final int MAGIC = 0x49475342; // "IGSB"
+    private static final int MAX_STRING = 1 << 20; // Bytes máximos de un texto; ningún campo de una fila CSV llega a tanto
+    private static final int NULL_MINUTE = Integer.MIN_VALUE; // Marca de fecha nula
+
+    private BinarySnapshot() {
+    }
+
+    // Escribe un registro en el snapshot
+    public interface RecordWriter<T> {
+        void write(DataOutputStream out, T item) throws IOException;
+    }
+
+    // Lee un registro del snapshot
+    public interface RecordReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    // El snapshot solo se usa si existe y es al menos tan reciente como el CSV (el CSV pudo editarse a mano)
+    public static boolean isFresh(String binPath, String csvPath) {
+        File bin = new File(binPath);
+        File csv = new File(csvPath);
+        return bin.exists() && (!csv.exists() || bin.lastModified() >= csv.lastModified());
+    }
+
+    // Escribe el snapshot completo en un archivo temporal y lo reemplaza al final (fsync y renombre atómico)
+    public static <T> void write(String path, int version, List<T> items, RecordWriter<T> writer) throws IOException {
+        File file = new File(path);
+        file.getParentFile().mkdirs();
+        File tmp = new File(path + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(version);
+            out.writeInt(items.size());
+            for (T item : items) {
+                writer.write(out, item);
+            }
+            out.flush();
+            fileOut.getFD().sync(); // El snapshot queda en disco antes de renombrar
+        }
+        AtomicFile.replace(tmp, file);
+    }
+
+    // Lee el snapshot; retorna false si falta, es de otra versión o está incompleto (se debe usar el CSV)
+    public static <T> boolean read(String path, int version, RecordReader<T> reader, Consumer<T> consumer) {
+        File file = new File(path);
+        if (!file.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != version) {
+                return false;
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Cantidad de registros inválida: " + count);
+            }
+            for (int i = 0; i < count; i++) {
+                T item = reader.read(in);
+                if (item != null) {
+                    consumer.accept(item);
+                }
+            }
+            return true;
+        } catch (IOException e) { // Archivo truncado o dañado
+            log.warn("Snapshot binario inválido, se usará el CSV: {} ({})", path, e.getMessage());
+            return false;
+        }
+    }
+
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Un largo dañado se rechaza antes de reservar memoria: la carga vuelve al CSV en vez de quedarse sin heap
+    public static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_STRING || length > in.available()) { // En un archivo, available() son los bytes que quedan
+            throw new IOException("Largo de texto inválido: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Guarda la fecha como minutos desde 1970-01-01T00:00 (las fechas del sistema no usan segundos)
+    public static void writeEpochMinute(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeInt(value == null ? NULL_MINUTE : (int) (value.toEpochSecond(ZoneOffset.UTC) / 60));
+    }
+
+    public static LocalDateTime readEpochMinute(DataInputStream in) throws IOException {
+        int minutes = in.readInt();
+        return minutes == NULL_MINUTE ? null : LocalDateTime.ofEpochSecond(minutes * 60L, 0, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,50 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton; // Se ejecuta cuando todos los beans ya están inyectados
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Arranque en dos fases de todos los servicios con datos.
+ * Fase 1: cada dataset se lee en paralelo en un ForkJoinPool, así el tiempo total se acerca
+ * al del archivo más grande. Fase 2: cada servicio enlaza sus referencias por ID con mapas.
+ * Corre después de la inyección de dependencias y antes de que el servidor web reciba peticiones.
+ */
+@Component
+public class BootstrapCoordinator implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(BootstrapCoordinator.class);
+
+    @Autowired
+    private List<DatasetLoader> loaders; // Todos los servicios que implementan DatasetLoader
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(loaders.size(), Runtime.getRuntime().availableProcessors())));
+        try {
+            runAll(pool, true); // Fase 1: carga
+            runAll(pool, false); // Fase 2: enlace
+        } finally {
+            pool.shutdown();
+        }
+        log.info("Datos cargados en {} ms ({} datasets)", System.currentTimeMillis() - start, loaders.size());
+    }
+
+    // Ejecuta la fase en todos los servicios y espera a que terminen; un error detiene el arranque
+    private void runAll(ForkJoinPool pool, boolean loadPhase) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (DatasetLoader loader : loaders) {
+            tasks.add(pool.submit(loadPhase ? loader::load : loader::link));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+}
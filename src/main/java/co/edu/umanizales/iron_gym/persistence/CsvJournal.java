@@ -0,0 +1,263 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*; // Importa las clases para manejo de archivos
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+/**
+ * Diario de solo-anexar para un archivo CSV.
+ * Cada mutación se escribe como una línea "PUT,<fila csv>" o "DEL,<id>", así el costo
+ * de cada escritura es constante sin importar cuántos registros tenga el dataset.
+ * Cada línea lleva adelante su suma de control (ej: "3f2a9c1d PUT,P001,..."): al reproducir solo
+ * se aplican las líneas completas (terminadas en fin de línea) cuya suma coincide, así un registro
+ * cortado por una caída o por un error al anexar se descarta en vez de aplicarse con datos a medias.
+ * Las líneas sin suma de diarios anteriores a este formato se siguen aceptando si están completas.
+ * Para compactar, el diario se rota a "<archivo>.old": las escrituras nuevas siguen en un
+ * diario vacío mientras el snapshot se genera, y el .old se borra cuando el snapshot queda listo.
+ * Anexar solo deja la línea en el sistema operativo; force() la lleva a disco y se llama una
+ * vez por grupo de mutaciones (GroupCommit), no por cada una.
+ */
+public class CsvJournal {
+    private static final Logger log = LoggerFactory.getLogger(CsvJournal.class);
+    private static final String PUT = "PUT";
+    private static final String DEL = "DEL";
+
+    private final File file; // Archivo del diario (ej: data/payments.journal)
+    private final File rotated; // Diario rotado que se está plegando en un snapshot
+    private FileOutputStream out; // Archivo abierto en modo anexar (para forzarlo a disco)
+    private BufferedWriter writer; // Escritor sobre out
+    private boolean created; // El archivo se creó y su entrada en la carpeta aún no se forzó
+    private int records; // Registros escritos en el diario actual
+    private int rotatedRecords; // Registros del diario rotado aún no confirmados en un snapshot
+
+    public CsvJournal(String path) {
+        this.file = new File(path);
+        this.rotated = new File(path + ".old");
+    }
+
+    // Receptor de los registros leídos al reproducir el diario
+    public interface Listener {
+        void onPut(String csvRow);
+
+        void onDelete(String id);
+    }
+
+    public synchronized void appendPut(String csvRow) {
+        append(PUT + "," + csvRow);
+    }
+
+    public synchronized void appendDelete(String id) {
+        append(DEL + "," + id);
+    }
+
+    // Cantidad de registros pendientes de plegar en el snapshot (incluye el diario rotado)
+    public synchronized int size() {
+        return records + rotatedRecords;
+    }
+
+    // Bytes pendientes de plegar en el snapshot (incluye el diario rotado)
+    public synchronized long sizeInBytes() {
+        return file.length() + rotated.length();
+    }
+
+    // Reproduce el diario rotado y luego el actual; retorna la cantidad de registros aplicados
+    public synchronized int replay(Listener listener) {
+        rotatedRecords = replay(rotated, listener);
+        records = replay(file, listener);
+        return rotatedRecords + records;
+    }
+
+    // Lleva a disco (fsync) todo lo anexado hasta ahora; el fsync corre fuera del lock para no frenar a los que anexan
+    public void force() throws IOException {
+        FileChannel channel;
+        boolean syncDirectory;
+        synchronized (this) {
+            if (writer == null) {
+                return; // Nada abierto: lo anexado antes ya se forzó al rotar
+            }
+            writer.flush();
+            channel = out.getChannel();
+            syncDirectory = created;
+            created = false;
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            return; // Se rotó mientras tanto y rotate() ya forzó el archivo antes de cerrarlo
+        }
+        if (syncDirectory) {
+            AtomicFile.syncDirectory(file.getAbsoluteFile().getParentFile()); // Diario recién creado
+        }
+    }
+
+    // Pasa el diario actual a .old y deja uno vacío para las escrituras nuevas.
+    // Si quedó un .old de una compactación fallida, el diario actual se le anexa.
+    public synchronized void rotate() {
+        try {
+            force(); // Lo que espera confirmación puede quedar en el .old
+        } catch (IOException e) {
+            log.error("No se pudo forzar a disco el diario {} antes de rotarlo", file, e);
+        }
+        close();
+        try {
+            if (!rotated.exists()) {
+                if (file.exists()) {
+                    Files.move(file.toPath(), rotated.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    AtomicFile.syncDirectory(file.getAbsoluteFile().getParentFile());
+                }
+            } else if (file.exists()) {
+                boolean closeLine = endsMidLine(rotated);
+                try (FileOutputStream old = new FileOutputStream(rotated, true)) {
+                    if (closeLine) {
+                        old.write('\n'); // El primer registro copiado no se pega a una línea cortada
+                    }
+                    Files.copy(file.toPath(), old);
+                    old.getFD().sync(); // El .old queda completo en disco antes de vaciar el diario
+                }
+                new FileWriter(file, false).close();
+            }
+            rotatedRecords += records;
+            records = 0;
+        } catch (IOException e) {
+            log.error("No se pudo rotar el diario {}; las escrituras siguen en el diario actual", file, e);
+        }
+    }
+
+    // Reemplaza el diario por uno con solo estos registros (ej: las claves de idempotencia vigentes)
+    public synchronized void rewrite(Collection<String> csvRows) {
+        close();
+        try {
+            AtomicFile.write(file.getPath(), writer -> {
+                for (String row : csvRows) {
+                    writer.write(line(PUT + "," + row));
+                }
+            });
+            records = csvRows.size();
+            created = false; // AtomicFile ya forzó la carpeta
+        } catch (IOException e) {
+            log.error("No se pudo reescribir el diario {}; queda el anterior, que también se puede reproducir", file, e);
+        }
+    }
+
+    // Borra el diario rotado cuando el snapshot que lo contiene ya está escrito
+    public synchronized void discardRotated() {
+        rotated.delete();
+        rotatedRecords = 0;
+    }
+
+    private int replay(File source, Listener listener) {
+        int applied = 0;
+        if (!source.exists()) {
+            return 0;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(source), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[1 << 16];
+            StringBuilder line = new StringBuilder();
+            int read;
+            while ((read = reader.read(buffer)) > 0) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        line.append(buffer, start, i - start);
+                        if (apply(line.toString(), listener)) {
+                            applied++;
+                        }
+                        line.setLength(0);
+                        start = i + 1;
+                    }
+                }
+                line.append(buffer, start, read - start);
+            }
+            // Lo que quedó en line no terminó en fin de línea: un registro cortado a mitad de escritura, se descarta
+        } catch (IOException e) {
+            log.error("No se pudo reproducir el diario {}; se aplicaron {} registros", source, applied, e);
+        }
+        return applied;
+    }
+
+    // Aplica una línea completa; retorna false si está dañada (suma de control distinta) o no es un registro
+    private static boolean apply(String line, Listener listener) {
+        String record = line;
+        if (!line.startsWith(PUT + ",") && !line.startsWith(DEL + ",")) { // Las de diarios anteriores no tienen suma
+            int space = line.indexOf(' ');
+            if (space < 0 || !line.substring(0, space).equals(checksum(line.substring(space + 1)))) {
+                return false;
+            }
+            record = line.substring(space + 1);
+        }
+        int comma = record.indexOf(',');
+        String type = record.substring(0, comma < 0 ? 0 : comma);
+        if (PUT.equals(type)) {
+            listener.onPut(record.substring(comma + 1));
+        } else if (DEL.equals(type)) {
+            listener.onDelete(record.substring(comma + 1));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    // Línea del diario para un registro: suma de control, registro y fin de línea
+    private static String line(String record) {
+        return checksum(record) + " " + record + "\n";
+    }
+
+    private static String checksum(String record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    // true si el archivo termina a mitad de una línea (registro cortado por una caída o por un error al anexar)
+    private static boolean endsMidLine(File source) throws IOException {
+        if (source.length() == 0) {
+            return false;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(source, "r")) {
+            in.seek(in.length() - 1);
+            return in.read() != '\n';
+        }
+    }
+
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("No se pudo cerrar el diario {}", file, e);
+            }
+            writer = null;
+            out = null;
+        }
+    }
+
+    // Si falla, la excepción llega al servicio: la petición no puede responder como si el cambio estuviera guardado
+    private void append(String record) {
+        try {
+            if (writer == null) {
+                file.getParentFile().mkdirs();
+                created |= !file.exists();
+                boolean closeLine = endsMidLine(file);
+                out = new FileOutputStream(file, true);
+                writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                if (closeLine) {
+                    writer.write("\n"); // Cierra la línea cortada; al reproducir se descarta por su suma de control
+                }
+            }
+            writer.write(line(record));
+            writer.flush(); // Cada registro llega al sistema operativo; force() lo lleva a disco
+            records++;
+        } catch (IOException e) {
+            close(); // El siguiente registro vuelve a abrir el archivo
+            throw new UncheckedIOException("No se pudo anexar al diario " + file, e);
+        }
+    }
+}
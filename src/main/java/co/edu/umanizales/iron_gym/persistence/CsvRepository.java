@@ -0,0 +1,550 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Motor CSV: el comportamiento de siempre, con archivos de texto en la carpeta data.
+ * Guarda una copia de cada fila ya convertida a texto, agrupada por archivo (uno solo, o uno
+ * por mes si el dataset es mensual), y solo reescribe los archivos que cambiaron.
+ * Las escrituras llegan a disco con la escritura diferida (WriteBehindFlusher) o, si el
+ * dataset tiene diario, con una línea por mutación y compactación en segundo plano (JournalCompactor).
+ * Cada mutación queda además pendiente de confirmar en disco (GroupCommit): con escritura diferida
+ * el grupo se confirma reescribiendo los archivos; con diario, forzando el diario.
+ * Para detectar ediciones externas guarda la fecha de modificación y el tamaño de cada CSV
+ * que leyó o escribió, y los compara con los del disco (changedOnDisk).
+ * Si un CSV trae dos filas con el mismo ID, se carga la primera y las demás pasan a un archivo de
+ * cuarentena (ej: data/reservations.duplicates.csv) antes de reescribir el CSV sin ellas: ninguna
+ * fila se pierde y quien mantiene los datos decide cuál conservar.
+ */
+public class CsvRepository<T> implements Repository<T, String> {
+    private static final Logger log = LoggerFactory.getLogger(CsvRepository.class);
+    private static final String SINGLE = ""; // Partición del dataset de un solo archivo
+
+    private final DatasetSpec<T> spec;
+    private final RowCodec<T> codec;
+    private final String directory; // Carpeta de los archivos (ej: data)
+    private final String baseName; // Nombre del archivo sin extensión (ej: payments)
+    private final Pattern segmentName; // Reconoce los archivos mensuales en la carpeta
+    private final CsvJournal journal; // null si el dataset usa escritura diferida
+    private final CsvJournal idempotencyKeys; // Respuestas por Idempotency-Key (ej: data/payments.keys); vacío si no se usan
+    private final TreeMap<String, LinkedHashMap<String, Stored<T>>> partitions = new TreeMap<>(); // Filas por archivo, en orden
+    private final Map<String, String> partitionOf = new HashMap<>(); // Partición de cada ID
+    private final TreeSet<String> dirty = new TreeSet<>(); // Particiones con cambios sin escribir
+    private Map<String, String> fingerprint = new HashMap<>(); // Fecha y tamaño de cada CSV según la última carga o escritura
+    private long checkIntervalMs; // Tiempo mínimo entre dos revisiones del disco
+    private volatile long nextCheckAt; // Momento de la próxima revisión (se lee sin bloqueo en cada lectura de los servicios)
+    private WriteBehindFlusher writeBehind;
+    private JournalCompactor compactor;
+    private GroupCommit groupCommit; // null si el repositorio no está conectado
+    private long pendingSequence = -1; // Secuencia de IDs por escribir en la próxima confirmación (-1 = nada pendiente)
+
+    public CsvRepository(DatasetSpec<T> spec) {
+        this.spec = spec;
+        this.codec = spec.getCodec();
+        File file = new File(spec.getPath());
+        this.directory = file.getParent() == null ? "." : file.getParent();
+        this.baseName = file.getName().endsWith(".csv") ? file.getName().substring(0, file.getName().length() - 4) : file.getName();
+        this.segmentName = Pattern.compile(Pattern.quote(baseName) + "-(\\d{4}-\\d{2}|" + MonthlySegments.UNDATED + ")\\.csv");
+        this.journal = spec.isJournaled() ? new CsvJournal(directory + "/" + baseName + ".journal") : null;
+        this.idempotencyKeys = new CsvJournal(directory + "/" + baseName + ".keys");
+    }
+
+    // Conecta el repositorio con el motor de escritura que corresponda; sin conectar, flush() escribe de inmediato
+    public void attach(WriteBehindFlusher writeBehind, JournalCompactor compactor, long groupCommitWindowMs) {
+        if (journal != null) {
+            this.compactor = compactor;
+            compactor.register(spec.getName(), journal, () -> capture(true));
+            this.groupCommit = new GroupCommit(groupCommitWindowMs, () -> {
+                journal.force(); // Un fsync del diario por grupo
+                idempotencyKeys.force(); // Y uno de las claves de idempotencia, si el grupo anexó alguna
+                commitSequence(); // Y la secuencia, si el grupo eliminó algún registro
+            });
+        } else {
+            this.writeBehind = writeBehind;
+            writeBehind.register(spec.getName(), () -> capture(false).run());
+            this.groupCommit = new GroupCommit(groupCommitWindowMs, () -> {
+                writeBehind.commit(spec.getName()); // Una reescritura por grupo
+                idempotencyKeys.force();
+                commitSequence();
+            });
+        }
+    }
+
+    // Revisa el disco a lo sumo una vez cada intervalo; entre revisiones las lecturas no tocan el disco
+    public void checkChangesEvery(long intervalMs) {
+        this.checkIntervalMs = intervalMs;
+    }
+
+    @Override
+    public void loadAll(Consumer<T> sink) {
+        List<T> items = new ArrayList<>();
+        boolean pending;
+        synchronized (this) {
+            partitions.clear();
+            partitionOf.clear();
+            if (spec.isMonthly()) {
+                for (String key : keysOnDisk()) {
+                    loadPartition(key);
+                }
+                migrateSingleFile(); // Datos que aún estén en el archivo único anterior a los segmentos
+            } else {
+                loadPartition(SINGLE);
+            }
+            if (journal != null) {
+                replayJournal(); // Aplica las mutaciones registradas después del snapshot
+            }
+            for (LinkedHashMap<String, Stored<T>> partition : partitions.values()) {
+                for (Stored<T> stored : partition.values()) {
+                    items.add(stored.item);
+                }
+            }
+            pending = !dirty.isEmpty();
+            fingerprint = currentFingerprint();
+            nextCheckAt = System.currentTimeMillis() + checkIntervalMs;
+        }
+        if (compactor != null) {
+            compactor.check(spec.getName()); // Un diario largo se compacta apenas termina la carga
+        } else if (writeBehind != null && pending) {
+            writeBehind.markDirty(spec.getName()); // Filas que cambiaron de archivo al cargar
+        }
+        items.forEach(sink);
+    }
+
+    @Override
+    public void save(T entity) {
+        save(entity, (IdempotencyStore.Entry<T>) null);
+    }
+
+    // La clave se anexa en la misma sección que la fila, así ambas quedan en el mismo grupo de confirmación
+    @Override
+    public void save(T entity, IdempotencyStore.Entry<T> key) {
+        String row = codec.toRow(entity); // La fila se arma ahora: el registro puede cambiar en sitio después
+        synchronized (this) {
+            if (journal != null) {
+                journal.appendPut(row); // Anexa la fila al diario (costo constante); si falla, la fila no queda en memoria
+            }
+            if (key != null) {
+                idempotencyKeys.appendPut(IdempotencyStore.toLine(key, row)); // La respuesta es el registro guardado
+            }
+            put(new Stored<>(entity, row), codec.idOf(entity), partitionKeyOf(entity), true);
+            track();
+        }
+        afterWrite();
+    }
+
+    @Override
+    public void loadIdempotencyKeys(Consumer<IdempotencyStore.Entry<T>> sink) {
+        idempotencyKeys.replay(new CsvJournal.Listener() {
+            @Override
+            public void onPut(String line) {
+                IdempotencyStore.Entry<T> entry = IdempotencyStore.fromLine(line, codec);
+                if (entry != null) {
+                    sink.accept(entry);
+                }
+            }
+
+            @Override
+            public void onDelete(String id) {
+                // El archivo de claves solo se anexa y se reescribe completo
+            }
+        });
+    }
+
+    @Override
+    public void retainIdempotencyKeys(Collection<IdempotencyStore.Entry<T>> live) {
+        List<String> lines = new ArrayList<>(live.size());
+        for (IdempotencyStore.Entry<T> entry : live) {
+            lines.add(IdempotencyStore.toLine(entry, codec.toRow(entry.getResponse())));
+        }
+        idempotencyKeys.rewrite(lines); // Reemplazo atómico: un corte deja el archivo anterior o el nuevo completo
+    }
+
+    @Override
+    public void deleteById(String id) {
+        synchronized (this) {
+            String key = partitionOf.get(id);
+            if (key == null) {
+                return;
+            }
+            if (journal != null) {
+                journal.appendDelete(id); // Primero el diario: si falla, el registro sigue guardado
+            }
+            partitionOf.remove(id);
+            partitions.get(key).remove(id);
+            dirty.add(key);
+            track();
+        }
+        afterWrite();
+    }
+
+    @Override
+    public void flush() {
+        if (writeBehind != null) {
+            writeBehind.flush(spec.getName());
+        } else if (compactor == null) {
+            capture(false).run();
+        } // Con diario, cada mutación ya está en disco
+    }
+
+    // Incluye la secuencia aún no confirmada: una recarga entre la eliminación y su confirmación no repite IDs
+    @Override
+    public long loadSequence() {
+        long pending;
+        synchronized (this) {
+            pending = pendingSequence;
+        }
+        File file = new File(sequencePath());
+        if (!file.exists()) {
+            return Math.max(0, pending);
+        }
+        try {
+            return Math.max(pending, Long.parseLong(Files.readString(file.toPath(), StandardCharsets.UTF_8).trim()));
+        } catch (IOException | NumberFormatException e) {
+            log.warn("No se pudo leer la secuencia de IDs {}; se usarán los IDs existentes", sequencePath(), e);
+            return Math.max(0, pending); // La secuencia se siembra igual con los IDs existentes
+        }
+    }
+
+    // Se llama bajo el lock del servicio, así que solo anota el valor: el archivo se escribe (con fsync) en la
+    // confirmación del grupo, fuera de los locks, y la petición espera esa confirmación como la de la eliminación.
+    // Si falla, la petición falla: sin la secuencia guardada, el ID eliminado se volvería a entregar
+    @Override
+    public void saveSequence(long value) {
+        if (groupCommit == null) { // Sin conectar (ej: benchmark): se escribe de inmediato
+            writeSequence(value);
+            return;
+        }
+        synchronized (this) {
+            pendingSequence = Math.max(pendingSequence, value);
+            track();
+        }
+    }
+
+    // Parte de la confirmación del grupo: escribe la última secuencia anotada, si hay una
+    private void commitSequence() {
+        long value;
+        synchronized (this) {
+            value = pendingSequence;
+            pendingSequence = -1;
+        }
+        if (value < 0) {
+            return;
+        }
+        try {
+            writeSequence(value);
+        } catch (UncheckedIOException e) {
+            synchronized (this) {
+                pendingSequence = Math.max(pendingSequence, value); // El próximo grupo la reintenta
+            }
+            throw e;
+        }
+    }
+
+    private void writeSequence(long value) {
+        try {
+            AtomicFile.write(sequencePath(), writer -> writer.write(Long.toString(value)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo guardar la secuencia de IDs " + sequencePath(), e);
+        }
+    }
+
+    @Override
+    public boolean changedOnDisk() {
+        if (System.currentTimeMillis() < nextCheckAt) {
+            return false; // Camino sin bloqueo: entre dos revisiones las lecturas no esperan a los escritores
+        }
+        return checkDisk();
+    }
+
+    private synchronized boolean checkDisk() {
+        long now = System.currentTimeMillis();
+        if (now < nextCheckAt) {
+            return false; // Otro hilo acaba de revisar
+        }
+        nextCheckAt = now + checkIntervalMs;
+        if (journal == null && !dirty.isEmpty()) {
+            return false; // Recargar perdería cambios aún no escritos; al escribirlos prevalece lo de memoria
+        }
+        return !currentFingerprint().equals(fingerprint);
+    }
+
+    // La petición en curso esperará a que esta mutación esté en disco (ver PendingCommits)
+    private void track() {
+        if (groupCommit != null) {
+            PendingCommits.add(groupCommit, groupCommit.register());
+        }
+    }
+
+    private void afterWrite() {
+        if (compactor != null) {
+            compactor.check(spec.getName());
+        } else if (writeBehind != null) {
+            writeBehind.markDirty(spec.getName()); // La escritura se agrupa con las demás mutaciones cercanas
+        }
+    }
+
+    // Copia las particiones con cambios (y rota el diario si corresponde); la escritura corre fuera del lock
+    private synchronized Runnable capture(boolean rotate) {
+        Map<String, List<Stored<T>>> pending = new LinkedHashMap<>();
+        for (String key : dirty) {
+            LinkedHashMap<String, Stored<T>> partition = partitions.get(key);
+            pending.put(key, partition == null ? new ArrayList<>() : new ArrayList<>(partition.values()));
+        }
+        dirty.clear();
+        if (rotate) {
+            journal.rotate(); // Las mutaciones nuevas van al diario vacío
+        }
+        return () -> write(pending);
+    }
+
+    // Escribe el CSV (y el snapshot binario) de cada partición; si algo falla, quedan pendientes
+    private void write(Map<String, List<Stored<T>>> pending) {
+        try {
+            for (Map.Entry<String, List<Stored<T>>> entry : pending.entrySet()) {
+                String csv = csvPath(entry.getKey());
+                List<Stored<T>> rows = entry.getValue();
+                AtomicFile.write(csv, writer -> { // Se escribe en un temporal y se renombra sobre el CSV
+                    writer.write(spec.getHeader() + "\n");
+                    for (Stored<T> stored : rows) {
+                        writer.write(stored.row + "\n");
+                    }
+                });
+                synchronized (this) {
+                    fingerprint.put(csv, stamp(new File(csv))); // Una escritura propia no cuenta como cambio externo
+                }
+                if (spec.hasBinary()) { // Se escribe después del CSV para quedar más reciente que él
+                    List<T> items = new ArrayList<>(rows.size());
+                    for (Stored<T> stored : rows) {
+                        items.add(stored.item);
+                    }
+                    BinarySnapshot.write(binPath(csv), spec.getBinaryVersion(), items, spec.getBinaryWriter());
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                dirty.addAll(pending.keySet()); // Se reintentan en la próxima escritura
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Agrega o reemplaza la fila; si el registro cambió de mes, sale de la partición anterior
+    private void put(Stored<T> stored, String id, String key, boolean markDirty) {
+        String previous = partitionOf.put(id, key);
+        if (previous != null && !previous.equals(key)) {
+            partitions.get(previous).remove(id);
+            dirty.add(previous);
+        }
+        partitions.computeIfAbsent(key, k -> new LinkedHashMap<>()).put(id, stored);
+        if (markDirty) {
+            dirty.add(key);
+        }
+    }
+
+    // Carga una partición desde su snapshot binario si está al día, o desde su CSV
+    private void loadPartition(String key) {
+        String csv = csvPath(key);
+        String bin = binPath(csv);
+        List<T> loaded = new ArrayList<>();
+        if (!spec.hasBinary() || !BinarySnapshot.isFresh(bin, csv)
+                || !BinarySnapshot.read(bin, spec.getBinaryVersion(), spec.getBinaryReader(), loaded::add)) {
+            loaded.clear(); // Descarta una carga binaria parcial
+            readCsv(csv, loaded);
+        }
+        List<String> duplicates = new ArrayList<>();
+        for (T item : loaded) {
+            String id = codec.idOf(item);
+            if (partitionOf.containsKey(id)) {
+                log.warn("ID duplicado encontrado en {}: {}; la fila pasa a {}", csv, id, duplicatesPath());
+                duplicates.add(codec.toRow(item)); // Se carga el primero
+                continue;
+            }
+            String target = partitionKeyOf(item);
+            boolean moved = !key.equals(target); // Fila editada a mano con fecha de otro mes
+            put(new Stored<>(item, codec.toRow(item)), id, target, moved);
+            if (moved) {
+                dirty.add(key);
+            }
+        }
+        if (!duplicates.isEmpty()) {
+            quarantine(duplicates);
+            dirty.add(key); // Solo cuando las filas ya están a salvo, el CSV se reescribe sin ellas
+        }
+    }
+
+    // Guarda las filas con ID repetido en el archivo de cuarentena, sin repetir las que ya tiene;
+    // si no se puede escribir, la carga falla en vez de arriesgar que una reescritura las borre
+    private void quarantine(List<String> rows) {
+        String path = duplicatesPath();
+        LinkedHashSet<String> lines = new LinkedHashSet<>();
+        File file = new File(path);
+        try {
+            if (file.exists()) {
+                List<String> existing = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+                lines.addAll(existing.subList(Math.min(1, existing.size()), existing.size())); // Sin el encabezado
+            }
+            if (!lines.addAll(rows)) {
+                return; // Ya estaban en cuarentena (ej: recarga antes de que se reescribiera el CSV)
+            }
+            AtomicFile.write(path, writer -> {
+                writer.write(spec.getHeader() + "\n");
+                for (String line : lines) {
+                    writer.write(line + "\n");
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudieron guardar las filas duplicadas en " + path, e);
+        }
+    }
+
+    // Reparte el archivo único anterior (ej: data/payments.csv) en archivos mensuales y lo renombra a .migrated
+    private void migrateSingleFile() {
+        File file = new File(spec.getPath());
+        if (!file.exists()) {
+            return;
+        }
+        List<T> loaded = new ArrayList<>();
+        readCsv(spec.getPath(), loaded);
+        for (T item : loaded) {
+            String id = codec.idOf(item);
+            if (!partitionOf.containsKey(id)) { // Los IDs que ya están en un segmento se conservan
+                put(new Stored<>(item, codec.toRow(item)), id, partitionKeyOf(item), true);
+            }
+        }
+        try {
+            capture(false).run();
+        } catch (UncheckedIOException e) {
+            log.error("No se pudo migrar {} a archivos mensuales; se reintenta en el próximo arranque", spec.getPath(), e); // El archivo único se conserva
+            return;
+        }
+        file.renameTo(new File(spec.getPath() + ".migrated"));
+        new File(binPath(spec.getPath())).delete();
+    }
+
+    private void replayJournal() {
+        journal.replay(new CsvJournal.Listener() {
+            @Override
+            public void onPut(String csvRow) {
+                T item = codec.fromRow(CsvRow.parse(csvRow));
+                if (item != null) {
+                    put(new Stored<>(item, csvRow), codec.idOf(item), partitionKeyOf(item), true);
+                }
+            }
+
+            @Override
+            public void onDelete(String id) {
+                String key = partitionOf.remove(id);
+                if (key != null) {
+                    partitions.get(key).remove(id);
+                    dirty.add(key);
+                }
+            }
+        });
+    }
+
+    private void readCsv(String path, List<T> target) {
+        try {
+            MappedCsvReader.read(path, row -> { // Mapea el archivo y recorre sus filas sin split
+                T item = codec.fromRow(row);
+                if (item != null) {
+                    target.add(item);
+                }
+            });
+        } catch (IOException e) { // Captura excepciones de entrada/salida
+            log.error("No se pudo leer {}", path, e);
+        }
+    }
+
+    private String partitionKeyOf(T item) {
+        return spec.isMonthly() ? MonthlySegments.keyOf(spec.getDateOf().apply(item)) : SINGLE;
+    }
+
+    // Archivo CSV de la partición (ej: data/payments-2025-11.csv)
+    private String csvPath(String key) {
+        return SINGLE.equals(key) ? spec.getPath() : directory + "/" + baseName + "-" + key + ".csv";
+    }
+
+    // Filas con ID repetido que se sacaron de los CSV al cargar (ej: data/reservations.duplicates.csv)
+    private String duplicatesPath() {
+        return directory + "/" + baseName + ".duplicates.csv";
+    }
+
+    // Archivo con el último número de la secuencia de IDs (ej: data/payments.seq)
+    private String sequencePath() {
+        return directory + "/" + baseName + ".seq";
+    }
+
+    private static String binPath(String csvPath) {
+        return (csvPath.endsWith(".csv") ? csvPath.substring(0, csvPath.length() - 4) : csvPath) + ".bin";
+    }
+
+    // Fecha de modificación y tamaño de cada CSV del dataset que existe en disco
+    private Map<String, String> currentFingerprint() {
+        Map<String, String> current = new HashMap<>();
+        List<String> paths = new ArrayList<>();
+        paths.add(spec.getPath()); // En un dataset mensual, el archivo único anterior (si reaparece)
+        if (spec.isMonthly()) {
+            for (String key : keysOnDisk()) {
+                paths.add(csvPath(key));
+            }
+        }
+        for (String path : paths) {
+            File file = new File(path);
+            if (file.exists()) {
+                current.put(path, stamp(file));
+            }
+        }
+        return current;
+    }
+
+    private static String stamp(File file) {
+        return file.lastModified() + ":" + file.length();
+    }
+
+    // Meses que tienen archivo CSV en la carpeta, en orden
+    private List<String> keysOnDisk() {
+        List<String> keys = new ArrayList<>();
+        String[] names = new File(directory).list();
+        if (names == null) {
+            return keys;
+        }
+        for (String name : names) {
+            Matcher matcher = segmentName.matcher(name);
+            if (matcher.matches()) {
+                keys.add(matcher.group(1));
+            }
+        }
+        keys.sort(null);
+        return keys;
+    }
+
+    // Registro junto con la fila que se escribe en el CSV
+    private static final class Stored<T> {
+        private final T item;
+        private final String row;
+
+        private Stored(T item, String row) {
+            this.item = item;
+            this.row = row;
+        }
+    }
+}
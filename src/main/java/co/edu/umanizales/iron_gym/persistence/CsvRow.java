@@ -0,0 +1,190 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+
+/**
+ * Vista de una fila CSV sobre los bytes del archivo.
+ * Solo guarda las posiciones de cada campo; el texto o el número se decodifica
+ * cuando el servicio lo pide, sin arreglos de split ni Strings intermedios.
+ */
+public class CsvRow {
+    private static final int MAX_FIELDS = 64;
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private ByteBuffer buffer; // Bytes del archivo (o de la línea) que contienen la fila
+    private final int[] starts = new int[MAX_FIELDS]; // Posición inicial de cada campo
+    private final int[] ends = new int[MAX_FIELDS]; // Posición final (exclusiva) de cada campo
+    private int size; // Cantidad de campos de la fila
+
+    // Crea una fila a partir de un texto (ej: un registro del diario)
+    public static CsvRow parse(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        CsvRow row = new CsvRow();
+        row.reset(ByteBuffer.wrap(bytes), 0, bytes.length);
+        return row;
+    }
+
+    // Ubica los campos de la fila entre from (inclusivo) y to (exclusivo, sin salto de línea)
+    void reset(ByteBuffer buffer, int from, int to) {
+        this.buffer = buffer;
+        if (to > from && buffer.get(to - 1) == '\r') {
+            to--; // Archivos guardados con saltos de línea de Windows
+        }
+        size = 0;
+        int start = from;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == ',' && size < MAX_FIELDS - 1) {
+                starts[size] = start;
+                ends[size] = i;
+                size++;
+                start = i + 1;
+            }
+        }
+        starts[size] = start;
+        ends[size] = to;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty(int field) {
+        return field >= size || ends[field] == starts[field];
+    }
+
+    // Decodifica el campo como texto UTF-8 (sin recortar espacios)
+    public String getString(int field) {
+        if (field >= size) {
+            return null;
+        }
+        int length = ends[field] - starts[field];
+        byte[] bytes = new byte[length];
+        buffer.get(starts[field], bytes, 0, length); // Copia absoluta, sin mover la posición del buffer
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Lee un entero directamente de los bytes; lanza NumberFormatException si no es válido
+    public int getInt(int field) {
+        int from = trimStart(field);
+        int to = trimEnd(field);
+        if (from >= to) {
+            throw new NumberFormatException("Campo vacío");
+        }
+        boolean negative = buffer.get(from) == '-';
+        if (negative || buffer.get(from) == '+') {
+            from++;
+        }
+        if (from >= to || to - from > 10) {
+            throw new NumberFormatException(getString(field));
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException(getString(field));
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+            throw new NumberFormatException(getString(field));
+        }
+        return (int) value;
+    }
+
+    // Lee un decimal directamente de los bytes; los formatos poco comunes usan Double.parseDouble
+    public double getDouble(int field) {
+        int from = trimStart(field);
+        int to = trimEnd(field);
+        if (from >= to) {
+            throw new NumberFormatException("Campo vacío");
+        }
+        boolean negative = buffer.get(from) == '-';
+        if (negative || buffer.get(from) == '+') {
+            from++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1; // -1 mientras no aparezca el punto decimal
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (b >= '0' && b <= '9' && digits < 18) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else {
+                return Double.parseDouble(getString(field).trim()); // Exponentes, NaN, demasiados dígitos
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException(getString(field));
+        }
+        if (mantissa > (1L << 53)) {
+            return Double.parseDouble(getString(field).trim()); // Fuera del rango exacto de un double
+        }
+        double value = decimals > 0 ? mantissa / POW10[decimals] : mantissa; // División exacta por potencia de 10
+        return negative ? -value : value;
+    }
+
+    // Lee una fecha con el formato dd-MM-yyyy'T'HH:mm; retorna null si el campo tiene otro formato
+    public LocalDateTime getDayMonthYearTime(int field) {
+        int from = trimStart(field);
+        if (trimEnd(field) - from != 16 || buffer.get(from + 2) != '-' || buffer.get(from + 5) != '-'
+                || buffer.get(from + 10) != 'T' || buffer.get(from + 13) != ':') {
+            return null;
+        }
+        int day = digits(from, 2);
+        int month = digits(from + 3, 2);
+        int year = digits(from + 6, 4);
+        int hour = digits(from + 11, 2);
+        int minute = digits(from + 14, 2);
+        if (day < 0 || month < 0 || year < 0 || hour < 0 || minute < 0) {
+            return null;
+        }
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute);
+        } catch (DateTimeException e) {
+            return null; // Fecha imposible (ej: 31-02)
+        }
+    }
+
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private int trimStart(int field) {
+        if (field >= size) {
+            throw new NumberFormatException("Campo inexistente: " + field);
+        }
+        int i = starts[field];
+        while (i < ends[field] && buffer.get(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private int trimEnd(int field) {
+        int i = ends[field];
+        while (i > starts[field] && buffer.get(i - 1) == ' ') {
+            i--;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,15 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+/**
+ * Servicio cuyo dataset se carga en el arranque coordinado (ver BootstrapCoordinator).
+ * La carga no puede depender de otros servicios; las referencias entre datasets
+ * se guardan solo con su ID y se resuelven en link().
+ */
+public interface DatasetLoader {
+    // Fase 1: lee el archivo del dataset (se ejecuta en paralelo con los demás)
+    void load();
+
+    // Fase 2: enlaza las referencias por ID cuando todos los datasets ya están cargados
+    default void link() {
+    }
+}
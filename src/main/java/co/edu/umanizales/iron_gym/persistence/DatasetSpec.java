@@ -0,0 +1,98 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * Descripción de un dataset para crear su repositorio: nombre, cabecera, conversión de filas
+ * y las opciones del motor CSV (diario, segmentos mensuales, snapshot binario).
+ * El motor MVStore solo usa el nombre y la conversión de filas.
+ */
+public class DatasetSpec<T> {
+    private final String name; // Nombre del dataset (ej: payments)
+    private final String header; // Cabecera del CSV
+    private final RowCodec<T> codec;
+    private String path; // Archivo CSV (ej: data/payments.csv)
+    private boolean journaled; // Mutaciones en un diario compactado en segundo plano, en vez de escritura diferida
+    private Function<T, LocalDateTime> dateOf; // Si no es null, un archivo por mes según esta fecha
+    private int binaryVersion;
+    private BinarySnapshot.RecordWriter<T> binaryWriter; // Si no es null, un snapshot binario junto a cada CSV
+    private BinarySnapshot.RecordReader<T> binaryReader;
+
+    private DatasetSpec(String name, String header, RowCodec<T> codec) {
+        this.name = name;
+        this.header = header;
+        this.codec = codec;
+        this.path = "data/" + name + ".csv";
+    }
+
+    public static <T> DatasetSpec<T> of(String name, String header, RowCodec<T> codec) {
+        return new DatasetSpec<>(name, header, codec);
+    }
+
+    public DatasetSpec<T> path(String path) {
+        this.path = path;
+        return this;
+    }
+
+    public DatasetSpec<T> journaled() {
+        this.journaled = true;
+        return this;
+    }
+
+    public DatasetSpec<T> monthly(Function<T, LocalDateTime> dateOf) {
+        this.dateOf = dateOf;
+        return this;
+    }
+
+    public DatasetSpec<T> binary(int version, BinarySnapshot.RecordWriter<T> writer, BinarySnapshot.RecordReader<T> reader) {
+        this.binaryVersion = version;
+        this.binaryWriter = writer;
+        this.binaryReader = reader;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    public RowCodec<T> getCodec() {
+        return codec;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isJournaled() {
+        return journaled;
+    }
+
+    public boolean isMonthly() {
+        return dateOf != null;
+    }
+
+    public Function<T, LocalDateTime> getDateOf() {
+        return dateOf;
+    }
+
+    public boolean hasBinary() {
+        return binaryWriter != null;
+    }
+
+    public int getBinaryVersion() {
+        return binaryVersion;
+    }
+
+    public BinarySnapshot.RecordWriter<T> getBinaryWriter() {
+        return binaryWriter;
+    }
+
+    public BinarySnapshot.RecordReader<T> getBinaryReader() {
+        return binaryReader;
+    }
+}
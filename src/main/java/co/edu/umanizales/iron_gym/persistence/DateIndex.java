@@ -0,0 +1,170 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Índice secundario de un dataset con fecha: agrupa los registros por una clave (ej: el cliente
+ * de un pago) y dentro de cada clave los mantiene ordenados por fecha. Así "los últimos N" y
+ * "los del rango" de una clave se resuelven sin recorrer el dataset completo. Además mantiene
+ * un árbol con todos los registros, para los rangos sin clave y las fechas mínima y máxima.
+ * Los registros con la misma fecha conservan su orden de llegada; los que no tienen fecha van al final.
+ * Los árboles son inmutables (ver SnapshotIndex): las consultas leen la última raíz publicada sin locks.
+ */
+public class DateIndex<K, T> implements SnapshotIndex {
+    // Por fecha (sin fecha al final) y, en la misma fecha, por orden de llegada
+    private static final Comparator<Stamp> ORDER = Comparator
+            .comparing((Stamp stamp) -> stamp.dateTime, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingLong(stamp -> stamp.arrival);
+    private static final Stamp UNDATED = new Stamp(null, Long.MIN_VALUE); // Primera posición sin fecha
+
+    private final Function<T, K> keyOf; // Clave por la que se agrupan los registros (null = no se indexa)
+    private final Function<T, LocalDateTime> dateOf; // Fecha que ordena los registros de cada clave
+    private Root<K, T> working = Root.empty(); // Estado de los escritores
+    private volatile Root<K, T> published = working; // Lo que ven las consultas
+    private long arrivals; // Orden de llegada, para desempatar registros con la misma fecha
+
+    public DateIndex(Function<T, K> keyOf, Function<T, LocalDateTime> dateOf) {
+        this.keyOf = keyOf;
+        this.dateOf = dateOf;
+    }
+
+    public void add(T item) {
+        Stamp stamp = new Stamp(dateOf.apply(item), ++arrivals);
+        PersistentHashMap<K, PersistentTreeMap<Stamp, T>> entries = working.entries;
+        K key = keyOf.apply(item);
+        if (key != null) {
+            PersistentTreeMap<Stamp, T> keyEntries = entries.get(key);
+            entries = entries.plus(key, (keyEntries != null ? keyEntries : PersistentTreeMap.<Stamp, T>empty(ORDER)).plus(stamp, item));
+        }
+        working = new Root<>(entries, working.all.plus(stamp, item));
+    }
+
+    // Quita el registro (por identidad); debe llamarse antes de cambiar su clave o su fecha
+    public void remove(T item) {
+        Stamp stamp = find(working.all, dateOf.apply(item), item);
+        if (stamp == null) {
+            return;
+        }
+        PersistentHashMap<K, PersistentTreeMap<Stamp, T>> entries = working.entries;
+        K key = keyOf.apply(item);
+        PersistentTreeMap<Stamp, T> keyEntries = key == null ? null : entries.get(key);
+        if (keyEntries != null) {
+            keyEntries = keyEntries.minus(stamp);
+            entries = keyEntries.isEmpty() ? entries.minus(key) : entries.plus(key, keyEntries);
+        }
+        working = new Root<>(entries, working.all.minus(stamp));
+    }
+
+    public void clear() {
+        working = Root.empty();
+    }
+
+    @Override
+    public void publish() {
+        published = working;
+    }
+
+    // Registros de todas las claves con fecha entre from y to (inclusive); solo recorre los del rango
+    public List<T> between(LocalDate from, LocalDate to) {
+        return range(published.all, from, to);
+    }
+
+    // Fecha más antigua registrada (null si no hay registros con fecha); extremo del árbol, sin recorrer
+    public LocalDate firstDate() {
+        return boundary(false);
+    }
+
+    // Fecha más reciente registrada (null si no hay registros con fecha)
+    public LocalDate lastDate() {
+        return boundary(true);
+    }
+
+    // Todos los registros de la clave, del más antiguo al más reciente
+    public List<T> get(K key) {
+        PersistentTreeMap<Stamp, T> keyEntries = published.entries.get(key);
+        return keyEntries == null ? new ArrayList<>() : keyEntries.values();
+    }
+
+    // Los últimos registros de la clave, del más reciente al más antiguo; solo recorre los que retorna
+    public List<T> latest(K key, int limit) {
+        List<T> result = new ArrayList<>();
+        PersistentTreeMap<Stamp, T> keyEntries = published.entries.get(key);
+        if (keyEntries == null || limit <= 0) {
+            return result;
+        }
+        keyEntries.forEach(null, false, UNDATED, false, true, (stamp, item) -> {
+            result.add(item);
+            return result.size() < limit;
+        });
+        return result;
+    }
+
+    // Registros de la clave con fecha entre from y to (inclusive), en orden de fecha
+    public List<T> between(K key, LocalDate from, LocalDate to) {
+        PersistentTreeMap<Stamp, T> keyEntries = published.entries.get(key);
+        return keyEntries == null ? new ArrayList<>() : range(keyEntries, from, to);
+    }
+
+    // Registros de los días entre from y to (inclusive)
+    private static <T> List<T> range(PersistentTreeMap<Stamp, T> tree, LocalDate from, LocalDate to) {
+        List<T> result = new ArrayList<>();
+        if (!to.isBefore(from)) {
+            tree.forEach(new Stamp(from.atStartOfDay(), Long.MIN_VALUE), true,
+                    new Stamp(to.plusDays(1).atStartOfDay(), Long.MIN_VALUE), false, false, (stamp, item) -> result.add(item));
+        }
+        return result;
+    }
+
+    private LocalDate boundary(boolean last) {
+        LocalDateTime[] result = new LocalDateTime[1];
+        published.all.forEach(null, false, UNDATED, false, last, (stamp, item) -> {
+            result[0] = stamp.dateTime;
+            return false; // Solo el extremo
+        });
+        return result[0] == null ? null : result[0].toLocalDate();
+    }
+
+    // Posición del registro en el árbol; solo recorre los de su misma fecha
+    private static <T> Stamp find(PersistentTreeMap<Stamp, T> tree, LocalDateTime dateTime, T item) {
+        Stamp[] found = new Stamp[1];
+        tree.forEach(new Stamp(dateTime, Long.MIN_VALUE), true, new Stamp(dateTime, Long.MAX_VALUE), true, false, (stamp, candidate) -> {
+            if (candidate == item) {
+                found[0] = stamp;
+                return false;
+            }
+            return true;
+        });
+        return found[0];
+    }
+
+    // Posición de un registro: su fecha y su orden de llegada
+    private static final class Stamp {
+        private final LocalDateTime dateTime; // null = sin fecha
+        private final long arrival;
+
+        private Stamp(LocalDateTime dateTime, long arrival) {
+            this.dateTime = dateTime;
+            this.arrival = arrival;
+        }
+    }
+
+    // Registros de cada clave y árbol con todos los registros, tal como estaban al publicarse
+    private static final class Root<K, T> {
+        private final PersistentHashMap<K, PersistentTreeMap<Stamp, T>> entries;
+        private final PersistentTreeMap<Stamp, T> all;
+
+        private Root(PersistentHashMap<K, PersistentTreeMap<Stamp, T>> entries, PersistentTreeMap<Stamp, T> all) {
+            this.entries = entries;
+            this.all = all;
+        }
+
+        private static <K, T> Root<K, T> empty() {
+            return new Root<>(PersistentHashMap.empty(), PersistentTreeMap.empty(ORDER));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Índice de registros con vigencia (fecha de inicio y de fin, ambas inclusive; ej: membresías).
+ * Mantiene los registros ordenados por fecha de fin para listar los vigentes o los que vencen
+ * pronto recorriendo solo los que terminan después de la fecha consultada, y un árbol de inicios
+ * para contar vigentes sin recorrerlos (cada nodo sabe el tamaño de su subárbol):
+ * vigentes en D = (inicios <= D) - (fines < D), porque todo registro que ya terminó también empezó.
+ * Los árboles son inmutables (ver SnapshotIndex): las consultas leen la última raíz publicada sin locks.
+ * Los registros sin alguna de las dos fechas, o con el fin antes del inicio, no se indexan.
+ */
+public class DateRangeIndex<T> implements SnapshotIndex {
+    // Por día (epoch day) y, en el mismo día, por orden de llegada
+    private static final Comparator<Stamp> ORDER = Comparator.comparingLong((Stamp stamp) -> stamp.day)
+            .thenComparingLong(stamp -> stamp.arrival);
+
+    private final Function<T, LocalDate> startOf;
+    private final Function<T, LocalDate> endOf;
+    private Root<T> working = Root.empty(); // Estado de los escritores
+    private volatile Root<T> published = working; // Lo que ven las consultas
+    private long arrivals; // Orden de llegada, para desempatar registros con la misma fecha
+
+    public DateRangeIndex(Function<T, LocalDate> startOf, Function<T, LocalDate> endOf) {
+        this.startOf = startOf;
+        this.endOf = endOf;
+    }
+
+    public void add(T item) {
+        LocalDate start = startOf.apply(item);
+        LocalDate end = endOf.apply(item);
+        if (start != null && end != null && !end.isBefore(start)) { // Un rango invertido nunca está vigente
+            long arrival = ++arrivals;
+            working = new Root<>(working.byEnd.plus(new Stamp(end.toEpochDay(), arrival), item),
+                    working.starts.plus(new Stamp(start.toEpochDay(), arrival), item));
+        }
+    }
+
+    // Quita el registro (por identidad); debe llamarse antes de cambiar sus fechas
+    public void remove(T item) {
+        LocalDate end = endOf.apply(item);
+        if (end == null) {
+            return;
+        }
+        Stamp[] found = new Stamp[1];
+        long day = end.toEpochDay();
+        working.byEnd.forEach(new Stamp(day, Long.MIN_VALUE), true, new Stamp(day, Long.MAX_VALUE), true, false, (stamp, candidate) -> {
+            if (candidate == item) {
+                found[0] = stamp;
+                return false;
+            }
+            return true;
+        });
+        if (found[0] != null) {
+            working = new Root<>(working.byEnd.minus(found[0]),
+                    working.starts.minus(new Stamp(startOf.apply(item).toEpochDay(), found[0].arrival)));
+        }
+    }
+
+    public void clear() {
+        working = Root.empty();
+    }
+
+    @Override
+    public void publish() {
+        published = working;
+    }
+
+    // Registros vigentes en la fecha, ordenados por fecha de fin
+    public List<T> activeOn(LocalDate date) {
+        return endingBetween(date, date, LocalDate.MAX);
+    }
+
+    // Registros vigentes en la fecha que terminan a más tardar en until, ordenados por fecha de fin
+    public List<T> endingBetween(LocalDate date, LocalDate from, LocalDate until) {
+        List<T> result = new ArrayList<>();
+        if (until.isBefore(from)) {
+            return result;
+        }
+        published.byEnd.forEach(new Stamp(from.toEpochDay(), Long.MIN_VALUE), true,
+                new Stamp(until.toEpochDay(), Long.MAX_VALUE), true, false, (stamp, item) -> {
+                    if (!startOf.apply(item).isAfter(date)) { // Los que aún no empiezan no están vigentes
+                        result.add(item);
+                    }
+                    return true;
+                });
+        return result;
+    }
+
+    // Cantidad de registros vigentes en la fecha, sin recorrerlos
+    public int countActiveOn(LocalDate date) {
+        return countOverlapping(date, date);
+    }
+
+    // Cantidad de registros vigentes en algún día entre from y to (inclusive), sin recorrerlos
+    public int countOverlapping(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return 0;
+        }
+        Root<T> root = published; // Ambos conteos sobre la misma raíz
+        // Se cruzan con el rango los que empiezan a más tardar en to, menos los que ya terminaron antes de from
+        return root.starts.countBelow(new Stamp(to.toEpochDay(), Long.MAX_VALUE), true)
+                - root.byEnd.countBelow(new Stamp(from.toEpochDay(), Long.MIN_VALUE), false);
+    }
+
+    // Posición de un registro: el día y su orden de llegada
+    private static final class Stamp {
+        private final long day; // Epoch day
+        private final long arrival;
+
+        private Stamp(long day, long arrival) {
+            this.day = day;
+            this.arrival = arrival;
+        }
+    }
+
+    // Registros por fecha de fin y por fecha de inicio, tal como estaban al publicarse
+    private static final class Root<T> {
+        private final PersistentTreeMap<Stamp, T> byEnd;
+        private final PersistentTreeMap<Stamp, T> starts;
+
+        private Root(PersistentTreeMap<Stamp, T> byEnd, PersistentTreeMap<Stamp, T> starts) {
+            this.byEnd = byEnd;
+            this.starts = starts;
+        }
+
+        private static <T> Root<T> empty() {
+            return new Root<>(PersistentTreeMap.empty(ORDER), PersistentTreeMap.empty(ORDER));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Confirmación en grupo (group commit) de las escrituras de un dataset.
+ * Cada mutación recibe un número de turno; quien espera su turno y no encuentra una
+ * confirmación en curso se vuelve líder y lleva a disco todo lo aplicado hasta ese momento
+ * (una escritura, un fsync). Las mutaciones que llegan mientras tanto forman el grupo
+ * siguiente, y cada petición solo espera la confirmación que incluye su propio turno.
+ * Usa ReentrantLock y Condition en vez de synchronized y wait(): con hilos virtuales, las peticiones
+ * que esperan al líder se desmontan de su portador en lugar de quedar fijadas a él (pinning).
+ */
+public class GroupCommit {
+    private final long windowNanos; // Tiempo que el líder espera para juntar más mutaciones si hay otras en curso
+    private final Action action;
+    private long issued; // Último turno entregado
+    private long durable; // Último turno que ya está en disco
+    private boolean running; // Hay un líder confirmando
+    private final ReentrantLock lock = new ReentrantLock(); // Protege los turnos y el estado del líder
+    private final Condition confirmed = lock.newCondition(); // Se señala al terminar cada confirmación
+
+    // Lleva a disco todo lo aplicado en memoria hasta el momento en que se llama
+    public interface Action {
+        void commit() throws IOException;
+    }
+
+    public GroupCommit(long windowMs, Action action) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.action = action;
+    }
+
+    // Se llama después de aplicar la mutación en memoria (bajo el mismo lock que la aplicó)
+    public long register() {
+        lock.lock();
+        try {
+            return ++issued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Bloquea hasta que el turno esté en disco; lanza UncheckedIOException si la confirmación falla
+    public void await(long ticket) {
+        lock.lock();
+        try {
+            while (durable < ticket) {
+                if (!running) {
+                    running = true;
+                    break; // Este hilo confirma el grupo
+                }
+                waitForLeader();
+            }
+            if (durable >= ticket) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        lead(ticket);
+    }
+
+    private void lead(long ticket) {
+        Exception failure = null;
+        long upTo = 0;
+        try {
+            if (windowNanos > 0 && hasSiblings(ticket)) {
+                TimeUnit.NANOSECONDS.sleep(windowNanos); // Deja que las peticiones cercanas se sumen al grupo
+            }
+            lock.lock();
+            try {
+                upTo = issued; // Todo lo registrado hasta aquí ya está aplicado en memoria
+            } finally {
+                lock.unlock();
+            }
+            action.commit();
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = new IOException("Confirmación interrumpida", e);
+        } finally {
+            lock.lock();
+            try {
+                running = false;
+                if (failure == null && upTo > durable) {
+                    durable = upTo;
+                }
+                confirmed.signalAll(); // Si falló, otro hilo en espera toma el liderazgo y reintenta
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (failure instanceof IOException) {
+            throw new UncheckedIOException((IOException) failure);
+        } else if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    // Hay otras mutaciones sin confirmar además de la propia; un escritor solo no espera la ventana
+    private boolean hasSiblings(long ticket) {
+        lock.lock();
+        try {
+            return issued > ticket || ticket - durable > 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void waitForLeader() {
+        try {
+            confirmed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Espera de confirmación interrumpida", e));
+        }
+    }
+}
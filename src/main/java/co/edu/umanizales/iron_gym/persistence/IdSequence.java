@@ -0,0 +1,51 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Secuencia de IDs de un dataset con prefijo y ceros a la izquierda (ej: P001, C01, EQ001).
+ * Se siembra una vez al cargar con el último número guardado (Repository.loadSequence) y con
+ * cada ID existente; después cada ID nuevo es un incremento atómico, sin recorrer el dataset
+ * y sin que dos altas simultáneas reciban el mismo número. Al eliminar un registro el servicio
+ * guarda el último número entregado, así un ID eliminado no se vuelve a usar tras reiniciar.
+ */
+public class IdSequence {
+    private final String prefix; // Prefijo del ID (ej: "P"; vacío para las personas)
+    private final String format; // Formato del número con ceros a la izquierda (ej: %03d)
+    private final Pattern pattern; // Prefijo seguido solo de dígitos
+    private final AtomicLong last = new AtomicLong(); // Último número entregado o visto
+
+    public IdSequence(String prefix, int digits) {
+        this.prefix = prefix;
+        this.format = "%0" + digits + "d";
+        this.pattern = Pattern.compile(Pattern.quote(prefix) + "(\\d{1,18})");
+    }
+
+    // Avanza la secuencia al menos hasta value (ej: el último número guardado)
+    public void seed(long value) {
+        last.accumulateAndGet(value, Math::max);
+    }
+
+    // Avanza la secuencia hasta el número del ID si sigue el formato (IDs cargados o enviados por el cliente)
+    public void observe(String id) {
+        if (id == null) {
+            return;
+        }
+        Matcher matcher = pattern.matcher(id);
+        if (matcher.matches()) {
+            seed(Long.parseLong(matcher.group(1)));
+        }
+    }
+
+    // Siguiente ID del dataset
+    public String next() {
+        return prefix + String.format(format, last.incrementAndGet());
+    }
+
+    // Último número entregado o visto
+    public long current() {
+        return last.get();
+    }
+}
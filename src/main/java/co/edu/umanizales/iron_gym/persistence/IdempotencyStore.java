@@ -0,0 +1,158 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Respuestas ya entregadas por Idempotency-Key, para que el reintento de una petición (ej: un
+ * datáfono que reenvía POST /api/payments tras un timeout) reciba el resultado original sin volver
+ * a validar ni a escribir. Cada clave vence ttl después de registrarse y se guardan a lo sumo
+ * maxKeys (al llenarse se descarta la más antigua). Como todas duran lo mismo, el orden de
+ * registro es también el orden de vencimiento: ambos recortes salen por la cabeza de una cola, O(1).
+ * find no toma locks (mapa concurrente), así los reintentos no esperan a las altas en curso;
+ * register, restore y compact se llaman bajo el lock del servicio, junto con el alta.
+ * La clave queda asociada a una huella del cuerpo: reutilizarla con otro cuerpo es un error
+ * (KeyReused), no un reintento.
+ */
+public class IdempotencyStore<T> {
+    private static final Pattern VALID_KEY = Pattern.compile("[A-Za-z0-9._:-]{1,64}"); // Ej: un UUID
+
+    private final long ttlMs;
+    private final int maxKeys;
+    private final Map<String, Entry<T>> entries = new ConcurrentHashMap<>(); // Lecturas sin bloqueo
+    private final ArrayDeque<Entry<T>> order = new ArrayDeque<>(); // En orden de vencimiento; solo bajo el lock
+    private int stored; // Entradas en el almacenamiento (incluye las que ya no están vigentes)
+
+    public IdempotencyStore(long ttlMs, int maxKeys) {
+        this.ttlMs = ttlMs;
+        this.maxKeys = maxKeys;
+    }
+
+    // Las claves van en una línea CSV: sin comas ni espacios
+    public static boolean isValidKey(String key) {
+        return key != null && VALID_KEY.matcher(key).matches();
+    }
+
+    // Respuesta vigente para la clave (null si es nueva o venció); lanza KeyReused si llegó con otro cuerpo
+    public Entry<T> find(String key, String fingerprint) {
+        Entry<T> entry = entries.get(key);
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+        if (!entry.fingerprint.equals(fingerprint)) {
+            throw new KeyReused(key);
+        }
+        return entry;
+    }
+
+    // Registra la respuesta de una petición nueva; la entrada se guarda con el registro que creó
+    public Entry<T> register(String key, String fingerprint, T response) {
+        long now = System.currentTimeMillis();
+        trim(now, maxKeys - 1);
+        Entry<T> entry = new Entry<>(key, fingerprint, now + ttlMs, response);
+        entries.put(key, entry);
+        order.addLast(entry);
+        stored++;
+        return entry;
+    }
+
+    // Entradas leídas del almacenamiento al arrancar; las vencidas se descartan
+    public void restore(Collection<Entry<T>> saved) {
+        List<Entry<T>> sorted = new ArrayList<>(saved);
+        sorted.sort(Comparator.comparingLong(Entry::getExpiresAt)); // MVStore las entrega en orden de clave
+        for (Entry<T> entry : sorted) {
+            entries.put(entry.key, entry); // Una clave reutilizada tras vencer: queda la más reciente
+            order.addLast(entry);
+        }
+        stored += saved.size();
+        trim(System.currentTimeMillis(), maxKeys);
+    }
+
+    // Entradas guardadas que ya no están vigentes (vencidas, desalojadas o reemplazadas)
+    public int deadEntries() {
+        return stored - entries.size();
+    }
+
+    // Entradas vigentes en orden de vencimiento; el almacenamiento debe quedar solo con ellas
+    public List<Entry<T>> compact() {
+        trim(System.currentTimeMillis(), maxKeys);
+        stored = entries.size();
+        return new ArrayList<>(order);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Descarta por la cabeza las vencidas y, si hace falta, las más antiguas hasta dejar a lo sumo limit
+    private void trim(long now, int limit) {
+        while (!order.isEmpty() && (order.peekFirst().expiresAt <= now || entries.size() > limit)) {
+            Entry<T> oldest = order.pollFirst();
+            entries.remove(oldest.key, oldest); // Solo si la clave no se volvió a registrar después
+        }
+    }
+
+    // Línea guardada: clave, vencimiento (epoch ms), huella y la fila CSV de la respuesta
+    public static <T> String toLine(Entry<T> entry, String row) {
+        return entry.key + "," + entry.expiresAt + "," + entry.fingerprint + "," + row;
+    }
+
+    // null si la línea está incompleta (ej: corte a mitad de escritura)
+    public static <T> Entry<T> fromLine(String line, RowCodec<T> codec) {
+        int first = line.indexOf(',');
+        int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+        int third = second < 0 ? -1 : line.indexOf(',', second + 1);
+        if (third < 0) {
+            return null;
+        }
+        try {
+            T response = codec.fromRow(CsvRow.parse(line.substring(third + 1)));
+            if (response == null) {
+                return null;
+            }
+            return new Entry<>(line.substring(0, first), line.substring(second + 1, third),
+                    Long.parseLong(line.substring(first + 1, second)), response);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    public static final class Entry<T> {
+        private final String key;
+        private final String fingerprint; // Huella del cuerpo de la petición original
+        private final long expiresAt;
+        private final T response; // Registro que se entregó (ej: el pago creado)
+
+        private Entry(String key, String fingerprint, long expiresAt, T response) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+            this.response = response;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public T getResponse() {
+            return response;
+        }
+    }
+
+    // La clave ya se usó con un cuerpo distinto: no es un reintento de la misma petición
+    public static class KeyReused extends IllegalStateException {
+        public KeyReused(String key) {
+            super("La Idempotency-Key " + key + " ya se usó con otro pago");
+        }
+    }
+}
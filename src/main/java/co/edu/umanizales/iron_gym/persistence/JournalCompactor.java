@@ -0,0 +1,162 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy; // Para plegar los diarios al apagar la aplicación
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value; // Para leer la configuración desde application.properties
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compactación en segundo plano de los datasets con diario (CsvJournal).
+ * Cuando el diario supera la cantidad de registros o de bytes configurada, un hilo aparte
+ * toma una copia del dataset, rota el diario y escribe el snapshot nuevo; las escrituras
+ * siguen en el diario vacío mientras tanto. Así la reproducción al arrancar queda acotada.
+ */
+@Component
+public class JournalCompactor {
+    private static final Logger log = LoggerFactory.getLogger(JournalCompactor.class);
+    private final Map<String, Dataset> datasets = new LinkedHashMap<>(); // Datasets registrados por nombre
+    private final ExecutorService executor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${persistence.compaction.max-records:500}")
+    private int maxRecords; // Registros en el diario que disparan la compactación
+    @Value("${persistence.compaction.max-bytes:1048576}")
+    private long maxBytes; // Tamaño del diario que dispara la compactación
+
+    public JournalCompactor(MeterRegistry meterRegistry,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.meterRegistry = meterRegistry;
+        this.executor = Executors.newSingleThreadExecutor(VirtualThreads.factory("journal-compactor", virtualThreads));
+    }
+
+    // Toma una copia del dataset y rota el diario (bajo el lock del servicio); retorna la escritura del snapshot
+    public interface Snapshot {
+        Runnable capture();
+    }
+
+    public synchronized void register(String name, CsvJournal journal, Snapshot snapshot) {
+        datasets.put(name, new Dataset(name, journal, snapshot));
+    }
+
+    // Se llama después de anexar al diario: programa la compactación si superó algún umbral
+    public void check(String name) {
+        Dataset dataset = get(name);
+        if (dataset.journal.size() < maxRecords && dataset.journal.sizeInBytes() < maxBytes) {
+            return;
+        }
+        if (dataset.running.compareAndSet(false, true)) { // Una sola compactación a la vez por dataset
+            try {
+                executor.execute(() -> {
+                    try {
+                        compact(dataset);
+                    } finally {
+                        dataset.running.set(false);
+                    }
+                });
+            } catch (RuntimeException e) { // Ejecutor detenido: al apagar se compacta en shutdown()
+                dataset.running.set(false);
+            }
+        }
+    }
+
+    // Espera a que terminen las compactaciones ya programadas (ej: antes de leer los archivos desde otro repositorio)
+    public void awaitPending() throws InterruptedException, ExecutionException {
+        executor.submit(() -> {
+        }).get(); // Un solo hilo: la tarea vacía corre después de las pendientes
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Dataset dataset : snapshot()) {
+            if (dataset.journal.size() > 0) {
+                compact(dataset); // Arranque siguiente sin diario que reproducir
+            }
+            dataset.journal.close();
+        }
+    }
+
+    private void compact(Dataset dataset) {
+        long start = System.nanoTime();
+        try {
+            Runnable write = dataset.snapshot.capture(); // Rápido: copia en memoria y renombre del diario
+            write.run(); // Lento: escribe el snapshot sin bloquear a los escritores
+            dataset.journal.discardRotated();
+            long elapsed = System.nanoTime() - start;
+            dataset.timer.record(elapsed, TimeUnit.NANOSECONDS);
+            dataset.lastDurationMs.set(TimeUnit.NANOSECONDS.toMillis(elapsed));
+            dataset.lastCompactedAt.set(System.currentTimeMillis());
+        } catch (RuntimeException e) { // El .old se conserva y se reintenta en la próxima compactación
+            log.error("Falló la compactación del dataset {}; se reintenta en la próxima", dataset.name, e);
+        }
+    }
+
+    private synchronized Dataset get(String name) {
+        Dataset dataset = datasets.get(name);
+        if (dataset == null) {
+            throw new IllegalStateException("Dataset no registrado: " + name);
+        }
+        return dataset;
+    }
+
+    private synchronized Dataset[] snapshot() {
+        return datasets.values().toArray(new Dataset[0]);
+    }
+
+    // Estado y métricas de un dataset registrado
+    private class Dataset {
+        private final String name;
+        private final CsvJournal journal;
+        private final Snapshot snapshot;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final AtomicLong lastDurationMs = new AtomicLong();
+        private final AtomicLong lastCompactedAt = new AtomicLong(System.currentTimeMillis());
+        private final Timer timer;
+
+        private Dataset(String name, CsvJournal journal, Snapshot snapshot) {
+            this.name = name;
+            this.journal = journal;
+            this.snapshot = snapshot;
+            this.timer = Timer.builder("iron_gym.persistence.compaction")
+                    .description("Compactaciones del diario en un snapshot")
+                    .tag("dataset", name)
+                    .register(meterRegistry);
+            Gauge.builder("iron_gym.persistence.compaction.lag.records", journal, CsvJournal::size)
+                    .description("Registros del diario aún no plegados en un snapshot")
+                    .tag("dataset", name)
+                    .register(meterRegistry);
+            Gauge.builder("iron_gym.persistence.compaction.lag.bytes", journal, CsvJournal::sizeInBytes)
+                    .description("Bytes del diario aún no plegados en un snapshot")
+                    .tag("dataset", name)
+                    .register(meterRegistry);
+            Gauge.builder("iron_gym.persistence.compaction.lag.seconds", lastCompactedAt,
+                            at -> (System.currentTimeMillis() - at.get()) / 1000.0)
+                    .description("Segundos desde la última compactación terminada")
+                    .tag("dataset", name)
+                    .register(meterRegistry);
+            Gauge.builder("iron_gym.persistence.compaction.last.duration", lastDurationMs, AtomicLong::get)
+                    .description("Duración en milisegundos de la última compactación")
+                    .tag("dataset", name)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lector de CSV que mapea el archivo en memoria con FileChannel.map.
+ * Recorre los bytes buscando comas y saltos de línea y entrega cada fila como una
+ * vista reutilizable (CsvRow), de modo que cargar millones de filas no genera basura.
+ */
+public final class MappedCsvReader {
+    private static final long CHUNK_SIZE = 256L * 1024 * 1024; // Tamaño máximo de cada región mapeada
+
+    private MappedCsvReader() {
+    }
+
+    // Receptor de cada fila; la vista se reutiliza, no debe guardarse fuera de la llamada
+    public interface RowHandler {
+        void onRow(CsvRow row);
+    }
+
+    // Lee el archivo saltando la cabecera; no hace nada si el archivo no existe
+    public static void read(String path, RowHandler handler) throws IOException {
+        File file = new File(path);
+        if (!file.exists()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            CsvRow row = new CsvRow();
+            boolean header = true;
+            long position = 0;
+            while (position < fileSize) {
+                long length = Math.min(CHUNK_SIZE, fileSize - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean lastChunk = position + length >= fileSize;
+                int lineStart = 0;
+                int limit = (int) length;
+                for (int i = 0; i < limit; i++) {
+                    if (buffer.get(i) == '\n') {
+                        if (header) {
+                            header = false;
+                        } else if (i > lineStart) {
+                            row.reset(buffer, lineStart, i);
+                            handler.onRow(row);
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                if (lastChunk) {
+                    if (lineStart < limit && !header) { // Última línea sin salto de línea final
+                        row.reset(buffer, lineStart, limit);
+                        handler.onRow(row);
+                    }
+                    break;
+                }
+                if (lineStart == 0) {
+                    throw new IOException("Línea demasiado larga en " + path);
+                }
+                position += lineStart; // La línea incompleta se vuelve a mapear en la siguiente región
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Partición mensual de un dataset con fecha.
+ * Guarda en memoria los registros agrupados por mes para que las consultas por rango
+ * solo recorran los meses que se cruzan con él. Los meses anteriores al actual quedan
+ * cerrados: no aceptan cambios, así sus archivos (ej: data/payments-2025-11.csv, ver
+ * CsvRepository) no se vuelven a escribir. Los registros sin fecha van en un segmento aparte.
+ * Los segmentos son árboles inmutables (ver SnapshotIndex): las consultas leen la última raíz
+ * publicada sin locks y un cambio solo copia el camino a su mes.
+ */
+public class MonthlySegments<T> implements SnapshotIndex {
+    public static final String UNDATED = "undated"; // Segmento de los registros sin fecha
+
+    private final Function<T, LocalDateTime> dateOf; // Fecha que define el mes de cada registro
+    private PersistentTreeMap<String, PersistentTreeMap<Long, T>> segments = PersistentTreeMap.empty(); // Registros por mes (yyyy-MM), en orden de llegada
+    private volatile PersistentTreeMap<String, PersistentTreeMap<Long, T>> published = segments; // Lo que ven las consultas
+    private long arrivals; // Orden de llegada dentro de cada mes
+
+    public MonthlySegments(Function<T, LocalDateTime> dateOf) {
+        this.dateOf = dateOf;
+    }
+
+    // Mes (yyyy-MM) al que pertenece una fecha
+    public static String keyOf(LocalDateTime dateTime) {
+        return dateTime == null ? UNDATED : YearMonth.from(dateTime).toString();
+    }
+
+    public String keyOfItem(T item) {
+        return keyOf(dateOf.apply(item));
+    }
+
+    // Un mes está cerrado cuando ya pasó; los registros sin fecha y los meses futuros siguen abiertos
+    public boolean isClosed(String key) {
+        return !UNDATED.equals(key) && YearMonth.parse(key).isBefore(YearMonth.now());
+    }
+
+    // Lanza IllegalArgumentException si el registro pertenece a un mes cerrado
+    public void checkWritable(T item) {
+        String key = keyOfItem(item);
+        if (isClosed(key)) {
+            throw new IllegalArgumentException("El mes " + key + " está cerrado; solo se pueden modificar registros del mes actual");
+        }
+    }
+
+    public void add(T item) {
+        String key = keyOfItem(item);
+        PersistentTreeMap<Long, T> segment = segments.get(key);
+        segments = segments.plus(key, (segment != null ? segment : PersistentTreeMap.<Long, T>empty()).plus(++arrivals, item));
+    }
+
+    // Quita el registro (por identidad) de su mes
+    public void remove(T item) {
+        String key = keyOfItem(item);
+        PersistentTreeMap<Long, T> segment = segments.get(key);
+        if (segment == null) {
+            return;
+        }
+        Long[] found = new Long[1];
+        segment.forEach(null, false, null, false, false, (arrival, candidate) -> {
+            if (candidate == item) {
+                found[0] = arrival;
+                return false;
+            }
+            return true;
+        });
+        if (found[0] != null) {
+            segment = segment.minus(found[0]);
+            segments = segment.isEmpty() ? segments.minus(key) : segments.plus(key, segment);
+        }
+    }
+
+    public void clear() {
+        segments = PersistentTreeMap.empty();
+    }
+
+    @Override
+    public void publish() {
+        published = segments;
+    }
+
+    // Registros cuya fecha está entre from y to (inclusive), recorriendo solo los meses que se cruzan
+    public List<T> between(LocalDate from, LocalDate to) {
+        List<T> result = new ArrayList<>();
+        String fromKey = YearMonth.from(from).toString();
+        String toKey = YearMonth.from(to).toString();
+        published.forEach(fromKey, true, toKey, true, false, (key, segment) -> {
+            segment.forEach(null, false, null, false, false, (arrival, item) -> {
+                LocalDate date = dateOf.apply(item).toLocalDate();
+                if (!date.isBefore(from) && !date.isAfter(to)) {
+                    result.add(item);
+                }
+                return true;
+            });
+            return true;
+        });
+        return result;
+    }
+
+    // Fecha más antigua (first=true) o más reciente; solo recorre el primer o el último mes con registros
+    public LocalDate boundary(boolean first) {
+        LocalDate[] result = new LocalDate[1];
+        published.forEach(null, false, UNDATED, false, !first, (key, segment) -> {
+            segment.forEach(null, false, null, false, false, (arrival, item) -> {
+                LocalDate date = dateOf.apply(item).toLocalDate();
+                if (result[0] == null || (first ? date.isBefore(result[0]) : date.isAfter(result[0]))) {
+                    result[0] = date;
+                }
+                return true;
+            });
+            return result[0] == null; // Se detiene en el primer mes con registros
+        });
+        return result[0];
+    }
+}
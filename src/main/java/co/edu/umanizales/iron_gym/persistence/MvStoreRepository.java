@@ -0,0 +1,147 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Motor embebido MVStore (el almacenamiento de H2) en un archivo local, sin servidor.
+ * Cada dataset es un mapa ordenado ID -> fila CSV dentro del mismo archivo; cada escritura
+ * toca solo las páginas del registro, sin reescribir el dataset. Las escrituras cercanas se
+ * confirman juntas con un solo commit y un fsync (GroupCommit).
+ * La primera vez que se abre un dataset se importan los datos que tenga en CSV.
+ */
+public class MvStoreRepository<T> implements Repository<T, String> {
+    private static final Logger log = LoggerFactory.getLogger(MvStoreRepository.class);
+    private static final String META = "iron_gym.meta"; // Mapa con los datasets ya importados
+
+    private final MVStore store;
+    private final DatasetSpec<T> spec;
+    private final RowCodec<T> codec;
+    private final MVMap<String, String> map;
+    private final GroupCommit groupCommit;
+
+    public MvStoreRepository(MVStore store, DatasetSpec<T> spec, long groupCommitWindowMs) {
+        this.store = store;
+        this.spec = spec;
+        this.codec = spec.getCodec();
+        this.map = store.openMap(spec.getName());
+        this.groupCommit = new GroupCommit(groupCommitWindowMs, () -> {
+            store.commit();
+            store.sync(); // El commit solo llega al sistema operativo; sync lo fuerza a disco
+        });
+    }
+
+    @Override
+    public void loadAll(Consumer<T> sink) {
+        importFromCsv();
+        for (Map.Entry<String, String> entry : map.entrySet()) { // En orden de ID
+            T item = codec.fromRow(CsvRow.parse(entry.getValue()));
+            if (item != null) {
+                sink.accept(item);
+            }
+        }
+    }
+
+    @Override
+    public void save(T entity) {
+        String id = codec.idOf(entity);
+        if (id == null) {
+            return; // Sin ID no hay clave; en CSV la fila tampoco se vuelve a cargar
+        }
+        map.put(id, codec.toRow(entity));
+        PendingCommits.add(groupCommit, groupCommit.register()); // Se confirma con las demás escrituras del grupo
+    }
+
+    // La clave va en el mapa "<dataset>.keys" y se confirma en el mismo commit que el registro
+    @Override
+    public void save(T entity, IdempotencyStore.Entry<T> key) {
+        String id = codec.idOf(entity);
+        if (id == null) {
+            return;
+        }
+        String row = codec.toRow(entity);
+        map.put(id, row);
+        if (key != null) {
+            keysMap().put(key.getKey(), IdempotencyStore.toLine(key, row)); // La respuesta es el registro guardado
+        }
+        PendingCommits.add(groupCommit, groupCommit.register());
+    }
+
+    @Override
+    public void loadIdempotencyKeys(Consumer<IdempotencyStore.Entry<T>> sink) {
+        for (String line : keysMap().values()) {
+            IdempotencyStore.Entry<T> entry = IdempotencyStore.fromLine(line, codec);
+            if (entry != null) {
+                sink.accept(entry);
+            }
+        }
+    }
+
+    // Sin confirmación propia: las claves descartadas que reaparezcan tras un corte ya vencieron o se vuelven a descartar
+    @Override
+    public void retainIdempotencyKeys(Collection<IdempotencyStore.Entry<T>> live) {
+        Set<String> liveKeys = new HashSet<>();
+        for (IdempotencyStore.Entry<T> entry : live) {
+            liveKeys.add(entry.getKey());
+        }
+        keysMap().keySet().removeIf(key -> !liveKeys.contains(key));
+    }
+
+    private MVMap<String, String> keysMap() {
+        return store.openMap(spec.getName() + ".keys"); // Se crea solo si el dataset usa claves de idempotencia
+    }
+
+    @Override
+    public void deleteById(String id) {
+        if (map.remove(id) != null) {
+            PendingCommits.add(groupCommit, groupCommit.register());
+        }
+    }
+
+    @Override
+    public long loadSequence() {
+        String value = store.<String, String>openMap(META).get(sequenceKey());
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    // Se confirma con las demás escrituras del grupo, como la eliminación que la motiva
+    @Override
+    public void saveSequence(long value) {
+        store.<String, String>openMap(META).put(sequenceKey(), Long.toString(value));
+        PendingCommits.add(groupCommit, groupCommit.register());
+    }
+
+    private String sequenceKey() {
+        return spec.getName() + ".seq";
+    }
+
+    @Override
+    public void flush() {
+        store.commit();
+    }
+
+    // Copia el dataset desde sus archivos CSV (segmentos, diario y binarios incluidos) una sola vez
+    private synchronized void importFromCsv() {
+        MVMap<String, String> meta = store.openMap(META);
+        if (meta.containsKey(spec.getName())) {
+            return;
+        }
+        int[] count = {0};
+        new CsvRepository<>(spec).loadAll(item -> {
+            map.putIfAbsent(codec.idOf(item), codec.toRow(item));
+            count[0]++;
+        });
+        meta.put(spec.getName(), LocalDateTime.now().toString());
+        store.commit();
+        log.info("Dataset {} importado desde CSV a MVStore ({} registros)", spec.getName(), count[0]);
+    }
+}
@@ -0,0 +1,40 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Turnos de confirmación pendientes del hilo actual (uno por dataset modificado).
+ * Los repositorios los anotan al escribir, bajo el lock del servicio; la respuesta HTTP
+ * espera después, fuera de los locks, a que cada turno esté en disco (ver DurableResponseFilter).
+ */
+public final class PendingCommits {
+    private static final ThreadLocal<Map<GroupCommit, Long>> PENDING = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    private PendingCommits() {
+    }
+
+    static void add(GroupCommit commit, long ticket) {
+        PENDING.get().merge(commit, ticket, Math::max); // Basta con el último turno de cada dataset
+    }
+
+    // Espera a que todas las escrituras de este hilo estén en disco
+    public static void awaitAll() {
+        Map<GroupCommit, Long> pending = PENDING.get();
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            for (Map.Entry<GroupCommit, Long> entry : pending.entrySet()) {
+                entry.getKey().await(entry.getValue());
+            }
+        } finally {
+            pending.clear();
+        }
+    }
+
+    // Olvida los turnos del hilo sin esperarlos (ej: la petición terminó con error)
+    public static void clear() {
+        PENDING.get().clear();
+    }
+}
@@ -0,0 +1,276 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.util.function.BiConsumer;
+
+/**
+ * Mapa hash inmutable (trie de 32 ramas indexado por los bits del hash) para los índices que se
+ * leen sin bloqueo. plus y minus retornan un mapa nuevo que comparte con el anterior todo menos
+ * los nodos del camino a la clave cambiada (a lo sumo 7 niveles), así una escritura no copia el
+ * mapa completo y publicarlo es solo cambiar una referencia. Las búsquedas siguen siendo O(1) en la
+ * práctica. No admite claves ni valores null.
+ */
+public final class PersistentHashMap<K, V> {
+    private static final PersistentHashMap<Object, Object> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+    private static final Object MISSING = new Object(); // Resultado de find cuando la clave no está
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Valor de la clave (null si no está)
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Object value = root.find(0, hash(key), key);
+        return value == MISSING ? null : (V) value;
+    }
+
+    public boolean containsKey(Object key) {
+        return root.find(0, hash(key), key) != MISSING;
+    }
+
+    // Mapa con la clave asociada al valor (reemplaza el anterior)
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("PersistentHashMap no admite claves ni valores null");
+        }
+        boolean[] added = new boolean[1];
+        Node newRoot = root.plus(0, hash(key), key, value, added);
+        return newRoot == root ? this : new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    // Mapa sin la clave (el mismo si no estaba)
+    public PersistentHashMap<K, V> minus(Object key) {
+        Node newRoot = root.minus(0, hash(key), key);
+        if (newRoot == root) {
+            return this;
+        }
+        return size == 1 ? empty() : new PersistentHashMap<>(newRoot == null ? BitmapNode.EMPTY : newRoot, size - 1);
+    }
+
+    // Recorre todas las entradas (sin un orden definido)
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    private static int hash(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    private interface Node {
+        Object find(int shift, int hash, Object key);
+
+        Node plus(int shift, int hash, Object key, Object value, boolean[] added);
+
+        Node minus(int shift, int hash, Object key); // null si el nodo queda vacío
+
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    // Nodo con a lo sumo 32 ramas; cada rama ocupada es una entrada (clave, valor) o un subnodo (null, nodo)
+    private static final class BitmapNode implements Node {
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap; // Ramas ocupadas
+        private final Object[] array; // Dos casillas por rama ocupada, en orden de rama
+
+        private BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return MISSING;
+            }
+            int i = index(bit);
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null) {
+                return ((Node) v).find(shift + 5, hash, key);
+            }
+            return key.equals(k) ? v : MISSING;
+        }
+
+        @Override
+        public Node plus(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bit(hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[array.length + 2];
+                System.arraycopy(array, 0, copy, 0, 2 * i);
+                copy[2 * i] = key;
+                copy[2 * i + 1] = value;
+                System.arraycopy(array, 2 * i, copy, 2 * i + 2, array.length - 2 * i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, copy);
+            }
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null) {
+                Node child = ((Node) v).plus(shift + 5, hash, key, value, added);
+                return child == v ? this : with(i, null, child);
+            }
+            if (key.equals(k)) {
+                return v == value ? this : with(i, k, value);
+            }
+            added[0] = true; // Otra clave en la misma rama: ambas bajan a un subnodo
+            return with(i, null, pair(shift + 5, k, v, hash, key, value));
+        }
+
+        @Override
+        public Node minus(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = index(bit);
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null) {
+                Node child = ((Node) v).minus(shift + 5, hash, key);
+                if (child == v) {
+                    return this;
+                }
+                return child != null ? with(i, null, child) : without(bit, i);
+            }
+            return key.equals(k) ? without(bit, i) : this;
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+
+        private BitmapNode with(int i, Object key, Object value) {
+            Object[] copy = array.clone();
+            copy[2 * i] = key;
+            copy[2 * i + 1] = value;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        private BitmapNode without(int bit, int i) {
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, 2 * i);
+            System.arraycopy(array, 2 * i + 2, copy, 2 * i, array.length - 2 * i - 2);
+            return new BitmapNode(bitmap ^ bit, copy);
+        }
+
+        // Subnodo con dos entradas de la misma rama
+        private static Node pair(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+            }
+            boolean[] ignored = new boolean[1];
+            return EMPTY.plus(shift, hash1, key1, value1, ignored).plus(shift, hash2, key2, value2, ignored);
+        }
+    }
+
+    // Claves distintas con el mismo hash completo: lista de entradas
+    private static final class CollisionNode implements Node {
+        private final int hash;
+        private final Object[] array;
+
+        private CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            return i < 0 ? MISSING : array[i + 1];
+        }
+
+        @Override
+        public Node plus(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) { // Se separan en un nodo por ramas
+                return new BitmapNode(bit(this.hash, shift), new Object[]{null, this}).plus(shift, hash, key, value, added);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                Object[] copy = array.clone();
+                copy[i + 1] = value;
+                return new CollisionNode(hash, copy);
+            }
+            Object[] copy = new Object[array.length + 2];
+            System.arraycopy(array, 0, copy, 0, array.length);
+            copy[array.length] = key;
+            copy[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        public Node minus(int shift, int hash, Object key) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+}
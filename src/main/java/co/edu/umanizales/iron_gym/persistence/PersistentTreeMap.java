@@ -0,0 +1,223 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+/**
+ * Mapa ordenado inmutable (árbol AVL) para los índices que se leen sin bloqueo.
+ * plus y minus no modifican el mapa: retornan uno nuevo que comparte con el anterior todo
+ * menos el camino de la raíz al nodo cambiado (O(log n) nodos nuevos), así publicar un índice
+ * después de una escritura es solo cambiar una referencia. Cada nodo guarda el tamaño de su
+ * subárbol para contar las claves menores que un valor sin recorrerlas.
+ */
+public final class PersistentTreeMap<K, V> {
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> root;
+
+    private PersistentTreeMap(Comparator<? super K> comparator, Node<K, V> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    public static <K extends Comparable<? super K>, V> PersistentTreeMap<K, V> empty() {
+        return new PersistentTreeMap<>(Comparator.naturalOrder(), null);
+    }
+
+    public static <K, V> PersistentTreeMap<K, V> empty(Comparator<? super K> comparator) {
+        return new PersistentTreeMap<>(comparator, null);
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    // Valor de la clave (null si no está)
+    public V get(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int c = comparator.compare(key, node.key);
+            if (c == 0) {
+                return node.value;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    // Mapa con la clave asociada al valor (reemplaza el anterior)
+    public PersistentTreeMap<K, V> plus(K key, V value) {
+        Node<K, V> newRoot = insert(root, key, value);
+        return newRoot == root ? this : new PersistentTreeMap<>(comparator, newRoot);
+    }
+
+    // Mapa sin la clave (el mismo si no estaba)
+    public PersistentTreeMap<K, V> minus(K key) {
+        Node<K, V> newRoot = delete(root, key);
+        return newRoot == root ? this : new PersistentTreeMap<>(comparator, newRoot);
+    }
+
+    // Cantidad de claves menores que key (o menores o iguales si inclusive); O(log n)
+    public int countBelow(K key, boolean inclusive) {
+        int count = 0;
+        Node<K, V> node = root;
+        while (node != null) {
+            int c = comparator.compare(key, node.key);
+            if (c < 0 || (c == 0 && !inclusive)) {
+                node = node.left;
+            } else {
+                count += size(node.left) + 1;
+                node = c == 0 ? null : node.right;
+            }
+        }
+        return count;
+    }
+
+    // Recorre en orden de clave (o en orden inverso) las entradas entre from y to (null = sin límite);
+    // el visitante retorna false para detenerse. Solo baja por los subárboles que se cruzan con el rango
+    public void forEach(K from, boolean fromInclusive, K to, boolean toInclusive, boolean descending,
+                        BiPredicate<? super K, ? super V> visitor) {
+        visit(root, from, fromInclusive, to, toInclusive, descending, visitor);
+    }
+
+    // Todos los valores en orden de clave
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size());
+        forEach(null, false, null, false, false, (key, value) -> result.add(value));
+        return result;
+    }
+
+    private boolean visit(Node<K, V> node, K from, boolean fromInclusive, K to, boolean toInclusive, boolean descending,
+                          BiPredicate<? super K, ? super V> visitor) {
+        if (node == null) {
+            return true;
+        }
+        int fromCompare = from == null ? 1 : comparator.compare(node.key, from);
+        int toCompare = to == null ? -1 : comparator.compare(node.key, to);
+        boolean afterFrom = fromCompare > 0 || (fromCompare == 0 && fromInclusive);
+        boolean beforeTo = toCompare < 0 || (toCompare == 0 && toInclusive);
+        boolean lowSide = fromCompare > 0; // Puede haber claves del rango a la izquierda
+        boolean highSide = toCompare < 0; // Puede haber claves del rango a la derecha
+        if (!descending) {
+            if (lowSide && !visit(node.left, from, fromInclusive, to, toInclusive, false, visitor)) {
+                return false;
+            }
+            if (afterFrom && beforeTo && !visitor.test(node.key, node.value)) {
+                return false;
+            }
+            return !highSide || visit(node.right, from, fromInclusive, to, toInclusive, false, visitor);
+        }
+        if (highSide && !visit(node.right, from, fromInclusive, to, toInclusive, true, visitor)) {
+            return false;
+        }
+        if (afterFrom && beforeTo && !visitor.test(node.key, node.value)) {
+            return false;
+        }
+        return !lowSide || visit(node.left, from, fromInclusive, to, toInclusive, true, visitor);
+    }
+
+    private Node<K, V> insert(Node<K, V> node, K key, V value) {
+        if (node == null) {
+            return new Node<>(key, value, null, null);
+        }
+        int c = comparator.compare(key, node.key);
+        if (c == 0) {
+            return node.value == value ? node : new Node<>(node.key, value, node.left, node.right);
+        }
+        if (c < 0) {
+            Node<K, V> left = insert(node.left, key, value);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        }
+        Node<K, V> right = insert(node.right, key, value);
+        return right == node.right ? node : balance(node.key, node.value, node.left, right);
+    }
+
+    private Node<K, V> delete(Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+        int c = comparator.compare(key, node.key);
+        if (c < 0) {
+            Node<K, V> left = delete(node.left, key);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        }
+        if (c > 0) {
+            Node<K, V> right = delete(node.right, key);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node<K, V> next = node.right; // El sucesor ocupa el lugar del nodo eliminado
+        while (next.left != null) {
+            next = next.left;
+        }
+        return balance(next.key, next.value, node.left, deleteFirst(node.right));
+    }
+
+    private static <K, V> Node<K, V> deleteFirst(Node<K, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.key, node.value, deleteFirst(node.left), node.right);
+    }
+
+    // Nodo con sus hijos; si las alturas difieren en 2 (tras un solo cambio) lo equilibra con una rotación
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+            }
+            Node<K, V> pivot = left.right;
+            return new Node<>(pivot.key, pivot.value,
+                    new Node<>(left.key, left.value, left.left, pivot.left),
+                    new Node<>(key, value, pivot.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+            }
+            Node<K, V> pivot = right.left;
+            return new Node<>(pivot.key, pivot.value,
+                    new Node<>(key, value, left, pivot.left),
+                    new Node<>(right.key, right.value, pivot.right, right.right));
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+        private final int height;
+        private final int size; // Nodos del subárbol, para countBelow
+
+        private Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+}
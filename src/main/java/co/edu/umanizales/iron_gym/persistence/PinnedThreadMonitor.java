@@ -0,0 +1,84 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Vigila el pinning cuando la aplicación corre con hilos virtuales (spring.threads.virtual.enabled).
+ * Un hilo virtual que se bloquea dentro de un synchronized queda fijado a su hilo portador y lo
+ * ocupa mientras tanto (hasta Java 23). Con un stream de JFR sobre el evento jdk.VirtualThreadPinned,
+ * cada bloqueo más largo que el umbral se cuenta en iron_gym.virtual_threads.pinned y se muestra con
+ * los primeros marcos de su pila, para encontrar el synchronized que lo causó.
+ */
+@Component
+public class PinnedThreadMonitor {
+    private static final Logger log = LoggerFactory.getLogger(PinnedThreadMonitor.class);
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final int FRAMES = 6; // Marcos de la pila que se muestran por evento
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+    @Value("${virtual-threads.pinned-threshold-ms:20}")
+    private long thresholdMs; // Duración mínima del bloqueo fijado para reportarlo
+    @Autowired
+    private MeterRegistry meterRegistry;
+    private RecordingStream stream;
+
+    @PostConstruct
+    public void start() {
+        if (!virtualThreads) {
+            return;
+        }
+        if (!VirtualThreads.isSupported()) {
+            log.warn("spring.threads.virtual.enabled=true pero Java {} no tiene hilos virtuales; se usan hilos de plataforma",
+                    Runtime.version().feature());
+            return;
+        }
+        Counter pinned = Counter.builder("iron_gym.virtual_threads.pinned")
+                .description("Bloqueos de hilos virtuales fijados a su portador (pinning)")
+                .register(meterRegistry);
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(EVENT, event -> {
+            pinned.increment();
+            log.warn("Hilo virtual fijado {} ms en {}", event.getDuration().toMillis(), frames(event));
+        });
+        stream.startAsync();
+        log.info("Hilos virtuales activos; se reporta el pinning de más de {} ms", thresholdMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private static String frames(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "(sin pila)";
+        }
+        StringBuilder text = new StringBuilder();
+        List<RecordedFrame> frames = event.getStackTrace().getFrames();
+        for (int i = 0; i < frames.size() && i < FRAMES; i++) {
+            RecordedFrame frame = frames.get(i);
+            text.append(i == 0 ? "" : " <- ")
+                .append(frame.getMethod().getType().getName()).append('.').append(frame.getMethod().getName())
+                .append(':').append(frame.getLineNumber());
+        }
+        return text.toString();
+    }
+}
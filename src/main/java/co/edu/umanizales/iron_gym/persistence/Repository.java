@@ -0,0 +1,50 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Almacenamiento de un dataset, independiente del motor (CSV o MVStore).
+ * Los servicios mantienen sus listas en memoria y delegan aquí cada escritura;
+ * el motor decide cómo y cuándo llega a disco (ver RepositoryFactory).
+ */
+public interface Repository<T, ID> {
+    // Entrega todos los registros guardados (se llama al arrancar o al recargar)
+    void loadAll(Consumer<T> sink);
+
+    // Inserta o reemplaza el registro con el mismo ID
+    void save(T entity);
+
+    void deleteById(ID id);
+
+    // Lleva a disco lo que el motor tenga pendiente
+    void flush();
+
+    // true si los archivos del dataset se modificaron fuera de la aplicación desde la última carga
+    // (ej: un CSV editado a mano); el servicio debe entonces volver a llamar a loadAll
+    default boolean changedOnDisk() {
+        return false;
+    }
+
+    // Último número entregado por la secuencia de IDs del dataset (0 si nunca se guardó; ver IdSequence)
+    default long loadSequence() {
+        return 0;
+    }
+
+    // Guarda el último número entregado por la secuencia de IDs, para no repetir IDs eliminados
+    default void saveSequence(long value) {
+    }
+
+    // Guarda el registro y la respuesta de su Idempotency-Key en la misma confirmación (ver IdempotencyStore)
+    default void save(T entity, IdempotencyStore.Entry<T> key) {
+        save(entity);
+    }
+
+    // Respuestas guardadas por Idempotency-Key (se llama al arrancar); ninguna si el motor no las guarda
+    default void loadIdempotencyKeys(Consumer<IdempotencyStore.Entry<T>> sink) {
+    }
+
+    // Deja guardadas solo estas respuestas (descarta las vencidas, desalojadas o reemplazadas)
+    default void retainIdempotencyKeys(Collection<IdempotencyStore.Entry<T>> live) {
+    }
+}
@@ -0,0 +1,76 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import jakarta.annotation.PreDestroy; // Para cerrar el archivo de MVStore al apagar la aplicación
+import org.h2.mvstore.MVStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value; // Para leer la configuración desde application.properties
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * Crea el repositorio de cada dataset con el motor configurado en persistence.engine:
+ * "csv" (archivos de texto, por defecto) o "mvstore" (archivo embebido con páginas indexadas).
+ * Los servicios y controladores no cambian al pasar de un motor a otro.
+ */
+@Component
+public class RepositoryFactory {
+    public static final String CSV = "csv";
+    public static final String MVSTORE = "mvstore";
+    private static final int COMPACT_ON_CLOSE_MS = 2000; // Tiempo máximo para devolver al disco las páginas viejas al cerrar
+
+    @Value("${persistence.engine:csv}")
+    private String engine; // Motor de almacenamiento de todos los datasets
+    @Value("${persistence.mvstore.file:data/iron_gym.mv.db}")
+    private String mvStoreFile; // Archivo compartido por los datasets en MVStore
+    @Value("${persistence.group-commit.window-ms:2}")
+    private long groupCommitWindowMs; // Espera para juntar las escrituras concurrentes en un solo fsync
+    @Value("${persistence.reload.check-interval-ms:1000}")
+    private long reloadCheckIntervalMs; // Cada cuánto se revisa si un CSV se editó fuera de la aplicación
+    @Autowired
+    private WriteBehindFlusher writeBehind;
+    @Autowired
+    private JournalCompactor compactor;
+    private MVStore store;
+
+    public <T> Repository<T, String> create(DatasetSpec<T> spec) {
+        String selected = engine.trim().toLowerCase();
+        if (CSV.equals(selected)) {
+            CsvRepository<T> repository = new CsvRepository<>(spec);
+            repository.attach(writeBehind, compactor, groupCommitWindowMs);
+            repository.checkChangesEvery(reloadCheckIntervalMs);
+            return repository;
+        }
+        if (MVSTORE.equals(selected)) {
+            return new MvStoreRepository<>(store(), spec, groupCommitWindowMs);
+        }
+        throw new IllegalStateException("Motor de persistencia desconocido: " + engine + " (use csv o mvstore)");
+    }
+
+    public static MVStore openMvStore(String path) {
+        File file = new File(path).getAbsoluteFile();
+        file.getParentFile().mkdirs();
+        return new MVStore.Builder().fileName(file.getPath()).open();
+    }
+
+    // Confirma lo pendiente y compacta el archivo (cada commit deja páginas viejas que se reutilizan después)
+    public static void closeMvStore(MVStore store) {
+        store.close(COMPACT_ON_CLOSE_MS);
+    }
+
+    // Abre el archivo de MVStore la primera vez que un dataset lo necesita
+    private synchronized MVStore store() {
+        if (store == null) {
+            store = openMvStore(mvStoreFile);
+        }
+        return store;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (store != null) {
+            closeMvStore(store);
+            store = null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.util.function.Function;
+
+/**
+ * Conversión entre un registro y su fila CSV. Los dos motores guardan la misma fila:
+ * el CSV la escribe en el archivo y MVStore la usa como valor de su mapa.
+ */
+public interface RowCodec<T> {
+    String idOf(T item);
+
+    String toRow(T item);
+
+    // Retorna null si la fila es inválida (se omite)
+    T fromRow(CsvRow row);
+
+    static <T> RowCodec<T> of(Function<T, String> idOf, Function<T, String> toRow, Function<CsvRow, T> fromRow) {
+        return new RowCodec<>() {
+            @Override
+            public String idOf(T item) {
+                return idOf.apply(item);
+            }
+
+            @Override
+            public String toRow(T item) {
+                return toRow.apply(item);
+            }
+
+            @Override
+            public T fromRow(CsvRow row) {
+                return fromRow.apply(row);
+            }
+        };
+    }
+}
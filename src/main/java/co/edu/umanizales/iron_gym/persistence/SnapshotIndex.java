@@ -0,0 +1,13 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+/**
+ * Índice secundario que, como SnapshotMap, separa el estado de los escritores del que ven las
+ * lecturas. Los cambios (add, remove, clear) se hacen bajo el lock del servicio y no se ven hasta
+ * publish(); las consultas leen la última raíz publicada sin tomar locks.
+ * El servicio lo registra con SnapshotMap.attach, así cada publish del dataset publica también sus
+ * índices y ninguna consulta ve una actualización a medias (ej: el pago quitado de su fecha anterior
+ * pero aún no agregado en la nueva) ni una recarga entre clear y el último add.
+ */
+public interface SnapshotIndex {
+    void publish();
+}
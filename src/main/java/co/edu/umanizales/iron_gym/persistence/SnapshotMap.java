@@ -0,0 +1,178 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registros de un dataset por ID con lecturas sin bloqueo y escrituras serializadas.
+ * Los escritores modifican el estado interno (put, remove, clear) bajo el lock de su servicio y
+ * luego llaman a publish(), que publica ese estado como una instantánea inmutable en una
+ * referencia volatile. Las lecturas (get, containsKey, values, size) solo leen la instantánea:
+ * no esperan a ningún escritor, no ven cambios a medias (ej: una recarga entre clear y el último
+ * put) y la lista que retornan no cambia mientras Jackson la serializa.
+ * El estado son dos mapas inmutables (PersistentHashMap por ID y PersistentTreeMap por posición de
+ * inserción): cada escritura crea O(log n) nodos y comparte el resto con la instantánea anterior,
+ * así publicar es O(1) y ninguna escritura copia el dataset. La lista de values() se arma una sola
+ * vez por instantánea, en la primera lectura que la pide.
+ * Cada put (y cada touch) da al registro una versión nueva y mayor que todas las anteriores del
+ * mapa; la versión viaja en la misma instantánea que el registro, así que getVersioned nunca
+ * mezcla el registro de una escritura con la versión de otra. Sirve para el control de
+ * concurrencia optimista: checkVersion rechaza la escritura si el registro cambió desde que el
+ * cliente lo leyó, sin retener ningún lock entre la lectura y la escritura.
+ */
+public class SnapshotMap<T> {
+    private PersistentHashMap<String, Versioned<T>> byId = PersistentHashMap.empty(); // Estado de los escritores
+    private PersistentTreeMap<Long, T> byPosition = PersistentTreeMap.empty(); // Orden de inserción
+    private volatile Snapshot<T> snapshot = new Snapshot<>(byId, byPosition); // Lo que ven las lecturas
+    private final List<SnapshotIndex> indexes = new ArrayList<>(); // Índices que se publican junto con los registros
+    private long sequence; // Última versión asignada; no se reinicia con clear, así una recarga no repite versiones
+    private long positions; // Última posición asignada
+
+    // Registra índices secundarios para que cada publish() los publique antes que los registros
+    public void attach(SnapshotIndex... attached) {
+        Collections.addAll(indexes, attached);
+    }
+
+    // Escrituras: solo bajo el lock del servicio; no se ven hasta publish()
+    public T put(String id, T item) {
+        Versioned<T> previous = byId.get(id);
+        long position = previous != null ? previous.position : ++positions; // Un reemplazo conserva su posición
+        byId = byId.plus(id, new Versioned<>(item, ++sequence, position));
+        byPosition = byPosition.plus(position, item);
+        return previous != null ? previous.item : null;
+    }
+
+    // Nueva versión para un registro modificado en su lugar (ej: un inscrito más en una clase)
+    public void touch(String id) {
+        Versioned<T> current = byId.get(id);
+        if (current != null) {
+            byId = byId.plus(id, new Versioned<>(current.item, ++sequence, current.position));
+        }
+    }
+
+    public T remove(String id) {
+        Versioned<T> previous = byId.get(id);
+        if (previous == null) {
+            return null;
+        }
+        byId = byId.minus(id);
+        byPosition = byPosition.minus(previous.position);
+        return previous.item;
+    }
+
+    public void clear() {
+        byId = PersistentHashMap.empty();
+        byPosition = PersistentTreeMap.empty();
+    }
+
+    // Registros del estado de los escritores en orden de inserción, incluidos los aún no publicados
+    // (ej: los de una recarga antes de enlazarlos); solo bajo el lock del servicio
+    public List<T> workingValues() {
+        return byPosition.values();
+    }
+
+    // Lanza VersionMismatch si el registro ya no está en la versión esperada (null = sin condición)
+    public void checkVersion(String id, Long expected) {
+        if (expected == null) {
+            return;
+        }
+        Versioned<T> current = byId.get(id);
+        if (current == null || current.version != expected) {
+            throw new VersionMismatch(id, current != null ? current.version : 0);
+        }
+    }
+
+    // Publica el estado actual de los escritores (y de sus índices) para las lecturas; O(1)
+    public void publish() {
+        for (SnapshotIndex index : indexes) {
+            index.publish();
+        }
+        snapshot = new Snapshot<>(byId, byPosition);
+    }
+
+    // Lecturas: sin bloqueo, sobre la última instantánea publicada
+    public T get(String id) {
+        Versioned<T> entry = snapshot.byId.get(id);
+        return entry != null ? entry.item : null;
+    }
+
+    // Registro junto con su versión, de la misma instantánea (null si no existe)
+    public Versioned<T> getVersioned(String id) {
+        return snapshot.byId.get(id);
+    }
+
+    public boolean containsKey(String id) {
+        return snapshot.byId.containsKey(id);
+    }
+
+    // Registros en orden de inserción; lista inmutable
+    public List<T> values() {
+        return snapshot.values();
+    }
+
+    public int size() {
+        return snapshot.byId.size();
+    }
+
+    // Registro y versión inmutables, tal como estaban al publicarse
+    public static final class Versioned<T> {
+        private final T item;
+        private final long version;
+        private final long position; // Lugar del registro en values()
+
+        private Versioned(T item, long version, long position) {
+            this.item = item;
+            this.version = version;
+            this.position = position;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    // La versión esperada (If-Match) ya no es la vigente: otro usuario modificó el registro
+    public static class VersionMismatch extends IllegalStateException {
+        private final String id;
+        private final long currentVersion;
+
+        public VersionMismatch(String id, long currentVersion) {
+            super("El registro " + id + " cambió desde que se consultó; vuelva a consultarlo antes de modificarlo");
+            this.id = id;
+            this.currentVersion = currentVersion;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getCurrentVersion() {
+            return currentVersion; // 0 si el registro ya no existe
+        }
+    }
+
+    private static class Snapshot<T> {
+        private final PersistentHashMap<String, Versioned<T>> byId;
+        private final PersistentTreeMap<Long, T> byPosition;
+        private volatile List<T> values; // Se arma en la primera lectura; si dos lectores la arman a la vez, ambas son iguales
+
+        private Snapshot(PersistentHashMap<String, Versioned<T>> byId, PersistentTreeMap<Long, T> byPosition) {
+            this.byId = byId;
+            this.byPosition = byPosition;
+        }
+
+        private List<T> values() {
+            List<T> result = values;
+            if (result == null) {
+                result = Collections.unmodifiableList(byPosition.values());
+                values = result;
+            }
+            return result;
+        }
+    }
+}
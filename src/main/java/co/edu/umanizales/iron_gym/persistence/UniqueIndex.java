@@ -0,0 +1,153 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Índices de valores únicos de un dataset (ej: email, teléfono e identificación de los clientes).
+ * Cada campo guarda su valor normalizado junto al ID del registro que lo usa, así la validación de
+ * duplicados es una búsqueda directa en vez de recorrer el dataset. El servicio debe llamar a
+ * check y add bajo el mismo lock en que modifica el dataset para que la validación y la inserción
+ * sean una sola operación. check y conflict leen el estado de los escritores; ownerOf lee sin locks
+ * la última versión publicada (ver SnapshotIndex).
+ */
+public class UniqueIndex<T> implements SnapshotIndex {
+    private final Function<T, String> idOf; // ID del registro dueño de cada valor
+    private final Map<String, Field<T>> fields = new LinkedHashMap<>(); // Campos únicos, en el orden en que se validan
+
+    public UniqueIndex(Function<T, String> idOf) {
+        this.idOf = idOf;
+    }
+
+    // Registra un campo único con la normalización que define cuándo dos valores son el mismo
+    public UniqueIndex<T> field(String name, Function<T, String> valueOf, UnaryOperator<String> normalizer) {
+        fields.put(name, new Field<>(valueOf, normalizer));
+        return this;
+    }
+
+    // Primer campo cuyo valor ya usa otro registro (ignoreId es el propio registro al actualizar); null si no hay
+    public String conflict(T item, String ignoreId) {
+        for (Map.Entry<String, Field<T>> entry : fields.entrySet()) {
+            Field<T> field = entry.getValue();
+            String owner = field.owner(field.owners, field.valueOf.apply(item));
+            if (owner != null && !owner.equals(ignoreId)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    // Lanza Violation con el campo repetido si el registro choca con otro
+    public void check(T item, String ignoreId) {
+        String field = conflict(item, ignoreId);
+        if (field != null) {
+            throw new Violation(field);
+        }
+    }
+
+    // ID del registro que usa el valor en el campo (null si nadie lo usa); sin locks, sobre lo publicado
+    public String ownerOf(String field, String value) {
+        Field<T> indexed = fields.get(field);
+        return indexed.owner(indexed.published, value);
+    }
+
+    // Si hay datos repetidos en el archivo, el primer registro cargado conserva el valor
+    public void add(T item) {
+        String id = idOf.apply(item);
+        for (Field<T> field : fields.values()) {
+            String key = field.key(field.valueOf.apply(item));
+            if (key != null && !field.owners.containsKey(key)) {
+                field.owners = field.owners.plus(key, id);
+            }
+        }
+    }
+
+    // Quita los valores del registro; debe llamarse con la versión anterior antes de reemplazarlo
+    public void remove(T item) {
+        String id = idOf.apply(item);
+        for (Field<T> field : fields.values()) {
+            String key = field.key(field.valueOf.apply(item));
+            if (key != null && id.equals(field.owners.get(key))) { // Solo si el valor era de este registro
+                field.owners = field.owners.minus(key);
+            }
+        }
+    }
+
+    public void clear() {
+        for (Field<T> field : fields.values()) {
+            field.owners = PersistentHashMap.empty();
+        }
+    }
+
+    @Override
+    public void publish() {
+        for (Field<T> field : fields.values()) {
+            field.published = field.owners;
+        }
+    }
+
+    // Texto sin tildes, en minúscula y con los espacios colapsados (ej: nombres)
+    public static String text(String value) {
+        String plain = Normalizer.normalize(value, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return plain.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // Email sin espacios y en minúscula
+    public static String email(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Solo letras y dígitos, en mayúscula (ej: identificaciones escritas con puntos o guiones)
+    public static String alphanumeric(String value) {
+        return value.replaceAll("[^\\p{Alnum}]", "").toUpperCase(Locale.ROOT);
+    }
+
+    // Solo los dígitos (ej: teléfonos con espacios o guiones)
+    public static String digits(String value) {
+        return value.replaceAll("\\D", "");
+    }
+
+    // Un valor repetido; field es el nombre del campo registrado en el índice
+    public static class Violation extends IllegalArgumentException {
+        private final String field;
+
+        public Violation(String field) {
+            super("Valor repetido en el campo: " + field);
+            this.field = field;
+        }
+
+        public String getField() {
+            return field;
+        }
+    }
+
+    private static class Field<T> {
+        private final Function<T, String> valueOf;
+        private final UnaryOperator<String> normalizer;
+        private PersistentHashMap<String, String> owners = PersistentHashMap.empty(); // Valor normalizado -> ID del registro
+        private volatile PersistentHashMap<String, String> published = owners; // Lo que ve ownerOf
+
+        private Field(Function<T, String> valueOf, UnaryOperator<String> normalizer) {
+            this.valueOf = valueOf;
+            this.normalizer = normalizer;
+        }
+
+        // Valor normalizado; null si el valor está vacío (los vacíos no se consideran repetidos)
+        private String key(String value) {
+            if (value == null) {
+                return null;
+            }
+            String key = normalizer.apply(value);
+            return key.isEmpty() ? null : key;
+        }
+
+        private String owner(PersistentHashMap<String, String> owners, String value) {
+            String key = key(value);
+            return key == null ? null : owners.get(key);
+        }
+    }
+}
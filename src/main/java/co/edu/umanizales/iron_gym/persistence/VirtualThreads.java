@@ -0,0 +1,52 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Acceso a los hilos virtuales (Java 21+) desde un proyecto que compila con Java 17.
+ * Thread.ofVirtual() se busca por reflexión una sola vez; si el JDK no lo tiene, las fábricas
+ * crean hilos de plataforma daemon, así la opción spring.threads.virtual.enabled se puede dejar
+ * activada en cualquier JDK sin romper el arranque.
+ */
+public final class VirtualThreads {
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreads.class);
+    private static final Method OF_VIRTUAL = find(Thread.class, "ofVirtual"); // null antes de Java 21
+    private static final Method NAME = OF_VIRTUAL == null ? null : find(OF_VIRTUAL.getReturnType(), "name", String.class);
+    private static final Method FACTORY = OF_VIRTUAL == null ? null : find(OF_VIRTUAL.getReturnType(), "factory");
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null && NAME != null && FACTORY != null;
+    }
+
+    // Fábrica de hilos con el nombre dado: virtuales si se piden y el JDK los tiene; si no, de plataforma (daemon)
+    public static ThreadFactory factory(String name, boolean virtual) {
+        if (virtual && isSupported()) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (ThreadFactory) FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                log.warn("No se pudo crear la fábrica de hilos virtuales {}; se usan hilos de plataforma", name, e);
+            }
+        }
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Method find(Class<?> type, String name, Class<?>... parameters) {
+        try {
+            return type.getMethod(name, parameters);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package co.edu.umanizales.iron_gym.persistence; // Declara el paquete de utilidades de persistencia
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy; // Para escribir lo pendiente al apagar la aplicación
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value; // Para leer la configuración desde application.properties
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Escritura diferida (write-behind) compartida por todos los servicios con CSV.
+ * Los servicios marcan su dataset como sucio y un hilo en segundo plano lo escribe
+ * una sola vez cuando vence el retraso máximo o se acumulan demasiadas mutaciones.
+ */
+@Component
+public class WriteBehindFlusher {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindFlusher.class);
+    private final Map<String, Dataset> datasets = new LinkedHashMap<>(); // Datasets registrados por nombre
+    private final ScheduledExecutorService scheduler;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${persistence.flush.max-delay-ms:500}")
+    private long maxDelayMs; // Tiempo máximo que un cambio puede esperar antes de escribirse
+    @Value("${persistence.flush.max-pending:100}")
+    private int maxPending; // Mutaciones pendientes que fuerzan la escritura inmediata
+
+    public WriteBehindFlusher(MeterRegistry meterRegistry,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.meterRegistry = meterRegistry;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(VirtualThreads.factory("csv-write-behind", virtualThreads));
+    }
+
+    // Registra la acción que escribe el dataset completo en disco
+    public synchronized void register(String name, Runnable flushAction) {
+        datasets.put(name, new Dataset(name, flushAction));
+    }
+
+    // Marca el dataset como sucio; la escritura se agrupa con las demás mutaciones cercanas
+    public void markDirty(String name) {
+        Dataset dataset = get(name);
+        int pending = dataset.pending.incrementAndGet();
+        if (pending >= maxPending) {
+            schedule(dataset, 0);
+        } else if (pending == 1) {
+            schedule(dataset, maxDelayMs);
+        }
+    }
+
+    // Pide una escritura en segundo plano lo antes posible, sin esperar el retraso
+    public void requestFlush(String name) {
+        Dataset dataset = get(name);
+        dataset.pending.incrementAndGet();
+        schedule(dataset, 0);
+    }
+
+    // Escribe de inmediato el dataset si tiene cambios pendientes
+    public void flush(String name) {
+        flush(get(name));
+    }
+
+    // Escribe ya lo que el dataset tenga en memoria, aunque el aviso de markDirty aún no haya llegado;
+    // a diferencia de flush(), el error se propaga (lo usa la confirmación en grupo, que debe saber si falló)
+    public void commit(String name) {
+        Dataset dataset = get(name);
+        dataset.flushLock.lock();
+        try {
+            int mutations = dataset.pending.getAndSet(0);
+            long start = System.nanoTime();
+            try {
+                dataset.flushAction.run();
+            } catch (RuntimeException e) {
+                dataset.pending.addAndGet(mutations);
+                throw e;
+            }
+            dataset.flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            dataset.mutationCounter.increment(mutations);
+        } finally {
+            dataset.flushLock.unlock();
+        }
+    }
+
+    // Escribe de inmediato todos los datasets con cambios pendientes
+    public void flushAll() {
+        for (Dataset dataset : snapshot()) {
+            flush(dataset);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll(); // Nada de lo aceptado en memoria se pierde al apagar
+    }
+
+    private synchronized Dataset get(String name) {
+        Dataset dataset = datasets.get(name);
+        if (dataset == null) {
+            throw new IllegalStateException("Dataset no registrado: " + name);
+        }
+        return dataset;
+    }
+
+    private synchronized Dataset[] snapshot() {
+        return datasets.values().toArray(new Dataset[0]);
+    }
+
+    private void schedule(Dataset dataset, long delayMs) {
+        synchronized (dataset) {
+            if (dataset.scheduled != null) {
+                if (delayMs > 0 || dataset.scheduled.getDelay(TimeUnit.MILLISECONDS) <= 0) {
+                    return; // Ya hay una escritura programada que incluirá este cambio
+                }
+                dataset.scheduled.cancel(false); // Se adelanta la escritura programada
+            }
+            if (scheduler.isShutdown()) {
+                return; // Al apagar, shutdown() escribe lo pendiente
+            }
+            dataset.scheduled = scheduler.schedule(() -> flush(dataset), delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(Dataset dataset) {
+        synchronized (dataset) {
+            dataset.scheduled = null; // Los cambios que lleguen desde aquí programan otra escritura
+        }
+        dataset.flushLock.lock(); // Una sola escritura a la vez por dataset
+        try {
+            int mutations = dataset.pending.getAndSet(0);
+            if (mutations == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                dataset.flushAction.run();
+                dataset.flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                dataset.mutationCounter.increment(mutations);
+            } catch (RuntimeException e) {
+                dataset.pending.addAndGet(mutations); // Se reintenta en la próxima escritura
+                log.error("No se pudo escribir el dataset {} ({} mutaciones pendientes); se reintenta en la próxima escritura",
+                        dataset.name, mutations, e);
+            }
+        } finally {
+            dataset.flushLock.unlock();
+        }
+        if (dataset.pending.get() > 0) {
+            schedule(dataset, maxDelayMs); // Cambios llegados durante la escritura
+        }
+    }
+
+    // Estado y métricas de un dataset registrado
+    private class Dataset {
+        private final String name;
+        private final Runnable flushAction;
+        private final AtomicInteger pending = new AtomicInteger();
+        // Lock explícito y no synchronized: se mantiene durante la escritura y el fsync, y un hilo virtual que
+        // espera o escribe bajo un monitor queda fijado a su portador (pinning) hasta Java 23
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private final Timer flushTimer;
+        private final Counter mutationCounter;
+        private ScheduledFuture<?> scheduled;
+
+        private Dataset(String name, Runnable flushAction) {
+            this.name = name;
+            this.flushAction = flushAction;
+            this.flushTimer = Timer.builder("iron_gym.persistence.flush")
+                    .description("Escrituras del dataset a disco")
+                    .tag("dataset", name)
+                    .register(meterRegistry);
+            this.mutationCounter = Counter.builder("iron_gym.persistence.flush.mutations")
+                    .description("Mutaciones agrupadas en las escrituras")
+                    .tag("dataset", name)
+                    .register(meterRegistry);
+            Gauge.builder("iron_gym.persistence.pending", pending, AtomicInteger::get)
+                    .description("Mutaciones en memoria aún no escritas")
+                    .tag("dataset", name)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -3,42 +3,149 @@ package co.edu.umanizales.iron_gym.service; // Declara el paquete donde se encue
 import co.edu.umanizales.iron_gym.model.Attendance; // Importa la clase Attendance del paquete model
 import co.edu.umanizales.iron_gym.model.Client;
 import co.edu.umanizales.iron_gym.model.GroupClass;
+import co.edu.umanizales.iron_gym.persistence.BinarySnapshot; // Snapshot binario para arrancar sin interpretar texto
+import co.edu.umanizales.iron_gym.persistence.DatasetLoader; // Carga coordinada en el arranque
+import co.edu.umanizales.iron_gym.persistence.DatasetSpec;
+import co.edu.umanizales.iron_gym.persistence.DateIndex; // Asistencias por clase y por cliente, ordenadas por fecha
+import co.edu.umanizales.iron_gym.persistence.IdSequence; // IDs nuevos sin recorrer el dataset
+import co.edu.umanizales.iron_gym.persistence.MonthlySegments; // Asistencias agrupadas por mes
+import co.edu.umanizales.iron_gym.persistence.Repository; // Almacenamiento del dataset (CSV o MVStore)
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import co.edu.umanizales.iron_gym.persistence.RowCodec;
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Lecturas sin bloqueo sobre instantáneas inmutables
+import co.edu.umanizales.iron_gym.persistence.CsvRow;
+import jakarta.annotation.PostConstruct; // Para crear el repositorio después de construir el bean
 import org.springframework.stereotype.Service; // Anotación que marca esta clase como un servicio de Spring
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.io.*; // Importa todas las clases para manejo de archivos
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime; // Importa la clase para manejar fechas y horas
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.ArrayList; // Importa ArrayList para crear listas dinámicas
 import java.util.List; // Importa la interfaz List para trabajar con colecciones
 
 @Service // Anotación que indica que esta es una clase de servicio gestionada por Spring
-public class AttendanceService { // Inicio de la clase AttendanceService - contiene la lógica de negocio para asistencias
-    private List<Attendance> attendances; // Lista que almacena todas las asistencias del sistema
-    private final String CSV_FILE = "data/attendances.csv"; // Ruta del archivo CSV donde se guardan los datos de asistencias
+public class AttendanceService implements DatasetLoader { // Inicio de la clase AttendanceService - contiene la lógica de negocio para asistencias
+    private final SnapshotMap<Attendance> attendances = new SnapshotMap<>(); // Todas las asistencias del sistema por ID, en orden de inserción
+    private final String CSV_FILE = "data/attendances.csv"; // Base de los archivos mensuales (data/attendances-2025-11.csv); el archivo único anterior se migra al arrancar
+    private static final int BIN_VERSION = 1; // Versión del formato binario de asistencias
+    private static final String DATASET = "attendances"; // Nombre del dataset
+    @Autowired
+    private RepositoryFactory repositories;
+    private Repository<Attendance, String> repository; // Motor de almacenamiento configurado (CSV o MVStore)
+    private final IdSequence ids = new IdSequence("A", 2); // Secuencia de IDs (A01, A02, ...)
     private static final DateTimeFormatter CSV_DT = DateTimeFormatter.ofPattern("dd-MM-yyyy'T'HH:mm");
+    // Asistencias agrupadas por mes para las consultas por rango; solo el mes actual es modificable
+    private final MonthlySegments<Attendance> segments = new MonthlySegments<>(Attendance::getDateTime);
+    // Índices compuestos (clase, día) y (cliente, día): cada clave guarda sus asistencias ordenadas por fecha
+    private final DateIndex<String, Attendance> byGroupClass = new DateIndex<>(AttendanceService::groupClassIdOf, Attendance::getDateTime);
+    private final DateIndex<String, Attendance> byClient = new DateIndex<>(AttendanceService::clientIdOf, Attendance::getDateTime);
     @Autowired
     private ClientService clientService;
     @Autowired
     private GroupClassService groupClassService;
 
-    public AttendanceService() { // Constructor de la clase AttendanceService
-        this.attendances = new ArrayList<>(); // Inicializa la lista de asistencias como ArrayList vacío
-        loadFromCSV(); // Carga los datos de asistencias desde el archivo CSV
+    @PostConstruct
+    public void initRepository() { // Crea el repositorio del dataset con el motor configurado
+        repository = repositories.create(DatasetSpec.of(DATASET, "id,dateTime,clientId,groupClassId",
+                        RowCodec.of(Attendance::getId, this::toCsvRow, this::parseRow))
+                .path(CSV_FILE)
+                .monthly(Attendance::getDateTime) // Un CSV y un snapshot binario por mes
+                .binary(BIN_VERSION, this::writeBinary, this::readBinary));
+        attendances.attach(segments, byGroupClass, byClient); // Los índices se publican junto con las asistencias
     }
 
-    public List<Attendance> getAll() { // Método para obtener todas las asistencias
-        return attendances; // Retorna la lista de todas las asistencias
+    @Override
+    public void load() { // Fase 1 del arranque: el cliente y la clase quedan como referencias con solo el ID
+        loadAttendances();
+        attendances.publish(); // Las lecturas ven el dataset completo de una vez
     }
 
-    public Attendance getById(String id) { // Método para buscar asistencia por ID
-        for (Attendance attendance : attendances) { // Recorre la lista de asistencias
-            if (attendance.getId().equals(id)) { // Compara el ID de cada asistencia con el ID buscado
-                return attendance; // Retorna la asistencia encontrada
+    private void loadAttendances() {
+        ids.seed(repository.loadSequence()); // Último número guardado; los IDs cargados la adelantan si hace falta
+        repository.loadAll(attendance -> {
+            attendances.put(attendance.getId(), attendance);
+            ids.observe(attendance.getId());
+            segments.add(attendance);
+        });
+    }
+
+    @Override
+    public void link() { // Fase 2 del arranque: reemplaza las referencias por los objetos completos
+        for (Attendance attendance : attendances.workingValues()) { // En una recarga, las recién cargadas y aún sin publicar
+            if (attendance.getClient() != null) {
+                attendance.setClient(clientService.getById(attendance.getClient().getId())); // null si el cliente ya no existe
+            }
+            if (attendance.getGroupClass() != null) {
+                attendance.setGroupClass(groupClassService.getById(attendance.getGroupClass().getId()));
             }
+            index(attendance); // Después de enlazar, para que la clave indexada sea la misma que verá unindex
+        }
+        attendances.publish(); // Con los índices por clase y por cliente
+    }
+
+    // Recarga el dataset si su archivo se editó fuera de la aplicación; si no, se lee de memoria (la revisión no bloquea)
+    private void refresh() {
+        if (repository.changedOnDisk()) {
+            reload();
         }
-        return null; // Retorna null si no se encontró ninguna asistencia con ese ID
+    }
+
+    private synchronized void reload() {
+        attendances.clear();
+        segments.clear();
+        byGroupClass.clear();
+        byClient.clear();
+        loadAttendances(); // Sin publicar: las lecturas siguen viendo el dataset anterior hasta que link publique
+        link(); // Vuelve a enlazar las referencias con los demás servicios
+    }
+
+    public List<Attendance> getAll() { // Método para obtener todas las asistencias
+        refresh();
+        return attendances.values(); // Retorna la lista de todas las asistencias
+    }
+
+    public Attendance getById(String id) { // Método para buscar asistencia por ID
+        refresh();
+        return attendances.get(id); // Búsqueda directa en el índice por ID (null si no existe)
+    }
+
+    // Registro con su versión (para el ETag), leídos de la misma instantánea
+    public SnapshotMap.Versioned<Attendance> getVersioned(String id) {
+        refresh();
+        return attendances.getVersioned(id);
+    }
+
+    // Asistencias con fecha entre start y end (inclusive); solo recorre los meses que se cruzan con el rango
+    public List<Attendance> getBetween(LocalDate start, LocalDate end) {
+        refresh();
+        return segments.between(start, end);
+    }
+
+    // Asistencias de la clase con fecha entre start y end (inclusive), en orden de fecha; un solo día si start = end
+    public List<Attendance> getByGroupClassBetween(String groupClassId, LocalDate start, LocalDate end) {
+        refresh();
+        return byGroupClass.between(groupClassId, start, end);
+    }
+
+    // Todas las asistencias de la clase, de la más antigua a la más reciente
+    public List<Attendance> getByGroupClassId(String groupClassId) {
+        refresh();
+        return byGroupClass.get(groupClassId);
+    }
+
+    // Asistencias del cliente con fecha entre start y end (inclusive), en orden de fecha; un solo día si start = end
+    public List<Attendance> getByClientBetween(String clientId, LocalDate start, LocalDate end) {
+        refresh();
+        return byClient.between(clientId, start, end);
+    }
+
+    // Todas las asistencias del cliente, de la más antigua a la más reciente
+    public List<Attendance> getByClientId(String clientId) {
+        refresh();
+        return byClient.get(clientId);
     }
 
     // Verifica si existe una asistencia por ID
@@ -46,22 +153,8 @@ public class AttendanceService { // Inicio de la clase AttendanceService - conti
         return getById(id) != null;
     }
 
-    // Genera el siguiente ID con prefijo 'A' y 2 dígitos (A01, A02, ...)
-    private String generateNextId() {
-        int max = 0;
-        for (Attendance a : attendances) {
-            String aid = a.getId();
-            if (aid != null && aid.startsWith("A")) {
-                try {
-                    int num = Integer.parseInt(aid.substring(1));
-                    if (num > max) max = num;
-                } catch (NumberFormatException ignored) {}
-            }
-        }
-        return String.format("A%02d", max + 1);
-    }
-
-    public Attendance create(Attendance attendance) { // Método para crear una nueva asistencia
+    public synchronized Attendance create(Attendance attendance) { // Método para crear una nueva asistencia
+        refresh();
         if (attendance == null) {
             throw new IllegalArgumentException("Attendance payload is required");
         }
@@ -84,7 +177,7 @@ public class AttendanceService { // Inicio de la clase AttendanceService - conti
         // Si no envían ID, generarlo. Si lo envían, validar formato y duplicados
         String id = attendance.getId();
         if (id == null || id.isBlank()) {
-            id = generateNextId();
+            id = ids.next();
             attendance.setId(id);
         } else {
             // Normalizar y validar duplicados
@@ -98,110 +191,137 @@ public class AttendanceService { // Inicio de la clase AttendanceService - conti
         // Asignar objetos completos
         attendance.setClient(client);
         attendance.setGroupClass(gc);
-        attendances.add(attendance); // Agrega la nueva asistencia a la lista
-        saveToCSV(); // Guarda los cambios en el archivo CSV
+        segments.checkWritable(attendance); // Los meses cerrados no aceptan asistencias nuevas
+        attendances.put(attendance.getId(), attendance); // Agrega la nueva asistencia a la lista
+        ids.observe(attendance.getId()); // Un ID enviado por el cliente adelanta la secuencia
+        segments.add(attendance);
+        index(attendance);
+        attendances.publish();
+        repository.save(attendance); // Persiste el cambio con el motor configurado
         return attendance; // Retorna la asistencia creada
     }
 
-    public Attendance update(String id, Attendance updatedAttendance) { // Método para actualizar una asistencia existente
-        for (int i = 0; i < attendances.size(); i++) { // Recorre la lista de asistencias por índice
-            if (attendances.get(i).getId().equals(id)) { // Si encuentra la asistencia por ID
-                updatedAttendance.setId(id); // Mantiene el mismo ID en la asistencia actualizada
-                attendances.set(i, updatedAttendance); // Reemplaza la asistencia en la posición i con la actualizada
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return updatedAttendance; // Retorna la asistencia actualizada
-            }
+    public Attendance update(String id, Attendance updatedAttendance) {
+        return update(id, updatedAttendance, null); // Sin condición de versión
+    }
+
+    // expectedVersion: versión que leyó el cliente (If-Match); null reemplaza sin comprobar
+    public synchronized Attendance update(String id, Attendance updatedAttendance, Long expectedVersion) { // Método para actualizar una asistencia existente
+        refresh();
+        Attendance current = attendances.get(id); // Búsqueda directa en el índice por ID
+        if (current == null) {
+            return null; // Retorna null si no encontró la asistencia para actualizar
         }
-        return null; // Retorna null si no encontró la asistencia para actualizar
+        attendances.checkVersion(id, expectedVersion); // Otro usuario lo modificó desde que se leyó: sin cambios
+        updatedAttendance.setId(id); // Mantiene el mismo ID en la asistencia actualizada
+        segments.checkWritable(current); // Ni la asistencia original ni la nueva pueden estar en un mes cerrado
+        segments.checkWritable(updatedAttendance);
+        segments.remove(current);
+        unindex(current);
+        attendances.put(id, updatedAttendance); // Reemplaza la asistencia (conserva su posición) con la actualizada
+        segments.add(updatedAttendance);
+        index(updatedAttendance);
+        attendances.publish();
+        repository.save(updatedAttendance); // Persiste el cambio con el motor configurado
+        return updatedAttendance; // Retorna la asistencia actualizada
     }
 
-    public boolean delete(String id) { // Método para eliminar una asistencia por ID
-        for (int i = 0; i < attendances.size(); i++) { // Recorre la lista de asistencias por índice
-            if (attendances.get(i).getId().equals(id)) { // Si encuentra la asistencia por ID
-                attendances.remove(i); // Elimina la asistencia de la lista
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return true; // Retorna true indicando que la eliminación fue exitosa
-            }
+    public synchronized boolean delete(String id) { // Método para eliminar una asistencia por ID
+        refresh();
+        Attendance current = attendances.get(id); // Búsqueda directa en el índice por ID
+        if (current == null) {
+            return false; // Retorna false si no encontró la asistencia para eliminar
         }
-        return false; // Retorna false si no encontró la asistencia para eliminar
-    }
-
-    private void saveToCSV() { // Método privado para guardar los datos en archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            file.getParentFile().mkdirs(); // Crea la estructura de directorios si no existe
-            
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file)); // Crea escritor para el archivo
-            writer.write("id,dateTime,clientId,groupClassId\n"); // Escribe la cabecera del CSV
-            
-            for (Attendance attendance : attendances) { // Recorre todas las asistencias de la lista
-                String clientId = attendance.getClient() != null ? attendance.getClient().getId() : "";
-                String groupClassId = attendance.getGroupClass() != null ? attendance.getGroupClass().getId() : "";
-                writer.write(attendance.getId() + "," + // Escribe el ID de la asistencia
-                           (attendance.getDateTime() == null ? "" : attendance.getDateTime().format(CSV_DT)) + "," +
-                           clientId + "," +
-                           groupClassId + "\n");
-            }
-            
-            writer.close();
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
+        segments.checkWritable(current); // Las asistencias de meses cerrados no se eliminan
+        segments.remove(attendances.remove(id)); // Elimina la asistencia de la lista
+        unindex(current);
+        attendances.publish();
+        repository.deleteById(id); // Persiste el cambio con el motor configurado
+        repository.saveSequence(ids.current()); // El ID eliminado no se vuelve a entregar
+        return true; // Retorna true indicando que la eliminación fue exitosa
+    }
+
+    private void index(Attendance attendance) {
+        byGroupClass.add(attendance);
+        byClient.add(attendance);
+    }
+
+    // Debe llamarse con la versión indexada antes de reemplazarla o eliminarla
+    private void unindex(Attendance attendance) {
+        byGroupClass.remove(attendance);
+        byClient.remove(attendance);
+    }
+
+    private static String groupClassIdOf(Attendance attendance) {
+        return attendance.getGroupClass() != null ? attendance.getGroupClass().getId() : null;
+    }
+
+    private static String clientIdOf(Attendance attendance) {
+        return attendance.getClient() != null ? attendance.getClient().getId() : null;
+    }
+
+    private String toCsvRow(Attendance attendance) {
+        String clientId = attendance.getClient() != null ? attendance.getClient().getId() : "";
+        String groupClassId = attendance.getGroupClass() != null ? attendance.getGroupClass().getId() : "";
+        return attendance.getId() + "," +
+               (attendance.getDateTime() == null ? "" : attendance.getDateTime().format(CSV_DT)) + "," +
+               clientId + "," +
+               groupClassId;
+    }
+
+    private void writeBinary(DataOutputStream out, Attendance attendance) throws IOException {
+        BinarySnapshot.writeString(out, attendance.getId());
+        BinarySnapshot.writeEpochMinute(out, attendance.getDateTime());
+        BinarySnapshot.writeString(out, attendance.getClient() != null ? attendance.getClient().getId() : null);
+        BinarySnapshot.writeString(out, attendance.getGroupClass() != null ? attendance.getGroupClass().getId() : null);
+    }
+
+    private Attendance readBinary(DataInputStream in) throws IOException {
+        String id = BinarySnapshot.readString(in);
+        LocalDateTime dt = BinarySnapshot.readEpochMinute(in);
+        String clientId = BinarySnapshot.readString(in);
+        String groupClassId = BinarySnapshot.readString(in);
+        return newAttendance(id, dt, clientId, groupClassId);
+    }
+
+    // Convierte una fila CSV en una asistencia; retorna null si la fila es inválida
+    private Attendance parseRow(CsvRow row) {
+        if (row.size() < 2) {
+            return null;
+        }
+        if (row.size() >= 4) { // Nuevo formato: id,dateTime,clientId,groupClassId
+            return newAttendance(row.getString(0), parseDateTime(row, 1), row.getString(2), row.getString(3));
         }
+        return newAttendance(row.getString(0), parseDateTime(row, 1), null, null); // Compatibilidad con formato antiguo: id,dateTime
     }
 
-    private void loadFromCSV() { // Método privado para cargar datos desde archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            if (!file.exists()) { // Verifica si el archivo no existe
-                return; // Sale del método si el archivo no existe
-            }
-            
-            BufferedReader reader = new BufferedReader(new FileReader(file)); // Crea lector para el archivo
-            String line; // Variable para almacenar cada línea del archivo
-            reader.readLine(); // Lee y descarta la cabecera del CSV
-            
-            while ((line = reader.readLine()) != null) { // Lee línea por línea hasta llegar al final
-                String[] data = line.split(","); // Divide la línea por comas y almacena los valores en un arreglo
-                if (data.length >= 4) { // Nuevo formato: id,dateTime,clientId,groupClassId
-                    String id = data[0];
-                    LocalDateTime dt = null;
-                    String dateStr = data[1];
-                    if (dateStr != null && !dateStr.isBlank()) {
-                        try {
-                            dt = LocalDateTime.parse(dateStr, CSV_DT); // dd-MM-yyyy
-                        } catch (DateTimeParseException ex1) {
-                            dt = LocalDateTime.parse(dateStr); // Fallback ISO
-                        }
-                    }
-                    String clientId = data[2];
-                    String groupClassId = data[3];
-
-                    Client client = clientService != null ? clientService.getById(clientId) : null;
-                    GroupClass gc = groupClassService != null ? groupClassService.getById(groupClassId) : null;
-
-                    Attendance attendance = new Attendance();
-                    attendance.setId(id);
-                    attendance.setDateTime(dt);
-                    attendance.setClient(client);
-                    attendance.setGroupClass(gc);
-                    attendances.add(attendance);
-                } else if (data.length >= 2) { // Compatibilidad con formato antiguo: id,dateTime
-                    Attendance attendance = new Attendance();
-                    attendance.setId(data[0]);
-                    LocalDateTime dt;
-                    try {
-                        dt = LocalDateTime.parse(data[1], CSV_DT);
-                    } catch (DateTimeParseException ex1) {
-                        dt = LocalDateTime.parse(data[1]);
-                    }
-                    attendance.setDateTime(dt);
-                    attendances.add(attendance);
-                }
-            }
-            
-            reader.close(); // Cierra el lector del archivo
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
+    // Arma una asistencia con referencias que solo tienen el ID; link() las resuelve
+    private Attendance newAttendance(String id, LocalDateTime dateTime, String clientId, String groupClassId) {
+        Attendance attendance = new Attendance();
+        attendance.setId(id);
+        attendance.setDateTime(dateTime);
+        if (clientId != null && !clientId.isBlank()) {
+            Client client = new Client();
+            client.setId(clientId);
+            attendance.setClient(client);
+        }
+        if (groupClassId != null && !groupClassId.isBlank()) {
+            GroupClass gc = new GroupClass();
+            gc.setId(groupClassId);
+            attendance.setGroupClass(gc);
+        }
+        return attendance;
+    }
+
+    // Lee la fecha con formato dd-MM-yyyy directo de los bytes; si no coincide usa el formato ISO
+    private LocalDateTime parseDateTime(CsvRow row, int field) {
+        if (row.isEmpty(field) || row.getString(field).isBlank()) {
+            return null;
+        }
+        LocalDateTime dt = row.getDayMonthYearTime(field);
+        if (dt == null) {
+            dt = LocalDateTime.parse(row.getString(field)); // Fallback ISO
         }
+        return dt;
     }
 } // Fin de la clase AttendanceService
@@ -1,173 +1,175 @@
 package co.edu.umanizales.iron_gym.service; // Declara el paquete donde se encuentra esta clase de servicio
 
 import co.edu.umanizales.iron_gym.model.Client; // Importa la clase Client del paquete model
+import co.edu.umanizales.iron_gym.persistence.DatasetLoader; // Carga coordinada en el arranque
+import co.edu.umanizales.iron_gym.persistence.CsvRow;
+import co.edu.umanizales.iron_gym.persistence.DatasetSpec;
+import co.edu.umanizales.iron_gym.persistence.IdSequence; // IDs nuevos sin recorrer el dataset
+import co.edu.umanizales.iron_gym.persistence.Repository; // Almacenamiento del dataset (CSV o MVStore)
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import co.edu.umanizales.iron_gym.persistence.RowCodec;
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Lecturas sin bloqueo sobre instantáneas inmutables
+import co.edu.umanizales.iron_gym.persistence.UniqueIndex; // Valores que no se pueden repetir entre clientes
+import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.annotation.PostConstruct; // Para crear el repositorio después de construir el bean
 import org.springframework.stereotype.Service; // Anotación que marca esta clase como un servicio de Spring
 
-import java.io.*; // Importa todas las clases para manejo de archivos
-import java.util.ArrayList; // Importa ArrayList para crear listas dinámicas
 import java.util.List; // Importa la interfaz List para trabajar con colecciones
 
 @Service // Anotación que indica que esta es una clase de servicio gestionada por Spring
-public class ClientService { // Inicio de la clase ClientService - contiene la lógica de negocio para clientes
-    private List<Client> clients; // Lista que almacena todos los clientes del sistema
+public class ClientService implements DatasetLoader { // Inicio de la clase ClientService - contiene la lógica de negocio para clientes
+    private final SnapshotMap<Client> clients = new SnapshotMap<>(); // Todos los clientes del sistema por ID, en orden de inserción
     private final String CSV_FILE = "data/clients.csv"; // Ruta del archivo CSV donde se guardan los datos de clientes
+    private static final String DATASET = "clients"; // Nombre del dataset
+    @Autowired
+    private RepositoryFactory repositories;
+    private Repository<Client, String> repository; // Motor de almacenamiento configurado (CSV o MVStore)
+    private final IdSequence ids = new IdSequence("C", 2); // Secuencia de IDs (C01, C02, ...)
+    private static final String ROLE = "CLIENT"; // Rol de los clientes en el índice de identidad (Client.getRole)
+    @Autowired
+    private IdentityIndex identityIndex; // Identificación y teléfono compartidos con personas y entrenadores
+    private IdentityIndex.Role identities; // Vista de los clientes en el índice de identidad
+    // Nombre, email, identificación y teléfono normalizados -> ID del cliente que los usa
+    private final UniqueIndex<Client> unique = new UniqueIndex<>(Client::getId)
+            .field("name", Client::getName, UniqueIndex::text)
+            .field("email", Client::getEmail, UniqueIndex::email)
+            .field("identification", Client::getIdentification, UniqueIndex::alphanumeric)
+            .field("phone", Client::getPhone, UniqueIndex::digits);
+
+    @PostConstruct
+    public void initRepository() { // Crea el repositorio del dataset con el motor configurado
+        repository = repositories.create(DatasetSpec.of(DATASET, "id,name,email,phone,identification",
+                        RowCodec.of(Client::getId, this::toCsvRow, this::parseRow))
+                .path(CSV_FILE));
+        identities = identityIndex.role(ROLE);
+        clients.attach(unique, identities); // Los índices se publican junto con los clientes
+    }
 
-    public ClientService() { // Constructor de la clase ClientService
-        this.clients = new ArrayList<>(); // Inicializa la lista de clientes como ArrayList vacío
-        loadFromCSV(); // Carga los datos de clientes desde el archivo CSV
+    @Override
+    public void load() { // Fase 1 del arranque: lee el dataset sin depender de otros servicios
+        ids.seed(repository.loadSequence()); // Último número guardado; los IDs cargados la adelantan si hace falta
+        repository.loadAll(item -> {
+            clients.put(item.getId(), item);
+            ids.observe(item.getId());
+            unique.add(item);
+            identities.add(item);
+        });
+        clients.publish(); // Las lecturas ven el dataset completo de una vez
+    }
+
+    // Recarga el dataset si su archivo se editó fuera de la aplicación; si no, se lee de memoria (la revisión no bloquea)
+    private void refresh() {
+        if (repository.changedOnDisk()) {
+            reload();
+        }
+    }
+
+    private synchronized void reload() {
+        identities.clear();
+        clients.clear();
+        unique.clear();
+        load();
     }
 
     public List<Client> getAll() { // Método para obtener todos los clientes
-        return clients; // Retorna la lista de todos los clientes
+        refresh();
+        return clients.values(); // Retorna la lista de todos los clientes
     }
 
     public Client getById(String id) {
-        for (Client client : clients) { // Recorre la lista de clientes
-            if (client.getId().equals(id)) { // Compara el ID de cada cliente con el ID buscado
-                return client; // Retorna el cliente encontrado
-            }
-        }
-        return null; // Retorna null si no se encontró ningún cliente con ese ID
+        refresh();
+        return clients.get(id); // Búsqueda directa en el índice por ID (null si no existe)
+    }
+
+    // Registro con su versión (para el ETag), leídos de la misma instantánea
+    public SnapshotMap.Versioned<Client> getVersioned(String id) {
+        refresh();
+        return clients.getVersioned(id);
     }
 
-    public Client create(Client client) { // Método para crear un nuevo cliente
-        String newId = generateNextId(); // Genera un nuevo ID único para el cliente
+    // Lanza UniqueIndex.Violation si el nombre, email, identificación o teléfono ya es de otro cliente;
+    // la validación y la inserción ocurren bajo el mismo lock, así dos registros simultáneos no pasan ambos
+    public synchronized Client create(Client client) { // Método para crear un nuevo cliente
+        refresh();
+        unique.check(client, null);
+        String newId = ids.next(); // Genera un nuevo ID único para el cliente
         client.setId(newId); // Asigna el nuevo ID al objeto cliente
-        clients.add(client); // Agrega el nuevo cliente a la lista
-        saveToCSV(); // Guarda los cambios en el archivo CSV
+        clients.put(client.getId(), client); // Agrega el nuevo cliente a la lista
+        unique.add(client);
+        identities.add(client);
+        clients.publish();
+        repository.save(client); // Persiste el cambio con el motor configurado
         return client; // Retorna el cliente creado
     }
     
-    private String generateNextId() { // Método privado para generar el siguiente ID disponible con prefijo C
-        int maxId = 0; // Inicializa el máximo ID encontrado en 0
-        for (Client client : clients) { // Recorre todos los clientes existentes
-            try {
-                // Extrae solo la parte numérica del ID (eliminando el prefijo 'C' si existe)
-                String idStr = client.getId().replaceAll("^C", "");
-                int idNum = Integer.parseInt(idStr); // Convierte el ID a número entero
-                if (idNum > maxId) { // Si el ID actual es mayor que el máximo encontrado
-                    maxId = idNum; // Actualiza el máximo ID
-                }
-            } catch (NumberFormatException e) { // Si el ID no es un número válido
-                // Ignorar IDs que no sigan el formato esperado
-            }
-        }
-        // Formatea el nuevo ID con prefijo 'C' y 2 dígitos (C01, C02, ...)
-        return "C" + String.format("%02d", maxId + 1);
-    }
-
-    public Client update(String id, Client updatedClient) { // Método para actualizar un cliente existente
-        for (int i = 0; i < clients.size(); i++) { // Recorre la lista de clientes por índice
-            if (clients.get(i).getId().equals(id)) { // Si encuentra el cliente por ID
-                updatedClient.setId(id); // Mantiene el mismo ID en el cliente actualizado
-                clients.set(i, updatedClient); // Reemplaza el cliente en la posición i con el actualizado
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return updatedClient; // Retorna el cliente actualizado
-            }
-        }
-        return null; // Retorna null si no encontró el cliente para actualizar
+    public Client update(String id, Client updatedClient) {
+        return update(id, updatedClient, null); // Sin condición de versión
     }
 
-    public boolean delete(String id) { // Método para eliminar un cliente por ID
-        for (int i = 0; i < clients.size(); i++) { // Recorre la lista de clientes por índice
-            if (clients.get(i).getId().equals(id)) { // Si encuentra el cliente por ID
-                clients.remove(i); // Elimina el cliente de la lista
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return true; // Retorna true indicando que la eliminación fue exitosa
-            }
+    // expectedVersion: versión que leyó el cliente (If-Match); null reemplaza sin comprobar
+    public synchronized Client update(String id, Client updatedClient, Long expectedVersion) { // Método para actualizar un cliente existente
+        refresh();
+        Client current = clients.get(id); // Búsqueda directa en el índice por ID
+        if (current == null) {
+            return null; // Retorna null si no encontró el cliente para actualizar
         }
-        return false; // Retorna false si no encontró el cliente para eliminar
+        clients.checkVersion(id, expectedVersion); // Otro usuario lo modificó desde que se leyó: sin cambios
+        unique.check(updatedClient, id); // Sus propios valores no cuentan como repetidos
+        updatedClient.setId(id); // Mantiene el mismo ID en el cliente actualizado
+        unique.remove(current); // Libera los valores anteriores y registra los nuevos
+        identities.remove(current);
+        clients.put(id, updatedClient); // Reemplaza el cliente (conserva su posición) con el actualizado
+        unique.add(updatedClient);
+        identities.add(updatedClient);
+        clients.publish();
+        repository.save(updatedClient); // Persiste el cambio con el motor configurado
+        return updatedClient; // Retorna el cliente actualizado
     }
 
-    public List<Client> getClientsWithMembership() { // Método para obtener clientes con membresía activa
-        List<Client> result = new ArrayList<>(); // Crea lista para almacenar resultados
-        for (Client client : clients) { // Recorre todos los clientes
-            if (client.hasMembership()) { // Si el cliente tiene membresía
-                result.add(client); // Agrega el cliente a la lista de resultados
-            }
+    public synchronized boolean delete(String id) { // Método para eliminar un cliente por ID
+        refresh();
+        Client current = clients.remove(id); // Elimina el cliente de la lista
+        if (current == null) {
+            return false; // Retorna false si no encontró el cliente para eliminar
         }
-        return result; // Retorna la lista de clientes con membresía
+        unique.remove(current);
+        identities.remove(current);
+        clients.publish();
+        repository.deleteById(id); // Persiste el cambio con el motor configurado
+        repository.saveSequence(ids.current()); // El ID eliminado no se vuelve a entregar
+        return true; // Retorna true indicando que la eliminación fue exitosa
     }
 
     public boolean isNameDuplicate(String name) {
-        for (Client client : clients) {
-            if (client.getName().equals(name)) {
-                return true;
-            }
-        }
-        return false;
+        return unique.ownerOf("name", name) != null; // Búsqueda directa en el índice normalizado
     }
 
     public boolean isEmailDuplicate(String email) {
-        for (Client client : clients) {
-            if (client.getEmail().equals(email)) {
-                return true;
-            }
-        }
-        return false;
+        return unique.ownerOf("email", email) != null;
     }
 
     public boolean isIdentificationDuplicate(String identification) {
-        for (Client client : clients) {
-            if (client.getIdentification().equals(identification)) {
-                return true;
-            }
-        }
-        return false;
+        return unique.ownerOf("identification", identification) != null;
     }
 
     public boolean isPhoneDuplicate(String phone) {
-        for (Client client : clients) {
-            if (client.getPhone().equals(phone)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private void saveToCSV() { // Método privado para guardar los datos en archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            file.getParentFile().mkdirs(); // Crea la estructura de directorios si no existe
-            
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file)); // Crea escritor para el archivo
-            writer.write("id,name,email,phone,identification\n"); // Escribe la cabecera del CSV
-            
-            for (Client client : clients) { // Recorre todos los clientes de la lista
-                writer.write(client.getId() + "," + // Escribe el ID del cliente
-                           client.getName() + "," + // Escribe el nombre del cliente
-                           client.getEmail() + "," + // Escribe el email del cliente
-                           client.getPhone() + "," + // Escribe el teléfono del cliente
-                           client.getIdentification() + "\n"); // Escribe la identificación y salto de línea
-            }
-            
-            writer.close(); // Cierra el escritor del archivo
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
-        }
+        return unique.ownerOf("phone", phone) != null;
+    }
+
+    private String toCsvRow(Client client) {
+        return client.getId() + "," + // ID del cliente
+               client.getName() + "," + // Nombre del cliente
+               client.getEmail() + "," + // Email del cliente
+               client.getPhone() + "," + // Teléfono del cliente
+               client.getIdentification(); // Identificación del cliente
     }
 
-    private void loadFromCSV() { // Método privado para cargar datos desde archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            if (!file.exists()) { // Si el archivo no existe
-                return; // Sale del método sin hacer nada más
-            }
-            
-            BufferedReader reader = new BufferedReader(new FileReader(file)); // Crea lector para el archivo
-            String line = reader.readLine(); // Lee y salta la línea de cabecera
-            
-            while ((line = reader.readLine()) != null) { // Mientras haya líneas por leer
-                String[] data = line.split(","); // Divide la línea por comas para obtener los datos
-                if (data.length == 5) { // Verifica que la línea tenga exactamente 5 campos
-                    Client client = new Client(data[0], data[1], data[2], data[3], data[4], null); // Crea cliente con datos
-                    clients.add(client); // Agrega el cliente a la lista
-                }
-            }
-            
-            reader.close(); // Cierra el lector del archivo
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
+    // Convierte una fila CSV en un registro; retorna null si la fila es inválida
+    private Client parseRow(CsvRow row) {
+        if (row.size() != 5) { // La línea debe tener exactamente 5 campos
+            return null;
         }
+        return new Client(row.getString(0), row.getString(1), row.getString(2),
+                row.getString(3), row.getString(4), null); // Crea cliente con datos
     }
 } // Fin de la clase ClientService
@@ -1,170 +1,252 @@
 package co.edu.umanizales.iron_gym.service;
 
 import co.edu.umanizales.iron_gym.model.Equipment;
+import co.edu.umanizales.iron_gym.model.EquipmentStatus; // Estados conocidos de los equipos
+import co.edu.umanizales.iron_gym.persistence.DatasetLoader; // Carga coordinada en el arranque
+import co.edu.umanizales.iron_gym.persistence.CsvRow;
+import co.edu.umanizales.iron_gym.persistence.DateIndex; // Grupos por estado que se leen sin bloqueo
+import co.edu.umanizales.iron_gym.persistence.DatasetSpec;
+import co.edu.umanizales.iron_gym.persistence.IdSequence; // IDs nuevos sin recorrer el dataset
+import co.edu.umanizales.iron_gym.persistence.Repository; // Almacenamiento del dataset (CSV o MVStore)
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import co.edu.umanizales.iron_gym.persistence.RowCodec;
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Lecturas sin bloqueo sobre instantáneas inmutables
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.annotation.PostConstruct; // Para crear el repositorio después de construir el bean
 import org.springframework.stereotype.Service;
 
-import java.io.*;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service // Anotación que indica que esta es una clase de servicio gestionada por Spring
-public class EquipmentService { // Inicio de la clase EquipmentService - contiene la lógica de negocio para equipos
-    private List<Equipment> equipments;
+public class EquipmentService implements DatasetLoader { // Inicio de la clase EquipmentService - contiene la lógica de negocio para equipos
+    private final SnapshotMap<Equipment> equipments = new SnapshotMap<>(); // Equipos por ID, en orden de inserción
     private final String CSV_FILE = "data/equipments.csv";
-    private static final String ID_PREFIX = "EQ";
-    private int nextIdNumber = 1;
+    private static final String DATASET = "equipments"; // Nombre del dataset
+    @Autowired
+    private RepositoryFactory repositories;
+    private Repository<Equipment, String> repository; // Motor de almacenamiento configurado (CSV o MVStore)
+    private final IdSequence ids = new IdSequence("EQ", 3); // Secuencia de IDs (EQ001, EQ002, ...)
+    @Autowired
+    private MeterRegistry meterRegistry;
 
-    public EquipmentService() { // Constructor de la clase EquipmentService
-        this.equipments = new ArrayList<>(); // Inicializa la lista de equipos como ArrayList vacío
-        loadFromCSV(); // Carga los datos de equipos desde el archivo CSV
+    // Equipos agrupados por estado y por estado y tipo, en orden de llegada al grupo (sin fecha);
+    // un equipo con estado desconocido no está en ninguno
+    private final DateIndex<EquipmentStatus, Equipment> byStatus = new DateIndex<>(EquipmentService::statusOf, equipment -> null);
+    private final DateIndex<String, Equipment> byStatusAndType = new DateIndex<>(EquipmentService::statusAndTypeOf, equipment -> null);
+    private final Map<EquipmentStatus, AtomicInteger> statusCounts = new EnumMap<>(EquipmentStatus.class); // Leídos por los gauges
+    private final Map<String, AtomicInteger> typeCounts = new ConcurrentHashMap<>(); // Tipo -> cantidad de equipos
+
+    @PostConstruct
+    public void initRepository() { // Crea el repositorio del dataset con el motor configurado
+        repository = repositories.create(DatasetSpec.of(DATASET, "id,type,status",
+                        RowCodec.of(Equipment::getId, this::toCsvRow, this::parseRow))
+                .path(CSV_FILE)
+                .journaled()); // Los cambios de estado frecuentes solo anexan una línea al diario
+        equipments.attach(byStatus, byStatusAndType); // Los grupos se publican junto con los equipos
+        for (EquipmentStatus status : EquipmentStatus.values()) {
+            AtomicInteger count = new AtomicInteger();
+            statusCounts.put(status, count);
+            Gauge.builder("iron_gym.equipment.status", count, AtomicInteger::get)
+                    .description("Equipos en cada estado")
+                    .tag("status", status.name())
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public void load() { // Fase 1 del arranque: lee el dataset desde el repositorio
+        List<Equipment> loaded = new ArrayList<>();
+        ids.seed(repository.loadSequence()); // Último número guardado; los IDs cargados la adelantan si hace falta
+        repository.loadAll(loaded::add);
+        loaded.sort(Comparator.comparing(Equipment::getId)); // Ordenar la lista por ID para asegurar consistencia
+        for (Equipment equipment : loaded) {
+            equipments.put(equipment.getId(), equipment);
+            ids.observe(equipment.getId());
+            index(equipment);
+        }
+        equipments.publish(); // Las lecturas ven el dataset completo de una vez
+    }
+
+    // Recarga el dataset si su archivo se editó fuera de la aplicación; si no, se lee de memoria (la revisión no bloquea)
+    private void refresh() {
+        if (repository.changedOnDisk()) {
+            reload();
+        }
+    }
+
+    private synchronized void reload() {
+        equipments.values().forEach(this::unindex);
+        equipments.clear();
+        byStatus.clear();
+        byStatusAndType.clear();
+        load();
     }
 
     public List<Equipment> getAll() { // Método para obtener todos los equipos
-        return equipments; // Retorna la lista de todos los equipos
+        refresh();
+        return equipments.values(); // Retorna la lista de todos los equipos
     }
 
     public Equipment getById(String id) {
-        for (Equipment equipment : equipments) { // Recorre la lista de equipos
-            if (equipment.getId().equals(id)) { // Compara el ID de cada equipo con el ID buscado
-                return equipment; // Retorna el equipo encontrado
-            }
-        }
-        return null; // Retorna null si no se encontró ningún equipo con ese ID
+        refresh();
+        return equipments.get(id); // Búsqueda directa en el índice por ID (null si no existe)
+    }
+
+    // Registro con su versión (para el ETag), leídos de la misma instantánea
+    public SnapshotMap.Versioned<Equipment> getVersioned(String id) {
+        refresh();
+        return equipments.getVersioned(id);
     }
 
-    public Equipment create(Equipment equipment) {
+    public synchronized Equipment create(Equipment equipment) {
+        refresh();
         // Verificar si ya existe un equipo con el mismo ID
         if (equipment.getId() != null && !equipment.getId().isEmpty()) {
             // Si se proporciona un ID, verificar que no exista
-            if (equipments.stream().anyMatch(e -> e.getId().equals(equipment.getId()))) {
+            if (equipments.containsKey(equipment.getId())) {
                 throw new IllegalArgumentException("Ya existe un equipo con el ID: " + equipment.getId());
             }
         } else {
             // Generar nuevo ID secuencial
-            String newId = generateNextId();
+            String newId = ids.next();
             equipment.setId(newId);
         }
         
-        equipments.add(equipment);
-        saveToCSV();
+        equipments.put(equipment.getId(), equipment);
+        ids.observe(equipment.getId()); // Un ID enviado por el cliente adelanta la secuencia
+        index(equipment);
+        equipments.publish();
+        repository.save(equipment); // Persiste el cambio con el motor configurado
         return equipment;
     }
     
-    private String generateNextId() {
-        // Encontrar el número más alto de ID existente
-        int maxId = equipments.stream()
-            .map(Equipment::getId)
-            .filter(id -> id.startsWith(ID_PREFIX))
-            .map(id -> id.substring(ID_PREFIX.length()))
-            .mapToInt(id -> {
-                try {
-                    return Integer.parseInt(id);
-                } catch (NumberFormatException e) {
-                    return 0;
-                }
-            })
-            .max()
-            .orElse(0);
-            
-        // Usar el siguiente número disponible
-        int nextId = maxId + 1;
-        return String.format("%s%03d", ID_PREFIX, nextId);
-    }
-
-    public Equipment update(String id, Equipment updatedEquipment) { // Método para actualizar un equipo existente
-        for (int i = 0; i < equipments.size(); i++) { // Recorre la lista de equipos por índice
-            if (equipments.get(i).getId().equals(id)) { // Si encuentra el equipo por ID
-                updatedEquipment.setId(id); // Mantiene el mismo ID en el equipo actualizado
-                equipments.set(i, updatedEquipment); // Reemplaza el equipo en la posición i con el actualizado
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return updatedEquipment; // Retorna el equipo actualizado
-            }
+    public Equipment update(String id, Equipment updatedEquipment) {
+        return update(id, updatedEquipment, null); // Sin condición de versión
+    }
+
+    // expectedVersion: versión que leyó el cliente (If-Match); null reemplaza sin comprobar
+    public synchronized Equipment update(String id, Equipment updatedEquipment, Long expectedVersion) { // Método para actualizar un equipo existente
+        refresh();
+        Equipment current = equipments.get(id); // Búsqueda directa en el índice por ID
+        if (current == null) {
+            return null; // Retorna null si no encontró el equipo para actualizar
         }
-        return null; // Retorna null si no encontró el equipo para actualizar
+        equipments.checkVersion(id, expectedVersion); // Otro usuario lo modificó desde que se leyó: sin cambios
+        updatedEquipment.setId(id); // Mantiene el mismo ID en el equipo actualizado
+        unindex(current); // Pasa al grupo de su nuevo estado y tipo
+        equipments.put(id, updatedEquipment); // Reemplaza el equipo (conserva su posición) con el actualizado
+        index(updatedEquipment);
+        equipments.publish();
+        repository.save(updatedEquipment); // Persiste el cambio con el motor configurado
+        return updatedEquipment; // Retorna el equipo actualizado
     }
 
-    public boolean delete(String id) { // Método para eliminar un equipo por ID
-        for (int i = 0; i < equipments.size(); i++) { // Recorre la lista de equipos por índice
-            if (equipments.get(i).getId().equals(id)) { // Si encuentra el equipo por ID
-                equipments.remove(i); // Elimina el equipo de la lista
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return true; // Retorna true indicando que la eliminación fue exitosa
-            }
+    public synchronized boolean delete(String id) { // Método para eliminar un equipo por ID
+        refresh();
+        Equipment current = equipments.remove(id); // Elimina el equipo de la lista
+        if (current == null) {
+            return false; // Retorna false si no encontró el equipo para eliminar
         }
-        return false; // Retorna false si no encontró el equipo para eliminar
+        unindex(current);
+        equipments.publish();
+        repository.deleteById(id); // Persiste el cambio con el motor configurado
+        repository.saveSequence(ids.current()); // El ID eliminado no se vuelve a entregar
+        return true; // Retorna true indicando que la eliminación fue exitosa
     }
 
     public List<Equipment> getAvailableEquipment() { // Método para obtener equipos disponibles
-        List<Equipment> result = new ArrayList<>(); // Crea lista para almacenar resultados
-        for (Equipment equipment : equipments) { // Recorre todos los equipos
-            if (equipment.isAvailable()) { // Si el equipo está disponible
-                result.add(equipment); // Agrega el equipo a la lista de resultados
-            }
+        return getByStatus(EquipmentStatus.AVAILABLE, null);
+    }
+
+    // Equipos en el estado (y del tipo, si se indica); solo recorre los del grupo pedido
+    public List<Equipment> getByStatus(EquipmentStatus status, String type) {
+        refresh();
+        if (type == null) {
+            return byStatus.get(status);
         }
-        return result; // Retorna la lista de equipos disponibles
-    }
-
-    private void saveToCSV() { // Método privado para guardar los datos en archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            file.getParentFile().mkdirs(); // Crea la estructura de directorios si no existe
-            
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file)); // Crea escritor para el archivo
-            writer.write("id,type,status\n"); // Escribe la cabecera del CSV
-            
-            for (Equipment equipment : equipments) { // Recorre todos los equipos de la lista
-                writer.write(equipment.getId() + "," + // Escribe el ID del equipo
-                           equipment.getType() + "," + // Escribe el tipo del equipo
-                           equipment.getStatus() + "\n"); // Escribe el estado y salto de línea
-            }
-            
-            writer.close(); // Cierra el escritor del archivo
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
+        return byStatusAndType.get(status.name() + "/" + type);
+    }
+
+    // Cantidad de equipos por estado (todos los estados conocidos, aunque tengan 0)
+    public Map<String, Integer> countByStatus() {
+        refresh();
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Map.Entry<EquipmentStatus, AtomicInteger> entry : statusCounts.entrySet()) {
+            result.put(entry.getKey().name(), entry.getValue().get());
         }
+        return result;
     }
 
-    private void loadFromCSV() {
-        try {
-            File file = new File(CSV_FILE);
-            if (!file.exists()) {
-                return;
-            }
-            
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            String line = reader.readLine(); // Skip header
-            
-            // Limpiar la lista actual
-            if (equipments == null) {
-                equipments = new ArrayList<>();
-            } else {
-                equipments.clear();
+    // Cantidad de equipos por tipo (solo los tipos que tienen equipos)
+    public Map<String, Integer> countByType() {
+        refresh();
+        Map<String, Integer> result = new TreeMap<>();
+        for (Map.Entry<String, AtomicInteger> entry : typeCounts.entrySet()) {
+            if (entry.getValue().get() > 0) {
+                result.put(entry.getKey(), entry.getValue().get());
             }
-            
-            // Conjunto para verificar IDs duplicados
-            Set<String> existingIds = new HashSet<>();
-            
-            while ((line = reader.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length >= 3) {
-                    String id = data[0].trim();
-                    
-                    // Verificar si el ID ya existe
-                    if (!existingIds.add(id)) {
-                        System.err.println("Advertencia: ID duplicado encontrado en el archivo CSV: " + id);
-                        continue; // Saltar este registro
-                    }
-                    
-                    Equipment equipment = new Equipment(id, data[1].trim(), data[2].trim());
-                    equipments.add(equipment);
-                }
-            }
-            reader.close();
-            
-            // Ordenar la lista por ID para asegurar consistencia
-            equipments.sort(Comparator.comparing(Equipment::getId));
-        } catch (IOException e) {
-            e.printStackTrace();
         }
+        return result;
+    }
+
+    private void index(Equipment equipment) {
+        byStatus.add(equipment);
+        byStatusAndType.add(equipment);
+        EquipmentStatus status = statusOf(equipment);
+        if (status != null) {
+            statusCounts.get(status).incrementAndGet();
+        }
+        typeCount(equipment.getType()).incrementAndGet();
+    }
+
+    // Debe llamarse con el equipo tal como se indexó (antes de reemplazarlo)
+    private void unindex(Equipment equipment) {
+        byStatus.remove(equipment);
+        byStatusAndType.remove(equipment);
+        EquipmentStatus status = statusOf(equipment);
+        if (status != null) {
+            statusCounts.get(status).decrementAndGet();
+        }
+        typeCount(equipment.getType()).decrementAndGet();
+    }
+
+    private static EquipmentStatus statusOf(Equipment equipment) {
+        return EquipmentStatus.of(equipment.getStatus());
+    }
+
+    // Clave del grupo por estado y tipo (ej: AVAILABLE/Cardio); null si el estado es desconocido
+    private static String statusAndTypeOf(Equipment equipment) {
+        EquipmentStatus status = statusOf(equipment);
+        return status == null ? null : status.name() + "/" + equipment.getType();
+    }
+
+    // Contador del tipo; el gauge se registra la primera vez que aparece el tipo
+    private AtomicInteger typeCount(String type) {
+        return typeCounts.computeIfAbsent(String.valueOf(type), key -> {
+            AtomicInteger count = new AtomicInteger();
+            Gauge.builder("iron_gym.equipment.type", count, AtomicInteger::get)
+                    .description("Equipos de cada tipo")
+                    .tag("type", key)
+                    .register(meterRegistry);
+            return count;
+        });
+    }
+
+    private String toCsvRow(Equipment equipment) {
+        return equipment.getId() + "," + // Escribe el ID del equipo
+               equipment.getType() + "," + // Escribe el tipo del equipo
+               equipment.getStatus(); // Escribe el estado
+    }
+
+    // Convierte una fila CSV en un equipo; retorna null si la fila es inválida
+    private Equipment parseRow(CsvRow row) {
+        if (row.size() < 3) {
+            return null;
+        }
+        return new Equipment(row.getString(0).trim(), row.getString(1).trim(), row.getString(2).trim());
     }
 }
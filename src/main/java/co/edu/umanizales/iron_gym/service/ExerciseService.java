@@ -1,109 +1,121 @@
 package co.edu.umanizales.iron_gym.service; // Declara el paquete donde se encuentra esta clase de servicio
 
 import co.edu.umanizales.iron_gym.model.Exercise; // Importa la clase Exercise del paquete model
+import co.edu.umanizales.iron_gym.persistence.DatasetLoader; // Carga coordinada en el arranque
+import co.edu.umanizales.iron_gym.persistence.CsvRow;
+import co.edu.umanizales.iron_gym.persistence.DatasetSpec;
+import co.edu.umanizales.iron_gym.persistence.Repository; // Almacenamiento del dataset (CSV o MVStore)
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import co.edu.umanizales.iron_gym.persistence.RowCodec;
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Lecturas sin bloqueo sobre instantáneas inmutables
+import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.annotation.PostConstruct; // Para crear el repositorio después de construir el bean
 import org.springframework.stereotype.Service; // Anotación que marca esta clase como un servicio de Spring
 
-import java.io.*; // Importa todas las clases para manejo de archivos
-import java.util.ArrayList; // Importa ArrayList para crear listas dinámicas
 import java.util.List; // Importa la interfaz List para trabajar con colecciones
 
 @Service // Anotación que indica que esta es una clase de servicio gestionada por Spring
-public class ExerciseService { // Inicio de la clase ExerciseService - contiene la lógica de negocio para ejercicios
-    private List<Exercise> exercises; // Lista que almacena todos los ejercicios del sistema
+public class ExerciseService implements DatasetLoader { // Inicio de la clase ExerciseService - contiene la lógica de negocio para ejercicios
+    private final SnapshotMap<Exercise> exercises = new SnapshotMap<>(); // Todos los ejercicios del sistema por nombre, en orden de inserción
     private final String CSV_FILE = "data/exercises.csv"; // Ruta del archivo CSV donde se guardan los datos de ejercicios
+    private static final String DATASET = "exercises"; // Nombre del dataset
+    @Autowired
+    private RepositoryFactory repositories;
+    private Repository<Exercise, String> repository; // Motor de almacenamiento configurado (CSV o MVStore)
 
-    public ExerciseService() { // Constructor de la clase ExerciseService
-        this.exercises = new ArrayList<>(); // Inicializa la lista de ejercicios como ArrayList vacío
-        loadFromCSV(); // Carga los datos de ejercicios desde el archivo CSV
+    @PostConstruct
+    public void initRepository() { // Crea el repositorio del dataset con el motor configurado
+        repository = repositories.create(DatasetSpec.of(DATASET, "name,repetitions,sets",
+                        RowCodec.of(Exercise::getName, this::toCsvRow, this::parseRow))
+                .path(CSV_FILE));
+    }
+
+    @Override
+    public void load() { // Fase 1 del arranque: lee el dataset sin depender de otros servicios
+        repository.loadAll(item -> exercises.put(item.getName(), item));
+        exercises.publish(); // Las lecturas ven el dataset completo de una vez
+    }
+
+    // Recarga el dataset si su archivo se editó fuera de la aplicación; si no, se lee de memoria (la revisión no bloquea)
+    private void refresh() {
+        if (repository.changedOnDisk()) {
+            reload();
+        }
+    }
+
+    private synchronized void reload() {
+        exercises.clear();
+        load();
     }
 
     public List<Exercise> getAll() { // Método para obtener todos los ejercicios
-        return exercises; // Retorna la lista de todos los ejercicios
+        refresh();
+        return exercises.values(); // Retorna la lista de todos los ejercicios
     }
 
     public Exercise getByName(String name) {
-        for (Exercise exercise : exercises) { // Recorre la lista de ejercicios
-            if (exercise.getName().equals(name)) { // Compara el nombre de cada ejercicio con el nombre buscado
-                return exercise; // Retorna el ejercicio encontrado
-            }
-        }
-        return null; // Retorna null si no se encontró ningún ejercicio con ese nombre
+        refresh();
+        return exercises.get(name); // Búsqueda directa en el índice por nombre (null si no existe)
+    }
+
+    // Registro con su versión (para el ETag), leídos de la misma instantánea
+    public SnapshotMap.Versioned<Exercise> getVersioned(String name) {
+        refresh();
+        return exercises.getVersioned(name);
     }
 
-    public Exercise create(Exercise exercise) { // Método para crear un nuevo ejercicio
-        exercises.add(exercise); // Agrega el nuevo ejercicio a la lista
-        saveToCSV(); // Guarda los cambios en el archivo CSV
+    public synchronized Exercise create(Exercise exercise) { // Método para crear un nuevo ejercicio
+        refresh();
+        exercises.put(exercise.getName(), exercise); // Agrega el nuevo ejercicio a la lista
+        exercises.publish();
+        repository.save(exercise); // Persiste el cambio con el motor configurado
         return exercise; // Retorna el ejercicio creado
     }
 
-    public Exercise update(String name, Exercise updatedExercise) { // Método para actualizar un ejercicio existente
-        for (int i = 0; i < exercises.size(); i++) { // Recorre la lista de ejercicios por índice
-            if (exercises.get(i).getName().equals(name)) { // Si encuentra el ejercicio por nombre
-                updatedExercise.setName(name); // Mantiene el mismo nombre en el ejercicio actualizado
-                exercises.set(i, updatedExercise); // Reemplaza el ejercicio en la posición i con el actualizado
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return updatedExercise; // Retorna el ejercicio actualizado
-            }
-        }
-        return null; // Retorna null si no encontró el ejercicio para actualizar
+    public Exercise update(String name, Exercise updatedExercise) {
+        return update(name, updatedExercise, null); // Sin condición de versión
     }
 
-    public boolean delete(String name) { // Método para eliminar un ejercicio por nombre
-        for (int i = 0; i < exercises.size(); i++) { // Recorre la lista de ejercicios por índice
-            if (exercises.get(i).getName().equals(name)) { // Si encuentra el ejercicio por nombre
-                exercises.remove(i); // Elimina el ejercicio de la lista
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return true; // Retorna true indicando que la eliminación fue exitosa
-            }
+    // expectedVersion: versión que leyó el cliente (If-Match); null reemplaza sin comprobar
+    public synchronized Exercise update(String name, Exercise updatedExercise, Long expectedVersion) { // Método para actualizar un ejercicio existente
+        refresh();
+        if (!exercises.containsKey(name)) { // Búsqueda directa en el índice por nombre
+            return null; // Retorna null si no encontró el ejercicio para actualizar
         }
-        return false; // Retorna false si no encontró el ejercicio para eliminar
+        exercises.checkVersion(name, expectedVersion); // Otro usuario lo modificó desde que se leyó: sin cambios
+        updatedExercise.setName(name); // Mantiene el mismo nombre en el ejercicio actualizado
+        exercises.put(name, updatedExercise); // Reemplaza el ejercicio (conserva su posición) con el actualizado
+        exercises.publish();
+        repository.save(updatedExercise); // Persiste el cambio con el motor configurado
+        return updatedExercise; // Retorna el ejercicio actualizado
     }
 
-    private void saveToCSV() { // Método privado para guardar los datos en archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            file.getParentFile().mkdirs(); // Crea la estructura de directorios si no existe
-            
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file)); // Crea escritor para el archivo
-            writer.write("name,repetitions,sets\n"); // Escribe la cabecera del CSV
-            
-            for (Exercise exercise : exercises) { // Recorre todos los ejercicios de la lista
-                writer.write(exercise.getName() + "," + // Escribe el nombre del ejercicio
-                           exercise.getRepetitions() + "," + // Escribe las repeticiones del ejercicio
-                           exercise.getSets() + "\n"); // Escribe las series y salto de línea
-            }
-            
-            writer.close(); // Cierra el escritor del archivo
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
+    public synchronized boolean delete(String name) { // Método para eliminar un ejercicio por nombre
+        refresh();
+        if (!exercises.containsKey(name)) { // Búsqueda directa en el índice por nombre
+            return false; // Retorna false si no encontró el ejercicio para eliminar
         }
+        exercises.remove(name); // Elimina el ejercicio de la lista
+        exercises.publish();
+        repository.deleteById(name); // Persiste el cambio con el motor configurado
+        return true; // Retorna true indicando que la eliminación fue exitosa
+    }
+
+    private String toCsvRow(Exercise exercise) {
+        return exercise.getName() + "," + // Nombre del ejercicio (su identificador)
+               exercise.getRepetitions() + "," + // Repeticiones del ejercicio
+               exercise.getSets(); // Series del ejercicio
     }
 
-    private void loadFromCSV() { // Método privado para cargar datos desde archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            if (!file.exists()) { // Si el archivo no existe
-                return; // Sale del método sin hacer nada más
-            }
-            
-            BufferedReader reader = new BufferedReader(new FileReader(file)); // Crea lector para el archivo
-            String line = reader.readLine(); // Skip header
-            
-            while ((line = reader.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length == 3) {
-                    Exercise exercise = new Exercise(
-                        data[0], 
-                        Integer.parseInt(data[1]), 
-                        Integer.parseInt(data[2])
-                    );
-                    exercises.add(exercise);
-                }
-            }
-            
-            reader.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+    // Convierte una fila CSV en un registro; retorna null si la fila es inválida
+    private Exercise parseRow(CsvRow row) {
+        if (row.size() != 3) {
+            return null;
         }
+        return new Exercise(
+            row.getString(0),
+            row.getInt(1), // Repeticiones leídas directo de los bytes
+            row.getInt(2) // Series leídas directo de los bytes
+        );
     }
 }
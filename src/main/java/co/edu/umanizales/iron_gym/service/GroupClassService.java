@@ -3,79 +3,166 @@ package co.edu.umanizales.iron_gym.service;
 import co.edu.umanizales.iron_gym.model.GroupClass;
 import co.edu.umanizales.iron_gym.model.Trainer;
 import co.edu.umanizales.iron_gym.model.Client;
+import co.edu.umanizales.iron_gym.persistence.DatasetLoader; // Carga coordinada en el arranque
+import co.edu.umanizales.iron_gym.persistence.CsvRow;
+import co.edu.umanizales.iron_gym.persistence.DatasetSpec;
+import co.edu.umanizales.iron_gym.persistence.PersistentHashMap; // Índice inverso que se publica sin copiar
+import co.edu.umanizales.iron_gym.persistence.Repository; // Almacenamiento del dataset (CSV o MVStore)
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import co.edu.umanizales.iron_gym.persistence.RowCodec;
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Lecturas sin bloqueo sobre instantáneas inmutables
+import jakarta.annotation.PostConstruct; // Para crear el repositorio después de construir el bean
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.io.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
-public class GroupClassService {
-    private List<GroupClass> groupClasses;
+public class GroupClassService implements DatasetLoader {
+    private final SnapshotMap<GroupClass> groupClasses = new SnapshotMap<>(); // Clases grupales por ID, en orden de inserción
+    private PersistentHashMap<String, List<String>> classesByClient = PersistentHashMap.empty(); // Índice inverso: ID del cliente -> IDs de sus clases
+    private volatile PersistentHashMap<String, List<String>> publishedClassesByClient = classesByClient; // Lo que ven las consultas
     private final String CSV_FILE = "data/group_classes.csv";
+    private static final String DATASET = "group_classes"; // Nombre del dataset
+    @Autowired
+    private RepositoryFactory repositories;
+    private Repository<GroupClass, String> repository; // Motor de almacenamiento configurado (CSV o MVStore)
     @Autowired
     private TrainerService trainerService;
     @Autowired
     private ClientService clientService;
 
-    public GroupClassService() {
-        this.groupClasses = new ArrayList<>();
-        loadFromCSV();
+    @PostConstruct
+    public void initRepository() { // Crea el repositorio del dataset con el motor configurado
+        repository = repositories.create(DatasetSpec.of(DATASET, "id,name,maxCapacity,schedule,trainerId,clientIds",
+                        RowCodec.of(GroupClass::getId, this::toCsvRow, this::parseRow))
+                .path(CSV_FILE)
+                .journaled()); // Cada cambio de cupos solo anexa la fila de la clase al diario
+        groupClasses.attach(() -> publishedClassesByClient = classesByClient); // El índice inverso se publica con las clases
     }
 
-    public List<GroupClass> getAll() {
-        return groupClasses;
+    @Override
+    public void load() { // Fase 1 del arranque: el entrenador y los clientes quedan como referencias con solo el ID
+        loadClasses();
+        groupClasses.publish(); // Las lecturas ven el dataset completo de una vez
     }
 
-    public GroupClass getById(String id) {
-        for (GroupClass groupClass : groupClasses) { // Recorre la lista de clases grupales
-            if (groupClass.getId().equals(id)) { // Compara el ID de cada clase grupal con el ID buscado
-                return groupClass; // Retorna la clase grupal encontrada
+    private void loadClasses() {
+        repository.loadAll(item -> {
+            groupClasses.put(item.getId(), item);
+            index(item);
+        });
+    }
+
+    @Override
+    public void link() { // Fase 2 del arranque: reemplaza las referencias por los objetos completos
+        // En una recarga son las clases recién cargadas y aún sin publicar: ninguna inscripción en curso las ve.
+        // Una inscripción sobre la clase anterior lo detecta bajo el lock (la clase ya no es la publicada) y se reintenta
+        for (GroupClass groupClass : groupClasses.workingValues()) {
+            if (groupClass.getTrainer() != null) {
+                groupClass.setTrainer(trainerService.getById(groupClass.getTrainer().getId())); // null si el entrenador ya no existe
+            }
+            List<Client> registered = new ArrayList<>();
+            for (Client ref : groupClass.getRegisteredClients()) {
+                Client client = clientService.getById(ref.getId());
+                if (client != null) { // Se omiten los clientes que ya no existen
+                    registered.add(client);
+                } else {
+                    unindex(groupClass.getId(), ref.getId());
+                }
             }
+            groupClass.setRegisteredClients(registered);
         }
-        return null; // Retorna null si no se encontró ninguna clase grupal con ese ID
+        groupClasses.publish(); // Sin los clientes que ya no existen en el índice inverso
+    }
+
+    // Recarga el dataset si su archivo se editó fuera de la aplicación; si no, se lee de memoria (la revisión no bloquea)
+    private void refresh() {
+        if (repository.changedOnDisk()) {
+            reload();
+        }
+    }
+
+    private synchronized void reload() {
+        groupClasses.clear();
+        classesByClient = PersistentHashMap.empty();
+        loadClasses(); // Sin publicar: las lecturas siguen viendo las clases anteriores hasta que link publique
+        link(); // Vuelve a enlazar las referencias con los demás servicios
+    }
+
+    public List<GroupClass> getAll() {
+        refresh();
+        return groupClasses.values();
     }
 
-    public GroupClass create(GroupClass groupClass) { // Método para crear una nueva clase grupal
+    public GroupClass getById(String id) {
+        refresh();
+        return groupClasses.get(id); // Búsqueda directa en el índice por ID (null si no existe)
+    }
+
+    // Registro con su versión (para el ETag), leídos de la misma instantánea
+    public SnapshotMap.Versioned<GroupClass> getVersioned(String id) {
+        refresh();
+        return groupClasses.getVersioned(id);
+    }
+
+    public synchronized GroupClass create(GroupClass groupClass) { // Método para crear una nueva clase grupal
+        refresh();
         if (groupClass == null) {
             return null;
         }
         if (getById(groupClass.getId()) != null) {
             return null;
         }
-        groupClasses.add(groupClass); // Agrega la nueva clase grupal a la lista
-        saveToCSV(); // Guarda los cambios en el archivo CSV
+        groupClasses.put(groupClass.getId(), groupClass); // Agrega la nueva clase grupal a la lista
+        index(groupClass);
+        groupClasses.publish();
+        repository.save(groupClass); // Persiste el cambio con el motor configurado
         return groupClass; // Retorna la clase grupal creada
     }
 
-    public GroupClass update(String id, GroupClass updatedGroupClass) { // Método para actualizar una clase grupal existente
-        for (int i = 0; i < groupClasses.size(); i++) { // Recorre la lista de clases grupales por índice
-            if (groupClasses.get(i).getId().equals(id)) { // Si encuentra la clase grupal por ID
-                updatedGroupClass.setId(id); // Mantiene el mismo ID en la clase grupal actualizada
-                groupClasses.set(i, updatedGroupClass); // Reemplaza la clase grupal en la posición i con la actualizada
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return updatedGroupClass; // Retorna la clase grupal actualizada
-            }
+    public GroupClass update(String id, GroupClass updatedGroupClass) {
+        return update(id, updatedGroupClass, null); // Sin condición de versión
+    }
+
+    // expectedVersion: versión que leyó el cliente (If-Match); null reemplaza sin comprobar
+    public synchronized GroupClass update(String id, GroupClass updatedGroupClass, Long expectedVersion) { // Método para actualizar una clase grupal existente
+        refresh();
+        GroupClass current = groupClasses.get(id); // Búsqueda directa en el índice por ID
+        if (current == null) {
+            return null; // Retorna null si no encontró la clase grupal para actualizar
         }
-        return null; // Retorna null si no encontró la clase grupal para actualizar
+        groupClasses.checkVersion(id, expectedVersion); // Otro usuario lo modificó desde que se leyó: sin cambios
+        updatedGroupClass.setId(id); // Mantiene el mismo ID en la clase grupal actualizada
+        unindex(current); // Los inscritos pueden cambiar con la actualización
+        groupClasses.put(id, updatedGroupClass); // Reemplaza la clase grupal (conserva su posición) con la actualizada
+        index(updatedGroupClass);
+        groupClasses.publish();
+        repository.save(updatedGroupClass); // Persiste el cambio con el motor configurado
+        return updatedGroupClass; // Retorna la clase grupal actualizada
     }
 
-    public boolean delete(String id) { // Método para eliminar una clase grupal por ID
-        for (int i = 0; i < groupClasses.size(); i++) { // Recorre la lista de clases grupales por índice
-            if (groupClasses.get(i).getId().equals(id)) { // Si encuentra la clase grupal por ID
-                groupClasses.remove(i); // Elimina la clase grupal de la lista
-                saveToCSV();
-                return true;
-            }
+    public synchronized boolean delete(String id) { // Método para eliminar una clase grupal por ID
+        refresh();
+        GroupClass current = groupClasses.remove(id); // Elimina la clase grupal de la lista
+        if (current == null) {
+            return false;
         }
-        return false;
+        unindex(current);
+        groupClasses.publish();
+        repository.deleteById(id); // Persiste el cambio con el motor configurado
+        return true;
     }
 
     public List<GroupClass> getAvailableClasses() {
+        refresh();
         List<GroupClass> result = new ArrayList<>();
-        for (GroupClass groupClass : groupClasses) {
+        for (GroupClass groupClass : groupClasses.values()) {
             if (!groupClass.isFull()) {
                 result.add(groupClass);
             }
@@ -84,103 +171,149 @@ public class GroupClassService {
     }
 
     // Método sencillo para asignar un entrenador a una clase grupal
-    public boolean assignTrainerToClass(String classId, Trainer trainer) {
+    public synchronized boolean assignTrainerToClass(String classId, Trainer trainer) {
         GroupClass groupClass = getById(classId);
         if (groupClass == null || trainer == null) {
             return false;
         }
         groupClass.setTrainer(trainer);
-        saveToCSV();
+        groupClasses.touch(classId); // Cambió en su lugar: nueva versión para el ETag
+        groupClasses.publish();
+        repository.save(groupClass); // La fila completa de la clase con el nuevo entrenador
         return true;
     }
 
+    // El cupo y el duplicado se resuelven en la clase (CAS y conjunto concurrente) sin el lock del servicio;
+    // solo las inscripciones exitosas lo toman, para el índice inverso y la escritura en disco
     public boolean registerClientToClass(String classId, Client client) {
-        GroupClass groupClass = getById(classId);
-        if (groupClass == null || client == null) {
+        if (client == null) {
             return false;
         }
-        if (groupClass.getRegisteredClients() != null) {
-            for (Client c : groupClass.getRegisteredClients()) {
-                if (c.getId().equals(client.getId())) {
-                    return false;
+        while (true) {
+            GroupClass groupClass = getById(classId);
+            if (groupClass == null) {
+                return false;
+            }
+            if (!groupClass.addClient(client)) {
+                return false; // Ya inscrito o sin cupo
+            }
+            synchronized (this) {
+                if (groupClasses.get(classId) == groupClass) { // La clase no se reemplazó ni se eliminó mientras tanto
+                    index(classId, client.getId());
+                    groupClasses.touch(classId); // Cambió en su lugar: nueva versión para el ETag
+                    groupClasses.publish();
+                    repository.save(groupClass); // La fila completa de la clase con el nuevo inscrito
+                    return true;
                 }
+                groupClass.removeClient(client); // Se reintenta sobre la versión actual de la clase
             }
         }
-        if (!groupClass.addClient(client)) {
-            return false;
+    }
+
+    // Clases en las que está inscrito el cliente, en orden de inscripción; solo recorre las suyas
+    public List<GroupClass> getClassesByClientId(String clientId) {
+        refresh();
+        List<GroupClass> result = new ArrayList<>();
+        List<String> classIds = publishedClassesByClient.get(clientId);
+        if (classIds != null) {
+            for (String classId : classIds) {
+                GroupClass groupClass = groupClasses.get(classId);
+                if (groupClass != null) { // Eliminada entre las dos lecturas
+                    result.add(groupClass);
+                }
+            }
         }
-        saveToCSV();
-        return true;
+        return result;
     }
 
-    private void saveToCSV() {
-        try {
-            File file = new File(CSV_FILE);
-            file.getParentFile().mkdirs();
-            
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-            writer.write("id,name,maxCapacity,schedule,trainerId,clientIds\n");
-            
-            for (GroupClass groupClass : groupClasses) {
-                String trainerId = groupClass.getTrainer() != null ? groupClass.getTrainer().getId() : "";
-                String clientIds = (groupClass.getRegisteredClients() == null || groupClass.getRegisteredClients().isEmpty())
-                        ? ""
-                        : groupClass.getRegisteredClients().stream().map(Client::getId).collect(Collectors.joining(";"));
-                writer.write(groupClass.getId() + "," +
-                           groupClass.getName() + "," +
-                           groupClass.getMaxCapacity() + "," +
-                           groupClass.getSchedule() + "," +
-                           trainerId + "," +
-                           clientIds + "\n");
+    // Entrenadores de las clases del cliente, sin repetir
+    public List<Trainer> getTrainersByClientId(String clientId) {
+        Map<String, Trainer> trainers = new LinkedHashMap<>();
+        for (GroupClass groupClass : getClassesByClientId(clientId)) {
+            if (groupClass.getTrainer() != null) {
+                trainers.putIfAbsent(groupClass.getTrainer().getId(), groupClass.getTrainer());
             }
-            
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
         }
+        return new ArrayList<>(trainers.values());
     }
 
-    private void loadFromCSV() { // Método privado para cargar datos desde archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            if (!file.exists()) { // Si el archivo no existe
-                return; // Sale del método sin hacer nada más
+    private void index(GroupClass groupClass) {
+        if (groupClass.getRegisteredClients() != null) {
+            for (Client client : groupClass.getRegisteredClients()) {
+                index(groupClass.getId(), client.getId());
             }
-            
-            BufferedReader reader = new BufferedReader(new FileReader(file)); // Crea lector para el archivo
-            String line = reader.readLine(); // Lee y salta la línea de cabecera
-            
-            while ((line = reader.readLine()) != null) { // Mientras haya líneas por leer
-                String[] data = line.split(","); // Divide la línea por comas para obtener los datos
-                if (data.length >= 4) {
-                    GroupClass groupClass = new GroupClass(
-                        data[0],
-                        data[1],
-                        Integer.parseInt(data[2]),
-                        data[3]
-                    );
-                    if (data.length >= 5 && data[4] != null && !data[4].isEmpty() && trainerService != null) {
-                        Trainer tr = trainerService.getById(data[4]);
-                        if (tr != null) {
-                            groupClass.setTrainer(tr);
-                        }
-                    }
-                    if (data.length >= 6 && data[5] != null && !data[5].isEmpty() && clientService != null) {
-                        String[] ids = data[5].split(";");
-                        for (String cid : ids) {
-                            Client cl = clientService.getById(cid);
-                            if (cl != null) {
-                                groupClass.addClient(cl);
-                            }
-                        }
-                    }
-                    groupClasses.add(groupClass);
-                }
+        }
+    }
+
+    // Las clases de cada cliente son una lista pequeña e inmutable que se reemplaza entera
+    private void index(String classId, String clientId) {
+        List<String> classIds = classesByClient.get(clientId);
+        if (classIds != null && classIds.contains(classId)) {
+            return;
+        }
+        List<String> copy = classIds == null ? new ArrayList<>() : new ArrayList<>(classIds);
+        copy.add(classId);
+        classesByClient = classesByClient.plus(clientId, Collections.unmodifiableList(copy));
+    }
+
+    private void unindex(GroupClass groupClass) {
+        if (groupClass.getRegisteredClients() != null) {
+            for (Client client : groupClass.getRegisteredClients()) {
+                unindex(groupClass.getId(), client.getId());
+            }
+        }
+    }
+
+    private void unindex(String classId, String clientId) {
+        List<String> classIds = classesByClient.get(clientId);
+        if (classIds == null || !classIds.contains(classId)) {
+            return;
+        }
+        List<String> copy = new ArrayList<>(classIds);
+        copy.remove(classId);
+        classesByClient = copy.isEmpty() ? classesByClient.minus(clientId) : classesByClient.plus(clientId, Collections.unmodifiableList(copy));
+    }
+
+    private String toCsvRow(GroupClass groupClass) {
+        String trainerId = groupClass.getTrainer() != null ? groupClass.getTrainer().getId() : "";
+        String clientIds = (groupClass.getRegisteredClients() == null || groupClass.getRegisteredClients().isEmpty())
+                ? ""
+                : groupClass.getRegisteredClients().stream().map(Client::getId).collect(Collectors.joining(";"));
+        return groupClass.getId() + "," +
+               groupClass.getName() + "," +
+               groupClass.getMaxCapacity() + "," +
+               groupClass.getSchedule() + "," +
+               trainerId + "," +
+               clientIds;
+    }
+
+    // Convierte una fila CSV en una clase; el entrenador y los clientes quedan como referencias con solo el ID
+    private GroupClass parseRow(CsvRow row) {
+        if (row.size() < 4) {
+            return null;
+        }
+        GroupClass groupClass = new GroupClass(
+            row.getString(0),
+            row.getString(1),
+            row.getInt(2), // Cupo máximo leído directo de los bytes
+            row.getString(3)
+        );
+        if (!row.isEmpty(4)) { // Referencia con solo el ID; link() la resuelve
+            Trainer tr = new Trainer();
+            tr.setId(row.getString(4));
+            groupClass.setTrainer(tr);
+        }
+        if (!row.isEmpty(5)) {
+            List<Client> registered = new ArrayList<>();
+            String[] ids = row.getString(5).split(";");
+            for (String cid : ids) {
+                Client cl = new Client();
+                cl.setId(cid);
+                registered.add(cl);
             }
-            
-            reader.close(); // Cierra el lector del archivo
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
+            // Sin validar el cupo: lo guardado se restaura completo aunque el cupo máximo haya bajado
+            groupClass.setRegisteredClients(registered);
         }
+        return groupClass;
     }
 } // Fin de la clase GroupClassService
@@ -0,0 +1,147 @@
+package co.edu.umanizales.iron_gym.service; // Declara el paquete donde se encuentra esta clase de servicio
+
+import co.edu.umanizales.iron_gym.model.Person;
+import co.edu.umanizales.iron_gym.persistence.PersistentHashMap; // Mapas inmutables que se publican sin copiar
+import co.edu.umanizales.iron_gym.persistence.SnapshotIndex;
+import co.edu.umanizales.iron_gym.persistence.UniqueIndex; // Normalización de identificaciones y teléfonos
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice de identidad compartido por personas, clientes y entrenadores.
+ * Guarda la identificación y el teléfono normalizados de cada registro por rol (Person.getRole),
+ * así "quién es 1053868686 en todos los roles" es una búsqueda directa en vez de recorrer los tres
+ * datasets. Cada servicio escribe solo en la vista de su rol (role), bajo su propio lock, y la
+ * registra con SnapshotMap.attach: el publish de un dataset publica únicamente su vista, de modo que
+ * nunca deja ver una actualización a medias de otro servicio. Las búsquedas leen la última versión
+ * publicada de cada vista sin locks.
+ */
+@Component
+public class IdentityIndex {
+    private final Map<String, Role> roles = new LinkedHashMap<>(); // Vistas por rol, en orden de registro
+    private volatile List<Role> views = List.of(); // Copia que recorren las búsquedas sin locks
+
+    // Vista del rol; la crea la primera vez (cada servicio la pide al iniciarse)
+    public synchronized Role role(String role) {
+        Role view = roles.get(role);
+        if (view == null) {
+            view = new Role();
+            roles.put(role, view);
+            views = List.copyOf(roles.values());
+        }
+        return view;
+    }
+
+    // Registros de todos los roles con esa identificación
+    public List<Person> findByIdentification(String identification) {
+        List<Person> found = new ArrayList<>();
+        String key = identificationKey(identification);
+        for (Role view : views) {
+            add(found, view.published.byIdentification, key);
+        }
+        return found;
+    }
+
+    // Registros de todos los roles con ese teléfono
+    public List<Person> findByPhone(String phone) {
+        List<Person> found = new ArrayList<>();
+        String key = phoneKey(phone);
+        for (Role view : views) {
+            add(found, view.published.byPhone, key);
+        }
+        return found;
+    }
+
+    private static void add(List<Person> found, PersistentHashMap<String, Person> index, String key) {
+        Person holder = key == null ? null : index.get(key);
+        if (holder != null) {
+            found.add(holder);
+        }
+    }
+
+    private static String identificationKey(String identification) {
+        return identification == null ? null : UniqueIndex.alphanumeric(identification);
+    }
+
+    private static String phoneKey(String phone) {
+        return phone == null ? null : UniqueIndex.digits(phone);
+    }
+
+    /**
+     * Identificaciones y teléfonos de un rol. Como SnapshotMap, los cambios (add, remove, clear) se
+     * hacen bajo el lock del servicio dueño y no se ven hasta publish().
+     */
+    public static final class Role implements SnapshotIndex {
+        private PersistentHashMap<String, Person> byIdentification = PersistentHashMap.empty(); // Identificación -> registro
+        private PersistentHashMap<String, Person> byPhone = PersistentHashMap.empty(); // Teléfono -> registro
+        private volatile Published published = new Published(byIdentification, byPhone); // Lo que ven las búsquedas
+
+        private Role() {
+        }
+
+        // Si hay datos repetidos en el rol, el primer registro cargado conserva el valor
+        public void add(Person person) {
+            byIdentification = put(byIdentification, identificationKey(person.getIdentification()), person);
+            byPhone = put(byPhone, phoneKey(person.getPhone()), person);
+        }
+
+        // Quita los valores del registro; debe llamarse con la versión anterior antes de reemplazarlo
+        public void remove(Person person) {
+            byIdentification = take(byIdentification, identificationKey(person.getIdentification()), person);
+            byPhone = take(byPhone, phoneKey(person.getPhone()), person);
+        }
+
+        // Quita todos los registros del rol (ej: antes de recargar su dataset)
+        public void clear() {
+            byIdentification = PersistentHashMap.empty();
+            byPhone = PersistentHashMap.empty();
+        }
+
+        @Override
+        public void publish() {
+            published = new Published(byIdentification, byPhone);
+        }
+
+        // Registro con esa identificación (null si no hay)
+        public Person getByIdentification(String identification) {
+            String key = identificationKey(identification);
+            return key == null ? null : published.byIdentification.get(key);
+        }
+
+        // Registro con ese teléfono (null si no hay)
+        public Person getByPhone(String phone) {
+            String key = phoneKey(phone);
+            return key == null ? null : published.byPhone.get(key);
+        }
+
+        private static PersistentHashMap<String, Person> put(PersistentHashMap<String, Person> index, String key, Person person) {
+            if (key == null || key.isEmpty() || index.containsKey(key)) {
+                return index;
+            }
+            return index.plus(key, person);
+        }
+
+        private static PersistentHashMap<String, Person> take(PersistentHashMap<String, Person> index, String key, Person person) {
+            Person holder = key == null ? null : index.get(key);
+            if (holder != null && holder.getId() != null && holder.getId().equals(person.getId())) { // Solo si el valor era de este registro
+                return index.minus(key);
+            }
+            return index;
+        }
+    }
+
+    // Ambos índices de un rol tal como estaban al publicarse
+    private static final class Published {
+        private final PersistentHashMap<String, Person> byIdentification;
+        private final PersistentHashMap<String, Person> byPhone;
+
+        private Published(PersistentHashMap<String, Person> byIdentification, PersistentHashMap<String, Person> byPhone) {
+            this.byIdentification = byIdentification;
+            this.byPhone = byPhone;
+        }
+    }
+}
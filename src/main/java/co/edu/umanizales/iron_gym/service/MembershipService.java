@@ -1,43 +1,89 @@
 package co.edu.umanizales.iron_gym.service; // Declara el paquete donde se encuentra esta clase de servicio
 
 import co.edu.umanizales.iron_gym.model.Membership; // Importa la clase Membership del paquete model
+import co.edu.umanizales.iron_gym.persistence.DatasetLoader; // Carga coordinada en el arranque
+import co.edu.umanizales.iron_gym.persistence.CsvRow;
+import co.edu.umanizales.iron_gym.persistence.DatasetSpec;
+import co.edu.umanizales.iron_gym.persistence.IdSequence; // IDs nuevos sin recorrer el dataset
+import co.edu.umanizales.iron_gym.persistence.DateRangeIndex; // Membresías por vigencia
+import co.edu.umanizales.iron_gym.persistence.Repository; // Almacenamiento del dataset (CSV o MVStore)
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import co.edu.umanizales.iron_gym.persistence.RowCodec;
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Lecturas sin bloqueo sobre instantáneas inmutables
+import jakarta.annotation.PostConstruct; // Para crear el repositorio después de construir el bean
 import org.springframework.stereotype.Service; // Anotación que marca esta clase como un servicio de Spring
 import org.springframework.beans.factory.annotation.Autowired; // Para inyectar ClientService
 
-import java.io.*; // Importa todas las clases para manejo de archivos
 import java.time.LocalDate; // Importa la clase para manejar fechas sin hora
 import java.util.ArrayList; // Importa ArrayList para crear listas dinámicas
 import java.util.List; // Importa la interfaz List para trabajar con colecciones
 
 @Service // Anotación que indica que esta es una clase de servicio gestionada por Spring
-public class MembershipService { // Inicio de la clase MembershipService - contiene la lógica de negocio para membresías
-    private List<Membership> memberships; // Lista que almacena todas las membresías del sistema
+public class MembershipService implements DatasetLoader { // Inicio de la clase MembershipService - contiene la lógica de negocio para membresías
+    private final SnapshotMap<Membership> memberships = new SnapshotMap<>(); // Todas las membresías del sistema por ID, en orden de inserción
     private final String CSV_FILE = "data/memberships.csv"; // Ruta del archivo CSV donde se guardan los datos de membresías
+    private static final String DATASET = "memberships"; // Nombre del dataset
+    @Autowired
+    private RepositoryFactory repositories;
+    private Repository<Membership, String> repository; // Motor de almacenamiento configurado (CSV o MVStore)
+    private final IdSequence ids = new IdSequence("M", 2); // Secuencia de IDs (M01, M02, ...)
     private static final List<String> ALLOWED_TYPES = List.of("BASIC", "PREMIUM");
+    // Vigencia de cada membresía (startDate a endDate, inclusive) para consultar activas sin recorrer todas
+    private final DateRangeIndex<Membership> validity = new DateRangeIndex<>(Membership::getStartDate, Membership::getEndDate);
 
     @Autowired
     private ClientService clientService; // Para validar existencia del cliente por ID
 
-    public MembershipService() { // Constructor de la clase MembershipService
-        this.memberships = new ArrayList<>(); // Inicializa la lista de membresías como ArrayList vacío
-        loadFromCSV(); // Carga los datos de membresías desde el archivo CSV
+    @PostConstruct
+    public void initRepository() { // Crea el repositorio del dataset con el motor configurado
+        repository = repositories.create(DatasetSpec.of(DATASET, "id,clientId,type,startDate,endDate,price",
+                        RowCodec.of(Membership::getId, this::toCsvRow, this::parseRow))
+                .path(CSV_FILE));
+        memberships.attach(validity); // La vigencia se publica junto con las membresías
+    }
+
+    @Override
+    public void load() { // Fase 1 del arranque: lee el dataset sin depender de otros servicios
+        ids.seed(repository.loadSequence()); // Último número guardado; los IDs cargados la adelantan si hace falta
+        repository.loadAll(item -> {
+            memberships.put(item.getId(), item);
+            ids.observe(item.getId());
+            validity.add(item);
+        });
+        memberships.publish(); // Las lecturas ven el dataset completo de una vez
+    }
+
+    // Recarga el dataset si su archivo se editó fuera de la aplicación; si no, se lee de memoria (la revisión no bloquea)
+    private void refresh() {
+        if (repository.changedOnDisk()) {
+            reload();
+        }
+    }
+
+    private synchronized void reload() {
+        memberships.clear();
+        validity.clear();
+        load();
     }
 
     public List<Membership> getAll() { // Método para obtener todas las membresías
-        return memberships; // Retorna la lista de todas las membresías
+        refresh();
+        return memberships.values(); // Retorna la lista de todas las membresías
     }
 
     public Membership getById(String id) { // Método para buscar membresía por ID (membershipId)
-        for (Membership membership : memberships) { // Recorre la lista de membresías
-            if (membership.getId().equals(id)) { // Compara el ID de cada membresía con el ID buscado
-                return membership; // Retorna la membresía encontrada
-            }
-        }
-        return null; // Retorna null si no se encontró ninguna membresía con ese ID
+        refresh();
+        return memberships.get(id); // Búsqueda directa en el índice por ID (null si no existe)
+    }
+
+    // Registro con su versión (para el ETag), leídos de la misma instantánea
+    public SnapshotMap.Versioned<Membership> getVersioned(String id) {
+        refresh();
+        return memberships.getVersioned(id);
     }
 
     public Membership getByClientId(String clientId) { // Buscar membresía por ID de cliente
-        for (Membership membership : memberships) {
+        for (Membership membership : memberships.values()) {
             if (clientId != null && clientId.equals(membership.getClientId())) {
                 return membership;
             }
@@ -49,21 +95,8 @@ public class MembershipService { // Inicio de la clase MembershipService - conti
         return getByClientId(clientId) != null;
     }
 
-    private String generateNextId() { // Genera el siguiente ID con prefijo M y 2 dígitos
-        int max = 0;
-        for (Membership m : memberships) {
-            String mid = m.getId();
-            if (mid != null && mid.startsWith("M")) {
-                try {
-                    int num = Integer.parseInt(mid.substring(1));
-                    if (num > max) max = num;
-                } catch (NumberFormatException ignored) {}
-            }
-        }
-        return String.format("M%02d", max + 1);
-    }
-
-    public Membership create(Membership membership) { // Método para crear una nueva membresía (ID auto)
+    public synchronized Membership create(Membership membership) { // Método para crear una nueva membresía (ID auto)
+        refresh();
         if (membership == null) {
             throw new IllegalArgumentException("El payload de la membresía es obligatorio");
         }
@@ -85,117 +118,122 @@ public class MembershipService { // Inicio de la clase MembershipService - conti
             throw new IllegalArgumentException("Tipo de membresía inválido. Permitidos: BASIC, PREMIUM");
         }
         membership.setType(normalizedType);
+        checkDates(membership);
         // Generar ID Mxx
-        String newId = generateNextId();
+        String newId = ids.next();
         membership.setId(newId);
-        memberships.add(membership); // Agrega la nueva membresía a la lista
-        saveToCSV(); // Guarda los cambios en el archivo CSV
+        memberships.put(membership.getId(), membership); // Agrega la nueva membresía a la lista
+        validity.add(membership);
+        memberships.publish();
+        repository.save(membership); // Persiste el cambio con el motor configurado
         return membership; // Retorna la membresía creada
     }
 
-    public Membership update(String id, Membership updatedMembership) { // Método para actualizar una membresía existente
-        for (int i = 0; i < memberships.size(); i++) { // Recorre la lista de membresías por índice
-            if (memberships.get(i).getId().equals(id)) { // Si encuentra la membresía por ID
-                if (updatedMembership.getType() == null || updatedMembership.getType().isBlank()) {
-                    throw new IllegalArgumentException("El tipo de membresía es obligatorio");
-                }
-                String normalizedType = updatedMembership.getType().trim().toUpperCase();
-                if (!ALLOWED_TYPES.contains(normalizedType)) {
-                    throw new IllegalArgumentException("Tipo de membresía inválido. Permitidos: BASIC, PREMIUM");
-                }
-                updatedMembership.setType(normalizedType);
-                updatedMembership.setId(id); // Mantiene el mismo ID en la membresía actualizada
-                // Mantener el mismo clientId para evitar inconsistencias
-                updatedMembership.setClientId(memberships.get(i).getClientId());
-                memberships.set(i, updatedMembership); // Reemplaza la membresía en la posición i con la actualizada
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return updatedMembership; // Retorna la membresía actualizada
-            }
+    public Membership update(String id, Membership updatedMembership) {
+        return update(id, updatedMembership, null); // Sin condición de versión
+    }
+
+    // expectedVersion: versión que leyó el cliente (If-Match); null reemplaza sin comprobar
+    public synchronized Membership update(String id, Membership updatedMembership, Long expectedVersion) { // Método para actualizar una membresía existente
+        refresh();
+        Membership current = memberships.get(id); // Búsqueda directa en el índice por ID
+        if (current == null) {
+            return null; // Retorna null si no encontró la membresía para actualizar
         }
-        return null; // Retorna null si no encontró la membresía para actualizar
+        memberships.checkVersion(id, expectedVersion); // Otro usuario lo modificó desde que se leyó: sin cambios
+        if (updatedMembership.getType() == null || updatedMembership.getType().isBlank()) {
+            throw new IllegalArgumentException("El tipo de membresía es obligatorio");
+        }
+        String normalizedType = updatedMembership.getType().trim().toUpperCase();
+        if (!ALLOWED_TYPES.contains(normalizedType)) {
+            throw new IllegalArgumentException("Tipo de membresía inválido. Permitidos: BASIC, PREMIUM");
+        }
+        updatedMembership.setType(normalizedType);
+        checkDates(updatedMembership);
+        updatedMembership.setId(id); // Mantiene el mismo ID en la membresía actualizada
+        // Mantener el mismo clientId para evitar inconsistencias
+        updatedMembership.setClientId(current.getClientId());
+        validity.remove(current); // Las fechas pueden cambiar con la actualización
+        memberships.put(id, updatedMembership); // Reemplaza la membresía (conserva su posición) con la actualizada
+        validity.add(updatedMembership);
+        memberships.publish();
+        repository.save(updatedMembership); // Persiste el cambio con el motor configurado
+        return updatedMembership; // Retorna la membresía actualizada
     }
 
-    public boolean delete(String id) { // Método para eliminar una membresía por ID
-        for (int i = 0; i < memberships.size(); i++) { // Recorre la lista de membresías por índice
-            if (memberships.get(i).getId().equals(id)) { // Si encuentra la membresía por ID
-                memberships.remove(i);
-                saveToCSV();
-                return true;
-            }
+    public synchronized boolean delete(String id) { // Método para eliminar una membresía por ID
+        refresh();
+        Membership current = memberships.remove(id); // Búsqueda directa en el índice por ID
+        if (current == null) {
+            return false;
         }
-        return false;
+        validity.remove(current);
+        memberships.publish();
+        repository.deleteById(id); // Persiste el cambio con el motor configurado
+        repository.saveSequence(ids.current()); // El ID eliminado no se vuelve a entregar
+        return true;
     }
 
-    public List<Membership> getActiveMemberships() {
-        List<Membership> result = new ArrayList<>();
-        for (Membership membership : memberships) {
-            if (membership.isActive()) {
-                result.add(membership);
-            }
+    public List<Membership> getActiveMemberships() { // Membresías vigentes hoy (mismo criterio que Membership.isActive)
+        return getActiveOn(LocalDate.now());
+    }
+
+    // Membresías vigentes en la fecha, ordenadas por fecha de fin; solo recorre las que terminan desde esa fecha
+    public List<Membership> getActiveOn(LocalDate date) {
+        refresh();
+        return validity.activeOn(date);
+    }
+
+    // Membresías vigentes hoy que vencen en los próximos days días (inclusive), para avisos de renovación
+    public List<Membership> getExpiring(int days) {
+        refresh();
+        LocalDate today = LocalDate.now();
+        return validity.endingBetween(today, today, today.plusDays(days));
+    }
+
+    // Cantidad de membresías vigentes en algún día entre start y end (inclusive), sin recorrerlas
+    public int countActiveBetween(LocalDate start, LocalDate end) {
+        refresh();
+        return validity.countOverlapping(start, end);
+    }
+
+    // Lanza IllegalArgumentException si la fecha de fin es anterior a la de inicio
+    private void checkDates(Membership membership) {
+        if (membership.getStartDate() != null && membership.getEndDate() != null
+                && membership.getEndDate().isBefore(membership.getStartDate())) {
+            throw new IllegalArgumentException("La fecha de fin no puede ser anterior a la fecha de inicio");
         }
-        return result;
     }
 
     public List<String> getTypes() { // Obtiene lista de tipos de membresía sin duplicados
         return new ArrayList<>(ALLOWED_TYPES);
     }
 
-    private void saveToCSV() {
-        try {
-            File file = new File(CSV_FILE);
-            file.getParentFile().mkdirs();
-            
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-            writer.write("id,clientId,type,startDate,endDate,price\n");
-            
-            for (Membership membership : memberships) {
-                // Formatear el precio con exactamente 3 decimales
-                String formattedPrice = String.format("%.3f", membership.getPrice());
-                // Reemplazar coma por punto si es necesario y asegurar formato estándar
-                formattedPrice = formattedPrice.replace(",", ".");
-                
-                writer.write(membership.getId() + "," +
-                           membership.getClientId() + "," +
-                           membership.getType() + "," + 
-                           membership.getStartDate() + "," + 
-                           membership.getEndDate() + "," + 
-                           formattedPrice + "\n");
-            }
-            
-            writer.close();
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
-        }
+    private String toCsvRow(Membership membership) {
+        // Formatear el precio con exactamente 3 decimales
+        String formattedPrice = String.format("%.3f", membership.getPrice());
+        // Reemplazar coma por punto si es necesario y asegurar formato estándar
+        formattedPrice = formattedPrice.replace(",", ".");
+        return membership.getId() + "," +
+               membership.getClientId() + "," +
+               membership.getType() + "," +
+               membership.getStartDate() + "," +
+               membership.getEndDate() + "," +
+               formattedPrice;
     }
 
-    private void loadFromCSV() { // Método privado para cargar datos desde archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            if (!file.exists()) { // Si el archivo no existe
-                return; // Sale del método sin hacer nada más
-            }
-            
-            BufferedReader reader = new BufferedReader(new FileReader(file)); // Crea lector para el archivo
-            String line = reader.readLine(); // Lee y salta la línea de cabecera
-            
-            while ((line = reader.readLine()) != null) { // Mientras haya líneas por leer
-                String[] data = line.split(","); // Divide la línea por comas para obtener los datos
-                if (data.length >= 6) { // Formato: id,clientId,type,startDate,endDate,price
-                    Membership membership = new Membership(
-                        data[0], // membershipId
-                        data[1], // clientId (o antes personId)
-                        data[2], // type
-                        LocalDate.parse(data[3]), // startDate
-                        LocalDate.parse(data[4]), // endDate
-                        Double.parseDouble(data[5]) // price
-                    );
-                    memberships.add(membership);
-                }
-            }
-            
-            reader.close(); // Cierra el lector del archivo
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
+    // Convierte una fila CSV en un registro; retorna null si la fila es inválida
+    private Membership parseRow(CsvRow row) {
+        if (row.size() < 6) { // Formato: id,clientId,type,startDate,endDate,price
+            return null;
         }
+        return new Membership(
+            row.getString(0), // membershipId
+            row.getString(1), // clientId (o antes personId)
+            row.getString(2), // type
+            LocalDate.parse(row.getString(3)), // startDate
+            LocalDate.parse(row.getString(4)), // endDate
+            row.getDouble(5) // price leído directo de los bytes
+        );
     }
 } // Fin de la clase MembershipService
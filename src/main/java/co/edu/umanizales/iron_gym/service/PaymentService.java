@@ -1,61 +1,247 @@
 package co.edu.umanizales.iron_gym.service; // Declara el paquete donde se encuentra esta clase de servicio
 
 import co.edu.umanizales.iron_gym.model.Payment; // Importa la clase Payment del paquete model
+import co.edu.umanizales.iron_gym.persistence.BinarySnapshot; // Snapshot binario para arrancar sin interpretar texto
+import co.edu.umanizales.iron_gym.persistence.CsvRow;
+import co.edu.umanizales.iron_gym.persistence.DateIndex; // Pagos de cada cliente ordenados por fecha
+import co.edu.umanizales.iron_gym.persistence.DatasetLoader; // Carga coordinada en el arranque
+import co.edu.umanizales.iron_gym.persistence.DatasetSpec;
+import co.edu.umanizales.iron_gym.persistence.IdSequence; // IDs nuevos sin recorrer el dataset
+import co.edu.umanizales.iron_gym.persistence.IdempotencyStore; // Respuestas guardadas por Idempotency-Key
+import co.edu.umanizales.iron_gym.persistence.MonthlySegments; // Pagos agrupados por mes
+import co.edu.umanizales.iron_gym.persistence.Repository; // Almacenamiento del dataset (CSV o MVStore)
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import co.edu.umanizales.iron_gym.persistence.RowCodec;
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Lecturas sin bloqueo sobre instantáneas inmutables
+import jakarta.annotation.PostConstruct; // Para crear el repositorio después de construir el bean
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service; // Anotación que marca esta clase como un servicio de Spring
 
-import java.io.*; // Importa todas las clases para manejo de archivos
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
 import java.time.LocalDateTime; // Importa la clase para manejar fechas y horas
 import java.time.format.DateTimeParseException; // Importa excepción para parseo de fecha/hora inválida
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList; // Importa ArrayList para crear listas dinámicas
+import java.util.HexFormat;
 import java.util.List; // Importa la interfaz List para trabajar con colecciones
+import java.util.Locale;
 import java.util.Set;
 
 @Service // Anotación que indica que esta es una clase de servicio gestionada por Spring
-public class PaymentService { // Inicio de la clase PaymentService - contiene la lógica de negocio para pagos
-    private List<Payment> payments; // Lista que almacena todos los pagos del sistema
-    private final String CSV_FILE = "data/payments.csv"; // Ruta del archivo CSV donde se guardan los datos de pagos
+public class PaymentService implements DatasetLoader { // Inicio de la clase PaymentService - contiene la lógica de negocio para pagos
+    private final SnapshotMap<Payment> payments = new SnapshotMap<>(); // Todos los pagos del sistema por ID, en orden de inserción
+    private final String CSV_FILE = "data/payments.csv"; // Base de los archivos mensuales (data/payments-2025-11.csv); el archivo único anterior se migra al arrancar
+    private static final int BIN_VERSION = 1; // Versión del formato binario de pagos
+    private static final String DATASET = "payments"; // Nombre del dataset
+    @Autowired
+    private RepositoryFactory repositories;
+    private Repository<Payment, String> repository; // Motor de almacenamiento configurado (CSV o MVStore)
+    private final IdSequence ids = new IdSequence("P", 3); // Secuencia de IDs (P001, P002, ...)
+    @Value("${payments.idempotency.ttl-hours:24}")
+    private long idempotencyTtlHours; // Tiempo durante el que un reintento recibe la respuesta original
+    @Value("${payments.idempotency.max-keys:10000}")
+    private int idempotencyMaxKeys; // Claves guardadas como máximo; al llenarse se descarta la más antigua
+    private IdempotencyStore<Payment> idempotency;
     private static final DateTimeFormatter CSV_DT = DateTimeFormatter.ofPattern("dd-MM-yyyy'T'HH:mm");
     private static final Set<String> ALLOWED_METHODS = Set.of("EFECTIVO","TRANSFERENCIA","NEQUI","DAVIPLATA");
 
-    public PaymentService() { // Constructor de la clase PaymentService
-        this.payments = new ArrayList<>(); // Inicializa la lista de pagos como ArrayList vacío
-        loadFromCSV(); // Carga los datos de pagos desde el archivo CSV
+    // Pagos agrupados por mes para las consultas por rango; solo el mes actual es modificable
+    private final MonthlySegments<Payment> segments = new MonthlySegments<>(Payment::getDateTime);
+    // Pagos de cada cliente ordenados por fecha, para no recorrer todos los pagos en cada consulta de cliente
+    private final DateIndex<String, Payment> byClient = new DateIndex<>(Payment::getClientId, Payment::getDateTime);
+    // Todos los pagos ordenados por fecha, con un subíndice por medio de pago, para el reporte
+    private final DateIndex<String, Payment> byMethod = new DateIndex<>(Payment::getPaymentMethod, Payment::getDateTime);
+
+    @PostConstruct
+    public void initRepository() { // Crea el repositorio del dataset con el motor configurado
+        repository = repositories.create(datasetSpec(DATASET, CSV_FILE));
+        payments.attach(segments, byClient, byMethod); // Los índices se publican junto con los pagos
+        idempotency = new IdempotencyStore<>(idempotencyTtlHours * 3600_000L, idempotencyMaxKeys);
+        List<IdempotencyStore.Entry<Payment>> saved = new ArrayList<>();
+        repository.loadIdempotencyKeys(saved::add); // Una sola vez: recargar los pagos no cambia las claves
+        idempotency.restore(saved);
+        if (idempotency.deadEntries() > 0) {
+            repository.retainIdempotencyKeys(idempotency.compact()); // Descarta las vencidas del almacenamiento
+        }
+    }
+
+    // Huella del cuerpo de la petición: distingue un reintento de otro pago con la misma Idempotency-Key.
+    // SHA-256 de los campos ya normalizados (el medio de pago sin espacios y en mayúscula, como se guarda),
+    // así un reintento que solo cambia "nequi" por " NEQUI " es el mismo pago. Cada campo va con su
+    // longitud delante para que dos cuerpos distintos no den el mismo texto (ej: "P1" + "0" y "P" + "10")
+    private static String fingerprint(Payment payment) {
+        StringBuilder canonical = new StringBuilder();
+        appendField(canonical, payment.getId() == null || payment.getId().isEmpty() ? null : payment.getId());
+        appendField(canonical, BigDecimal.valueOf(payment.getAmount()).stripTrailingZeros().toPlainString());
+        appendField(canonical, payment.getDateTime() == null ? null : payment.getDateTime().toString());
+        appendField(canonical, payment.getPaymentMethod() == null ? null : normalizeMethod(payment.getPaymentMethod()));
+        appendField(canonical, payment.getClientId());
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible", e); // Toda JVM debe tenerlo
+        }
+    }
+
+    // Campo de la huella: longitud, ':' y valor; '-' si es null
+    private static void appendField(StringBuilder canonical, String value) {
+        if (value == null) {
+            canonical.append('-');
+        } else {
+            canonical.append(value.length()).append(':').append(value);
+        }
+        canonical.append(';');
+    }
+
+    // Medio de pago tal como se guarda (ej: " nequi" -> "NEQUI")
+    private static String normalizeMethod(String method) {
+        return method.trim().toUpperCase(Locale.ROOT);
+    }
+
+    // Un archivo por mes con snapshot binario y diario compactado en segundo plano (en el motor CSV)
+    public static DatasetSpec<Payment> datasetSpec(String name, String path) {
+        return DatasetSpec.of(name, "id,amount,dateTime,paymentMethod,clientId",
+                        RowCodec.of(Payment::getId, PaymentService::toCsvRow, PaymentService::parseRow))
+                .path(path)
+                .journaled()
+                .monthly(Payment::getDateTime)
+                .binary(BIN_VERSION, PaymentService::writeBinary, PaymentService::readBinary);
+    }
+
+    @Override
+    public void load() { // Fase 1 del arranque: lee el dataset desde el repositorio
+        ids.seed(repository.loadSequence()); // Último número guardado; los IDs cargados la adelantan si hace falta
+        repository.loadAll(payment -> {
+            payments.put(payment.getId(), payment);
+            ids.observe(payment.getId());
+            segments.add(payment);
+            byClient.add(payment);
+            byMethod.add(payment);
+        });
+        payments.publish(); // Las lecturas ven el dataset completo de una vez
+    }
+
+    // Recarga el dataset si su archivo se editó fuera de la aplicación; si no, se lee de memoria (la revisión no bloquea)
+    private void refresh() {
+        if (repository.changedOnDisk()) {
+            reload();
+        }
+    }
+
+    private synchronized void reload() {
+        payments.clear();
+        segments.clear();
+        byClient.clear();
+        byMethod.clear();
+        load();
     }
 
     public List<Payment> getAll() { // Método para obtener todos los pagos
-        return payments; // Retorna la lista de todos los pagos
+        refresh();
+        return payments.values(); // Retorna la lista de todos los pagos
     }
 
     public Payment getById(String id) { // Método para buscar pago por ID
-        for (Payment payment : payments) { // Recorre la lista de pagos
-            if (payment.getId().equals(id)) { // Compara el ID de cada pago con el ID buscado
-                return payment; // Retorna el pago encontrado
-            }
+        refresh();
+        return payments.get(id); // Búsqueda directa en el índice por ID (null si no existe)
+    }
+
+    // Registro con su versión (para el ETag), leídos de la misma instantánea
+    public SnapshotMap.Versioned<Payment> getVersioned(String id) {
+        refresh();
+        return payments.getVersioned(id);
+    }
+
+    // Pagos con fecha entre start y end (inclusive), en orden de fecha; solo recorre los pagos del rango
+    public List<Payment> getBetween(LocalDate start, LocalDate end) {
+        refresh();
+        return byMethod.between(start, end);
+    }
+
+    // Pagos de un medio de pago con fecha entre start y end (inclusive), en orden de fecha
+    public List<Payment> getBetween(LocalDate start, LocalDate end, String method) {
+        refresh();
+        return byMethod.between(method, start, end);
+    }
+
+    // Fecha del primer pago registrado (null si no hay pagos con fecha)
+    public LocalDate getFirstDate() {
+        refresh();
+        return byMethod.firstDate();
+    }
+
+    // Fecha del último pago registrado (null si no hay pagos con fecha)
+    public LocalDate getLastDate() {
+        refresh();
+        return byMethod.lastDate();
+    }
+
+    public List<Payment> getByClientId(String clientId) { // Obtener pagos por cliente, del más antiguo al más reciente
+        refresh();
+        if (clientId == null || clientId.isBlank()) {
+            return new ArrayList<>();
         }
-        return null; // Retorna null si no se encontró ningún pago con ese ID
+        return byClient.get(clientId); // Solo los pagos del cliente, sin recorrer el resto
     }
 
-    public List<Payment> getByClientId(String clientId) { // Obtener pagos por cliente
-        List<Payment> result = new ArrayList<>();
+    // Los últimos pagos del cliente, del más reciente al más antiguo
+    public List<Payment> getLatestByClientId(String clientId, int limit) {
+        refresh();
         if (clientId == null || clientId.isBlank()) {
-            return result;
+            return new ArrayList<>();
         }
-        for (Payment payment : payments) {
-            if (clientId.equals(payment.getClientId())) {
-                result.add(payment);
-            }
+        return byClient.latest(clientId, limit);
+    }
+
+    // Pagos del cliente con fecha entre start y end (inclusive)
+    public List<Payment> getByClientIdBetween(String clientId, LocalDate start, LocalDate end) {
+        refresh();
+        if (clientId == null || clientId.isBlank()) {
+            return new ArrayList<>();
         }
-        return result;
+        return byClient.between(clientId, start, end);
+    }
+
+    public Payment create(Payment payment) {
+        return create(payment, null); // Sin Idempotency-Key
+    }
+
+    // Respuesta original de un reintento con la misma Idempotency-Key (null si la clave es nueva o venció);
+    // no toma locks. Lanza IdempotencyStore.KeyReused si la clave llegó con otro pago
+    public Payment findIdempotent(String idempotencyKey, Payment request) {
+        IdempotencyStore.Entry<Payment> entry = idempotency.find(idempotencyKey, fingerprint(request));
+        return entry != null ? entry.getResponse() : null;
     }
 
-    public Payment create(Payment payment) { // Método para crear un nuevo pago
+    // Con idempotencyKey, el pago y la clave se guardan juntos; si la clave ya tiene respuesta (un reintento
+    // que llegó mientras se creaba el original) se retorna esa, sin validar ni escribir de nuevo
+    public synchronized Payment create(Payment payment, String idempotencyKey) { // Método para crear un nuevo pago
+        String fingerprint = null;
+        if (idempotencyKey != null) {
+            fingerprint = fingerprint(payment); // Normaliza por su cuenta: da lo mismo antes o después de validar
+            IdempotencyStore.Entry<Payment> replay = idempotency.find(idempotencyKey, fingerprint);
+            if (replay != null) {
+                return replay.getResponse();
+            }
+        }
+        refresh();
         if (payment.getId() == null || payment.getId().isEmpty()) {
-            payment.setId(generateNextId());
+            payment.setId(ids.next());
+        } else if (payments.containsKey(payment.getId())) {
+            throw new IllegalArgumentException("Ya existe un pago con el ID: " + payment.getId());
         }
         // Normalizar y validar medio de pago
         if (payment.getPaymentMethod() != null) {
-            String norm = payment.getPaymentMethod().trim().toUpperCase();
+            String norm = normalizeMethod(payment.getPaymentMethod());
             if (!ALLOWED_METHODS.contains(norm)) {
                 throw new IllegalArgumentException("Medio de pago inválido. Permitidos: EFECTIVO, TRANSFERENCIA, NEQUI, DAVIPLATA");
             }
@@ -63,140 +249,144 @@ public class PaymentService { // Inicio de la clase PaymentService - contiene la
         } else {
             throw new IllegalArgumentException("El medio de pago es obligatorio");
         }
-        payments.add(payment); // Agrega el nuevo pago a la lista
-        saveToCSV(); // Guarda los cambios en el archivo CSV
+        segments.checkWritable(payment); // Los meses cerrados no aceptan pagos nuevos
+        payments.put(payment.getId(), payment); // Agrega el nuevo pago a la lista
+        ids.observe(payment.getId()); // Un ID enviado por el cliente adelanta la secuencia
+        segments.add(payment);
+        byClient.add(payment);
+        byMethod.add(payment);
+        payments.publish();
+        if (idempotencyKey == null) {
+            repository.save(payment); // Persiste el cambio con el motor configurado
+        } else {
+            repository.save(payment, idempotency.register(idempotencyKey, fingerprint, payment)); // En la misma confirmación
+            if (idempotency.deadEntries() >= idempotencyMaxKeys) {
+                repository.retainIdempotencyKeys(idempotency.compact()); // El archivo de claves no crece sin límite
+            }
+        }
         return payment; // Retorna el pago creado
     }
 
-    public Payment update(String id, Payment updatedPayment) { // Método para actualizar un pago existente
-        for (int i = 0; i < payments.size(); i++) { // Recorre la lista de pagos por índice
-            if (payments.get(i).getId().equals(id)) { // Si encuentra el pago por ID
-                // Normalizar y validar medio de pago
-                if (updatedPayment.getPaymentMethod() != null) {
-                    String norm = updatedPayment.getPaymentMethod().trim().toUpperCase();
-                    if (!ALLOWED_METHODS.contains(norm)) {
-                        throw new IllegalArgumentException("Medio de pago inválido. Permitidos: EFECTIVO, TRANSFERENCIA, NEQUI, DAVIPLATA");
-                    }
-                    updatedPayment.setPaymentMethod(norm);
-                } else {
-                    throw new IllegalArgumentException("El medio de pago es obligatorio");
-                }
-                updatedPayment.setId(id); // Mantiene el mismo ID en el pago actualizado
-                payments.set(i, updatedPayment); // Reemplaza el pago en la posición i con el actualizado
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return updatedPayment; // Retorna el pago actualizado
-            }
-        }
-        return null; // Retorna null si no encontró el pago para actualizar
+    public Payment update(String id, Payment updatedPayment) {
+        return update(id, updatedPayment, null); // Sin condición de versión
     }
 
-    public boolean delete(String id) { // Método para eliminar un pago por ID
-        for (int i = 0; i < payments.size(); i++) { // Recorre la lista de pagos por índice
-            if (payments.get(i).getId().equals(id)) { // Si encuentra el pago por ID
-                payments.remove(i);
-                saveToCSV();
-                return true;
+    // expectedVersion: versión que leyó el cliente (If-Match); null reemplaza sin comprobar
+    public synchronized Payment update(String id, Payment updatedPayment, Long expectedVersion) { // Método para actualizar un pago existente
+        refresh();
+        Payment current = payments.get(id); // Búsqueda directa en el índice por ID
+        if (current == null) {
+            return null; // Retorna null si no encontró el pago para actualizar
+        }
+        payments.checkVersion(id, expectedVersion); // Otro usuario lo modificó desde que se leyó: sin cambios
+        // Normalizar y validar medio de pago
+        if (updatedPayment.getPaymentMethod() != null) {
+            String norm = normalizeMethod(updatedPayment.getPaymentMethod());
+            if (!ALLOWED_METHODS.contains(norm)) {
+                throw new IllegalArgumentException("Medio de pago inválido. Permitidos: EFECTIVO, TRANSFERENCIA, NEQUI, DAVIPLATA");
             }
+            updatedPayment.setPaymentMethod(norm);
+        } else {
+            throw new IllegalArgumentException("El medio de pago es obligatorio");
         }
-        return false;
+        updatedPayment.setId(id); // Mantiene el mismo ID en el pago actualizado
+        segments.checkWritable(current); // Ni el pago original ni el nuevo pueden estar en un mes cerrado
+        segments.checkWritable(updatedPayment);
+        segments.remove(current);
+        byClient.remove(current); // Con la clave y fecha anteriores: el cliente o la fecha pueden cambiar
+        byMethod.remove(current);
+        payments.put(id, updatedPayment); // Reemplaza el pago (conserva su posición) con el actualizado
+        segments.add(updatedPayment);
+        byClient.add(updatedPayment);
+        byMethod.add(updatedPayment);
+        payments.publish();
+        repository.save(updatedPayment); // Persiste el cambio con el motor configurado
+        return updatedPayment; // Retorna el pago actualizado
     }
 
-    private String generateNextId() {
-        int max = 0;
-        for (Payment p : payments) {
-            String id = p.getId();
-            if (id != null && id.startsWith("P")) {
-                try {
-                    int n = Integer.parseInt(id.substring(1));
-                    if (n > max) max = n;
-                } catch (NumberFormatException ignored) { }
-            }
+    public synchronized boolean delete(String id) { // Método para eliminar un pago por ID
+        refresh();
+        Payment current = payments.get(id); // Búsqueda directa en el índice por ID
+        if (current == null) {
+            return false;
         }
-        return "P" + String.format("%03d", max + 1);
+        segments.checkWritable(current); // Los pagos de meses cerrados no se eliminan
+        segments.remove(payments.remove(id));
+        byClient.remove(current);
+        byMethod.remove(current);
+        payments.publish();
+        repository.deleteById(id); // Persiste el cambio con el motor configurado
+        repository.saveSequence(ids.current()); // El ID eliminado no se vuelve a entregar
+        return true;
     }
 
-    private void saveToCSV() {
-        try {
-            File file = new File(CSV_FILE);
-            file.getParentFile().mkdirs();
-            
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-            writer.write("id,amount,dateTime,paymentMethod,clientId\n");
-            
-            for (Payment payment : payments) {
-                writer.write(payment.getId() + "," + 
-                           payment.getAmount() + "," + 
-                           (payment.getDateTime() == null ? "" : payment.getDateTime().format(CSV_DT)) + "," + 
-                           (payment.getPaymentMethod() == null ? "" : payment.getPaymentMethod()) + "," +
-                           (payment.getClientId() == null ? "" : payment.getClientId()) + "\n");
-            }
-            
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private static void writeBinary(DataOutputStream out, Payment payment) throws IOException {
+        BinarySnapshot.writeString(out, payment.getId());
+        out.writeDouble(payment.getAmount());
+        BinarySnapshot.writeEpochMinute(out, payment.getDateTime());
+        BinarySnapshot.writeString(out, payment.getPaymentMethod());
+        BinarySnapshot.writeString(out, payment.getClientId());
     }
 
-    private void loadFromCSV() {
+    private static Payment readBinary(DataInputStream in) throws IOException {
+        String id = BinarySnapshot.readString(in);
+        double amount = in.readDouble();
+        LocalDateTime dt = BinarySnapshot.readEpochMinute(in);
+        String method = BinarySnapshot.readString(in);
+        String clientId = BinarySnapshot.readString(in);
+        return clientId == null
+                ? new Payment(id, amount, dt, method)
+                : new Payment(id, amount, dt, method, clientId);
+    }
+
+    private static String toCsvRow(Payment payment) {
+        return payment.getId() + "," +
+               payment.getAmount() + "," +
+               (payment.getDateTime() == null ? "" : payment.getDateTime().format(CSV_DT)) + "," +
+               (payment.getPaymentMethod() == null ? "" : payment.getPaymentMethod()) + "," +
+               (payment.getClientId() == null ? "" : payment.getClientId());
+    }
+
+    // Convierte una fila CSV en un pago; retorna null si la fila es inválida
+    private static Payment parseRow(CsvRow row) {
+        if (row.size() < 4) { // Soporta 4 o 5 columnas (compatibilidad hacia atrás)
+            return null;
+        }
+        String id = row.getString(0).trim();
+        if (id.isEmpty()) {
+            return null; // ID es requerido
+        }
+
+        double amount;
         try {
-            File file = new File(CSV_FILE);
-            if (!file.exists()) {
-                return;
-            }
-            
-            BufferedReader reader = new BufferedReader(new FileReader(file)); // Crea lector para el archivo
-            String line = reader.readLine(); // Lee y salta la línea de cabecera
-            
-            while ((line = reader.readLine()) != null) { // Mientras haya líneas por leer
-                String[] data = line.split(","); // Divide la línea por comas para obtener los datos
-                if (data.length >= 4) { // Soporta 4 o 5 columnas (compatibilidad hacia atrás)
-                    String id = data[0] != null ? data[0].trim() : "";
-                    String amountStr = data[1] != null ? data[1].trim() : "";
-                    String dateStr = data[2] != null ? data[2].trim() : "";
-                    String methodStr = data[3] != null ? data[3].trim() : "";
-                    String clientId = (data.length >= 5 && data[4] != null) ? data[4].trim() : null;
-
-                    if (id.isEmpty()) {
-                        continue; // ID es requerido
-                    }
-
-                    double amount;
-                    try {
-                        amount = Double.parseDouble(amountStr);
-                    } catch (NumberFormatException ex) {
-                        continue; // Monto inválido, omite la fila
-                    }
-
-                    LocalDateTime dt = null;
-                    if (!dateStr.isEmpty() && !"null".equalsIgnoreCase(dateStr)) {
-                        try {
-                            dt = LocalDateTime.parse(dateStr, CSV_DT); // Formato dd-MM-yyyy
-                        } catch (DateTimeParseException ex1) {
-                            try {
-                                dt = LocalDateTime.parse(dateStr); // Fallback ISO
-                            } catch (DateTimeParseException ex2) {
-                                continue; // Fecha inválida, omite la fila
-                            }
-                        }
-                    }
-
-                    String method = (methodStr.isEmpty() || "null".equalsIgnoreCase(methodStr)) ? null : methodStr.toUpperCase();
-                    if (method != null && !ALLOWED_METHODS.contains(method)) {
-                        // Si viene un método no permitido en CSV, saltar la fila
-                        continue;
-                    }
-
-                    Payment payment = (clientId == null || clientId.isEmpty())
-                            ? new Payment(id, amount, dt, method)
-                            : new Payment(id, amount, dt, method, clientId); // Crea pago con datos saneados
-                    payments.add(payment); // Agrega el pago a la lista
+            amount = row.getDouble(1); // Monto leído directo de los bytes
+        } catch (NumberFormatException ex) {
+            return null; // Monto inválido, omite la fila
+        }
+
+        LocalDateTime dt = row.getDayMonthYearTime(2); // Formato dd-MM-yyyy leído directo de los bytes
+        if (dt == null) {
+            String dateStr = row.getString(2).trim();
+            if (!dateStr.isEmpty() && !"null".equalsIgnoreCase(dateStr)) {
+                try {
+                    dt = LocalDateTime.parse(dateStr); // Fallback ISO
+                } catch (DateTimeParseException ex) {
+                    return null; // Fecha inválida, omite la fila
                 }
             }
-            
-            reader.close(); // Cierra el lector del archivo
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
         }
+
+        String methodStr = row.getString(3).trim();
+        String method = (methodStr.isEmpty() || "null".equalsIgnoreCase(methodStr)) ? null : methodStr.toUpperCase();
+        if (method != null && !ALLOWED_METHODS.contains(method)) {
+            // Si viene un método no permitido en CSV, saltar la fila
+            return null;
+        }
+
+        String clientId = row.size() >= 5 ? row.getString(4).trim() : null;
+        return (clientId == null || clientId.isEmpty())
+                ? new Payment(id, amount, dt, method)
+                : new Payment(id, amount, dt, method, clientId); // Crea pago con datos saneados
     }
 
     public List<String> getMethods() {
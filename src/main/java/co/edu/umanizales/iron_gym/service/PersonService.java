@@ -1,173 +1,162 @@
 package co.edu.umanizales.iron_gym.service; // Declara el paquete donde se encuentra esta clase de servicio
 
 import co.edu.umanizales.iron_gym.model.Person; // Importa la clase Person del paquete model
+import co.edu.umanizales.iron_gym.persistence.DatasetLoader; // Carga coordinada en el arranque
+import co.edu.umanizales.iron_gym.persistence.CsvRow;
+import co.edu.umanizales.iron_gym.persistence.DatasetSpec;
+import co.edu.umanizales.iron_gym.persistence.IdSequence; // IDs nuevos sin recorrer el dataset
+import co.edu.umanizales.iron_gym.persistence.Repository; // Almacenamiento del dataset (CSV o MVStore)
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import co.edu.umanizales.iron_gym.persistence.RowCodec;
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Lecturas sin bloqueo sobre instantáneas inmutables
 import org.springframework.beans.factory.annotation.Value; // Para inyectar valores desde archivos de configuración
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service; // Anotación que marca esta clase como un servicio de Spring
 import jakarta.annotation.PostConstruct; // Para ejecutar métodos después de la construcción del bean
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.*; // Importa todas las clases para manejo de archivos
-import java.util.ArrayList; // Importa ArrayList para crear listas dinámicas
 import java.util.List; // Importa la interfaz List para trabajar con colecciones
 
 @Service // Anotación que indica que esta es una clase de servicio gestionada por Spring
-public class PersonService { // Inicio de la clase PersonService - contiene la lógica de negocio para personas
-    private List<Person> persons; // Lista que almacena todas las personas del sistema
+public class PersonService implements DatasetLoader { // Inicio de la clase PersonService - contiene la lógica de negocio para personas
+    private static final Logger log = LoggerFactory.getLogger(PersonService.class);
+    private final SnapshotMap<Person> persons = new SnapshotMap<>(); // Todas las personas del sistema por ID, en orden de inserción
     @Value("${csv.persons.path}") // Inyecta el valor de la propiedad csv.persons.path desde application.properties
     private String csvFilePath; // Ruta del archivo CSV donde se guardan los datos de personas
+    private static final String DATASET = "persons"; // Nombre del dataset
+    @Autowired
+    private RepositoryFactory repositories;
+    private Repository<Person, String> repository; // Motor de almacenamiento configurado (CSV o MVStore)
+    private final IdSequence ids = new IdSequence("", 2); // Secuencia de IDs (01, 02, ...)
+    private static final String ROLE = "PERSON"; // Rol de las personas en el índice de identidad (Person.getRole)
+    @Autowired
+    private IdentityIndex identityIndex; // Identificación y teléfono compartidos con clientes y entrenadores
+    private IdentityIndex.Role identities; // Vista de las personas en el índice de identidad
 
-    public PersonService() { // Constructor de la clase PersonService
-        this.persons = new ArrayList<>(); // Inicializa la lista de personas como ArrayList vacío
+    @PostConstruct // Anotación que ejecuta este método después de que el bean sea construido
+    public void init() { // Método de inicialización del servicio: crea el repositorio con el motor configurado
+        repository = repositories.create(DatasetSpec.of(DATASET, "id,name,email,phone,identification",
+                        RowCodec.of(Person::getId, this::toCsvRow, this::parseRow))
+                .path(csvFilePath));
+        identities = identityIndex.role(ROLE);
+        persons.attach(identities); // El índice de identidad se publica junto con el dataset
     }
 
-    @PostConstruct // Anotación que ejecuta este método después de que el bean sea construido
-    public void init() { // Método de inicialización del servicio
-        loadFromCSV(); // Carga los datos de personas desde el archivo CSV
+    @Override
+    public void load() { // Fase 1 del arranque: lee el dataset sin depender de otros servicios
+        loadPersons(); // Carga los datos de personas desde el repositorio
     }
 
-    public List<Person> getAll() { // Método para obtener todas las personas
-        // Recargar datos del CSV cada vez para obtener los cambios más recientes
+    // Recarga el dataset si su archivo se editó fuera de la aplicación; si no, se lee de memoria (la revisión no bloquea)
+    private void refresh() {
+        if (repository.changedOnDisk()) {
+            reload();
+        }
+    }
+
+    private synchronized void reload() {
+        identities.clear();
         persons.clear(); // Limpia la lista actual de personas
-        loadFromCSV(); // Vuelve a cargar los datos desde el archivo CSV
-        return persons; // Retorna la lista actualizada de personas
+        loadPersons(); // Vuelve a cargar los datos desde el repositorio
+    }
+
+    public List<Person> getAll() { // Método para obtener todas las personas
+        refresh(); // Solo relee el CSV si cambió en disco
+        return persons.values(); // Retorna la lista de personas en orden de inserción
     }
 
     public Person getById(String id) { // Método para buscar persona por ID
-        for (Person person : persons) { // Recorre la lista de personas
-            if (person.getId().equals(id)) { // Compara el ID de cada persona con el ID buscado
-                return person; // Retorna la persona encontrada
-            }
-        }
-        return null; // Retorna null si no se encontró ninguna persona con ese ID
+        refresh();
+        return persons.get(id); // Búsqueda directa en el índice por ID (null si no existe)
     }
 
-    public Person create(Person person) { // Método para crear una nueva persona
-        String newId = generateNextId(); // Genera un nuevo ID único para la persona
+    // Registro con su versión (para el ETag), leídos de la misma instantánea
+    public SnapshotMap.Versioned<Person> getVersioned(String id) {
+        refresh();
+        return persons.getVersioned(id);
+    }
+
+    public synchronized Person create(Person person) { // Método para crear una nueva persona
+        refresh();
+        String newId = ids.next(); // Genera un nuevo ID único para la persona
         person.setId(newId);
-        persons.add(person);
-        saveToCSV();
+        persons.put(person.getId(), person);
+        identities.add(person);
+        persons.publish();
+        repository.save(person); // Persiste el cambio con el motor configurado
         return person;
     }
     
-    private String generateNextId() {
-        int maxId = 0;
-        for (Person person : persons) {
-            try {
-                int idNum = Integer.parseInt(person.getId());
-                if (idNum > maxId) {
-                    maxId = idNum;
-                }
-            } catch (NumberFormatException e) {
-                // Ignorar IDs que no sean números
-            }
-        }
-        String newId = String.format("%02d", maxId + 1);
-        
-        // Validación adicional para asegurar que el ID no existe
-        while (isIdExists(newId)) {
-            maxId++;
-            newId = String.format("%02d", maxId + 1);
-        }
-        
-        return newId;
-    }
-    
-    private boolean isIdExists(String id) {
-        for (Person person : persons) {
-            if (person.getId().equals(id)) {
-                return true;
-            }
-        }
-        return false;
+    public Person update(String id, Person updatedPerson) {
+        return update(id, updatedPerson, null); // Sin condición de versión
     }
 
-    public Person update(String id, Person updatedPerson) {
-        for (int i = 0; i < persons.size(); i++) {
-            if (persons.get(i).getId().equals(id)) {
-                updatedPerson.setId(id);
-                persons.set(i, updatedPerson);
-                saveToCSV();
-                return updatedPerson;
-            }
+    // expectedVersion: versión que leyó el cliente (If-Match); null reemplaza sin comprobar
+    public synchronized Person update(String id, Person updatedPerson, Long expectedVersion) {
+        refresh();
+        Person current = persons.get(id); // Búsqueda directa en el índice por ID
+        if (current == null) {
+            return null;
         }
-        return null;
+        persons.checkVersion(id, expectedVersion); // Otro usuario lo modificó desde que se leyó: sin cambios
+        updatedPerson.setId(id);
+        identities.remove(current); // La identificación o el teléfono pueden cambiar
+        persons.put(id, updatedPerson);
+        identities.add(updatedPerson);
+        persons.publish();
+        repository.save(updatedPerson); // Persiste el cambio con el motor configurado
+        return updatedPerson;
     }
 
-    public boolean delete(String id) { // Método para eliminar una persona por ID
-        for (int i = 0; i < persons.size(); i++) { // Recorre la lista de personas por índice
-            if (persons.get(i).getId().equals(id)) { // Si encuentra la persona por ID
-                persons.remove(i); // Elimina la persona de la lista
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return true; // Retorna true indicando que la eliminación fue exitosa
-            }
+    public synchronized boolean delete(String id) { // Método para eliminar una persona por ID
+        refresh();
+        Person current = persons.remove(id); // Elimina la persona de la lista
+        if (current == null) {
+            return false; // Retorna false si no encontró la persona para eliminar
         }
-        return false; // Retorna false si no encontró la persona para eliminar
+        identities.remove(current);
+        persons.publish();
+        repository.deleteById(id); // Persiste el cambio con el motor configurado
+        repository.saveSequence(ids.current()); // El ID eliminado no se vuelve a entregar
+        return true; // Retorna true indicando que la eliminación fue exitosa
     }
     
     public boolean existsByIdentification(String identification) { // Método para verificar si existe una identificación
-        for (Person person : persons) { // Recorre todas las personas existentes
-            if (person.getIdentification().equals(identification)) { // Compara la identificación
-                return true; // Retorna true si encuentra la identificación
-            }
-        }
-        return false; // Retorna false si no encuentra la identificación
+        refresh();
+        return identities.getByIdentification(identification) != null; // Búsqueda directa en el índice de identidad
     }
     
     public boolean existsByPhone(String phone) { // Método para verificar si existe un teléfono
-        for (Person person : persons) { // Recorre todas las personas existentes
-            if (person.getPhone().equals(phone)) { // Compara el teléfono
-                return true; // Retorna true si encuentra el teléfono
-            }
-        }
-        return false; // Retorna false si no encuentra el teléfono
-    }
-
-    private void saveToCSV() { // Método privado para guardar los datos en archivo CSV
-        try {
-            File file = new File(csvFilePath);
-            file.getParentFile().mkdirs();
-            
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-            writer.write("id,name,email,phone,identification\n");
-            
-            for (Person person : persons) {
-                writer.write(person.getId() + "," + 
-                           person.getName() + "," + 
-                           person.getEmail() + "," + 
-                           person.getPhone() + "," +
-                           person.getIdentification() + "\n");
-            }
-            
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        refresh();
+        return identities.getByPhone(phone) != null; // Búsqueda directa en el índice de identidad
+    }
+
+    private void loadPersons() {
+        ids.seed(repository.loadSequence()); // Último número guardado; los IDs cargados la adelantan si hace falta
+        repository.loadAll(item -> {
+            persons.put(item.getId(), item); // Agrega cada persona a la lista
+            ids.observe(item.getId());
+            identities.add(item);
+        });
+        persons.publish(); // Las lecturas ven el dataset completo de una vez
+        log.debug("Personas cargadas desde {}: {}", csvFilePath, persons.size()); // También en cada recarga, por eso en debug
+    }
+
+    private String toCsvRow(Person person) {
+        return person.getId() + "," +
+               person.getName() + "," +
+               person.getEmail() + "," +
+               person.getPhone() + "," +
+               person.getIdentification();
     }
 
-    private void loadFromCSV() {
-        try {
-            File file = new File(csvFilePath);
-            if (!file.exists()) {
-                System.out.println("Archivo CSV no encontrado: " + csvFilePath);
-                return;
-            }
-            
-            System.out.println("Cargando datos desde: " + csvFilePath);
-            BufferedReader reader = new BufferedReader(new FileReader(file)); // Crea lector para el archivo
-            String line = reader.readLine(); // Lee y salta la línea de cabecera
-            
-            while ((line = reader.readLine()) != null) { // Mientras haya líneas por leer
-                String[] data = line.split(","); // Divide la línea por comas para obtener los datos
-                if (data.length == 5) { // Verifica que la línea tenga exactamente 5 campos
-                    Person person = new Person(data[0], data[1], data[2], data[3], data[4]); // Crea persona con datos
-                    persons.add(person); // Agrega la persona a la lista
-                    System.out.println("Persona cargada: " + person.getId() + " - " + person.getName()); // Mensaje informativo
-                }
-            }
-            
-            reader.close(); // Cierra el lector del archivo
-            System.out.println("Total personas cargadas: " + persons.size()); // Muestra total cargado
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
+    // Convierte una fila CSV en un registro; retorna null si la fila es inválida
+    private Person parseRow(CsvRow row) {
+        if (row.size() != 5) { // La línea debe tener exactamente 5 campos
+            return null;
         }
+        return new Person(row.getString(0), row.getString(1), row.getString(2),
+                row.getString(3), row.getString(4)); // Crea persona con datos
     }
 } // Fin de la clase PersonService
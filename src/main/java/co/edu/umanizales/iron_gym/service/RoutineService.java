@@ -1,104 +1,116 @@
 package co.edu.umanizales.iron_gym.service; // Declara el paquete donde se encuentra esta clase de servicio
 
 import co.edu.umanizales.iron_gym.model.Routine; // Importa la clase Routine del paquete model
+import co.edu.umanizales.iron_gym.persistence.DatasetLoader; // Carga coordinada en el arranque
+import co.edu.umanizales.iron_gym.persistence.CsvRow;
+import co.edu.umanizales.iron_gym.persistence.DatasetSpec;
+import co.edu.umanizales.iron_gym.persistence.Repository; // Almacenamiento del dataset (CSV o MVStore)
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import co.edu.umanizales.iron_gym.persistence.RowCodec;
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Lecturas sin bloqueo sobre instantáneas inmutables
+import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.annotation.PostConstruct; // Para crear el repositorio después de construir el bean
 import org.springframework.stereotype.Service; // Anotación que marca esta clase como un servicio de Spring
 
-import java.io.*; // Importa todas las clases para manejo de archivos
-import java.util.ArrayList; // Importa ArrayList para crear listas dinámicas
 import java.util.List; // Importa la interfaz List para trabajar con colecciones
 
 @Service // Anotación que indica que esta es una clase de servicio gestionada por Spring
-public class RoutineService { // Inicio de la clase RoutineService - contiene la lógica de negocio para rutinas
-    private List<Routine> routines; // Lista que almacena todas las rutinas del sistema
+public class RoutineService implements DatasetLoader { // Inicio de la clase RoutineService - contiene la lógica de negocio para rutinas
+    private final SnapshotMap<Routine> routines = new SnapshotMap<>(); // Todas las rutinas del sistema por ID, en orden de inserción
     private final String CSV_FILE = "data/routines.csv"; // Ruta del archivo CSV donde se guardan los datos de rutinas
+    private static final String DATASET = "routines"; // Nombre del dataset
+    @Autowired
+    private RepositoryFactory repositories;
+    private Repository<Routine, String> repository; // Motor de almacenamiento configurado (CSV o MVStore)
 
-    public RoutineService() { // Constructor de la clase RoutineService
-        this.routines = new ArrayList<>(); // Inicializa la lista de rutinas como ArrayList vacío
-        loadFromCSV(); // Carga los datos de rutinas desde el archivo CSV
+    @PostConstruct
+    public void initRepository() { // Crea el repositorio del dataset con el motor configurado
+        repository = repositories.create(DatasetSpec.of(DATASET, "id,objective",
+                        RowCodec.of(Routine::getId, this::toCsvRow, this::parseRow))
+                .path(CSV_FILE));
+    }
+
+    @Override
+    public void load() { // Fase 1 del arranque: lee el dataset sin depender de otros servicios
+        repository.loadAll(item -> routines.put(item.getId(), item));
+        routines.publish(); // Las lecturas ven el dataset completo de una vez
+    }
+
+    // Recarga el dataset si su archivo se editó fuera de la aplicación; si no, se lee de memoria (la revisión no bloquea)
+    private void refresh() {
+        if (repository.changedOnDisk()) {
+            reload();
+        }
+    }
+
+    private synchronized void reload() {
+        routines.clear();
+        load();
     }
 
     public List<Routine> getAll() { // Método para obtener todas las rutinas
-        return routines; // Retorna la lista de todas las rutinas
+        refresh();
+        return routines.values(); // Retorna la lista de todas las rutinas
     }
 
     public Routine getById(String id) {
-        for (Routine routine : routines) { // Recorre la lista de rutinas
-            if (routine.getId().equals(id)) { // Compara el ID de cada rutina con el ID buscado
-                return routine; // Retorna la rutina encontrada
-            }
-        }
-        return null; // Retorna null si no se encontró ninguna rutina con ese ID
+        refresh();
+        return routines.get(id); // Búsqueda directa en el índice por ID (null si no existe)
+    }
+
+    // Registro con su versión (para el ETag), leídos de la misma instantánea
+    public SnapshotMap.Versioned<Routine> getVersioned(String id) {
+        refresh();
+        return routines.getVersioned(id);
     }
 
-    public Routine create(Routine routine) { // Método para crear una nueva rutina
-        routines.add(routine); // Agrega la nueva rutina a la lista
-        saveToCSV(); // Guarda los cambios en el archivo CSV
+    public synchronized Routine create(Routine routine) { // Método para crear una nueva rutina
+        refresh();
+        routines.put(routine.getId(), routine); // Agrega la nueva rutina a la lista
+        routines.publish();
+        repository.save(routine); // Persiste el cambio con el motor configurado
         return routine; // Retorna la rutina creada
     }
 
-    public Routine update(String id, Routine updatedRoutine) { // Método para actualizar una rutina existente
-        for (int i = 0; i < routines.size(); i++) { // Recorre la lista de rutinas por índice
-            if (routines.get(i).getId().equals(id)) { // Si encuentra la rutina por ID
-                updatedRoutine.setId(id); // Mantiene el mismo ID en la rutina actualizada
-                routines.set(i, updatedRoutine); // Reemplaza la rutina en la posición i con la actualizada
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return updatedRoutine; // Retorna la rutina actualizada
-            }
-        }
-        return null; // Retorna null si no encontró la rutina para actualizar
+    public Routine update(String id, Routine updatedRoutine) {
+        return update(id, updatedRoutine, null); // Sin condición de versión
     }
 
-    public boolean delete(String id) { // Método para eliminar una rutina por ID
-        for (int i = 0; i < routines.size(); i++) { // Recorre la lista de rutinas por índice
-            if (routines.get(i).getId().equals(id)) { // Si encuentra la rutina por ID
-                routines.remove(i); // Elimina la rutina de la lista
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return true; // Retorna true indicando que la eliminación fue exitosa
-            }
+    // expectedVersion: versión que leyó el cliente (If-Match); null reemplaza sin comprobar
+    public synchronized Routine update(String id, Routine updatedRoutine, Long expectedVersion) { // Método para actualizar una rutina existente
+        refresh();
+        if (!routines.containsKey(id)) { // Búsqueda directa en el índice por ID
+            return null; // Retorna null si no encontró la rutina para actualizar
         }
-        return false; // Retorna false si no encontró la rutina para eliminar
+        routines.checkVersion(id, expectedVersion); // Otro usuario lo modificó desde que se leyó: sin cambios
+        updatedRoutine.setId(id); // Mantiene el mismo ID en la rutina actualizada
+        routines.put(id, updatedRoutine); // Reemplaza la rutina (conserva su posición) con la actualizada
+        routines.publish();
+        repository.save(updatedRoutine); // Persiste el cambio con el motor configurado
+        return updatedRoutine; // Retorna la rutina actualizada
     }
 
-    private void saveToCSV() { // Método privado para guardar los datos en archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            file.getParentFile().mkdirs(); // Crea la estructura de directorios si no existe
-            
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file)); // Crea escritor para el archivo
-            writer.write("id,objective\n"); // Escribe la cabecera del CSV
-            
-            for (Routine routine : routines) { // Recorre todas las rutinas de la lista
-                writer.write(routine.getId() + "," + // Escribe el ID de la rutina
-                           routine.getObjective() + "\n"); // Escribe el objetivo y salto de línea
-            }
-            
-            writer.close(); // Cierra el escritor del archivo
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
+    public synchronized boolean delete(String id) { // Método para eliminar una rutina por ID
+        refresh();
+        if (!routines.containsKey(id)) { // Búsqueda directa en el índice por ID
+            return false; // Retorna false si no encontró la rutina para eliminar
         }
+        routines.remove(id); // Elimina la rutina de la lista
+        routines.publish();
+        repository.deleteById(id); // Persiste el cambio con el motor configurado
+        return true; // Retorna true indicando que la eliminación fue exitosa
+    }
+
+    private String toCsvRow(Routine routine) {
+        return routine.getId() + "," + // ID de la rutina
+               routine.getObjective(); // Objetivo de la rutina
     }
 
-    private void loadFromCSV() { // Método privado para cargar datos desde archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            if (!file.exists()) { // Si el archivo no existe
-                return; // Sale del método sin hacer nada más
-            }
-            
-            BufferedReader reader = new BufferedReader(new FileReader(file)); // Crea lector para el archivo
-            String line = reader.readLine(); // Lee y salta la línea de cabecera
-            
-            while ((line = reader.readLine()) != null) { // Mientras haya líneas por leer
-                String[] data = line.split(","); // Divide la línea por comas para obtener los datos
-                if (data.length == 2) { // Verifica que la línea tenga exactamente 2 campos
-                    Routine routine = new Routine(data[0], data[1]); // Crea rutina con ID y objetivo
-                    routines.add(routine); // Agrega la rutina a la lista
-                }
-            }
-            
-            reader.close(); // Cierra el lector del archivo
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
+    // Convierte una fila CSV en un registro; retorna null si la fila es inválida
+    private Routine parseRow(CsvRow row) {
+        if (row.size() != 2) { // La línea debe tener exactamente 2 campos
+            return null;
         }
+        return new Routine(row.getString(0), row.getString(1)); // Crea rutina con ID y objetivo
     }
 } // Fin de la clase RoutineService
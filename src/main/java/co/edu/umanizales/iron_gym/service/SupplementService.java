@@ -1,111 +1,123 @@
 package co.edu.umanizales.iron_gym.service; // Declara el paquete donde se encuentra esta clase de servicio
 
 import co.edu.umanizales.iron_gym.model.Supplement; // Importa la clase Supplement del paquete model
+import co.edu.umanizales.iron_gym.persistence.DatasetLoader; // Carga coordinada en el arranque
+import co.edu.umanizales.iron_gym.persistence.CsvRow;
+import co.edu.umanizales.iron_gym.persistence.DatasetSpec;
+import co.edu.umanizales.iron_gym.persistence.Repository; // Almacenamiento del dataset (CSV o MVStore)
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import co.edu.umanizales.iron_gym.persistence.RowCodec;
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Lecturas sin bloqueo sobre instantáneas inmutables
+import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.annotation.PostConstruct; // Para crear el repositorio después de construir el bean
 import org.springframework.stereotype.Service; // Anotación que marca esta clase como un servicio de Spring
 
-import java.io.*; // Importa todas las clases para manejo de archivos
-import java.util.ArrayList; // Importa ArrayList para crear listas dinámicas
 import java.util.List; // Importa la interfaz List para trabajar con colecciones
 
 @Service // Anotación que indica que esta es una clase de servicio gestionada por Spring
-public class SupplementService { // Inicio de la clase SupplementService - contiene la lógica de negocio para suplementos
-    private List<Supplement> supplements; // Lista que almacena todos los suplementos del sistema
+public class SupplementService implements DatasetLoader { // Inicio de la clase SupplementService - contiene la lógica de negocio para suplementos
+    private final SnapshotMap<Supplement> supplements = new SnapshotMap<>(); // Todos los suplementos del sistema por ID, en orden de inserción
     private final String CSV_FILE = "data/supplements.csv"; // Ruta del archivo CSV donde se guardan los datos de suplementos
+    private static final String DATASET = "supplements"; // Nombre del dataset
+    @Autowired
+    private RepositoryFactory repositories;
+    private Repository<Supplement, String> repository; // Motor de almacenamiento configurado (CSV o MVStore)
 
-    public SupplementService() { // Constructor de la clase SupplementService
-        this.supplements = new ArrayList<>(); // Inicializa la lista de suplementos como ArrayList vacío
-        loadFromCSV(); // Carga los datos de suplementos desde el archivo CSV
+    @PostConstruct
+    public void initRepository() { // Crea el repositorio del dataset con el motor configurado
+        repository = repositories.create(DatasetSpec.of(DATASET, "id,name,brand,price",
+                        RowCodec.of(Supplement::getId, this::toCsvRow, this::parseRow))
+                .path(CSV_FILE));
+    }
+
+    @Override
+    public void load() { // Fase 1 del arranque: lee el dataset sin depender de otros servicios
+        repository.loadAll(item -> supplements.put(item.getId(), item));
+        supplements.publish(); // Las lecturas ven el dataset completo de una vez
+    }
+
+    // Recarga el dataset si su archivo se editó fuera de la aplicación; si no, se lee de memoria (la revisión no bloquea)
+    private void refresh() {
+        if (repository.changedOnDisk()) {
+            reload();
+        }
+    }
+
+    private synchronized void reload() {
+        supplements.clear();
+        load();
     }
 
     public List<Supplement> getAll() { // Método para obtener todos los suplementos
-        return supplements; // Retorna la lista de todos los suplementos
+        refresh();
+        return supplements.values(); // Retorna la lista de todos los suplementos
     }
 
     public Supplement getById(String id) {
-        for (Supplement supplement : supplements) { // Recorre la lista de suplementos
-            if (supplement.getId().equals(id)) { // Compara el ID de cada suplemento con el ID buscado
-                return supplement; // Retorna el suplemento encontrado
-            }
-        }
-        return null; // Retorna null si no se encontró ningún suplemento con ese ID
+        refresh();
+        return supplements.get(id); // Búsqueda directa en el índice por ID (null si no existe)
+    }
+
+    // Registro con su versión (para el ETag), leídos de la misma instantánea
+    public SnapshotMap.Versioned<Supplement> getVersioned(String id) {
+        refresh();
+        return supplements.getVersioned(id);
     }
 
-    public Supplement create(Supplement supplement) { // Método para crear un nuevo suplemento
-        supplements.add(supplement); // Agrega el nuevo suplemento a la lista
-        saveToCSV(); // Guarda los cambios en el archivo CSV
+    public synchronized Supplement create(Supplement supplement) { // Método para crear un nuevo suplemento
+        refresh();
+        supplements.put(supplement.getId(), supplement); // Agrega el nuevo suplemento a la lista
+        supplements.publish();
+        repository.save(supplement); // Persiste el cambio con el motor configurado
         return supplement; // Retorna el suplemento creado
     }
 
-    public Supplement update(String id, Supplement updatedSupplement) { // Método para actualizar un suplemento existente
-        for (int i = 0; i < supplements.size(); i++) { // Recorre la lista de suplementos por índice
-            if (supplements.get(i).getId().equals(id)) { // Si encuentra el suplemento por ID
-                updatedSupplement.setId(id); // Mantiene el mismo ID en el suplemento actualizado
-                supplements.set(i, updatedSupplement); // Reemplaza el suplemento en la posición i con el actualizado
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return updatedSupplement; // Retorna el suplemento actualizado
-            }
-        }
-        return null; // Retorna null si no encontró el suplemento para actualizar
+    public Supplement update(String id, Supplement updatedSupplement) {
+        return update(id, updatedSupplement, null); // Sin condición de versión
     }
 
-    public boolean delete(String id) { // Método para eliminar un suplemento por ID
-        for (int i = 0; i < supplements.size(); i++) { // Recorre la lista de suplementos por índice
-            if (supplements.get(i).getId().equals(id)) { // Si encuentra el suplemento por ID
-                supplements.remove(i); // Elimina el suplemento de la lista
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return true; // Retorna true indicando que la eliminación fue exitosa
-            }
+    // expectedVersion: versión que leyó el cliente (If-Match); null reemplaza sin comprobar
+    public synchronized Supplement update(String id, Supplement updatedSupplement, Long expectedVersion) { // Método para actualizar un suplemento existente
+        refresh();
+        if (!supplements.containsKey(id)) { // Búsqueda directa en el índice por ID
+            return null; // Retorna null si no encontró el suplemento para actualizar
         }
-        return false; // Retorna false si no encontró el suplemento para eliminar
+        supplements.checkVersion(id, expectedVersion); // Otro usuario lo modificó desde que se leyó: sin cambios
+        updatedSupplement.setId(id); // Mantiene el mismo ID en el suplemento actualizado
+        supplements.put(id, updatedSupplement); // Reemplaza el suplemento (conserva su posición) con el actualizado
+        supplements.publish();
+        repository.save(updatedSupplement); // Persiste el cambio con el motor configurado
+        return updatedSupplement; // Retorna el suplemento actualizado
     }
 
-    private void saveToCSV() { // Método privado para guardar los datos en archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            file.getParentFile().mkdirs(); // Crea la estructura de directorios si no existe
-            
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file)); // Crea escritor para el archivo
-            writer.write("id,name,brand,price\n"); // Escribe la cabecera del CSV
-            
-            for (Supplement supplement : supplements) { // Recorre todos los suplementos de la lista
-                writer.write(supplement.getId() + "," + // Escribe el ID del suplemento
-                           supplement.getName() + "," + // Escribe el nombre del suplemento
-                           supplement.getBrand() + "," + // Escribe la marca del suplemento
-                           supplement.getPrice() + "\n"); // Escribe el precio y salto de línea
-            }
-            
-            writer.close(); // Cierra el escritor del archivo
-        } catch (IOException e) { // Captura excepciones de entrada/salida
-            e.printStackTrace(); // Imprime el error en la consola para depuración
+    public synchronized boolean delete(String id) { // Método para eliminar un suplemento por ID
+        refresh();
+        if (!supplements.containsKey(id)) { // Búsqueda directa en el índice por ID
+            return false; // Retorna false si no encontró el suplemento para eliminar
         }
+        supplements.remove(id); // Elimina el suplemento de la lista
+        supplements.publish();
+        repository.deleteById(id); // Persiste el cambio con el motor configurado
+        return true; // Retorna true indicando que la eliminación fue exitosa
+    }
+
+    private String toCsvRow(Supplement supplement) {
+        return supplement.getId() + "," + // ID del suplemento
+               supplement.getName() + "," + // Nombre del suplemento
+               supplement.getBrand() + "," + // Marca del suplemento
+               supplement.getPrice(); // Precio del suplemento
     }
 
-    private void loadFromCSV() { // Método privado para cargar datos desde archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            if (!file.exists()) { // Si el archivo no existe
-                return; // Sale del método sin hacer nada más
-            }
-            
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            String line = reader.readLine(); // Skip header
-            
-            while ((line = reader.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length == 4) {
-                    Supplement supplement = new Supplement(
-                        data[0], 
-                        data[1], 
-                        data[2], 
-                        Double.parseDouble(data[3])
-                    );
-                    supplements.add(supplement);
-                }
-            }
-            
-            reader.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+    // Convierte una fila CSV en un registro; retorna null si la fila es inválida
+    private Supplement parseRow(CsvRow row) {
+        if (row.size() != 4) {
+            return null;
         }
+        return new Supplement(
+            row.getString(0),
+            row.getString(1),
+            row.getString(2),
+            row.getDouble(3) // Precio leído directo de los bytes
+        );
     }
 }
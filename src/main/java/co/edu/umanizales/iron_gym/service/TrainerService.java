@@ -1,145 +1,152 @@
 package co.edu.umanizales.iron_gym.service;
 
 import co.edu.umanizales.iron_gym.model.Trainer;
+import co.edu.umanizales.iron_gym.persistence.DatasetLoader; // Carga coordinada en el arranque
+import co.edu.umanizales.iron_gym.persistence.CsvRow;
+import co.edu.umanizales.iron_gym.persistence.DatasetSpec;
+import co.edu.umanizales.iron_gym.persistence.IdSequence; // IDs nuevos sin recorrer el dataset
+import co.edu.umanizales.iron_gym.persistence.Repository; // Almacenamiento del dataset (CSV o MVStore)
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import co.edu.umanizales.iron_gym.persistence.RowCodec;
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap; // Lecturas sin bloqueo sobre instantáneas inmutables
+import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.annotation.PostConstruct; // Para crear el repositorio después de construir el bean
 import org.springframework.stereotype.Service;
 
-import java.io.*;
-import java.util.ArrayList;
 import java.util.List;
 
 @Service
-public class TrainerService {
-    private List<Trainer> trainers;
+public class TrainerService implements DatasetLoader {
+    private final SnapshotMap<Trainer> trainers = new SnapshotMap<>(); // Entrenadores por ID, en orden de inserción
     private final String CSV_FILE = "data/trainers.csv";
+    private static final String DATASET = "trainers"; // Nombre del dataset
+    @Autowired
+    private RepositoryFactory repositories;
+    private Repository<Trainer, String> repository; // Motor de almacenamiento configurado (CSV o MVStore)
+    private final IdSequence ids = new IdSequence("T", 2); // Secuencia de IDs (T01, T02, ...)
+    private static final String ROLE = "TRAINER"; // Rol de los entrenadores en el índice de identidad (Trainer.getRole)
+    @Autowired
+    private IdentityIndex identityIndex; // Identificación y teléfono compartidos con personas y clientes
+    private IdentityIndex.Role identities; // Vista de los entrenadores en el índice de identidad
 
-    public TrainerService() {
-        this.trainers = new ArrayList<>();
-        loadFromCSV();
+    @PostConstruct
+    public void initRepository() { // Crea el repositorio del dataset con el motor configurado
+        repository = repositories.create(DatasetSpec.of(DATASET, "id,name,email,phone,identification",
+                        RowCodec.of(Trainer::getId, this::toCsvRow, this::parseRow))
+                .path(CSV_FILE));
+        identities = identityIndex.role(ROLE);
+        trainers.attach(identities); // El índice de identidad se publica junto con el dataset
+    }
+
+    @Override
+    public void load() { // Fase 1 del arranque: lee el dataset sin depender de otros servicios
+        ids.seed(repository.loadSequence()); // Último número guardado; los IDs cargados la adelantan si hace falta
+        repository.loadAll(item -> {
+            trainers.put(item.getId(), item);
+            ids.observe(item.getId());
+            identities.add(item);
+        });
+        trainers.publish(); // Las lecturas ven el dataset completo de una vez
+    }
+
+    // Recarga el dataset si su archivo se editó fuera de la aplicación; si no, se lee de memoria (la revisión no bloquea)
+    private void refresh() {
+        if (repository.changedOnDisk()) {
+            reload();
+        }
+    }
+
+    private synchronized void reload() {
+        identities.clear();
+        trainers.clear();
+        load();
     }
 
     public List<Trainer> getAll() {
-        return trainers;
+        refresh();
+        return trainers.values();
     }
 
     public Trainer getById(String id) {
-        for (Trainer trainer : trainers) { // Recorre la lista de entrenadores
-            if (trainer.getId().equals(id)) { // Compara el ID de cada entrenador con el ID buscado
-                return trainer; // Retorna el entrenador encontrado
-            }
-        }
-        return null; // Retorna null si no se encontró ningún entrenador con ese ID
+        refresh();
+        return trainers.get(id); // Búsqueda directa en el índice por ID (null si no existe)
+    }
+
+    // Registro con su versión (para el ETag), leídos de la misma instantánea
+    public SnapshotMap.Versioned<Trainer> getVersioned(String id) {
+        refresh();
+        return trainers.getVersioned(id);
     }
 
-    public Trainer create(Trainer trainer) { // Método para crear un nuevo entrenador
-        String newId = generateNextId(); // Genera un nuevo ID único
+    public synchronized Trainer create(Trainer trainer) { // Método para crear un nuevo entrenador
+        refresh();
+        String newId = ids.next(); // Genera un nuevo ID único
         trainer.setId(newId); // Asigna el nuevo ID al entrenador
-        trainers.add(trainer); // Agrega el nuevo entrenador a la lista
-        saveToCSV(); // Guarda los cambios en el archivo CSV
+        trainers.put(trainer.getId(), trainer); // Agrega el nuevo entrenador a la lista
+        identities.add(trainer);
+        trainers.publish();
+        repository.save(trainer); // Persiste el cambio con el motor configurado
         return trainer; // Retorna el entrenador creado
     }
     
-    private String generateNextId() { // Método privado para generar el siguiente ID disponible con prefijo T
-        int maxId = 0; // Inicializa el ID máximo en 0
-        for (Trainer trainer : trainers) { // Recorre todos los entrenadores
-            try {
-                String currentId = trainer.getId();
-                if (currentId != null && currentId.startsWith("T")) { // IDs esperados con prefijo T
-                    int idNum = Integer.parseInt(currentId.substring(1)); // Extrae la parte numérica
-                    if (idNum > maxId) {
-                        maxId = idNum; // Actualiza el ID máximo
-                    }
-                }
-            } catch (NumberFormatException e) {
-                // Ignorar IDs que no cumplan el formato esperado
-            }
-        }
-        return String.format("T%02d", maxId + 1); // Retorna el siguiente ID con formato T + 2 dígitos
+    public Trainer update(String id, Trainer updatedTrainer) {
+        return update(id, updatedTrainer, null); // Sin condición de versión
     }
 
-    public Trainer update(String id, Trainer updatedTrainer) { // Método para actualizar un entrenador existente
-        for (int i = 0; i < trainers.size(); i++) { // Recorre la lista de entrenadores por índice
-            if (trainers.get(i).getId().equals(id)) { // Si encuentra el entrenador por ID
-                updatedTrainer.setId(id); // Mantiene el mismo ID en el entrenador actualizado
-                trainers.set(i, updatedTrainer); // Reemplaza el entrenador en la posición i con el actualizado
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return updatedTrainer; // Retorna el entrenador actualizado
-            }
+    // expectedVersion: versión que leyó el cliente (If-Match); null reemplaza sin comprobar
+    public synchronized Trainer update(String id, Trainer updatedTrainer, Long expectedVersion) { // Método para actualizar un entrenador existente
+        refresh();
+        Trainer current = trainers.get(id); // Búsqueda directa en el índice por ID
+        if (current == null) {
+            return null; // Retorna null si no encontró el entrenador para actualizar
         }
-        return null; // Retorna null si no encontró el entrenador para actualizar
+        trainers.checkVersion(id, expectedVersion); // Otro usuario lo modificó desde que se leyó: sin cambios
+        updatedTrainer.setId(id); // Mantiene el mismo ID en el entrenador actualizado
+        identities.remove(current); // La identificación o el teléfono pueden cambiar
+        trainers.put(id, updatedTrainer); // Reemplaza el entrenador (conserva su posición) con el actualizado
+        identities.add(updatedTrainer);
+        trainers.publish();
+        repository.save(updatedTrainer); // Persiste el cambio con el motor configurado
+        return updatedTrainer; // Retorna el entrenador actualizado
     }
 
-    public boolean delete(String id) { // Método para eliminar un entrenador por ID
-        for (int i = 0; i < trainers.size(); i++) { // Recorre la lista de entrenadores por índice
-            if (trainers.get(i).getId().equals(id)) { // Si encuentra el entrenador por ID
-                trainers.remove(i); // Elimina el entrenador de la lista
-                saveToCSV(); // Guarda los cambios en el archivo CSV
-                return true; // Retorna true indicando que la eliminación fue exitosa
-            }
+    public synchronized boolean delete(String id) { // Método para eliminar un entrenador por ID
+        refresh();
+        Trainer current = trainers.remove(id); // Elimina el entrenador de la lista
+        if (current == null) {
+            return false; // Retorna false si no encontró el entrenador para eliminar
         }
-        return false; // Retorna false si no encontró el entrenador para eliminar
+        identities.remove(current);
+        trainers.publish();
+        repository.deleteById(id); // Persiste el cambio con el motor configurado
+        repository.saveSequence(ids.current()); // El ID eliminado no se vuelve a entregar
+        return true; // Retorna true indicando que la eliminación fue exitosa
     }
 
     public boolean existsByIdentification(String identification) { // Verifica si ya existe una identificación
-        for (Trainer trainer : trainers) {
-            if (trainer.getIdentification().equals(identification)) {
-                return true;
-            }
-        }
-        return false;
+        refresh();
+        return identities.getByIdentification(identification) != null; // Búsqueda directa en el índice de identidad
     }
 
     public boolean existsByPhone(String phone) { // Verifica si ya existe un teléfono
-        for (Trainer trainer : trainers) {
-            if (trainer.getPhone().equals(phone)) {
-                return true;
-            }
-        }
-        return false;
+        refresh();
+        return identities.getByPhone(phone) != null;
     }
 
-    private void saveToCSV() { // Método privado para guardar los datos en archivo CSV
-        try { // Inicia bloque try para manejar posibles excepciones de archivo
-            File file = new File(CSV_FILE); // Crea un objeto File con la ruta del CSV
-            file.getParentFile().mkdirs(); // Crea la estructura de directorios si no existe
-            
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file)); // Crea escritor para el archivo
-            writer.write("id,name,email,phone,identification\n");
-            
-            for (Trainer trainer : trainers) {
-                writer.write(trainer.getId() + "," + 
-                           trainer.getName() + "," + 
-                           trainer.getEmail() + "," + 
-                           trainer.getPhone() + "," +
-                           trainer.getIdentification() + "\n");
-            }
-            
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private String toCsvRow(Trainer trainer) {
+        return trainer.getId() + "," +
+               trainer.getName() + "," +
+               trainer.getEmail() + "," +
+               trainer.getPhone() + "," +
+               trainer.getIdentification();
     }
 
-    private void loadFromCSV() {
-        try {
-            File file = new File(CSV_FILE);
-            if (!file.exists()) {
-                return;
-            }
-            
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            String line = reader.readLine(); // Skip header
-            
-            while ((line = reader.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length == 5) {
-                    Trainer trainer = new Trainer(data[0], data[1], data[2], data[3], data[4]);
-                    trainers.add(trainer);
-                }
-            }
-            
-            reader.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+    // Convierte una fila CSV en un registro; retorna null si la fila es inválida
+    private Trainer parseRow(CsvRow row) {
+        if (row.size() != 5) {
+            return null;
         }
+        return new Trainer(row.getString(0), row.getString(1), row.getString(2),
+                row.getString(3), row.getString(4));
     }
 }
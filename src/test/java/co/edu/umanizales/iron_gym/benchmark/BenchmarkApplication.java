@@ -0,0 +1,17 @@
+package co.edu.umanizales.iron_gym.benchmark; // Declara el paquete de las mediciones de rendimiento
+
+import co.edu.umanizales.iron_gym.IronGymApplication;
+import org.springframework.boot.SpringApplication;
+
+/**
+ * Arranca la aplicación con el classpath de pruebas, que es donde viven los benchmarks: así no
+ * quedan en el jar. Se elige el benchmark con su perfil, ej:
+ *   mvn spring-boot:test-run -Dspring-boot.run.arguments=--spring.profiles.active=benchmark
+ * Se ejecuta en la carpeta del proyecto y carga (y migra) su data/; para trabajar sobre una copia
+ * se agrega -Dspring-boot.run.workingDirectory=<carpeta con la copia>.
+ */
+public class BenchmarkApplication {
+    public static void main(String[] args) {
+        SpringApplication.from(IronGymApplication::main).run(args);
+    }
+}
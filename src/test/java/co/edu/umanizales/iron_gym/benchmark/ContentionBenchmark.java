@@ -0,0 +1,194 @@
+package co.edu.umanizales.iron_gym.benchmark; // Declara el paquete de las mediciones de rendimiento
+
+import co.edu.umanizales.iron_gym.model.Payment;
+import co.edu.umanizales.iron_gym.persistence.SnapshotMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mide cómo escalan las lecturas de un dataset en memoria al aumentar los hilos lectores,
+ * mientras un escritor modifica registros sin parar (como las peticiones de Tomcat).
+ * Compara el modelo anterior de los servicios (mapa con métodos synchronized, getAll copia la
+ * lista) con SnapshotMap (lecturas sin bloqueo sobre instantáneas inmutables). Cada lector hace
+ * búsquedas por ID y, cada 100 operaciones, una lectura de la lista completa.
+ * Se ejecuta desde BenchmarkApplication con --spring.profiles.active=benchmark-contention (opcional:
+ * --benchmark.records=N, --benchmark.duration-ms=N, --benchmark.max-threads=N) y luego cierra la aplicación.
+ */
+@Component
+@Profile("benchmark-contention")
+public class ContentionBenchmark implements CommandLineRunner {
+    @Value("${benchmark.records:5000}")
+    private int records; // Registros del dataset
+    @Value("${benchmark.duration-ms:1000}")
+    private long durationMs; // Duración de cada medición
+    @Value("${benchmark.max-threads:0}")
+    private int maxThreads; // Máximo de lectores (0 = 2 por núcleo)
+    @Autowired
+    private ConfigurableApplicationContext context;
+    private volatile long sink; // Recibe el resultado de cada lector para que el JIT no descarte las lecturas
+
+    @Override
+    public void run(String... args) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int limit = maxThreads > 0 ? maxThreads : cores * 2;
+        System.out.println("Benchmark de contención: " + records + " registros, " + cores + " núcleos, "
+                + durationMs + " ms por medición, 1 escritor continuo");
+
+        List<Payment> payments = new ArrayList<>();
+        LocalDateTime base = LocalDateTime.now().withSecond(0).withNano(0);
+        String[] ids = new String[records];
+        for (int i = 0; i < records; i++) {
+            ids[i] = String.format("B%06d", i);
+            payments.add(new Payment(ids[i], 50000 + i, base.plusMinutes(i), "EFECTIVO", "C01"));
+        }
+        Store locked = new LockedStore(payments);
+        Store snapshot = new SnapshotStore(payments);
+        measure(locked, ids, 1); // Calentamiento del JIT
+        measure(snapshot, ids, 1);
+
+        System.out.println(String.format("%-8s %16s %10s %16s %10s %10s", "lectores", "synchronized/s", "escala",
+                "snapshot/s", "escala", "snap/sync"));
+        double lockedBase = 0;
+        double snapshotBase = 0;
+        for (int threads = 1; threads <= limit; threads *= 2) {
+            double lockedRate = measure(locked, ids, threads);
+            double snapshotRate = measure(snapshot, ids, threads);
+            if (threads == 1) {
+                lockedBase = lockedRate;
+                snapshotBase = snapshotRate;
+            }
+            System.out.println(String.format("%-8d %16.0f %9.1fx %16.0f %9.1fx %9.1fx", threads, lockedRate,
+                    lockedRate / lockedBase, snapshotRate, snapshotRate / snapshotBase, snapshotRate / lockedRate));
+        }
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    // Lecturas por segundo de todos los lectores juntos mientras el escritor reemplaza registros
+    private double measure(Store store, String[] ids, int threads) throws InterruptedException {
+        LongAdder reads = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                await(start);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                long sink = 0;
+                while (!stop.get()) {
+                    if (done % 100 == 99) {
+                        sink += store.all().size();
+                    } else {
+                        Payment payment = store.get(ids[random.nextInt(ids.length)]);
+                        sink += payment == null ? 0 : 1;
+                    }
+                    done++;
+                }
+                reads.add(done);
+                this.sink = sink;
+            }));
+        }
+        Thread writer = new Thread(() -> {
+            await(start);
+            int i = 0;
+            while (!stop.get()) {
+                String id = ids[i++ % ids.length];
+                Payment current = store.get(id);
+                store.put(new Payment(id, current.getAmount() + 1, current.getDateTime(), current.getPaymentMethod(),
+                        current.getClientId()));
+            }
+        });
+        workers.forEach(Thread::start);
+        writer.start();
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(durationMs);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        writer.join();
+        return reads.sum() / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface Store {
+        Payment get(String id);
+
+        List<Payment> all();
+
+        void put(Payment payment);
+    }
+
+    // Modelo anterior de los servicios: todo bajo el monitor del servicio
+    private static class LockedStore implements Store {
+        private final Map<String, Payment> payments = new LinkedHashMap<>();
+
+        private LockedStore(List<Payment> initial) {
+            initial.forEach(this::put);
+        }
+
+        @Override
+        public synchronized Payment get(String id) {
+            return payments.get(id);
+        }
+
+        @Override
+        public synchronized List<Payment> all() {
+            return new ArrayList<>(payments.values());
+        }
+
+        @Override
+        public synchronized void put(Payment payment) {
+            payments.put(payment.getId(), payment);
+        }
+    }
+
+    // Modelo actual: escrituras bajo el monitor, lecturas sin bloqueo
+    private static class SnapshotStore implements Store {
+        private final SnapshotMap<Payment> payments = new SnapshotMap<>();
+
+        private SnapshotStore(List<Payment> initial) {
+            initial.forEach(payment -> payments.put(payment.getId(), payment));
+            payments.publish();
+        }
+
+        @Override
+        public Payment get(String id) {
+            return payments.get(id);
+        }
+
+        @Override
+        public List<Payment> all() {
+            return payments.values();
+        }
+
+        @Override
+        public synchronized void put(Payment payment) {
+            payments.put(payment.getId(), payment);
+            payments.publish();
+        }
+    }
+}
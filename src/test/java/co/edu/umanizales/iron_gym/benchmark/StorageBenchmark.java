@@ -0,0 +1,165 @@
+package co.edu.umanizales.iron_gym.benchmark; // Declara el paquete de las mediciones de rendimiento
+
+import co.edu.umanizales.iron_gym.model.Payment;
+import co.edu.umanizales.iron_gym.persistence.CsvRepository;
+import co.edu.umanizales.iron_gym.persistence.DatasetSpec;
+import co.edu.umanizales.iron_gym.persistence.JournalCompactor;
+import co.edu.umanizales.iron_gym.persistence.MvStoreRepository;
+import co.edu.umanizales.iron_gym.persistence.PendingCommits;
+import co.edu.umanizales.iron_gym.persistence.Repository;
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import co.edu.umanizales.iron_gym.service.PaymentService;
+import org.h2.mvstore.MVStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Compara los motores de almacenamiento con la misma carga de trabajo sobre pagos:
+ * inserciones, actualizaciones, eliminaciones y una carga completa al reabrir. Cada operación
+ * espera su confirmación en disco, como una petición HTTP, así se mide el ritmo durable.
+ * Se ejecuta desde BenchmarkApplication con --spring.profiles.active=benchmark (opcional:
+ * --benchmark.operations=N), en una carpeta temporal para no tocar los datos reales, y luego cierra la aplicación.
+ */
+@Component
+@Profile("benchmark")
+public class StorageBenchmark implements CommandLineRunner {
+    private static final String[] METHODS = {"EFECTIVO", "TRANSFERENCIA", "NEQUI", "DAVIPLATA"};
+
+    @Value("${benchmark.operations:1000}")
+    private int operations; // Pagos insertados por motor
+    @Value("${persistence.group-commit.window-ms:2}")
+    private long groupCommitWindowMs;
+    @Autowired
+    private JournalCompactor compactor;
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Override
+    public void run(String... args) throws Exception {
+        File root = Files.createTempDirectory("iron_gym-benchmark").toFile();
+        System.out.println("Benchmark de almacenamiento: " + operations + " pagos por motor en " + root);
+
+        String csvPath = root + "/csv/payments.csv";
+        DatasetSpec<Payment> csvSpec = PaymentService.datasetSpec("benchmark-payments", csvPath);
+        Result csv = measure("csv", () -> {
+            CsvRepository<Payment> repository = new CsvRepository<>(csvSpec);
+            repository.attach(null, compactor, groupCommitWindowMs); // Igual que en la aplicación: diario con compactación
+            return repository;
+        }, () -> new CsvRepository<>(csvSpec), () -> {
+            try {
+                compactor.awaitPending(); // La carga lee los archivos ya compactados
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        String mvFile = root + "/mvstore/iron_gym.mv.db";
+        DatasetSpec<Payment> mvSpec = PaymentService.datasetSpec("payments", root + "/mvstore/payments.csv");
+        MVStore[] store = new MVStore[1];
+        Supplier<Repository<Payment, String>> openMvStore = () -> {
+            store[0] = RepositoryFactory.openMvStore(mvFile);
+            return new MvStoreRepository<>(store[0], mvSpec, groupCommitWindowMs);
+        };
+        Result mvstore = measure("mvstore", openMvStore, openMvStore, () -> RepositoryFactory.closeMvStore(store[0]));
+
+        System.out.println(String.format("%-8s %12s %12s %12s %10s %12s", "motor", "insert/s", "update/s", "delete/s", "carga ms", "disco KB"));
+        for (Result result : new Result[]{csv, mvstore}) {
+            System.out.println(String.format("%-8s %12.0f %12.0f %12.0f %10d %12d", result.engine, result.insertsPerSecond,
+                    result.updatesPerSecond, result.deletesPerSecond, result.loadMillis, size(new File(root, result.engine)) / 1024));
+        }
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    // Misma secuencia para cada motor; reabrir (sin escritores en segundo plano) mide la carga desde disco
+    private Result measure(String engine, Supplier<Repository<Payment, String>> open,
+                           Supplier<Repository<Payment, String>> reopen, Runnable close) {
+        Result result = new Result(engine);
+        Repository<Payment, String> repository = open.get();
+        repository.loadAll(payment -> {
+        });
+        LocalDateTime base = LocalDateTime.now().withDayOfMonth(1).withHour(6).withMinute(0).withSecond(0).withNano(0);
+        List<Payment> payments = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            Payment payment = new Payment(String.format("B%06d", i), 50000 + i, base.plusMinutes(i % 20000),
+                    METHODS[i % METHODS.length], String.format("C%02d", i % 50));
+            payments.add(payment);
+            repository.save(payment);
+            PendingCommits.awaitAll();
+        }
+        result.insertsPerSecond = perSecond(operations, start);
+
+        int updates = operations / 2;
+        start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            Payment payment = payments.get(i);
+            payment.setAmount(payment.getAmount() + 1000);
+            repository.save(payment);
+            PendingCommits.awaitAll();
+        }
+        result.updatesPerSecond = perSecond(updates, start);
+
+        int deletes = operations / 4;
+        start = System.nanoTime();
+        for (int i = 0; i < deletes; i++) {
+            repository.deleteById(payments.get(operations - 1 - i).getId());
+            PendingCommits.awaitAll();
+        }
+        result.deletesPerSecond = perSecond(deletes, start);
+        repository.flush();
+        close.run();
+
+        start = System.nanoTime();
+        int[] loaded = {0};
+        reopen.get().loadAll(payment -> loaded[0]++);
+        result.loadMillis = (System.nanoTime() - start) / 1_000_000;
+        close.run();
+        if (loaded[0] != operations - deletes) {
+            System.err.println("Advertencia: " + engine + " cargó " + loaded[0] + " pagos, se esperaban " + (operations - deletes));
+        }
+        return result;
+    }
+
+    private static double perSecond(int count, long startNanos) {
+        return count / ((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private static long size(File file) {
+        if (file.isFile()) {
+            return file.length();
+        }
+        long total = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                total += size(child);
+            }
+        }
+        return total;
+    }
+
+    private static class Result {
+        private final String engine;
+        private double insertsPerSecond;
+        private double updatesPerSecond;
+        private double deletesPerSecond;
+        private long loadMillis;
+
+        private Result(String engine) {
+            this.engine = engine;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package co.edu.umanizales.iron_gym.benchmark; // Declara el paquete de las mediciones de rendimiento
+
+import co.edu.umanizales.iron_gym.model.Client;
+import co.edu.umanizales.iron_gym.model.GroupClass;
+import co.edu.umanizales.iron_gym.persistence.VirtualThreads;
+import co.edu.umanizales.iron_gym.service.AttendanceService;
+import co.edu.umanizales.iron_gym.service.ClientService;
+import co.edu.umanizales.iron_gym.service.GroupClassService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Carga HTTP concurrente sobre la propia aplicación para comparar hilos de plataforma y virtuales.
+ * Mide POST /api/attendances/from-ids (escritura con confirmación en disco) y GET /api/payments/report
+ * (lectura con agregación) con muchos clientes simultáneos: peticiones por segundo, latencia p50 y p99
+ * y errores. El modo lo decide spring.threads.virtual.enabled, así que se ejecuta dos veces desde
+ * BenchmarkApplication y se comparan las tablas:
+ *   --spring.profiles.active=benchmark-threads
+ *   --spring.profiles.active=benchmark-threads --spring.threads.virtual.enabled=true   (Java 21+)
+ * Opcional: --benchmark.concurrency=N (clientes simultáneos), --benchmark.requests=N (por endpoint).
+ * Usa los datos de la carpeta data/ (ejecutar sobre una copia); al terminar elimina las asistencias que creó.
+ */
+@Component
+@Profile("benchmark-threads")
+public class ThreadModelBenchmark implements CommandLineRunner {
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("dd-MM-yyyy'T'HH:mm");
+
+    @Value("${benchmark.concurrency:400}")
+    private int concurrency; // Clientes HTTP simultáneos (más que los 200 hilos por defecto de Tomcat)
+    @Value("${benchmark.requests:4000}")
+    private int requests; // Peticiones por endpoint
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+    @Autowired
+    private Environment environment;
+    @Autowired
+    private ClientService clientService;
+    @Autowired
+    private GroupClassService groupClassService;
+    @Autowired
+    private AttendanceService attendanceService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Override
+    public void run(String... args) throws Exception {
+        String mode = virtualThreads && VirtualThreads.isSupported() ? "virtual" : "plataforma";
+        String base = "http://localhost:" + environment.getProperty("local.server.port");
+        List<Client> clients = clientService.getAll();
+        List<GroupClass> classes = groupClassService.getAll();
+        if (clients.isEmpty() || classes.isEmpty()) {
+            System.err.println("El benchmark necesita al menos un cliente y una clase grupal en data/");
+            System.exit(SpringApplication.exit(context, () -> 1));
+            return;
+        }
+        System.out.println("Benchmark de hilos (" + mode + ", Java " + Runtime.version().feature() + "): "
+                + requests + " peticiones por endpoint, " + concurrency + " clientes simultáneos");
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String now = LocalDateTime.now().format(DATE_TIME); // Mes actual: los meses cerrados no aceptan asistencias
+        List<String> created = Collections.synchronizedList(new ArrayList<>());
+
+        measure(http, i -> report(base), Math.min(requests, 200), null); // Calentamiento del JIT y de Tomcat
+        Result write = measure(http, i -> {
+            String body = "{\"dateTime\":\"" + now + "\",\"clientId\":\"" + clients.get(i % clients.size()).getId()
+                    + "\",\"groupClassId\":\"" + classes.get(i % classes.size()).getId() + "\"}";
+            return HttpRequest.newBuilder(URI.create(base + "/api/attendances/from-ids"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        }, requests, created);
+        Result read = measure(http, i -> report(base), requests, null);
+
+        System.out.println(String.format("%-32s %-10s %10s %10s %10s %8s", "endpoint", "hilos", "req/s", "p50 ms",
+                "p99 ms", "errores"));
+        print("POST /api/attendances/from-ids", mode, write);
+        print("GET /api/payments/report", mode, read);
+
+        for (String id : created) {
+            attendanceService.delete(id); // Deja el dataset como estaba
+        }
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    private static HttpRequest report(String base) {
+        LocalDate today = LocalDate.now();
+        return HttpRequest.newBuilder(URI.create(base + "/api/payments/report?start=" + today.minusYears(1)
+                + "&end=" + today)).GET().build();
+    }
+
+    // Reparte las peticiones entre los clientes simultáneos; cada uno espera su respuesta antes de enviar la siguiente
+    private Result measure(HttpClient http, IntFunction<HttpRequest> request, int total, List<String> created)
+            throws InterruptedException {
+        long[] latencies = new long[total];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < concurrency; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                int i;
+                while ((i = next.getAndIncrement()) < total) {
+                    long begin = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = http.send(request.apply(i), HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() >= 300) {
+                            errors.incrementAndGet();
+                        } else if (created != null) {
+                            JsonNode id = objectMapper.readTree(response.body()).get("id");
+                            if (id != null) {
+                                created.add(id.asText());
+                            }
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[i] = System.nanoTime() - begin;
+                }
+            }, "benchmark-client-" + t);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Result result = new Result();
+        result.perSecond = total / ((System.nanoTime() - begin) / 1e9);
+        Arrays.sort(latencies);
+        result.p50Millis = latencies[(int) (total * 0.50)] / 1e6;
+        result.p99Millis = latencies[Math.min(total - 1, (int) (total * 0.99))] / 1e6;
+        result.errors = errors.get();
+        return result;
+    }
+
+    private static void print(String endpoint, String mode, Result result) {
+        System.out.println(String.format("%-32s %-10s %10.0f %10.1f %10.1f %8d", endpoint, mode, result.perSecond,
+                result.p50Millis, result.p99Millis, result.errors));
+    }
+
+    private static class Result {
+        private double perSecond;
+        private double p50Millis;
+        private double p99Millis;
+        private int errors;
+    }
+}
@@ -0,0 +1,144 @@
+package co.edu.umanizales.iron_gym.controller;
+
+import co.edu.umanizales.iron_gym.model.Payment;
+import co.edu.umanizales.iron_gym.persistence.IdempotencyStore;
+import co.edu.umanizales.iron_gym.persistence.Repository;
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import co.edu.umanizales.iron_gym.service.ClientService;
+import co.edu.umanizales.iron_gym.service.PaymentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class PaymentIdempotencyTest {
+    // Mes actual: los meses cerrados no aceptan pagos nuevos
+    private static final String NOW = LocalDateTime.now().withDayOfMonth(1).withHour(9).withMinute(0)
+            .format(DateTimeFormatter.ofPattern("dd-MM-yyyy'T'HH:mm"));
+
+    private final List<Payment> saved = new ArrayList<>();
+    private final List<IdempotencyStore.Entry<Payment>> savedKeys = new ArrayList<>();
+    private MockMvc mvc;
+
+    // Repositorio en memoria: registra lo que el servicio manda a guardar
+    private class MemoryRepository implements Repository<Payment, String> {
+        @Override
+        public void loadAll(Consumer<Payment> sink) {
+        }
+
+        @Override
+        public void save(Payment entity) {
+            saved.add(entity);
+        }
+
+        @Override
+        public void save(Payment entity, IdempotencyStore.Entry<Payment> key) {
+            saved.add(entity);
+            savedKeys.add(key);
+        }
+
+        @Override
+        public void deleteById(String id) {
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        RepositoryFactory repositories = mock(RepositoryFactory.class);
+        when(repositories.create(any())).thenAnswer(invocation -> new MemoryRepository());
+        PaymentService service = new PaymentService();
+        ReflectionTestUtils.setField(service, "repositories", repositories);
+        ReflectionTestUtils.setField(service, "idempotencyTtlHours", 24L);
+        ReflectionTestUtils.setField(service, "idempotencyMaxKeys", 100);
+        service.initRepository();
+        service.load();
+        PaymentController controller = new PaymentController();
+        ReflectionTestUtils.setField(controller, "paymentService", service);
+        ReflectionTestUtils.setField(controller, "clientService", mock(ClientService.class));
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    private static String body(String method, double amount) {
+        return "{\"amount\":" + amount + ",\"dateTime\":\"" + NOW + "\",\"paymentMethod\":\"" + method + "\",\"clientId\":\"C01\"}";
+    }
+
+    private ResultActions create(String key, String body) throws Exception {
+        return mvc.perform(post("/api/payments").header("Idempotency-Key", key)
+                .contentType(MediaType.APPLICATION_JSON).content(body));
+    }
+
+    @Test
+    void retryWithTheSameKeyReturnsTheOriginalPayment() throws Exception {
+        create("pos-7f3a", body("NEQUI", 20000))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"))
+                .andExpect(jsonPath("$.id").value("P001"));
+        create("pos-7f3a", body("NEQUI", 20000))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.id").value("P001"));
+
+        assertThat(saved).hasSize(1);
+        assertThat(savedKeys).extracting(IdempotencyStore.Entry::getKey).containsExactly("pos-7f3a");
+    }
+
+    @Test
+    void retryThatOnlyChangesMethodCaseOrSpacesIsAReplay() throws Exception {
+        create("pos-1", body("nequi", 20000)).andExpect(status().isCreated());
+        create("pos-1", body("  NEQUI ", 20000.00))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.paymentMethod").value("NEQUI"));
+
+        assertThat(saved).hasSize(1);
+    }
+
+    @Test
+    void sameKeyWithAnotherBodyIsRejectedWith422() throws Exception {
+        create("pos-2", body("NEQUI", 20000)).andExpect(status().isCreated());
+        create("pos-2", body("NEQUI", 25000))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.error").exists());
+
+        assertThat(saved).hasSize(1);
+    }
+
+    @Test
+    void invalidKeyIsRejectedWith400() throws Exception {
+        create("clave con espacios", body("NEQUI", 20000))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$['Idempotency-Key']").exists());
+
+        assertThat(saved).isEmpty();
+    }
+
+    @Test
+    void differentKeysCreateDifferentPayments() throws Exception {
+        create("pos-3", body("EFECTIVO", 20000)).andExpect(jsonPath("$.id").value("P001"));
+        create("pos-4", body("EFECTIVO", 20000)).andExpect(jsonPath("$.id").value("P002"));
+
+        assertThat(saved).hasSize(2);
+    }
+}
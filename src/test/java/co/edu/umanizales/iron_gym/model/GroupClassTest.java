@@ -0,0 +1,128 @@
+package co.edu.umanizales.iron_gym.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GroupClassTest {
+    private static final int THREADS = 16;
+
+    private static Client client(String id) {
+        Client client = new Client();
+        client.setId(id);
+        return client;
+    }
+
+    // Ejecuta todas las tareas a la vez (salen juntas de la barrera) y cuenta las que retornaron true
+    private static int runTogether(List<Callable<Boolean>> tasks) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (Callable<Boolean> task : tasks) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            int succeeded = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(10, TimeUnit.SECONDS)) {
+                    succeeded++;
+                }
+            }
+            return succeeded;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentRegistrationsNeverExceedCapacity() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            GroupClass groupClass = new GroupClass("CLASE01", "Yoga", 5, "Lunes 8:00 AM");
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                Client client = client("C" + i);
+                tasks.add(() -> groupClass.addClient(client));
+            }
+
+            assertThat(runTogether(tasks)).isEqualTo(5);
+            assertThat(groupClass.getRegisteredClients()).hasSize(5);
+            assertThat(groupClass.isFull()).isTrue();
+        }
+    }
+
+    @Test
+    void concurrentRegistrationsOfTheSameClientTakeOneSeat() throws Exception {
+        GroupClass groupClass = new GroupClass("CLASE01", "Yoga", 10, "Lunes 8:00 AM");
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Client client = client("C01"); // Reintentos del mismo cliente con instancias distintas
+            tasks.add(() -> groupClass.addClient(client));
+        }
+
+        assertThat(runTogether(tasks)).isEqualTo(1);
+        assertThat(groupClass.getRegisteredClients()).extracting(Client::getId).containsExactly("C01");
+        assertThat(groupClass.isFull()).isFalse();
+    }
+
+    @Test
+    void freedSeatCanBeClaimedAgain() {
+        GroupClass groupClass = new GroupClass("CLASE01", "Yoga", 1, "Lunes 8:00 AM");
+        Client first = client("C01");
+
+        assertThat(groupClass.addClient(first)).isTrue();
+        assertThat(groupClass.addClient(client("C02"))).isFalse();
+        assertThat(groupClass.removeClient(first)).isTrue();
+        assertThat(groupClass.addClient(client("C02"))).isTrue();
+        assertThat(groupClass.isRegistered("C01")).isFalse();
+    }
+
+    @Test
+    void rosterReplacementDuringRegistrationsKeepsSeatsInStepWithTheRoster() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            GroupClass groupClass = new GroupClass("CLASE01", "Yoga", 30, "Lunes 8:00 AM");
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                Client client = client("C" + i);
+                tasks.add(() -> groupClass.addClient(client));
+                if (i % 10 == 0) {
+                    tasks.add(() -> { // Reemplazo en medio de las inscripciones (como un enlace)
+                        groupClass.setRegisteredClients(List.of(client("R1"), client("R2")));
+                        return false;
+                    });
+                }
+            }
+            runTogether(tasks);
+
+            // Los cupos libres que quedan son exactamente los que no ocupa la lista
+            int registered = groupClass.getRegisteredClients().size();
+            int freed = 0;
+            while (groupClass.addClient(client("X" + freed))) {
+                freed++;
+            }
+            assertThat(registered + freed).isEqualTo(30);
+        }
+    }
+
+    @Test
+    void restoredRosterKeepsEveryClientEvenOverCapacity() {
+        GroupClass groupClass = new GroupClass("CLASE01", "Yoga", 2, "Lunes 8:00 AM");
+        groupClass.setRegisteredClients(List.of(client("C01"), client("C02"), client("C03")));
+
+        assertThat(groupClass.getRegisteredClients()).extracting(Client::getId).containsExactly("C01", "C02", "C03");
+        assertThat(groupClass.isFull()).isTrue();
+        assertThat(groupClass.addClient(client("C04"))).isFalse();
+    }
+}
@@ -0,0 +1,69 @@
+package co.edu.umanizales.iron_gym.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinarySnapshotTest {
+    private static final int VERSION = 1;
+    private static final int FIRST_LENGTH = 12; // Posición del largo del primer texto: magic, versión y cantidad
+
+    @TempDir
+    Path dir;
+
+    private String write(String... values) throws Exception {
+        String path = dir.resolve("payments.bin").toString();
+        BinarySnapshot.write(path, VERSION, List.of(values), BinarySnapshot::writeString);
+        return path;
+    }
+
+    private static void overwriteInt(String path, long position, int value) throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.seek(position);
+            file.writeInt(value);
+        }
+    }
+
+    private static List<String> read(String path) {
+        List<String> values = new ArrayList<>();
+        if (!BinarySnapshot.read(path, VERSION, BinarySnapshot::readString, values::add)) {
+            return null;
+        }
+        return values;
+    }
+
+    @Test
+    void roundTripsTexts() throws Exception {
+        assertThat(read(write("P001", "", "ñandú"))).containsExactly("P001", "", "ñandú");
+    }
+
+    @Test
+    void hugeTextLengthIsAStaleSnapshotInsteadOfAnAllocation() throws Exception {
+        String path = write("P001", "P002");
+        overwriteInt(path, FIRST_LENGTH, Integer.MAX_VALUE - 8); // Sin el límite, reservaría ~2 GB
+
+        assertThat(read(path)).isNull();
+    }
+
+    @Test
+    void textLongerThanTheRestOfTheFileIsAStaleSnapshot() throws Exception {
+        String path = write("P001", "P002");
+        overwriteInt(path, FIRST_LENGTH, 1000); // Menor que el máximo, pero el archivo no tiene tantos bytes
+
+        assertThat(read(path)).isNull();
+    }
+
+    @Test
+    void negativeRecordCountIsAStaleSnapshot() throws Exception {
+        String path = write("P001");
+        overwriteInt(path, 8, -5);
+
+        assertThat(read(path)).isNull();
+    }
+}
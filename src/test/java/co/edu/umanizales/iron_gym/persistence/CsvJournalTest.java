@@ -0,0 +1,144 @@
+package co.edu.umanizales.iron_gym.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvJournalTest {
+    @TempDir
+    Path dir;
+
+    // Registra lo reproducido como "PUT:<fila>" o "DEL:<id>"
+    private static List<String> replay(CsvJournal journal) {
+        List<String> seen = new ArrayList<>();
+        journal.replay(new CsvJournal.Listener() {
+            @Override
+            public void onPut(String csvRow) {
+                seen.add("PUT:" + csvRow);
+            }
+
+            @Override
+            public void onDelete(String id) {
+                seen.add("DEL:" + id);
+            }
+        });
+        return seen;
+    }
+
+    @Test
+    void replayAppliesRecordsInOrder() throws Exception {
+        String path = dir.resolve("payments.journal").toString();
+        CsvJournal journal = new CsvJournal(path);
+        journal.appendPut("P001,50000.0,01-10-2026T10:00,NEQUI,C01");
+        journal.appendPut("P002,30000.0,02-10-2026T10:00,EFECTIVO,C02");
+        journal.appendDelete("P001");
+        journal.force();
+        journal.close();
+
+        CsvJournal reopened = new CsvJournal(path);
+        assertThat(replay(reopened)).containsExactly(
+                "PUT:P001,50000.0,01-10-2026T10:00,NEQUI,C01",
+                "PUT:P002,30000.0,02-10-2026T10:00,EFECTIVO,C02",
+                "DEL:P001");
+        assertThat(reopened.size()).isEqualTo(3);
+    }
+
+    @Test
+    void replayReadsRotatedJournalFirst() {
+        String path = dir.resolve("payments.journal").toString();
+        CsvJournal journal = new CsvJournal(path);
+        journal.appendPut("P001,1.0");
+        journal.rotate(); // Como al empezar una compactación
+        journal.appendPut("P002,2.0");
+        journal.close();
+
+        assertThat(replay(new CsvJournal(path))).containsExactly("PUT:P001,1.0", "PUT:P002,2.0");
+    }
+
+    @Test
+    void replaySkipsIncompleteAndUnknownLinesAndTheUnterminatedTail() throws Exception {
+        Path path = dir.resolve("payments.journal");
+        // Líneas sin suma de control, como las de diarios anteriores al formato actual
+        Files.writeString(path, "PUT,P001,1.0\nPUT\nXXX,P009\nDEL,P001\nPUT,P00", StandardCharsets.UTF_8);
+
+        assertThat(replay(new CsvJournal(path.toString()))).containsExactly("PUT:P001,1.0", "DEL:P001");
+    }
+
+    @Test
+    void recordWithAWrongChecksumIsDiscarded() throws Exception {
+        Path path = dir.resolve("payments.journal");
+        CsvJournal journal = new CsvJournal(path.toString());
+        journal.appendPut("P001,50000.0");
+        journal.appendPut("P002,30000.0");
+        journal.close();
+        Files.writeString(path, Files.readString(path, StandardCharsets.UTF_8).replace("P002,30000.0", "P002,90000.0"),
+                StandardCharsets.UTF_8); // Bytes dañados con la línea completa
+
+        assertThat(replay(new CsvJournal(path.toString()))).containsExactly("PUT:P001,50000.0");
+    }
+
+    @Test
+    void appendAfterATornTailStartsOnANewLine() throws Exception {
+        Path path = dir.resolve("payments.journal");
+        CsvJournal journal = new CsvJournal(path.toString());
+        journal.appendPut("P001,50000.0");
+        journal.close();
+        String complete = Files.readString(path, StandardCharsets.UTF_8);
+        Files.writeString(path, complete + complete.substring(0, 12), StandardCharsets.UTF_8); // Corte a mitad del segundo registro
+
+        CsvJournal reopened = new CsvJournal(path.toString());
+        assertThat(replay(reopened)).containsExactly("PUT:P001,50000.0");
+        reopened.appendPut("P002,30000.0"); // Confirmado después del reinicio: no se pega a la línea cortada
+        reopened.close();
+
+        assertThat(replay(new CsvJournal(path.toString()))).containsExactly("PUT:P001,50000.0", "PUT:P002,30000.0");
+    }
+
+    @Test
+    void rotationDoesNotGlueRecordsToATornOldJournal() throws Exception {
+        Path path = dir.resolve("payments.journal");
+        CsvJournal journal = new CsvJournal(path.toString());
+        journal.appendPut("P001,1.0");
+        journal.rotate(); // Compactación que no terminó: el .old se conserva
+        journal.close();
+        Path old = dir.resolve("payments.journal.old");
+        Files.writeString(old, Files.readString(old, StandardCharsets.UTF_8) + "9a PUT,P0", StandardCharsets.UTF_8);
+
+        journal.appendPut("P002,2.0");
+        journal.rotate(); // Se anexa al .old cortado
+        journal.close();
+
+        assertThat(replay(new CsvJournal(path.toString()))).containsExactly("PUT:P001,1.0", "PUT:P002,2.0");
+    }
+
+    @Test
+    void keepsAccentsRegardlessOfPlatformCharset() throws Exception {
+        Path path = dir.resolve("clients.journal");
+        CsvJournal journal = new CsvJournal(path.toString());
+        journal.appendPut("C01,José Muñoz,Álvarez");
+        journal.close();
+
+        assertThat(Files.readString(path, StandardCharsets.UTF_8)).endsWith(" PUT,C01,José Muñoz,Álvarez\n");
+        assertThat(replay(new CsvJournal(path.toString()))).containsExactly("PUT:C01,José Muñoz,Álvarez");
+    }
+
+    @Test
+    void failedAppendIsReportedToTheCaller() {
+        File blocked = dir.resolve("payments.journal").toFile();
+        assertThat(blocked.mkdir()).isTrue(); // Una carpeta con el nombre del diario: no se puede abrir para anexar
+        CsvJournal journal = new CsvJournal(blocked.getPath());
+
+        assertThatThrownBy(() -> journal.appendPut("P001,1.0")).isInstanceOf(UncheckedIOException.class);
+        assertThat(journal.size()).isZero();
+    }
+}
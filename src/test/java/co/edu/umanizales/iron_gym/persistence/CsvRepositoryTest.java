@@ -0,0 +1,110 @@
+package co.edu.umanizales.iron_gym.persistence;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvRepositoryTest {
+    // Registro mínimo: {id, valor}
+    private static final RowCodec<String[]> CODEC = RowCodec.of(item -> item[0], item -> item[0] + "," + item[1],
+            row -> new String[]{row.getString(0), row.getString(1)});
+
+    @TempDir
+    Path dir;
+
+    private CsvRepository<String[]> repository() {
+        return new CsvRepository<>(DatasetSpec.of("reservations", "id,dateTime", CODEC)
+                .path(dir.resolve("reservations.csv").toString()));
+    }
+
+    private static List<String> load(CsvRepository<String[]> repository) {
+        List<String> ids = new ArrayList<>();
+        repository.loadAll(item -> ids.add(item[0] + "=" + item[1]));
+        return ids;
+    }
+
+    private CsvRepository<String[]> attached() {
+        CsvRepository<String[]> repository = repository();
+        repository.attach(new WriteBehindFlusher(new SimpleMeterRegistry(), false), null, 0);
+        return repository;
+    }
+
+    private List<String> lines(String name) throws Exception {
+        return Files.readAllLines(dir.resolve(name), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void duplicateRowsAreQuarantinedInsteadOfLost() throws Exception {
+        Files.writeString(dir.resolve("reservations.csv"),
+                "id,dateTime\nR001,2025-11-19T10:00\nR001,2025-11-20T08:00\nR002,2025-11-21T09:00\n", StandardCharsets.UTF_8);
+        CsvRepository<String[]> repository = repository();
+
+        assertThat(load(repository)).containsExactly("R001=2025-11-19T10:00", "R002=2025-11-21T09:00");
+        assertThat(lines("reservations.duplicates.csv")).containsExactly("id,dateTime", "R001,2025-11-20T08:00");
+
+        repository.flush(); // La reescritura ya no lleva la fila repetida, pero esta sigue en cuarentena
+        assertThat(lines("reservations.csv")).containsExactly("id,dateTime", "R001,2025-11-19T10:00", "R002,2025-11-21T09:00");
+        assertThat(lines("reservations.duplicates.csv")).containsExactly("id,dateTime", "R001,2025-11-20T08:00");
+    }
+
+    @Test
+    void reloadBeforeTheRewriteDoesNotRepeatQuarantinedRows() throws Exception {
+        Files.writeString(dir.resolve("reservations.csv"),
+                "id,dateTime\nR001,2025-11-19T10:00\nR001,2025-11-19T10:00\n", StandardCharsets.UTF_8);
+
+        load(repository());
+        load(repository()); // El CSV aún tiene la fila repetida
+
+        assertThat(lines("reservations.duplicates.csv")).containsExactly("id,dateTime", "R001,2025-11-19T10:00");
+    }
+
+    @Test
+    void csvWithoutDuplicatesCreatesNoQuarantineFile() throws Exception {
+        Files.writeString(dir.resolve("reservations.csv"), "id,dateTime\nR001,2025-11-19T10:00\n", StandardCharsets.UTF_8);
+        CsvRepository<String[]> repository = repository();
+
+        assertThat(load(repository)).containsExactly("R001=2025-11-19T10:00");
+        repository.flush();
+        assertThat(dir.resolve("reservations.duplicates.csv")).doesNotExist();
+    }
+
+    @Test
+    void sequenceIsWrittenByTheGroupCommitNotByTheCaller() throws Exception {
+        CsvRepository<String[]> repository = attached();
+        load(repository);
+
+        repository.saveSequence(7); // Bajo el lock del servicio: solo se anota
+        assertThat(dir.resolve("reservations.seq")).doesNotExist();
+        assertThat(repository.loadSequence()).isEqualTo(7); // Una recarga antes de la confirmación no repite IDs
+
+        PendingCommits.awaitAll(); // Lo que hace la respuesta HTTP, fuera de los locks
+        assertThat(lines("reservations.seq")).containsExactly("7");
+        assertThat(repository().loadSequence()).isEqualTo(7);
+    }
+
+    @Test
+    void failedSequenceWriteFailsTheCommitAndIsRetried() throws Exception {
+        CsvRepository<String[]> repository = attached();
+        load(repository);
+        Path blocked = dir.resolve("reservations.seq");
+        Files.createDirectory(blocked); // Una carpeta con el nombre del archivo: no se puede reemplazar
+
+        repository.saveSequence(3);
+        assertThatThrownBy(PendingCommits::awaitAll).isInstanceOf(UncheckedIOException.class);
+
+        Files.delete(blocked);
+        repository.saveSequence(2); // La siguiente confirmación lleva la mayor de las pendientes
+        PendingCommits.awaitAll();
+        assertThat(lines("reservations.seq")).containsExactly("3");
+    }
+}
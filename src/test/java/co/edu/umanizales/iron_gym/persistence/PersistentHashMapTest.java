@@ -0,0 +1,82 @@
+package co.edu.umanizales.iron_gym.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersistentHashMapTest {
+
+    // Claves distintas con el mismo hashCode, para los nodos de colisión
+    private static final class Colliding {
+        private final int id;
+
+        private Colliding(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Colliding && ((Colliding) other).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id % 7;
+        }
+    }
+
+    @Test
+    void behavesLikeHashMapUnderRandomChanges() {
+        Random random = new Random(7);
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            String key = "P" + random.nextInt(3000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                expected.put(key, i);
+                map = map.plus(key, i);
+            }
+            assertThat(map.size()).isEqualTo(expected.size());
+        }
+        for (int i = 0; i < 3000; i++) {
+            assertThat(map.get("P" + i)).isEqualTo(expected.get("P" + i));
+        }
+        Map<String, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertThat(visited).isEqualTo(expected);
+    }
+
+    @Test
+    void keepsKeysWithTheSameHash() {
+        PersistentHashMap<Colliding, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 50; i++) {
+            map = map.plus(new Colliding(i), i);
+        }
+        for (int i = 0; i < 50; i += 2) {
+            map = map.minus(new Colliding(i));
+        }
+
+        assertThat(map.size()).isEqualTo(25);
+        for (int i = 0; i < 50; i++) {
+            assertThat(map.get(new Colliding(i))).isEqualTo(i % 2 == 0 ? null : i);
+        }
+    }
+
+    @Test
+    void earlierVersionsDoNotChange() {
+        PersistentHashMap<String, String> before = PersistentHashMap.<String, String>empty().plus("a", "1");
+        PersistentHashMap<String, String> after = before.plus("b", "2").minus("a");
+
+        assertThat(before.get("a")).isEqualTo("1");
+        assertThat(before.containsKey("b")).isFalse();
+        assertThat(after.containsKey("a")).isFalse();
+        assertThat(after.get("b")).isEqualTo("2");
+    }
+}
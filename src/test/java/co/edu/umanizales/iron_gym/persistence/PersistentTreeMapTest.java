@@ -0,0 +1,68 @@
+package co.edu.umanizales.iron_gym.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersistentTreeMapTest {
+
+    @Test
+    void behavesLikeTreeMapUnderRandomChanges() {
+        Random random = new Random(42);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        PersistentTreeMap<Integer, String> map = PersistentTreeMap.empty();
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                expected.put(key, "v" + i);
+                map = map.plus(key, "v" + i);
+            }
+            assertThat(map.size()).isEqualTo(expected.size());
+        }
+        assertThat(map.values()).containsExactlyElementsOf(expected.values());
+        for (int key = -1; key <= 501; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+            assertThat(map.countBelow(key, false)).isEqualTo(expected.headMap(key, false).size());
+            assertThat(map.countBelow(key, true)).isEqualTo(expected.headMap(key, true).size());
+        }
+    }
+
+    @Test
+    void earlierVersionsDoNotChange() {
+        PersistentTreeMap<Integer, String> before = PersistentTreeMap.<Integer, String>empty().plus(1, "a").plus(2, "b");
+        PersistentTreeMap<Integer, String> after = before.plus(3, "c").minus(1).plus(2, "B");
+
+        assertThat(before.values()).containsExactly("a", "b");
+        assertThat(after.values()).containsExactly("B", "c");
+        assertThat(before.minus(9)).isSameAs(before);
+    }
+
+    @Test
+    void visitsRangesInBothDirectionsAndStopsWhenAsked() {
+        PersistentTreeMap<Integer, Integer> map = PersistentTreeMap.empty();
+        for (int i = 0; i < 100; i += 10) {
+            map = map.plus(i, i);
+        }
+        List<Integer> ascending = new ArrayList<>();
+        map.forEach(20, true, 60, false, false, (key, value) -> ascending.add(key));
+        List<Integer> descending = new ArrayList<>();
+        map.forEach(20, false, 60, true, true, (key, value) -> descending.add(key));
+        List<Integer> firstTwo = new ArrayList<>();
+        map.forEach(null, false, null, false, true, (key, value) -> {
+            firstTwo.add(key);
+            return firstTwo.size() < 2;
+        });
+
+        assertThat(ascending).containsExactly(20, 30, 40, 50);
+        assertThat(descending).containsExactly(60, 50, 40, 30);
+        assertThat(firstTwo).containsExactly(90, 80);
+    }
+}
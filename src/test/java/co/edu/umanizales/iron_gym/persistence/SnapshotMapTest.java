@@ -0,0 +1,91 @@
+package co.edu.umanizales.iron_gym.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnapshotMapTest {
+
+    private static SnapshotMap<String> mapWith(String... ids) {
+        SnapshotMap<String> map = new SnapshotMap<>();
+        for (String id : ids) {
+            map.put(id, "v-" + id);
+        }
+        map.publish();
+        return map;
+    }
+
+    @Test
+    void checkVersionAcceptsTheCurrentVersionOrNoCondition() {
+        SnapshotMap<String> map = mapWith("P001");
+        long version = map.getVersioned("P001").getVersion();
+
+        assertThatCode(() -> map.checkVersion("P001", version)).doesNotThrowAnyException();
+        assertThatCode(() -> map.checkVersion("P001", null)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void checkVersionRejectsAStaleVersionWithTheCurrentOne() {
+        SnapshotMap<String> map = mapWith("P001");
+        long read = map.getVersioned("P001").getVersion();
+        map.put("P001", "otro");
+        map.publish();
+        long current = map.getVersioned("P001").getVersion();
+
+        assertThat(current).isGreaterThan(read);
+        assertThatThrownBy(() -> map.checkVersion("P001", read))
+                .isInstanceOfSatisfying(SnapshotMap.VersionMismatch.class, ex -> {
+                    assertThat(ex.getId()).isEqualTo("P001");
+                    assertThat(ex.getCurrentVersion()).isEqualTo(current);
+                });
+    }
+
+    @Test
+    void checkVersionRejectsADeletedRecord() {
+        SnapshotMap<String> map = mapWith("P001");
+        long read = map.getVersioned("P001").getVersion();
+        map.remove("P001");
+        map.publish();
+
+        assertThatThrownBy(() -> map.checkVersion("P001", read))
+                .isInstanceOfSatisfying(SnapshotMap.VersionMismatch.class,
+                        ex -> assertThat(ex.getCurrentVersion()).isZero());
+    }
+
+    @Test
+    void checkVersionSeesUnpublishedWritesAndTouch() {
+        SnapshotMap<String> map = mapWith("CLASE01");
+        long read = map.getVersioned("CLASE01").getVersion();
+        map.touch("CLASE01"); // Aún sin publicar: la escritura siguiente del mismo lock ya debe rechazarse
+
+        assertThatThrownBy(() -> map.checkVersion("CLASE01", read)).isInstanceOf(SnapshotMap.VersionMismatch.class);
+        assertThat(map.getVersioned("CLASE01").getVersion()).isEqualTo(read);
+    }
+
+    @Test
+    void versionsAreNotReusedAfterClear() {
+        SnapshotMap<String> map = mapWith("P001");
+        long before = map.getVersioned("P001").getVersion();
+        map.clear();
+        map.put("P001", "recargado");
+        map.publish();
+
+        assertThatThrownBy(() -> map.checkVersion("P001", before)).isInstanceOf(SnapshotMap.VersionMismatch.class);
+    }
+
+    @Test
+    void readersSeeOnlyPublishedStateInInsertionOrder() {
+        SnapshotMap<String> map = mapWith("P001", "P002", "P003");
+        map.put("P002", "nuevo");
+        map.remove("P001");
+        map.put("P004", "v-P004");
+
+        assertThat(map.values()).containsExactly("v-P001", "v-P002", "v-P003");
+        map.publish();
+        assertThat(map.values()).containsExactly("nuevo", "v-P003", "v-P004"); // El reemplazo conserva su posición
+        assertThat(map.size()).isEqualTo(3);
+        assertThat(map.containsKey("P001")).isFalse();
+    }
+}
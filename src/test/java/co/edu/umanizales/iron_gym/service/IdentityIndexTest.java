@@ -0,0 +1,57 @@
+package co.edu.umanizales.iron_gym.service;
+
+import co.edu.umanizales.iron_gym.model.Client;
+import co.edu.umanizales.iron_gym.model.Person;
+import co.edu.umanizales.iron_gym.model.Trainer;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdentityIndexTest {
+    private static <T extends Person> T withIdentity(T person, String id, String identification, String phone) {
+        person.setId(id);
+        person.setIdentification(identification);
+        person.setPhone(phone);
+        return person;
+    }
+
+    @Test
+    void publishingOneRoleDoesNotExposeAnotherRolesPendingChanges() {
+        IdentityIndex index = new IdentityIndex();
+        IdentityIndex.Role clients = index.role("CLIENT");
+        IdentityIndex.Role trainers = index.role("TRAINER");
+        Client client = withIdentity(new Client(), "C01", "1053868686", "3194149629");
+        clients.add(client);
+        clients.publish();
+
+        // Actualización de un cliente a medias: ya quitado, aún sin su nuevo valor ni publicado
+        clients.remove(client);
+        trainers.add(withIdentity(new Trainer(), "T01", "2000", "3001112233"));
+        trainers.publish(); // Publica solo a los entrenadores
+
+        assertThat(index.findByIdentification("1053868686")).containsExactly(client);
+        assertThat(clients.getByPhone("319 414 9629")).isSameAs(client);
+        assertThat(index.findByIdentification("2000")).extracting(Person::getId).containsExactly("T01");
+
+        clients.publish();
+        assertThat(index.findByIdentification("1053868686")).isEmpty();
+    }
+
+    @Test
+    void sameIdentificationIsFoundOncePerRole() {
+        IdentityIndex index = new IdentityIndex();
+        IdentityIndex.Role persons = index.role("PERSON");
+        IdentityIndex.Role clients = index.role("CLIENT");
+        persons.add(withIdentity(new Person(), "01", "1053868686", "3194149629"));
+        clients.add(withIdentity(new Client(), "C01", "1053-868686", "3194149629"));
+        clients.add(withIdentity(new Client(), "C02", "1053868686", "3000000000")); // Repetido: conserva el primero
+        persons.publish();
+        clients.publish();
+
+        assertThat(index.findByIdentification("1053868686")).extracting(Person::getId).containsExactly("01", "C01");
+        assertThat(index.role("CLIENT")).isSameAs(clients);
+        clients.clear();
+        clients.publish();
+        assertThat(index.findByPhone("3194149629")).extracting(Person::getId).containsExactly("01");
+    }
+}
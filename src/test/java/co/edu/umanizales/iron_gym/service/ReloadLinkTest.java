@@ -0,0 +1,114 @@
+package co.edu.umanizales.iron_gym.service;
+
+import co.edu.umanizales.iron_gym.model.Attendance;
+import co.edu.umanizales.iron_gym.model.Client;
+import co.edu.umanizales.iron_gym.model.GroupClass;
+import co.edu.umanizales.iron_gym.model.Trainer;
+import co.edu.umanizales.iron_gym.persistence.CsvRepository;
+import co.edu.umanizales.iron_gym.persistence.DatasetSpec;
+import co.edu.umanizales.iron_gym.persistence.RepositoryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Una edición externa del CSV se recarga en la siguiente lectura con las referencias enlazadas e indexadas
+class ReloadLinkTest {
+    @TempDir
+    Path dir;
+
+    private RepositoryFactory repositories;
+    private ClientService clientService;
+    private TrainerService trainerService;
+
+    @BeforeEach
+    void setUp() {
+        repositories = mock(RepositoryFactory.class);
+        when(repositories.create(any())).thenAnswer(invocation -> { // Repositorio CSV real, en la carpeta temporal
+            DatasetSpec<Object> spec = invocation.getArgument(0);
+            spec.path(dir.resolve(new File(spec.getPath()).getName()).toString());
+            return new CsvRepository<>(spec);
+        });
+        clientService = mock(ClientService.class);
+        when(clientService.getById(anyString())).thenAnswer(invocation -> client(invocation.getArgument(0)));
+        trainerService = mock(TrainerService.class);
+        when(trainerService.getById(anyString())).thenAnswer(invocation -> {
+            Trainer trainer = new Trainer();
+            trainer.setId(invocation.getArgument(0));
+            trainer.setName("Entrenador " + trainer.getId());
+            return trainer;
+        });
+    }
+
+    private static Client client(String id) {
+        Client client = new Client();
+        client.setId(id);
+        client.setName("Cliente " + id);
+        return client;
+    }
+
+    private void write(String name, String content) throws Exception {
+        Files.writeString(dir.resolve(name), content, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void reloadedAttendancesAreLinkedAndIndexed() throws Exception {
+        GroupClassService groupClassService = mock(GroupClassService.class);
+        when(groupClassService.getById(anyString())).thenAnswer(invocation ->
+                new GroupClass(invocation.getArgument(0), "Yoga", 10, "Lunes 8:00 AM"));
+        write("attendances-2025-11.csv", "id,dateTime,clientId,groupClassId\nA01,19-11-2025T10:00,C01,CLASE01\n");
+        AttendanceService service = new AttendanceService();
+        ReflectionTestUtils.setField(service, "repositories", repositories);
+        ReflectionTestUtils.setField(service, "clientService", clientService);
+        ReflectionTestUtils.setField(service, "groupClassService", groupClassService);
+        service.initRepository();
+        service.load();
+        service.link();
+
+        write("attendances-2025-11.csv", "id,dateTime,clientId,groupClassId\nA01,19-11-2025T10:00,C01,CLASE01\n"
+                + "A02,20-11-2025T09:00,C02,CLASE01\n");
+        Attendance reloaded = service.getById("A02"); // La lectura detecta el cambio y recarga
+
+        assertThat(reloaded).isNotNull();
+        assertThat(reloaded.getClient().getName()).isEqualTo("Cliente C02");
+        assertThat(reloaded.getGroupClass().getName()).isEqualTo("Yoga");
+        assertThat(service.getByClientId("C02")).containsExactly(reloaded);
+        assertThat(service.getByGroupClassId("CLASE01")).extracting(Attendance::getId).containsExactly("A01", "A02");
+        assertThat(service.getByClientId("C01")).singleElement()
+                .satisfies(attendance -> assertThat(attendance).isSameAs(service.getById("A01")));
+    }
+
+    @Test
+    void reloadedClassesAreLinkedAndIndexed() throws Exception {
+        write("group_classes.csv", "id,name,maxCapacity,schedule,trainerId,clientIds\nCLASE01,Yoga,10,Lunes 8:00 AM,T01,C01\n");
+        GroupClassService service = new GroupClassService();
+        ReflectionTestUtils.setField(service, "repositories", repositories);
+        ReflectionTestUtils.setField(service, "clientService", clientService);
+        ReflectionTestUtils.setField(service, "trainerService", trainerService);
+        service.initRepository();
+        service.load();
+        service.link();
+
+        write("group_classes.csv", "id,name,maxCapacity,schedule,trainerId,clientIds\nCLASE01,Yoga,10,Lunes 8:00 AM,T01,C01\n"
+                + "CLASE02,Spinning,2,Martes 6:00 PM,T02,C02;C03\n");
+        GroupClass reloaded = service.getById("CLASE02"); // La lectura detecta el cambio y recarga
+
+        assertThat(reloaded).isNotNull();
+        assertThat(reloaded.getTrainer().getName()).isEqualTo("Entrenador T02");
+        assertThat(reloaded.getRegisteredClients()).extracting(Client::getName).containsExactly("Cliente C02", "Cliente C03");
+        assertThat(reloaded.isFull()).isTrue();
+        assertThat(service.getClassesByClientId("C03")).containsExactly(reloaded);
+        assertThat(service.getById("CLASE01").getRegisteredClients()).extracting(Client::getName).containsExactly("Cliente C01");
+    }
+}